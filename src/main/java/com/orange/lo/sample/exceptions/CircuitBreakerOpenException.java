@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.exceptions;
+
+/**
+ * Thrown when a message is rejected without being published because the circuit breaker of the client is open.
+ */
+public class CircuitBreakerOpenException extends LoMqttException {
+
+    private static final long serialVersionUID = -3215519867373263412L;
+
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+
+}
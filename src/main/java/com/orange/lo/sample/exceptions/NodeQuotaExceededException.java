@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.exceptions;
+
+/**
+ * Thrown when a message is rejected without being published because the fair queue of its node is full.
+ */
+public class NodeQuotaExceededException extends LoMqttException {
+
+    private static final long serialVersionUID = 6120349184570125392L;
+
+    public NodeQuotaExceededException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import java.time.Duration;
+
+/**
+ * Settings of the aggregation of numeric readings in tumbling windows.
+ */
+public final class AggregationParameters {
+
+    public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(1);
+
+    private final Duration window;
+    private final String model;
+
+    private AggregationParameters(AggregationParametersBuilder builder) {
+        this.window = builder.window;
+        this.model = builder.model;
+    }
+
+    public static AggregationParametersBuilder builder() {
+        return new AggregationParametersBuilder();
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public static final class AggregationParametersBuilder {
+        private Duration window = DEFAULT_WINDOW;
+        private String model;
+
+        /**
+         * Sets the duration of the windows. Windows are aligned on multiples of their duration since the epoch, e.g.
+         * on the minute for one minute windows.
+         *
+         * @param window Window duration, at least one millisecond
+         * @return Aggregation parameters builder
+         */
+        public AggregationParametersBuilder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param model Model of the aggregated data messages, or null for none
+         * @return Aggregation parameters builder
+         */
+        public AggregationParametersBuilder model(String model) {
+            this.model = model;
+            return this;
+        }
+
+        public AggregationParameters build() {
+            validate();
+            return new AggregationParameters(this);
+        }
+
+        private void validate() {
+            if (window == null || window.toMillis() < 1) {
+                throw new ExternalConnectorParametersException("Window must be at least one millisecond");
+            }
+        }
+    }
+}
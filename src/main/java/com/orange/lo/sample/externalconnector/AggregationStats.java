@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Snapshot of the aggregation of the client.
+ */
+public final class AggregationStats {
+
+    private final long readings;
+    private final long windows;
+    private final long failed;
+    private final int streams;
+
+    AggregationStats(long readings, long windows, long failed, int streams) {
+        this.readings = readings;
+        this.windows = windows;
+        this.failed = failed;
+        this.streams = streams;
+    }
+
+    /**
+     * @return Number of readings accumulated
+     */
+    public long getReadings() {
+        return readings;
+    }
+
+    /**
+     * @return Number of aggregated data messages sent, one per window of each node and stream with readings
+     */
+    public long getWindows() {
+        return windows;
+    }
+
+    /**
+     * @return Number of aggregated data messages which could not be sent
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Number of node and stream pairs with an accumulator
+     */
+    public int getStreams() {
+        return streams;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregationStats [readings=" + readings + ", windows=" + windows + ", failed=" + failed + ", streams=" + streams + "]";
+    }
+}
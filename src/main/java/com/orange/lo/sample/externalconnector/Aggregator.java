@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.AggregatedValue;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates numeric readings per node and stream in tumbling windows, and sends one data message per window with
+ * the minimum, maximum, average and count of its readings.
+ * <p>
+ * Each node and stream has an accumulator of primitive fields, looked up in two levels of concurrent maps by node id
+ * then stream id, so that adding a reading does not allocate. A window is sent when the first reading of a later
+ * window arrives, on the calling thread, or by a periodic task once it has closed, whichever comes first. The periodic
+ * task hands the sending over to the publishing executor, since each message waits for its acknowledgement and the
+ * task may share its thread with the keep alive pings of other clients.
+ */
+final class Aggregator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Aggregator.class);
+    private static final long MAX_FLUSH_PERIOD_MILLIS = 1000;
+
+    interface Sink {
+        /**
+         * @throws RuntimeException if the message could not be sent
+         */
+        void send(String nodeId, DataMessage message);
+    }
+
+    private final long windowMillis;
+    private final String model;
+    private final Sink sink;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Accumulator>> nodes = new ConcurrentHashMap<>();
+    private final LongAdder readings = new LongAdder();
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile boolean closed;
+    private ScheduledFuture<?> flushTask;
+
+    Aggregator(AggregationParameters parameters, Sink sink) {
+        this.windowMillis = parameters.getWindow().toMillis();
+        this.model = parameters.getModel();
+        this.sink = sink;
+    }
+
+    synchronized void start(ClientScheduler scheduler) {
+        if (flushTask == null) {
+            flushTask = scheduler.scheduleWithFixedDelay(() -> scheduleFlush(System.currentTimeMillis(), scheduler::execute),
+                    Math.min(windowMillis, MAX_FLUSH_PERIOD_MILLIS), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands the sending of the windows closed at the given time over to the publishing executor, unless a flush is
+     * still running. Called by the scheduled task, and by tests.
+     */
+    void scheduleFlush(long nowMillis, Executor publishExecutor) {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            publishExecutor.execute(() -> {
+                try {
+                    flush(nowMillis);
+                } finally {
+                    flushing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flushing.set(false);
+            LOGGER.debug("Windows not flushed, publishing executor stopped.", e);
+        }
+    }
+
+    synchronized void stop() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+    }
+
+    /**
+     * Adds a reading to the current window of the node and stream, sending the previous window first if it closed.
+     *
+     * @return false if the aggregator is closed and the reading was not added
+     */
+    boolean add(String nodeId, String streamId, double value, long nowMillis) {
+        Accumulator accumulator = accumulator(nodeId, streamId);
+        long windowStart = nowMillis - Math.floorMod(nowMillis, windowMillis);
+        DataMessage closedWindow = null;
+        synchronized (accumulator) {
+            if (closed) {
+                return false;
+            }
+            if (accumulator.count > 0 && accumulator.windowStart != windowStart) {
+                closedWindow = accumulator.drain();
+            }
+            accumulator.add(windowStart, value);
+        }
+        readings.increment();
+        if (closedWindow != null) {
+            send(nodeId, closedWindow);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the windows closed at the given time.
+     */
+    void flush(long nowMillis) {
+        flush(nowMillis, false);
+    }
+
+    /**
+     * Sends all the windows with readings, including the current ones.
+     */
+    void flushAll() {
+        flush(0, true);
+    }
+
+    /**
+     * Sends all the windows with readings, then rejects the readings added later.
+     */
+    void close() {
+        closed = true;
+        flushAll();
+    }
+
+    AggregationStats getStats() {
+        int streams = 0;
+        for (ConcurrentHashMap<String, Accumulator> accumulators : nodes.values()) {
+            streams += accumulators.size();
+        }
+        return new AggregationStats(readings.sum(), windows.get(), failed.get(), streams);
+    }
+
+    private void flush(long nowMillis, boolean all) {
+        nodes.forEach((nodeId, accumulators) -> accumulators.values().forEach(accumulator -> {
+            DataMessage message = null;
+            synchronized (accumulator) {
+                if (accumulator.count > 0 && (all || accumulator.windowStart + windowMillis <= nowMillis)) {
+                    message = accumulator.drain();
+                }
+            }
+            if (message != null) {
+                send(nodeId, message);
+            }
+        }));
+    }
+
+    private void send(String nodeId, DataMessage message) {
+        try {
+            sink.send(nodeId, message);
+            windows.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.warn("Unable to send aggregated message of node {} and stream {}, message dropped.", nodeId, message.getStreamId(), e);
+        }
+    }
+
+    private Accumulator accumulator(String nodeId, String streamId) {
+        ConcurrentHashMap<String, Accumulator> accumulators = nodes.get(nodeId);
+        if (accumulators == null) {
+            ConcurrentHashMap<String, Accumulator> created = new ConcurrentHashMap<>();
+            accumulators = nodes.putIfAbsent(nodeId, created);
+            if (accumulators == null) {
+                accumulators = created;
+            }
+        }
+        Accumulator accumulator = accumulators.get(streamId);
+        if (accumulator == null) {
+            Accumulator created = new Accumulator(streamId);
+            accumulator = accumulators.putIfAbsent(streamId, created);
+            if (accumulator == null) {
+                accumulator = created;
+            }
+        }
+        return accumulator;
+    }
+
+    private final class Accumulator {
+
+        private final String streamId;
+        private long windowStart;
+        private long count;
+        private double sum;
+        private double min;
+        private double max;
+
+        Accumulator(String streamId) {
+            this.streamId = streamId;
+        }
+
+        void add(long windowStart, double value) {
+            if (count == 0) {
+                this.windowStart = windowStart;
+                min = value;
+                max = value;
+                sum = 0;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            sum += value;
+            count++;
+        }
+
+        /**
+         * @return Aggregated message of the window, the accumulator being reset for the next one
+         */
+        DataMessage drain() {
+            DataMessage message = new DataMessage();
+            message.setStreamId(streamId);
+            message.setTimestamp(Instant.ofEpochMilli(windowStart).toString());
+            message.setModel(model);
+            message.setValue(new AggregatedValue(min, max, sum / count, count));
+            count = 0;
+            return message;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.CircuitBreakerOpenException;
+import com.orange.lo.sample.externalconnector.CircuitBreakerStats.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker of the publications. The outcome of the last publications is kept in a sliding window; when the
+ * rate of slow or failed publications exceeds its threshold, the circuit opens and messages are shed without
+ * blocking the calling threads. After the open duration, a few probe publications are let through: the circuit
+ * closes if they all succeed in time, and opens again otherwise.
+ * <p>
+ * The state is read without locking on the publish path while the circuit is closed, the window is updated under
+ * the lock of the breaker.
+ */
+final class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final byte SLOW = 1;
+    private static final byte FAILED = 2;
+
+    private final CircuitBreakerParameters parameters;
+    private final long slowPublishThresholdNanos;
+    private final long openDurationNanos;
+    private final long sampleInterval;
+    private final Runnable closeListener;
+    private final byte[] window;
+    private final Deque<SpilledMessage> spill = new ArrayDeque<>();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong openings = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private volatile State state = State.CLOSED;
+    private int windowIndex;
+    private int windowCount;
+    private int slowCount;
+    private int failedCount;
+    private long openUntilNanos;
+    private int probesPermitted;
+    private int probesSucceeded;
+
+    /**
+     * @param closeListener Called in the publishing thread when the circuit closes after probing
+     */
+    CircuitBreaker(CircuitBreakerParameters parameters, Runnable closeListener) {
+        this.parameters = parameters;
+        this.slowPublishThresholdNanos = parameters.getSlowPublishThreshold().toNanos();
+        this.openDurationNanos = parameters.getOpenDuration().toNanos();
+        this.sampleInterval = Math.max(1, Math.round(1 / parameters.getSampleRate()));
+        this.closeListener = closeListener;
+        this.window = new byte[parameters.getWindowSize()];
+    }
+
+    State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if the message can be published, false if it must be shed
+     */
+    boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+                state = State.HALF_OPEN;
+                probesPermitted = parameters.getProbes();
+                probesSucceeded = 0;
+                LOGGER.info("Circuit breaker half open, probing with {} publication(s).", probesPermitted);
+            }
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.HALF_OPEN && probesPermitted > 0) {
+                probesPermitted--;
+                return true;
+            }
+        }
+        return parameters.getSheddingMode() == SheddingMode.SAMPLE && sampleCounter.getAndIncrement() % sampleInterval == 0;
+    }
+
+    /**
+     * Records the outcome of a publication.
+     *
+     * @param nanos  Duration of the publication
+     * @param failed true if the publication failed
+     */
+    void record(long nanos, boolean failed) {
+        byte outcome = (byte) ((nanos > slowPublishThresholdNanos ? SLOW : 0) | (failed ? FAILED : 0));
+        boolean closed = false;
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                addToWindow(outcome);
+                if (windowCount >= parameters.getMinimumPublishes()
+                        && (slowCount >= parameters.getSlowPublishRateThreshold() * windowCount || failedCount >= parameters.getFailureRateThreshold() * windowCount)) {
+                    open();
+                }
+            } else if (state == State.HALF_OPEN) {
+                if (outcome != 0) {
+                    open();
+                } else if (++probesSucceeded >= parameters.getProbes()) {
+                    state = State.CLOSED;
+                    LOGGER.info("Circuit breaker closed.");
+                    closed = true;
+                }
+            }
+        }
+        if (closed) {
+            closeListener.run();
+        }
+    }
+
+    /**
+     * Sheds a message according to the shedding mode.
+     *
+     * @throws CircuitBreakerOpenException in {@link SheddingMode#REJECT} mode
+     */
+    void shed(String topic, byte[] payload, int qos) {
+        switch (parameters.getSheddingMode()) {
+            case REJECT:
+                rejected.incrementAndGet();
+                throw new CircuitBreakerOpenException("Circuit breaker is open, message was not sent.");
+            case SPILL:
+                synchronized (spill) {
+                    if (spill.size() >= parameters.getSpillCapacity()) {
+                        spill.pollFirst();
+                        dropped.incrementAndGet();
+                    }
+                    spill.addLast(new SpilledMessage(topic, payload, qos));
+                }
+                spilled.incrementAndGet();
+                return;
+            default:
+                dropped.incrementAndGet();
+        }
+    }
+
+    SpilledMessage pollSpilled() {
+        synchronized (spill) {
+            return spill.pollFirst();
+        }
+    }
+
+    /**
+     * Puts back at the head of the spill buffer a message which could not be published.
+     */
+    void returnSpilled(SpilledMessage message) {
+        synchronized (spill) {
+            spill.addFirst(message);
+        }
+    }
+
+    int getSpillSize() {
+        synchronized (spill) {
+            return spill.size();
+        }
+    }
+
+    synchronized CircuitBreakerStats getStats() {
+        double slowPublishRate = windowCount > 0 ? (double) slowCount / windowCount : 0;
+        double failureRate = windowCount > 0 ? (double) failedCount / windowCount : 0;
+        return new CircuitBreakerStats(state, slowPublishRate, failureRate, openings.get(), rejected.get(), dropped.get(), spilled.get(), getSpillSize());
+    }
+
+    private void addToWindow(byte outcome) {
+        if (windowCount == window.length) {
+            byte evicted = window[windowIndex];
+            slowCount -= evicted & SLOW;
+            failedCount -= (evicted & FAILED) >> 1;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = outcome;
+        slowCount += outcome & SLOW;
+        failedCount += (outcome & FAILED) >> 1;
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        LOGGER.warn("Circuit breaker opened, slow publish rate: {}/{}, failure rate: {}/{}.", slowCount, windowCount, failedCount, windowCount);
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + openDurationNanos;
+        openings.incrementAndGet();
+        windowIndex = 0;
+        windowCount = 0;
+        slowCount = 0;
+        failedCount = 0;
+    }
+
+    static final class SpilledMessage {
+
+        final String topic;
+        final byte[] payload;
+        final int qos;
+
+        SpilledMessage(String topic, byte[] payload, int qos) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import java.time.Duration;
+
+public final class CircuitBreakerParameters {
+
+    public static final Duration DEFAULT_SLOW_PUBLISH_THRESHOLD = Duration.ofSeconds(1);
+    public static final double DEFAULT_SLOW_PUBLISH_RATE_THRESHOLD = 0.5;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    public static final int DEFAULT_MINIMUM_PUBLISHES = 20;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(10);
+    public static final int DEFAULT_PROBES = 5;
+    public static final SheddingMode DEFAULT_SHEDDING_MODE = SheddingMode.REJECT;
+    public static final double DEFAULT_SAMPLE_RATE = 0.1;
+    public static final int DEFAULT_SPILL_CAPACITY = 10000;
+
+    private final Duration slowPublishThreshold;
+    private final double slowPublishRateThreshold;
+    private final double failureRateThreshold;
+    private final int windowSize;
+    private final int minimumPublishes;
+    private final Duration openDuration;
+    private final int probes;
+    private final SheddingMode sheddingMode;
+    private final double sampleRate;
+    private final int spillCapacity;
+
+    private CircuitBreakerParameters(CircuitBreakerParametersBuilder builder) {
+        this.slowPublishThreshold = builder.slowPublishThreshold;
+        this.slowPublishRateThreshold = builder.slowPublishRateThreshold;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.windowSize = builder.windowSize;
+        this.minimumPublishes = builder.minimumPublishes;
+        this.openDuration = builder.openDuration;
+        this.probes = builder.probes;
+        this.sheddingMode = builder.sheddingMode;
+        this.sampleRate = builder.sampleRate;
+        this.spillCapacity = builder.spillCapacity;
+    }
+
+    public static CircuitBreakerParametersBuilder builder() {
+        return new CircuitBreakerParametersBuilder();
+    }
+
+    public Duration getSlowPublishThreshold() {
+        return slowPublishThreshold;
+    }
+
+    public double getSlowPublishRateThreshold() {
+        return slowPublishRateThreshold;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getMinimumPublishes() {
+        return minimumPublishes;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public int getProbes() {
+        return probes;
+    }
+
+    public SheddingMode getSheddingMode() {
+        return sheddingMode;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSpillCapacity() {
+        return spillCapacity;
+    }
+
+    public static final class CircuitBreakerParametersBuilder {
+        private Duration slowPublishThreshold = DEFAULT_SLOW_PUBLISH_THRESHOLD;
+        private double slowPublishRateThreshold = DEFAULT_SLOW_PUBLISH_RATE_THRESHOLD;
+        private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        private int minimumPublishes = DEFAULT_MINIMUM_PUBLISHES;
+        private Duration openDuration = DEFAULT_OPEN_DURATION;
+        private int probes = DEFAULT_PROBES;
+        private SheddingMode sheddingMode = DEFAULT_SHEDDING_MODE;
+        private double sampleRate = DEFAULT_SAMPLE_RATE;
+        private int spillCapacity = DEFAULT_SPILL_CAPACITY;
+
+        /**
+         * Sets the duration above which a publication is considered slow.
+         *
+         * @param slowPublishThreshold Slow publication threshold
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder slowPublishThreshold(Duration slowPublishThreshold) {
+            this.slowPublishThreshold = slowPublishThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the rate of slow publications in the window above which the circuit opens.
+         *
+         * @param slowPublishRateThreshold Rate between 0 (excluded) and 1
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder slowPublishRateThreshold(double slowPublishRateThreshold) {
+            this.slowPublishRateThreshold = slowPublishRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the rate of failed publications in the window above which the circuit opens.
+         *
+         * @param failureRateThreshold Rate between 0 (excluded) and 1
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder failureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the number of most recent publications on which the rates are computed.
+         *
+         * @param windowSize Number of publications
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of publications in the window before the rates are evaluated.
+         *
+         * @param minimumPublishes Number of publications
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder minimumPublishes(int minimumPublishes) {
+            this.minimumPublishes = minimumPublishes;
+            return this;
+        }
+
+        /**
+         * Sets how long messages are shed once the circuit opens, before probe publications are let through.
+         *
+         * @param openDuration Open duration
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Sets the number of probe publications which must succeed, neither slow nor failed, to close the circuit.
+         *
+         * @param probes Number of probes
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder probes(int probes) {
+            this.probes = probes;
+            return this;
+        }
+
+        public CircuitBreakerParametersBuilder sheddingMode(SheddingMode sheddingMode) {
+            this.sheddingMode = sheddingMode;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the messages still published while the circuit is open, in {@link SheddingMode#SAMPLE} mode.
+         *
+         * @param sampleRate Rate between 0 (excluded) and 1
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder sampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of messages kept while the circuit is open, in {@link SheddingMode#SPILL} mode.
+         *
+         * @param spillCapacity Number of messages
+         * @return Circuit breaker parameters builder
+         */
+        public CircuitBreakerParametersBuilder spillCapacity(int spillCapacity) {
+            this.spillCapacity = spillCapacity;
+            return this;
+        }
+
+        public CircuitBreakerParameters build() {
+            validate();
+            return new CircuitBreakerParameters(this);
+        }
+
+        private void validate() {
+            if (slowPublishThreshold == null || slowPublishThreshold.isNegative() || slowPublishThreshold.isZero()) {
+                throw new ExternalConnectorParametersException("Slow publish threshold must be positive");
+            }
+            if (!isRate(slowPublishRateThreshold) || !isRate(failureRateThreshold) || !isRate(sampleRate)) {
+                throw new ExternalConnectorParametersException("Rates must be greater than 0 and lower than or equal to 1");
+            }
+            if (windowSize < 1 || minimumPublishes < 1 || minimumPublishes > windowSize) {
+                throw new ExternalConnectorParametersException("Minimum publishes must be between 1 and the window size");
+            }
+            if (openDuration == null || openDuration.isNegative() || openDuration.isZero()) {
+                throw new ExternalConnectorParametersException("Open duration must be positive");
+            }
+            if (probes < 1) {
+                throw new ExternalConnectorParametersException("Probes must be positive");
+            }
+            if (sheddingMode == null) {
+                throw new ExternalConnectorParametersException("Shedding mode is required");
+            }
+            if (spillCapacity < 1) {
+                throw new ExternalConnectorParametersException("Spill capacity must be positive");
+            }
+        }
+
+        private static boolean isRate(double rate) {
+            return rate > 0 && rate <= 1;
+        }
+    }
+}
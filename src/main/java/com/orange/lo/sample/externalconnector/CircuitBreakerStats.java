@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Snapshot of the circuit breaker of the client.
+ */
+public final class CircuitBreakerStats {
+
+    public enum State {
+        /**
+         * Messages are published.
+         */
+        CLOSED,
+        /**
+         * Messages are shed.
+         */
+        OPEN,
+        /**
+         * A few probe publications are let through to decide whether the circuit closes.
+         */
+        HALF_OPEN
+    }
+
+    private final State state;
+    private final double slowPublishRate;
+    private final double failureRate;
+    private final long openings;
+    private final long rejected;
+    private final long dropped;
+    private final long spilled;
+    private final int spillSize;
+
+    CircuitBreakerStats(State state, double slowPublishRate, double failureRate, long openings, long rejected, long dropped, long spilled, int spillSize) {
+        this.state = state;
+        this.slowPublishRate = slowPublishRate;
+        this.failureRate = failureRate;
+        this.openings = openings;
+        this.rejected = rejected;
+        this.dropped = dropped;
+        this.spilled = spilled;
+        this.spillSize = spillSize;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return Rate of slow publications in the current window
+     */
+    public double getSlowPublishRate() {
+        return slowPublishRate;
+    }
+
+    /**
+     * @return Rate of failed publications in the current window
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * @return Number of times the circuit opened
+     */
+    public long getOpenings() {
+        return openings;
+    }
+
+    /**
+     * @return Number of messages rejected with an exception
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return Number of messages dropped, by sampling or because the spill buffer was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return Number of messages added to the spill buffer
+     */
+    public long getSpilled() {
+        return spilled;
+    }
+
+    /**
+     * @return Number of messages waiting in the spill buffer
+     */
+    public int getSpillSize() {
+        return spillSize;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerStats [state=" + state + ", slowPublishRate=" + slowPublishRate + ", failureRate=" + failureRate + ", openings=" + openings
+                + ", rejected=" + rejected + ", dropped=" + dropped + ", spilled=" + spilled + ", spillSize=" + spillSize + "]";
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.AcknowledgementMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flight recorder events of the client. The begin methods return the event in progress, or null when the event is not
+ * enabled in any recording, in which case the client skips the measures and the end methods do nothing.
+ * <p>
+ * The JFR API is used only when the JVM provides it: on a Java 8 runtime without JFR, the events are disabled. The
+ * client refers to the events through this interface, so the jdk.jfr classes are loaded only when available.
+ */
+interface ClientEvents {
+
+    ClientEvents DISABLED = new ClientEvents() {
+    };
+
+    /**
+     * @return Flight recorder events, or disabled events if JFR is not available in the JVM
+     */
+    static ClientEvents create() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return new JfrClientEvents();
+        } catch (ClassNotFoundException | LinkageError e) {
+            Logger logger = LoggerFactory.getLogger(ClientEvents.class);
+            logger.debug("Flight recorder not available, events disabled.");
+            return DISABLED;
+        }
+    }
+
+    default Object beginPublish() {
+        return null;
+    }
+
+    /**
+     * @param serializeNanos Serialization duration, included in the duration of the event
+     * @param outcome        PUBLISHED, QUEUED, SHED or FAILED
+     */
+    default void endPublish(Object event, MessageKind kind, String topic, int payloadSize, int qos, long serializeNanos, String outcome) {
+    }
+
+    default Object beginCommand() {
+        return null;
+    }
+
+    /**
+     * @param parseNanos   Parse duration of the command request
+     * @param handlerNanos Duration of the message callback
+     */
+    default void endCommand(Object event, String commandId, String nodeId, AcknowledgementMode ackMode, long parseNanos, long handlerNanos,
+                            boolean failed) {
+    }
+
+    default Object beginConnection() {
+        return null;
+    }
+
+    /**
+     * Records a connection state change, lasting from the begin call, if any, for connections.
+     *
+     * @param state CONNECTED, RECONNECTED, CONNECTION_LOST or DISCONNECTED
+     */
+    default void connection(Object event, String state, String serverUri, Throwable cause) {
+    }
+
+    /**
+     * Records a ParseException or LoMqttException thrown by the client.
+     */
+    default void error(RuntimeException exception) {
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the periodic tasks of a client. Tasks run on the timer threads of the {@link ExternalConnectorHost} when the
+ * client belongs to one, otherwise on a single daemon thread owned by the client and created on first use.
+ * <p>
+ * The publications triggered by a periodic task, which wait for their acknowledgement, are handed off to the
+ * publishing threads of the host, or to a second thread owned by the client, so that they never delay the other
+ * timers, such as the keep alive pings sharing the timer threads.
+ */
+final class ClientScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientScheduler.class);
+
+    private final ScheduledExecutorService sharedExecutor;
+    private final Executor sharedPublishExecutor;
+    private ScheduledExecutorService ownedExecutor;
+    private ExecutorService ownedPublishExecutor;
+
+    ClientScheduler(ScheduledExecutorService sharedExecutor) {
+        this(sharedExecutor, null);
+    }
+
+    ClientScheduler(ScheduledExecutorService sharedExecutor, Executor sharedPublishExecutor) {
+        this.sharedExecutor = sharedExecutor;
+        this.sharedPublishExecutor = sharedPublishExecutor;
+    }
+
+    ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay, TimeUnit unit) {
+        return executor().scheduleWithFixedDelay(() -> runSafely(task), delay, delay, unit);
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return executor().schedule(() -> runSafely(task), delay, unit);
+    }
+
+    /**
+     * Runs a task publishing messages off the timer threads.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the publishing threads are stopped
+     */
+    void execute(Runnable task) {
+        publishExecutor().execute(() -> runSafely(task));
+    }
+
+    /**
+     * Stops the threads owned by the client, if any. Shared timer and publishing threads are left running.
+     */
+    synchronized void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+            ownedExecutor = null;
+        }
+        if (ownedPublishExecutor != null) {
+            ownedPublishExecutor.shutdownNow();
+            ownedPublishExecutor = null;
+        }
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if (sharedExecutor != null) {
+            return sharedExecutor;
+        }
+        if (ownedExecutor == null) {
+            ownedExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "lo-connector-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ownedExecutor;
+    }
+
+    private synchronized Executor publishExecutor() {
+        if (sharedPublishExecutor != null) {
+            return sharedPublishExecutor;
+        }
+        if (ownedPublishExecutor == null) {
+            ownedPublishExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "lo-connector-publisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ownedPublishExecutor;
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("Scheduled task failed.", e);
+        }
+    }
+}
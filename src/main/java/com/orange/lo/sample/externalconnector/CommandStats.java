@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the command requests with the same request name ({@code value.req}): commands in flight, outcomes and
+ * latency from the arrival of the command to the publication of its response.
+ */
+public final class CommandStats {
+
+    private final String req;
+    private final int inFlight;
+    private final long completed;
+    private final long timedOut;
+    private final long failed;
+    private final int sampleCount;
+    private final Duration latencyP50;
+    private final Duration latencyP90;
+    private final Duration latencyP99;
+    private final Duration latencyMax;
+
+    CommandStats(String req, int inFlight, long completed, long timedOut, long failed, int sampleCount,
+                 Duration latencyP50, Duration latencyP90, Duration latencyP99, Duration latencyMax) {
+        this.req = req;
+        this.inFlight = inFlight;
+        this.completed = completed;
+        this.timedOut = timedOut;
+        this.failed = failed;
+        this.sampleCount = sampleCount;
+        this.latencyP50 = latencyP50;
+        this.latencyP90 = latencyP90;
+        this.latencyP99 = latencyP99;
+        this.latencyMax = latencyMax;
+    }
+
+    /**
+     * @return Request name, empty for the commands without one
+     */
+    public String getReq() {
+        return req;
+    }
+
+    /**
+     * @return Number of commands whose handler has not completed yet and which have not expired
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Number of commands completed by their handler before the command timeout
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return Number of commands expired, answered with a failure response
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return Number of commands whose handler threw an exception
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Number of samples used to compute the percentiles
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public Duration getLatencyP50() {
+        return latencyP50;
+    }
+
+    public Duration getLatencyP90() {
+        return latencyP90;
+    }
+
+    public Duration getLatencyP99() {
+        return latencyP99;
+    }
+
+    public Duration getLatencyMax() {
+        return latencyMax;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandStats [req=" + req + ", inFlight=" + inFlight + ", completed=" + completed + ", timedOut=" + timedOut + ", failed=" + failed
+                + ", sampleCount=" + sampleCount + ", latencyP50=" + latencyP50 + ", latencyP90=" + latencyP90 + ", latencyP99=" + latencyP99
+                + ", latencyMax=" + latencyMax + "]";
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.CommandRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lifecycle of the command requests, keyed by command id: arrival, start of the handler and publication of the
+ * response. Each command is either completed by its handler or expired by the {@link TimerWheel} once the command
+ * timeout elapses, whichever comes first; the other outcome is then ignored. In-flight counts and response latencies
+ * are kept per request name ({@link com.orange.lo.sample.lo.model.CommandRequestValue#getReq()}).
+ * <p>
+ * The tick task only collects the expired commands: their expiry handler, which publishes the timeout response, is run
+ * by a task handed off to the publishing executor, since the tick task may share its thread with the keep alive pings
+ * of other clients.
+ */
+final class CommandTracker {
+
+    static final String NO_REQ = "";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandTracker.class);
+
+    private static final int WHEEL_BUCKETS = 256;
+    private static final long MIN_TICK_MILLIS = 10;
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final AtomicIntegerFieldUpdater<TrackedCommand> FINISHED =
+            AtomicIntegerFieldUpdater.newUpdater(TrackedCommand.class, "finished");
+
+    private final Map<String, TrackedCommand> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, RequestStats> statsByReq = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final ExpiryHandler expiryHandler;
+    private final Executor publishExecutor;
+    private final TimerWheel wheel;
+    private final Queue<TrackedCommand> expiredCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private ScheduledFuture<?> tickTask;
+
+    /**
+     * @param timeoutMillis   Command timeout, or 0 to never expire the commands
+     * @param expiryHandler   Called by the publishing executor when a command expires
+     * @param publishExecutor Runs the expiry handler off the timer thread
+     */
+    CommandTracker(long timeoutMillis, ExpiryHandler expiryHandler, Executor publishExecutor) {
+        this.timeoutMillis = timeoutMillis;
+        this.expiryHandler = expiryHandler;
+        this.publishExecutor = publishExecutor;
+        this.wheel = timeoutMillis > 0
+                ? new TimerWheel(Math.max(MIN_TICK_MILLIS, timeoutMillis / WHEEL_BUCKETS), WHEEL_BUCKETS, System.currentTimeMillis()) : null;
+    }
+
+    synchronized void start(ClientScheduler scheduler) {
+        if (wheel != null && tickTask == null) {
+            tickTask = scheduler.scheduleWithFixedDelay(() -> advance(System.currentTimeMillis()), wheel.getTickMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void stop() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+
+    TrackedCommand arrived(CommandRequest commandRequest, boolean responseExpected) {
+        String req = commandRequest.getValue() != null && commandRequest.getValue().getReq() != null ? commandRequest.getValue().getReq() : NO_REQ;
+        TrackedCommand command = new TrackedCommand(commandRequest.getId(), commandRequest.getNodeId(), stats(req), responseExpected);
+        command.stats.inFlight.incrementAndGet();
+        if (command.id != null) {
+            inFlight.put(command.id, command);
+        }
+        if (wheel != null) {
+            wheel.schedule(command, System.currentTimeMillis() + timeoutMillis);
+        }
+        return command;
+    }
+
+    void handlerStarted(TrackedCommand command) {
+        command.handlerStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Completes the command when its handler returns or fails.
+     *
+     * @return false if the command has already expired, in which case its response must not be published
+     */
+    boolean complete(TrackedCommand command) {
+        if (!command.finish()) {
+            return false;
+        }
+        if (wheel != null) {
+            wheel.cancel(command);
+        }
+        return true;
+    }
+
+    /**
+     * Records the publication of the response of a completed command, or the end of its handler when no response
+     * is expected.
+     */
+    void responded(TrackedCommand command) {
+        command.stats.latencies.record(System.nanoTime() - command.arrivalNanos);
+    }
+
+    /**
+     * Completes the command when its handler fails.
+     */
+    void failed(TrackedCommand command) {
+        if (complete(command)) {
+            command.stats.failed.incrementAndGet();
+        }
+    }
+
+    int getInFlight() {
+        return inFlight.size();
+    }
+
+    int getInFlight(String nodeId) {
+        int count = 0;
+        for (TrackedCommand command : inFlight.values()) {
+            if (nodeId.equals(command.nodeId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    Map<String, CommandStats> getStats() {
+        Map<String, CommandStats> snapshot = new HashMap<>();
+        for (Map.Entry<String, RequestStats> entry : statsByReq.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+        }
+        return snapshot;
+    }
+
+    private RequestStats stats(String req) {
+        RequestStats stats = statsByReq.get(req);
+        if (stats == null) {
+            RequestStats created = new RequestStats();
+            stats = statsByReq.putIfAbsent(req, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Advances the wheel, then hands the expired commands over to the publishing executor. Called by the scheduled
+     * task, and by tests.
+     *
+     * @return Number of expired timeouts
+     */
+    int advance(long nowMillis) {
+        int expired = wheel.advance(nowMillis);
+        scheduleExpiries();
+        return expired;
+    }
+
+    private void scheduleExpiries() {
+        if (expiredCommands.isEmpty() || !publishing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            publishExecutor.execute(this::handleExpiries);
+        } catch (RejectedExecutionException e) {
+            publishing.set(false);
+            LOGGER.debug("Timeout responses not published, publishing executor stopped.", e);
+        }
+    }
+
+    private void handleExpiries() {
+        try {
+            TrackedCommand command;
+            while ((command = expiredCommands.poll()) != null) {
+                try {
+                    expiryHandler.expired(command);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Expiry of command {} failed.", command.id, e);
+                }
+            }
+        } finally {
+            publishing.set(false);
+        }
+        // a command expired after the last poll, while still handling
+        scheduleExpiries();
+    }
+
+    final class TrackedCommand extends TimerWheel.Timeout {
+
+        private final String id;
+        private final String nodeId;
+        private final RequestStats stats;
+        private final boolean responseExpected;
+        private final long arrivalNanos = System.nanoTime();
+        private volatile long handlerStartNanos;
+        volatile int finished;
+
+        TrackedCommand(String id, String nodeId, RequestStats stats, boolean responseExpected) {
+            this.id = id;
+            this.nodeId = nodeId;
+            this.stats = stats;
+            this.responseExpected = responseExpected;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getNodeId() {
+            return nodeId;
+        }
+
+        boolean isResponseExpected() {
+            return responseExpected;
+        }
+
+        /**
+         * @return Time elapsed since the start of the handler, or null if the handler has not started
+         */
+        Duration getHandlerDuration() {
+            long start = handlerStartNanos;
+            return start != 0 ? Duration.ofNanos(System.nanoTime() - start) : null;
+        }
+
+        private boolean finish() {
+            if (!FINISHED.compareAndSet(this, 0, 1)) {
+                return false;
+            }
+            if (id != null) {
+                inFlight.remove(id, this);
+            }
+            stats.inFlight.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        void expired(long nowMillis) {
+            if (finish()) {
+                stats.timedOut.incrementAndGet();
+                expiredCommands.add(this);
+            }
+        }
+    }
+
+    private static final class RequestStats {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final LatencySamples latencies = new LatencySamples(LATENCY_SAMPLES);
+
+        CommandStats snapshot(String req) {
+            long[] sorted = latencies.sortedSnapshot();
+            return new CommandStats(req, inFlight.get(), latencies.getCount(), timedOut.get(), failed.get(), sorted.length,
+                    Duration.ofNanos(LatencySamples.percentile(sorted, 0.5)),
+                    Duration.ofNanos(LatencySamples.percentile(sorted, 0.9)),
+                    Duration.ofNanos(LatencySamples.percentile(sorted, 0.99)),
+                    Duration.ofNanos(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+        }
+    }
+
+    @FunctionalInterface
+    interface ExpiryHandler {
+        void expired(TrackedCommand command);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Outbound buffer keeping only the latest data message of each node and stream. A message replaces in place the
+ * message of the same key still waiting to be published, so after a slowdown of the broker the backlog holds one
+ * message per key instead of every intermediate reading.
+ * <p>
+ * Pending messages are kept in a {@link ConcurrentHashMap}, whose bins are locked independently, and the keys are
+ * queued in arrival order when they become pending. A single drainer thread publishes the latest message of each
+ * queued key.
+ */
+final class ConflationBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConflationBuffer.class);
+    private static final StreamKey STOP = new StreamKey("", "");
+
+    interface Sink {
+        /**
+         * Publishes a message on the drainer thread.
+         *
+         * @throws RuntimeException if the publication failed
+         */
+        void publish(String topic, DataMessage message);
+    }
+
+    private final PatternRules streamIds;
+    private final long retryDelayNanos;
+    private final Sink sink;
+    private final ConcurrentHashMap<StreamKey, DataMessage> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<StreamKey> keys = new LinkedBlockingQueue<>();
+    private final LongAdder conflated = new LongAdder();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running;
+    private Thread drainer;
+
+    ConflationBuffer(ConflationParameters parameters, Sink sink) {
+        Map<String, Integer> patterns = new HashMap<>();
+        for (String pattern : parameters.getStreamIdPatterns()) {
+            patterns.put(pattern, 0);
+        }
+        this.streamIds = new PatternRules(patterns);
+        this.retryDelayNanos = parameters.getRetryDelay().toNanos();
+        this.sink = sink;
+    }
+
+    boolean isConflated(DataMessage message) {
+        return streamIds.match(message.getStreamId()) != PatternRules.NO_MATCH;
+    }
+
+    /**
+     * Adds a message, replacing the pending message of the same topic and stream if any.
+     */
+    void offer(String topic, DataMessage message) {
+        StreamKey key = new StreamKey(topic, message.getStreamId());
+        if (pending.put(key, message) == null) {
+            keys.add(key);
+        } else {
+            conflated.increment();
+        }
+    }
+
+    synchronized void start() {
+        if (drainer != null) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drain, "lo-conflation");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Publishes the pending messages once, without retrying failures, then stops the drainer.
+     *
+     * @param timeoutMillis Maximum duration, 0 to wait until all the pending messages are published
+     * @return Number of messages still pending
+     */
+    synchronized int stop(long timeoutMillis) {
+        if (drainer != null) {
+            running = false;
+            keys.add(STOP);
+            LockSupport.unpark(drainer);
+            try {
+                drainer.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drainer = null;
+        }
+        return pending.size();
+    }
+
+    ConflationStats getStats() {
+        return new ConflationStats(pending.size(), conflated.sum(), published.get(), failed.get());
+    }
+
+    private void drain() {
+        try {
+            StreamKey key;
+            while ((key = keys.take()) != STOP) {
+                publish(key);
+            }
+            while ((key = keys.poll()) != null) {
+                if (key != STOP) {
+                    publish(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(StreamKey key) {
+        DataMessage message = pending.remove(key);
+        if (message == null) {
+            return;
+        }
+        try {
+            sink.publish(key.node, message);
+            published.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            if (!running) {
+                LOGGER.warn("Unable to publish conflated message while stopping, message dropped. Topic: {}.", key.node, e);
+                return;
+            }
+            LOGGER.warn("Unable to publish conflated message, retrying in {} ms. Topic: {}.", retryDelayNanos / 1_000_000, key.node, e);
+            if (pending.putIfAbsent(key, message) == null) {
+                keys.add(key);
+            } else {
+                conflated.increment();
+            }
+            LockSupport.parkNanos(this, retryDelayNanos);
+        }
+    }
+}
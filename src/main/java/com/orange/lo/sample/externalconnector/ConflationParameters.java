@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public final class ConflationParameters {
+
+    public static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final Set<String> streamIdPatterns;
+    private final Duration retryDelay;
+
+    private ConflationParameters(ConflationParametersBuilder builder) {
+        this.streamIdPatterns = Collections.unmodifiableSet(new LinkedHashSet<>(builder.streamIdPatterns));
+        this.retryDelay = builder.retryDelay;
+    }
+
+    public static ConflationParametersBuilder builder() {
+        return new ConflationParametersBuilder();
+    }
+
+    public Set<String> getStreamIdPatterns() {
+        return streamIdPatterns;
+    }
+
+    public Duration getRetryDelay() {
+        return retryDelay;
+    }
+
+    public static final class ConflationParametersBuilder {
+        private final Set<String> streamIdPatterns = new LinkedHashSet<>();
+        private Duration retryDelay = DEFAULT_RETRY_DELAY;
+
+        /**
+         * Conflates the data messages whose streamId matches the pattern.
+         *
+         * @param pattern Exact streamId or prefix followed by *
+         * @return Conflation parameters builder
+         */
+        public ConflationParametersBuilder streamId(String pattern) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new ExternalConnectorParametersException("Pattern is required");
+            }
+            this.streamIdPatterns.add(pattern);
+            return this;
+        }
+
+        /**
+         * Sets the delay before a message whose publication failed is published again.
+         *
+         * @param retryDelay Retry delay
+         * @return Conflation parameters builder
+         */
+        public ConflationParametersBuilder retryDelay(Duration retryDelay) {
+            this.retryDelay = retryDelay;
+            return this;
+        }
+
+        public ConflationParameters build() {
+            validate();
+            return new ConflationParameters(this);
+        }
+
+        private void validate() {
+            if (streamIdPatterns.isEmpty()) {
+                throw new ExternalConnectorParametersException("At least one streamId pattern is required");
+            }
+            if (retryDelay == null || retryDelay.isNegative() || retryDelay.isZero()) {
+                throw new ExternalConnectorParametersException("Retry delay must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Snapshot of the conflation buffer of the client.
+ */
+public final class ConflationStats {
+
+    private final int pending;
+    private final long conflated;
+    private final long published;
+    private final long failed;
+
+    ConflationStats(int pending, long conflated, long published, long failed) {
+        this.pending = pending;
+        this.conflated = conflated;
+        this.published = published;
+        this.failed = failed;
+    }
+
+    /**
+     * @return Number of node and stream keys with a message waiting to be published
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return Number of messages replaced by a newer message of the same node and stream before being published
+     */
+    public long getConflated() {
+        return conflated;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return Number of failed publications, each retried unless a newer message arrived meanwhile
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "ConflationStats [pending=" + pending + ", conflated=" + conflated + ", published=" + published + ", failed=" + failed + "]";
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the round-trip time to the broker, measured by the health monitor.
+ */
+public final class ConnectionHealth {
+
+    private final boolean degraded;
+    private final int sampleCount;
+    private final Duration rttP50;
+    private final Duration rttP90;
+    private final Duration rttP99;
+    private final Duration rttMax;
+
+    ConnectionHealth(boolean degraded, int sampleCount, Duration rttP50, Duration rttP90, Duration rttP99, Duration rttMax) {
+        this.degraded = degraded;
+        this.sampleCount = sampleCount;
+        this.rttP50 = rttP50;
+        this.rttP90 = rttP90;
+        this.rttP99 = rttP99;
+        this.rttMax = rttMax;
+    }
+
+    /**
+     * @return true if the 90th percentile of the round-trip time is above the threshold, or if a probe has been waiting
+     * for its acknowledgement for longer than the threshold
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * @return Number of samples used to compute the percentiles
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public Duration getRttP50() {
+        return rttP50;
+    }
+
+    public Duration getRttP90() {
+        return rttP90;
+    }
+
+    public Duration getRttP99() {
+        return rttP99;
+    }
+
+    public Duration getRttMax() {
+        return rttMax;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionHealth [degraded=" + degraded + ", sampleCount=" + sampleCount + ", rttP50=" + rttP50 + ", rttP90=" + rttP90 + ", rttP99=" + rttP99 + ", rttMax=" + rttMax + "]";
+    }
+}
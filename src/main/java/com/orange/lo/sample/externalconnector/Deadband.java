@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+/**
+ * Change of a numeric field below which a data message is not reported, either as an absolute difference or as a
+ * percentage of the last reported value.
+ */
+public final class Deadband {
+
+    private final double threshold;
+    private final boolean percent;
+
+    private Deadband(double threshold, boolean percent) {
+        if (!(threshold >= 0) || Double.isInfinite(threshold)) {
+            throw new ExternalConnectorParametersException("Deadband must be a positive number or zero");
+        }
+        this.threshold = threshold;
+        this.percent = percent;
+    }
+
+    /**
+     * @param threshold Absolute difference, 0 to report every change
+     * @return Absolute deadband
+     */
+    public static Deadband absolute(double threshold) {
+        return new Deadband(threshold, false);
+    }
+
+    /**
+     * @param percent Difference as a percentage of the last reported value, 0 to report every change
+     * @return Percent deadband
+     */
+    public static Deadband percent(double percent) {
+        return new Deadband(percent, true);
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public boolean isPercent() {
+        return percent;
+    }
+
+    /**
+     * @return true if the difference between the values is beyond the deadband
+     */
+    boolean isExceeded(double reported, double value) {
+        double difference = Math.abs(value - reported);
+        if (Double.isNaN(difference)) {
+            return Double.compare(reported, value) != 0;
+        }
+        return difference > (percent ? Math.abs(reported) * threshold / 100 : threshold);
+    }
+
+    @Override
+    public String toString() {
+        return percent ? threshold + "%" : String.valueOf(threshold);
+    }
+}
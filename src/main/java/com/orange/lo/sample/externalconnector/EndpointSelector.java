@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks the server URIs by the latency of a TCP connection, plus the TLS handshake for ssl:// URIs, and keeps the
+ * connection metrics of each endpoint.
+ * <p>
+ * The endpoints are probed in parallel, each on its own short-lived thread, within the probe timeout. Unreachable
+ * endpoints are ranked last, in their configured order, so that they are still tried if they recover. The TLS
+ * handshakes use the socket factory of the client, so that they go through the same trust material, and the sessions
+ * they establish are resumed by the connection that follows.
+ */
+final class EndpointSelector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EndpointSelector.class);
+    static final int PROBE_TIMEOUT_MILLIS = 5000;
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private final int probeTimeoutMillis;
+    private final SocketFactory sslSocketFactory;
+
+    /**
+     * @param sslSocketFactory Socket factory of the ssl:// URIs, or null for the default one of the JVM
+     */
+    EndpointSelector(List<String> serverUris, int probeTimeoutMillis, SSLSocketFactory sslSocketFactory) {
+        for (String serverUri : serverUris) {
+            endpoints.put(serverUri, new Endpoint(serverUri));
+        }
+        this.probeTimeoutMillis = probeTimeoutMillis;
+        this.sslSocketFactory = sslSocketFactory != null ? sslSocketFactory : SSLSocketFactory.getDefault();
+    }
+
+    /**
+     * Probes all the endpoints.
+     *
+     * @return Server URIs, from the lowest latency to the unreachable ones
+     */
+    List<String> rank() throws InterruptedException {
+        List<Endpoint> ranked = new ArrayList<>(endpoints.values());
+        long[] latencies = new long[ranked.size()];
+        Thread[] probes = new Thread[ranked.size()];
+        for (int i = 0; i < probes.length; i++) {
+            int index = i;
+            probes[i] = new Thread(() -> latencies[index] = ranked.get(index).probe(probeTimeoutMillis, sslSocketFactory), "lo-endpoint-probe");
+            probes[i].setDaemon(true);
+            probes[i].start();
+        }
+        for (Thread probe : probes) {
+            probe.join();
+        }
+        Integer[] order = new Integer[latencies.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // stable sort, the unreachable endpoints keep their configured order
+        Arrays.sort(order, Comparator.comparingLong(i -> latencies[i]));
+        List<String> serverUris = new ArrayList<>(order.length);
+        for (int i : order) {
+            serverUris.add(ranked.get(i).serverUri);
+        }
+        return serverUris;
+    }
+
+    /**
+     * Records a connection to an endpoint.
+     *
+     * @param connectNanos Duration of the connection from the connect call, or -1 for a reconnection
+     */
+    void connected(String serverUri, long connectNanos) {
+        Endpoint endpoint = serverUri != null ? endpoints.get(serverUri) : null;
+        if (endpoint != null) {
+            endpoint.connected(connectNanos);
+        }
+    }
+
+    void connectionLost(String serverUri) {
+        Endpoint endpoint = serverUri != null ? endpoints.get(serverUri) : null;
+        if (endpoint != null) {
+            endpoint.connectionLost();
+        }
+    }
+
+    Map<String, EndpointStats> getStats() {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        endpoints.forEach((serverUri, endpoint) -> stats.put(serverUri, endpoint.getStats()));
+        return stats;
+    }
+
+    private static final class Endpoint {
+
+        private final String serverUri;
+        private long probes;
+        private long probeFailures;
+        private long lastProbeNanos = -1;
+        private long connections;
+        private long lastConnectNanos = -1;
+        private long connectionLosses;
+
+        Endpoint(String serverUri) {
+            this.serverUri = serverUri;
+        }
+
+        /**
+         * @return Duration of the connection and handshake in nanoseconds, or {@link #UNREACHABLE}
+         */
+        long probe(int timeoutMillis, SocketFactory sslSocketFactory) {
+            long nanos;
+            try {
+                nanos = connectAndHandshake(timeoutMillis, sslSocketFactory);
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.debug("Endpoint {} is unreachable.", serverUri, e);
+                nanos = UNREACHABLE;
+            }
+            synchronized (this) {
+                probes++;
+                if (nanos == UNREACHABLE) {
+                    probeFailures++;
+                } else {
+                    lastProbeNanos = nanos;
+                }
+            }
+            return nanos;
+        }
+
+        private long connectAndHandshake(int timeoutMillis, SocketFactory sslSocketFactory) throws IOException {
+            URI uri = URI.create(serverUri);
+            String scheme = String.valueOf(uri.getScheme());
+            boolean ssl = "ssl".equals(scheme) || "wss".equals(scheme);
+            int port = uri.getPort() != -1 ? uri.getPort() : defaultPort(scheme);
+            long start = System.nanoTime();
+            try (Socket socket = ssl ? sslSocketFactory.createSocket() : new Socket()) {
+                socket.connect(new InetSocketAddress(uri.getHost(), port), timeoutMillis);
+                if (ssl) {
+                    socket.setSoTimeout(timeoutMillis);
+                    ((SSLSocket) socket).startHandshake();
+                }
+                return System.nanoTime() - start;
+            }
+        }
+
+        private static int defaultPort(String scheme) {
+            switch (scheme) {
+                case "ssl":
+                    return 8883;
+                case "ws":
+                    return 80;
+                case "wss":
+                    return 443;
+                default:
+                    return 1883;
+            }
+        }
+
+        synchronized void connected(long connectNanos) {
+            connections++;
+            if (connectNanos >= 0) {
+                lastConnectNanos = connectNanos;
+            }
+        }
+
+        synchronized void connectionLost() {
+            connectionLosses++;
+        }
+
+        synchronized EndpointStats getStats() {
+            return new EndpointStats(serverUri, probes, probeFailures, toDuration(lastProbeNanos), connections, toDuration(lastConnectNanos), connectionLosses);
+        }
+
+        private static Duration toDuration(long nanos) {
+            return nanos >= 0 ? Duration.ofNanos(nanos) : null;
+        }
+    }
+}
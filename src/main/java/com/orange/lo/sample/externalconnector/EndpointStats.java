@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the connection metrics of a server URI.
+ */
+public final class EndpointStats {
+
+    private final String serverUri;
+    private final long probes;
+    private final long probeFailures;
+    private final Duration lastProbeLatency;
+    private final long connections;
+    private final Duration lastConnectLatency;
+    private final long connectionLosses;
+
+    EndpointStats(String serverUri, long probes, long probeFailures, Duration lastProbeLatency, long connections, Duration lastConnectLatency,
+                  long connectionLosses) {
+        this.serverUri = serverUri;
+        this.probes = probes;
+        this.probeFailures = probeFailures;
+        this.lastProbeLatency = lastProbeLatency;
+        this.connections = connections;
+        this.lastConnectLatency = lastConnectLatency;
+        this.connectionLosses = connectionLosses;
+    }
+
+    public String getServerUri() {
+        return serverUri;
+    }
+
+    /**
+     * @return Number of times the latency of the endpoint was measured
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * @return Number of measures which failed because the endpoint could not be reached in time
+     */
+    public long getProbeFailures() {
+        return probeFailures;
+    }
+
+    /**
+     * @return Duration of the TCP connection and TLS handshake of the last successful measure, or null if none
+     */
+    public Duration getLastProbeLatency() {
+        return lastProbeLatency;
+    }
+
+    /**
+     * @return Number of connections and reconnections to the endpoint
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return Duration of the last MQTT connection from the connect call, or null if the client never connected
+     * to the endpoint from a connect call
+     */
+    public Duration getLastConnectLatency() {
+        return lastConnectLatency;
+    }
+
+    /**
+     * @return Number of times the connection to the endpoint was lost
+     */
+    public long getConnectionLosses() {
+        return connectionLosses;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats [serverUri=" + serverUri + ", probes=" + probes + ", probeFailures=" + probeFailures + ", lastProbeLatency=" + lastProbeLatency
+                + ", connections=" + connections + ", lastConnectLatency=" + lastConnectLatency + ", connectionLosses=" + connectionLosses + "]";
+    }
+}
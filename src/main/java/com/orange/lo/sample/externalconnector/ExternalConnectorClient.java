@@ -9,104 +9,1134 @@ package com.orange.lo.sample.externalconnector;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.orange.lo.sample.exceptions.CircuitBreakerOpenException;
 import com.orange.lo.sample.exceptions.LoMqttException;
 import com.orange.lo.sample.exceptions.ParseException;
 import com.orange.lo.sample.lo.model.*;
 import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ExternalConnectorClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExternalConnectorClient.class);
+    private static final ClientEvents EVENTS = ClientEvents.create();
 
-    private final IMqttClient mqttClient;
+    public static final int DEFAULT_WARM_UP_ITERATIONS = 10000;
+    private static final String WARM_UP_NODE_ID = "warm-up-node";
+    private static final byte[] WARM_UP_COMMAND = ("{\"id\":\"warm-up\",\"nodeId\":\"" + WARM_UP_NODE_ID + "\",\"ackMode\":\"APPLICATIVE\","
+            + "\"value\":{\"req\":\"warm-up\",\"arg\":{\"key\":\"value\"}}}").getBytes(StandardCharsets.UTF_8);
+    private static final Object COMMAND_TIMEOUT_RESPONSE = Collections.singletonMap("error", "timeout");
+
+    private final MqttTransport mqttTransport;
     private final ObjectMapper objectMapper;
+    private final ObjectReader commandRequestReader;
     private final ExternalConnectorParameters parameters;
+    private final InFlightCounter commandsInProgress = new InFlightCounter();
+    private final InFlightCounter publicationsInProgress = new InFlightCounter();
+    private final ClientScheduler scheduler;
+    private final Semaphore connectionSlots;
+    private final AtomicBoolean holdingConnectionSlot = new AtomicBoolean();
+    private final HealthMonitor healthMonitor;
+    private final SequenceTracker sequenceTracker;
+    private final NodeRegistry nodeRegistry;
+    private final HeartbeatScheduler heartbeatScheduler;
+    private final CommandTracker commandTracker;
+    private final CircuitBreaker circuitBreaker;
+    private final TrafficLog.Writer trafficCapture;
+    private final PublishRing publishRing;
+    private final PublishBatch publishBatch;
+    private final ConflationBuffer conflationBuffer;
+    private final FairQueue fairQueue;
+    private final PublishWindow publishWindow;
+    private final Aggregator aggregator;
+    private final ReportByException reportByException;
+    private final Semaphore unackedCommands;
+    private final Queue<ReceivedCommand> waitingCommands = new ConcurrentLinkedQueue<>();
+    private final EndpointSelector endpointSelector;
+    private volatile long connectStartNanos;
+    private final AtomicBoolean drainingSpill = new AtomicBoolean();
+    private volatile boolean shuttingDown;
 
+    /**
+     * Creates a client using the given MQTT 3.1.1 Paho client. The callback of the Paho client is replaced by the one
+     * of this client, which tracks the connection; a callback set on it before is no longer called.
+     */
     public ExternalConnectorClient(ExternalConnectorParameters parameters, IMqttClient mqttClient) {
-        this.mqttClient = mqttClient;
-        this.parameters = parameters;
-        this.objectMapper = new ObjectMapper();
+        this(parameters, new PahoMqttTransport(mqttClient));
+    }
+
+    /**
+     * Creates a client using the given MQTT 5 Paho client. The callback of the Paho client is replaced by the one of
+     * this client, which tracks the connection; a callback set on it before is no longer called.
+     */
+    public ExternalConnectorClient(ExternalConnectorParameters parameters, org.eclipse.paho.mqttv5.client.IMqttClient mqttClient) {
+        this(parameters, new PahoMqtt5Transport(mqttClient));
     }
 
     public ExternalConnectorClient(ExternalConnectorParameters parameters) throws MqttException {
-        this(parameters, new MqttClient(parameters.getHostname(), UUID.randomUUID().toString()));
+        this(parameters, createMqttTransport(parameters, null));
+    }
+
+    /**
+     * Creates a client using the given transport instead of the one selected by the parameters.
+     *
+     * @param parameters    Client parameters
+     * @param mqttTransport MQTT transport, not connected yet
+     */
+    public ExternalConnectorClient(ExternalConnectorParameters parameters, MqttTransport mqttTransport) {
+        this(parameters, mqttTransport, null, null, null);
+    }
+
+    /**
+     * @param connectionSlots Connections of the host, one of them held while the client is connected, or null for no
+     *                        limit
+     */
+    ExternalConnectorClient(ExternalConnectorParameters parameters, MqttTransport mqttTransport, ScheduledExecutorService sharedScheduler,
+                            Executor sharedPublishExecutor, Semaphore connectionSlots) {
+        this.mqttTransport = mqttTransport;
+        this.scheduler = new ClientScheduler(sharedScheduler, sharedPublishExecutor);
+        this.connectionSlots = connectionSlots;
+        this.parameters = parameters;
+        this.objectMapper = new ObjectMapper().registerModule(ValueWriters.module());
+        this.commandRequestReader = objectMapper.readerFor(CommandRequest.class);
+        HealthMonitorParameters healthMonitorParameters = parameters.getHealthMonitorParameters();
+        this.healthMonitor = healthMonitorParameters != null ? new HealthMonitor(healthMonitorParameters) : null;
+        this.sequenceTracker = parameters.isSequenceTracking() ? createSequenceTracker(parameters.getSequenceSnapshotFile()) : null;
+        this.nodeRegistry = parameters.isNodeRegistry() ? new NodeRegistry() : null;
+        this.heartbeatScheduler = parameters.getHeartbeatInterval() != null
+                ? new HeartbeatScheduler(nodeRegistry, parameters.getHeartbeatInterval().toMillis(), this::sendHeartbeat, scheduler::execute) : null;
+        CircuitBreakerParameters circuitBreakerParameters = parameters.getCircuitBreakerParameters();
+        this.circuitBreaker = circuitBreakerParameters != null ? new CircuitBreaker(circuitBreakerParameters, this::scheduleSpillDrain) : null;
+        PublishRingParameters publishRingParameters = parameters.getPublishRingParameters();
+        this.publishRing = publishRingParameters != null ? new PublishRing(publishRingParameters, this::writeFromRing) : null;
+        this.publishBatch = publishRingParameters != null ? new PublishBatch(publishRingParameters.getBatchSize()) : null;
+        ReportByExceptionParameters reportByExceptionParameters = parameters.getReportByExceptionParameters();
+        this.reportByException = reportByExceptionParameters != null ? new ReportByException(reportByExceptionParameters, objectMapper) : null;
+        ConflationParameters conflationParameters = parameters.getConflationParameters();
+        this.conflationBuffer = conflationParameters != null
+                ? new ConflationBuffer(conflationParameters, (topic, message) -> publish(topic, MessageKind.DATA_MESSAGE, message, false)) : null;
+        FairQueueParameters fairQueueParameters = parameters.getFairQueueParameters();
+        this.fairQueue = fairQueueParameters != null ? new FairQueue(fairQueueParameters, this::sendFromFairQueue) : null;
+        this.publishWindow = parameters.getPublishWindowParameters() != null ? new PublishWindow(parameters.getPublishWindowParameters()) : null;
+        this.aggregator = parameters.getAggregationParameters() != null ? new Aggregator(parameters.getAggregationParameters(), this::sendMessage) : null;
+        this.trafficCapture = parameters.getCaptureFile() != null ? createTrafficCapture(parameters.getCaptureFile()) : null;
+        this.endpointSelector = new EndpointSelector(parameters.getServerUris(), EndpointSelector.PROBE_TIMEOUT_MILLIS,
+                parameters.getTlsParameters() != null ? parameters.getTlsParameters().getSocketFactory() : null);
+        this.unackedCommands = parameters.getCommandExecutor() != null ? new Semaphore(parameters.getMaxUnackedCommands()) : null;
+        this.commandTracker = new CommandTracker(parameters.getCommandTimeout() != null ? parameters.getCommandTimeout().toMillis() : 0, this::commandExpired, scheduler::execute);
+        mqttTransport.setConnectionListener(new MqttTransport.ConnectionListener() {
+            @Override
+            public void connected(boolean reconnect) {
+                endpointSelector.connected(mqttTransport.getServerUri(), reconnect ? -1 : System.nanoTime() - connectStartNanos);
+                if (reconnect) {
+                    EVENTS.connection(null, "RECONNECTED", mqttTransport.getServerUri(), null);
+                    LOGGER.info("Reconnected to Live Objects.");
+                    startSession();
+                }
+            }
+
+            @Override
+            public void connectionLost(Throwable cause) {
+                LOGGER.warn("Connection to Live Objects lost.", cause);
+                EVENTS.connection(null, "CONNECTION_LOST", mqttTransport.getServerUri(), cause);
+                endpointSelector.connectionLost(mqttTransport.getServerUri());
+            }
+        });
+    }
+
+    private static SequenceTracker createSequenceTracker(Path snapshotFile) {
+        SequenceTracker tracker = new SequenceTracker();
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            try {
+                tracker.load(snapshotFile);
+                LOGGER.info("Sequence ids of {} nodes loaded, session: {}.", tracker.size(), tracker.getSessionSequenceId());
+            } catch (IOException e) {
+                LOGGER.warn("Unable to load sequence ids from {}, starting from scratch.", snapshotFile, e);
+                return new SequenceTracker();
+            }
+        }
+        return tracker;
+    }
+
+    private static TrafficLog.Writer createTrafficCapture(Path captureFile) {
+        try {
+            TrafficLog.Writer writer = new TrafficLog.Writer(captureFile);
+            LOGGER.info("Capturing traffic to {}.", captureFile);
+            return writer;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to create traffic capture {}, capture disabled.", captureFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * The clients with a shared executor, and the MQTT 5 clients, keep their in-flight messages in memory: with a clean
+     * session they are not sent again after a restart, and no persistence directory is left in the working directory.
+     *
+     * @param executorService Executor running the network threads of the Paho MQTT client,
+     *                        or null to let the MQTT client create its own threads
+     */
+    static MqttTransport createMqttTransport(ExternalConnectorParameters parameters, ScheduledExecutorService executorService) throws MqttException {
+        if (parameters.getTransportFactory() != null) {
+            return parameters.getTransportFactory().create(parameters);
+        }
+        String clientId = UUID.randomUUID().toString();
+        if (parameters.getMqttVersion() == MqttVersion.MQTT_5) {
+            try {
+                return new PahoMqtt5Transport(new org.eclipse.paho.mqttv5.client.MqttClient(parameters.getHostname(), clientId,
+                        new org.eclipse.paho.mqttv5.client.persist.MemoryPersistence(), executorService));
+            } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+                throw new MqttException(e.getReasonCode(), e);
+            }
+        }
+        if (executorService == null) {
+            return new PahoMqttTransport(new MqttClient(parameters.getHostname(), clientId));
+        }
+        return new PahoMqttTransport(new MqttClient(parameters.getHostname(), clientId, new MemoryPersistence(), executorService));
     }
 
     public void connect() throws MqttException {
-        if (!mqttClient.isConnected()) {
-            MqttConnectOptions opts = getMqttConnectionOptions();
-            mqttClient.connect(opts);
+        if (!mqttTransport.isConnected()) {
+            Object event = EVENTS.beginConnection();
+            acquireConnectionSlot();
+            try {
+                connectTransport();
+            } catch (MqttException | RuntimeException e) {
+                releaseConnectionSlot();
+                throw e;
+            }
+            EVENTS.connection(event, "CONNECTED", mqttTransport.getServerUri(), null);
             LOGGER.info("Successfully connected to Live Objects.");
+            startSession();
+        }
+        if (publishRing != null) {
+            publishRing.start();
+        }
+        if (conflationBuffer != null) {
+            conflationBuffer.start();
+        }
+        if (fairQueue != null) {
+            fairQueue.start();
         }
         if (parameters.getMessageCallback() != null) {
+            commandTracker.start(scheduler);
             receiveCommands();
         }
+        if (healthMonitor != null) {
+            healthMonitor.start((topic, payload) -> mqttTransport.publish(topic, payload, 1), scheduler);
+        }
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.start(scheduler);
+        }
+        if (aggregator != null) {
+            aggregator.start(scheduler);
+        }
+    }
+
+    /**
+     * Takes one of the connections of the host, if the client belongs to one, unless it already holds one.
+     *
+     * @throws IllegalStateException if all the connections of the host are in use
+     */
+    private void acquireConnectionSlot() {
+        if (connectionSlots != null && holdingConnectionSlot.compareAndSet(false, true) && !connectionSlots.tryAcquire()) {
+            holdingConnectionSlot.set(false);
+            throw recordError(new IllegalStateException("All the connections of the host are in use"));
+        }
+    }
+
+    /**
+     * Gives the connection held by the client back to the host, if any.
+     */
+    private void releaseConnectionSlot() {
+        if (connectionSlots != null && holdingConnectionSlot.compareAndSet(true, false)) {
+            connectionSlots.release();
+        }
+    }
+
+    /**
+     * Connects to the only server URI, or to the one with the lowest latency when there are several of them.
+     */
+    private void connectTransport() throws MqttException {
+        List<String> serverUris = parameters.getServerUris();
+        if (serverUris.size() == 1) {
+            connectStartNanos = System.nanoTime();
+            mqttTransport.connect(parameters);
+            return;
+        }
+        try {
+            serverUris = endpointSelector.rank();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MqttException(e);
+        }
+        LOGGER.info("Server URIs by latency: {}.", serverUris);
+        connectStartNanos = System.nanoTime();
+        mqttTransport.connect(parameters, serverUris);
     }
 
     public void disconnect() throws MqttException {
-        mqttClient.disconnect();
+        if (aggregator != null) {
+            aggregator.flushAll();
+        }
+        stopBackgroundTasks();
+        if (conflationBuffer != null) {
+            conflationBuffer.stop(0);
+        }
+        if (fairQueue != null) {
+            fairQueue.stop(0);
+        }
+        if (publishRing != null) {
+            publishRing.stop();
+        }
+        try {
+            mqttTransport.disconnect();
+        } finally {
+            releaseConnectionSlot();
+        }
+        EVENTS.connection(null, "DISCONNECTED", mqttTransport.getServerUri(), null);
         LOGGER.info("Successfully disconnected.");
+        saveSequences();
+        closeTrafficCapture();
+    }
+
+    /**
+     * Stops the client without losing messages. New status and data messages are rejected, the command request topic
+     * is unsubscribed, then the client waits for the command handlers and publications in progress before it disconnects.
+     * If the timeout elapses first, the client disconnects anyway and the result reports what was not completed.
+     * The client cannot be used after shutdown.
+     *
+     * @param timeout Maximum duration of the shutdown
+     * @return Shutdown result
+     * @throws MqttException if the disconnection fails
+     */
+    public ShutdownResult shutdown(Duration timeout) throws MqttException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        if (aggregator != null) {
+            // sent before the data messages are rejected
+            aggregator.close();
+        }
+        shuttingDown = true;
+        LOGGER.info("Shutting down, timeout: {}.", timeout);
+        stopBackgroundTasks();
+        if (parameters.getMessageCallback() != null && mqttTransport.isConnected()) {
+            unsubscribeCommands();
+        }
+        int unfinishedConflated = 0;
+        try {
+            commandsInProgress.awaitZero(deadline);
+            if (conflationBuffer != null) {
+                unfinishedConflated = conflationBuffer.stop(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+            if (fairQueue != null) {
+                // the queued messages are still counted as publications in progress
+                fairQueue.stop(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+            publicationsInProgress.awaitZero(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int unfinishedCommands = commandsInProgress.get();
+        int unfinishedPublications = publicationsInProgress.get() + unfinishedConflated;
+        try {
+            if (mqttTransport.isConnected()) {
+                mqttTransport.disconnect(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                EVENTS.connection(null, "DISCONNECTED", mqttTransport.getServerUri(), null);
+            }
+        } finally {
+            releaseConnectionSlot();
+        }
+        if (publishRing != null) {
+            publishRing.stop();
+        }
+        saveSequences();
+        closeTrafficCapture();
+        ShutdownResult result = new ShutdownResult(unfinishedCommands, unfinishedPublications, Duration.ofNanos(System.nanoTime() - start));
+        if (result.isComplete()) {
+            LOGGER.info("Successfully shut down in {} ms.", result.getDuration().toMillis());
+        } else {
+            LOGGER.warn("Shutdown timeout elapsed, {} command(s) and {} publication(s) were not completed.", unfinishedCommands, unfinishedPublications);
+        }
+        return result;
     }
 
+    /**
+     * Returns the round-trip time to the broker and whether the connection is degraded.
+     * A degraded connection still works but is slow, so traffic can be moved before publications back up.
+     *
+     * @return Connection health, or null if the health monitor is not enabled in the parameters
+     */
+    public ConnectionHealth getConnectionHealth() {
+        return healthMonitor != null ? healthMonitor.getHealth() : null;
+    }
+
+    /**
+     * Returns, for each server URI, the latency measured before connecting, and the number and duration of the
+     * connections.
+     *
+     * @return Endpoint statistics by server URI
+     */
+    public Map<String, EndpointStats> getEndpointStats() {
+        return endpointSelector.getStats();
+    }
+
+    ExternalConnectorParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the state of the nodes the client published for: last status, last contact, last publication time
+     * and message counters.
+     *
+     * @return Node registry, or null if it is not enabled in the parameters
+     */
+    public NodeRegistry getNodeRegistry() {
+        return nodeRegistry;
+    }
+
+    /**
+     * Returns the state of the circuit breaker and the number of messages shed.
+     *
+     * @return Circuit breaker statistics, or null if the circuit breaker is not enabled in the parameters
+     */
+    public CircuitBreakerStats getCircuitBreakerStats() {
+        return circuitBreaker != null ? circuitBreaker.getStats() : null;
+    }
+
+    /**
+     * Returns the number of messages pending in the conflation buffer and the number of messages conflated.
+     *
+     * @return Conflation statistics, or null if conflation is not enabled in the parameters
+     */
+    public ConflationStats getConflationStats() {
+        return conflationBuffer != null ? conflationBuffer.getStats() : null;
+    }
+
+    /**
+     * Returns the number of messages queued, published and rejected by the fair queue, and the nodes which published
+     * the most bytes.
+     *
+     * @return Fair queue statistics, or null if the fair queue is not enabled in the parameters
+     */
+    public FairQueueStats getFairQueueStats() {
+        return fairQueue != null ? fairQueue.getStats() : null;
+    }
+
+    /**
+     * Returns the current size of the adaptive publish window, the number of publications in flight and the number of
+     * times the window grew and shrank.
+     *
+     * @return Publish window statistics, or null if the publish window is not enabled in the parameters
+     */
+    public PublishWindowStats getPublishWindowStats() {
+        return publishWindow != null ? publishWindow.getStats() : null;
+    }
+
+    /**
+     * Returns the number of readings aggregated and of aggregated data messages sent.
+     *
+     * @return Aggregation statistics, or null if aggregation is not enabled in the parameters
+     */
+    public AggregationStats getAggregationStats() {
+        return aggregator != null ? aggregator.getStats() : null;
+    }
+
+    /**
+     * Returns the number of data messages checked and suppressed by the report by exception filter.
+     *
+     * @return Report by exception statistics, or null if report by exception is not enabled in the parameters
+     */
+    public ReportByExceptionStats getReportByExceptionStats() {
+        return reportByException != null ? reportByException.getStats() : null;
+    }
+
+    /**
+     * Returns the statistics of the command requests by request name ({@code value.req}, empty for the commands
+     * without one): commands in flight, completed, expired and failed, and latency until the response is published.
+     *
+     * @return Command statistics by request name
+     */
+    public Map<String, CommandStats> getCommandStats() {
+        return commandTracker.getStats();
+    }
+
+    /**
+     * @return Number of commands whose handler has not completed yet and which have not expired
+     */
+    public int getCommandsInFlight() {
+        return commandTracker.getInFlight();
+    }
+
+    /**
+     * @return Number of command requests received and not acknowledged yet, handled or waiting for a free slot, always 0
+     * without a command executor
+     */
+    public int getUnackedCommands() {
+        return unackedCommands != null ? parameters.getMaxUnackedCommands() - unackedCommands.availablePermits() + waitingCommands.size() : 0;
+    }
+
+    /**
+     * @return Number of commands of the node whose handler has not completed yet and which have not expired
+     */
+    public int getCommandsInFlight(String nodeId) {
+        return commandTracker.getInFlight(nodeId);
+    }
+
+    /**
+     * Same as {@link #warmUp(int)} with {@link #DEFAULT_WARM_UP_ITERATIONS} iterations.
+     *
+     * @return Warm-up result
+     */
+    public WarmUpResult warmUp() {
+        return warmUp(DEFAULT_WARM_UP_ITERATIONS);
+    }
+
+    /**
+     * Primes the client before it accepts traffic, so the first messages after a restart are not slowed down
+     * by the creation of the JSON serializers and by interpreted code. Data messages, node statuses, command requests
+     * and command responses are encoded and decoded as they would be on publication and on command arrival,
+     * but nothing is sent to Live Objects. The warm-up can be run before {@link #connect()}.
+     *
+     * @param iterations Number of times each message type is encoded or decoded
+     * @return Warm-up result
+     */
+    public WarmUpResult warmUp(int iterations) {
+        long start = System.nanoTime();
+        DataMessage dataMessage = getWarmUpDataMessage();
+        NodeStatus nodeStatus = new NodeStatus();
+        nodeStatus.setStatus(Status.ONLINE);
+        nodeStatus.setCapabilities(new NodeStatus.Capabilities(true));
+        QosPolicy qosPolicy = parameters.getQosPolicy();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                String.format(parameters.getDataTopicTemplate(), WARM_UP_NODE_ID);
+                serialize(dataMessage);
+                qosPolicy.getQos(MessageKind.DATA_MESSAGE, dataMessage);
+                String.format(parameters.getStatusTopicTemplate(), WARM_UP_NODE_ID);
+                serialize(nodeStatus);
+                qosPolicy.getQos(MessageKind.NODE_STATUS, nodeStatus);
+                CommandRequest commandRequest = commandRequestReader.readValue(WARM_UP_COMMAND);
+                CommandResponse commandResponse = new CommandResponse(commandRequest.getId(), commandRequest.getNodeId());
+                commandResponse.setResponse(commandRequest.getValue().getArg());
+                serialize(commandResponse);
+                qosPolicy.getQos(MessageKind.COMMAND_RESPONSE, commandResponse);
+            }
+        } catch (IOException e) {
+            throw recordError(new ParseException(e));
+        }
+        WarmUpResult result = new WarmUpResult(iterations, Duration.ofNanos(System.nanoTime() - start));
+        LOGGER.info("Warm-up completed in {} ms ({} iterations).", result.getDuration().toMillis(), iterations);
+        return result;
+    }
+
+    private static DataMessage getWarmUpDataMessage() {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setStreamId(WARM_UP_NODE_ID);
+        dataMessage.setTimestamp("2023-01-01T00:00:00.000Z");
+        dataMessage.setModel("warm-up");
+        dataMessage.setValue(new Value("warm-up"));
+        dataMessage.setMetadata(new Metadata("warm-up"));
+        Location location = new Location();
+        location.setLat(48.86);
+        location.setLon(2.35);
+        dataMessage.setLocation(location);
+        dataMessage.setTags(Collections.singletonList("warm-up"));
+        return dataMessage;
+    }
+
+    /**
+     * Sends the status of a node. When sequence tracking is enabled, the session and event sequence ids of the status
+     * are set by the client. When heartbeats are enabled, the status of the node is then sent again at the heartbeat
+     * interval while it is ONLINE.
+     */
     public void sendStatus(String nodeId, NodeStatus nodeStatus) {
-        MqttMessage msg = prepareMqttMessage(nodeStatus);
+        sendStatus(nodeId, nodeStatus, false);
+    }
+
+    private void sendStatus(String nodeId, NodeStatus nodeStatus, boolean heartbeat) {
+        if (sequenceTracker != null) {
+            long ids = sequenceTracker.next(nodeId);
+            nodeStatus.setSessionSequenceId(SequenceTracker.sessionOf(ids));
+            nodeStatus.setEventSequenceId(SequenceTracker.eventOf(ids));
+        }
         String topic = String.format(parameters.getStatusTopicTemplate(), nodeId);
-        publish(topic, msg);
+        publish(nodeId, topic, MessageKind.NODE_STATUS, nodeStatus);
+        if (nodeRegistry != null) {
+            long now = System.currentTimeMillis();
+            int index = nodeRegistry.register(nodeId);
+            if (heartbeat) {
+                // not traffic of the node, the next heartbeat stays due one interval after this one
+                nodeRegistry.recordHeartbeat(index, lastContactMillis(nodeStatus, now));
+            } else {
+                nodeRegistry.recordStatus(index, nodeStatus.getStatus(), lastContactMillis(nodeStatus, now), now);
+                if (heartbeatScheduler != null) {
+                    heartbeatScheduler.track(index);
+                }
+            }
+        }
         LOGGER.debug("Status for nodeId {} has been sent successfully.", nodeId);
     }
 
+    /**
+     * Sends a data message. When report by exception is enabled, the message is not published if its value did not
+     * change beyond the deadband since the last message published for the node and stream. When conflation is enabled
+     * for the stream of the message, the message is published asynchronously and replaced by the next message of the
+     * same node and stream if it is still pending then.
+     */
     public void sendMessage(String nodeId, DataMessage dataMessage) {
-        MqttMessage msg = prepareMqttMessage(dataMessage);
+        if (reportByException != null && !reportByException.shouldReport(nodeId, dataMessage, System.nanoTime())) {
+            LOGGER.debug("Message for nodeId {} suppressed, value within the deadband.", nodeId);
+            return;
+        }
         String topic = String.format(parameters.getDataTopicTemplate(), nodeId);
-        publish(topic, msg);
+        try {
+            if (conflationBuffer != null && conflationBuffer.isConflated(dataMessage)) {
+                if (shuttingDown) {
+                    throw recordError(new LoMqttException("Client is shutting down, message was not sent."));
+                }
+                conflationBuffer.offer(topic, dataMessage);
+            } else {
+                publish(nodeId, topic, MessageKind.DATA_MESSAGE, dataMessage);
+            }
+        } catch (RuntimeException e) {
+            if (reportByException != null) {
+                reportByException.cancelReport();
+            }
+            throw e;
+        }
+        if (nodeRegistry != null) {
+            nodeRegistry.recordDataMessage(nodeRegistry.register(nodeId), System.currentTimeMillis());
+        }
         LOGGER.debug("Message for nodeId {} has been sent successfully.", nodeId);
     }
 
-    private MqttMessage prepareMqttMessage(Object message) {
+    /**
+     * Adds a numeric reading to the current window of the node and stream, without allocating. When the window
+     * closes, a data message is sent with the minimum, maximum, average and count of its readings, timestamped with
+     * the start of the window. The aggregated messages go through sendMessage; their errors are logged.
+     *
+     * @throws IllegalStateException if aggregation is not enabled in the parameters
+     */
+    public void sendReading(String nodeId, String streamId, double value) {
+        if (aggregator == null) {
+            throw new IllegalStateException("Aggregation is not enabled");
+        }
+        if (!aggregator.add(nodeId, streamId, value, System.currentTimeMillis())) {
+            throw recordError(new LoMqttException("Client is shutting down, reading was not sent."));
+        }
+    }
+
+    private void sendHeartbeat(String nodeId, long nowMillis) {
+        NodeStatus nodeStatus = new NodeStatus();
+        nodeStatus.setStatus(Status.ONLINE);
+        nodeStatus.setLastContact(Instant.ofEpochMilli(nowMillis).toString());
+        sendStatus(nodeId, nodeStatus, true);
+    }
+
+    private static long lastContactMillis(NodeStatus nodeStatus, long now) {
+        if (nodeStatus.getLastContact() == null) {
+            return now;
+        }
         try {
-            String payload = objectMapper.writeValueAsString(message);
-            MqttMessage msg = new MqttMessage();
-            msg.setQos(parameters.getMessageQos());
-            msg.setPayload(payload.getBytes());
-            return msg;
+            return Instant.parse(nodeStatus.getLastContact()).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return now;
+        }
+    }
+
+    private byte[] serialize(Object message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
         } catch (JsonProcessingException e) {
-            throw new ParseException(e);
+            throw recordError(new ParseException(e));
+        }
+    }
+
+    /**
+     * Publishes a status or data message, through the queue of its node when the fair queue is enabled.
+     */
+    private void publish(String nodeId, String topic, MessageKind kind, Object message) {
+        if (fairQueue == null) {
+            publish(topic, kind, message);
+            return;
+        }
+        if (shuttingDown) {
+            throw recordError(new LoMqttException("Client is shutting down, message was not sent."));
+        }
+        Object event = EVENTS.beginPublish();
+        long serializeStart = event != null ? System.nanoTime() : 0;
+        byte[] payload = serialize(message);
+        long serializeNanos = event != null ? System.nanoTime() - serializeStart : 0;
+        int qos = parameters.getQosPolicy().getQos(kind, message);
+        publicationsInProgress.increment();
+        try {
+            fairQueue.offer(nodeId, topic, payload, qos);
+            EVENTS.endPublish(event, kind, topic, payload.length, qos, serializeNanos, "QUEUED");
+        } catch (RuntimeException e) {
+            publicationsInProgress.decrement();
+            throw recordError(e);
         }
     }
 
-    private void publish(String topic, MqttMessage msg) {
+    private void publish(String topic, MessageKind kind, Object message) {
+        publish(topic, kind, message, kind != MessageKind.COMMAND_RESPONSE);
+    }
+
+    /**
+     * @param rejectWhenShuttingDown false for the messages accepted before the shutdown started: command responses
+     *                               and conflated messages
+     */
+    private void publish(String topic, MessageKind kind, Object message, boolean rejectWhenShuttingDown) {
+        publicationsInProgress.increment();
+        boolean queued = false;
         try {
-            mqttClient.publish(topic, msg);
+            if (shuttingDown && rejectWhenShuttingDown) {
+                throw recordError(new LoMqttException("Client is shutting down, message was not sent."));
+            }
+            if (publishRing != null && kind != MessageKind.COMMAND_RESPONSE) {
+                publishRing.publish(topic, kind, message);
+                queued = true;
+                return;
+            }
+            Object event = EVENTS.beginPublish();
+            if (trafficCapture == null && circuitBreaker == null) {
+                publishStreamed(topic, kind, message, event);
+                return;
+            }
+            long serializeStart = event != null ? System.nanoTime() : 0;
+            byte[] payload = serialize(message);
+            long serializeNanos = event != null ? System.nanoTime() - serializeStart : 0;
+            int qos = parameters.getQosPolicy().getQos(kind, message);
+            String outcome = "FAILED";
+            try {
+                if (circuitBreaker != null && kind != MessageKind.COMMAND_RESPONSE && !circuitBreaker.tryAcquire()) {
+                    circuitBreaker.shed(topic, payload, qos);
+                    outcome = "SHED";
+                    return;
+                }
+                send(topic, payload, qos);
+                outcome = "PUBLISHED";
+            } finally {
+                EVENTS.endPublish(event, kind, topic, payload.length, qos, serializeNanos, outcome);
+            }
+        } catch (CircuitBreakerOpenException e) {
+            throw recordError(e);
         } catch (MqttException e) {
-            throw new LoMqttException(e);
+            throw recordError(new LoMqttException(e));
+        } finally {
+            if (!queued) {
+                publicationsInProgress.decrement();
+            }
+        }
+    }
+
+    /**
+     * Publishes a message without serializing it into a byte array first: the message is written directly into a
+     * buffer of the transport. Only used when neither the traffic capture nor the circuit breaker needs the payload.
+     */
+    private void publishStreamed(String topic, MessageKind kind, Object message, Object event) throws MqttException {
+        int qos = parameters.getQosPolicy().getQos(kind, message);
+        MeasuredPayloadWriter measuredWriter = event != null ? new MeasuredPayloadWriter(message) : null;
+        String outcome = "FAILED";
+        try {
+            send(topic, null, measuredWriter != null ? measuredWriter : out -> objectMapper.writeValue(out, message), qos);
+            outcome = "PUBLISHED";
+        } finally {
+            if (measuredWriter != null) {
+                EVENTS.endPublish(event, kind, topic, measuredWriter.size, qos, measuredWriter.nanos, outcome);
+            }
+        }
+    }
+
+    /**
+     * Called on the writer thread of the publish ring: serializes the message and publishes the batch once the last
+     * message available in the ring is reached. Publication errors cannot be reported to the producers, they are logged.
+     */
+    private void writeFromRing(String topic, MessageKind kind, Object message, boolean endOfBatch) {
+        boolean batched = false;
+        try {
+            byte[] payload = serialize(message);
+            int qos = parameters.getQosPolicy().getQos(kind, message);
+            if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                circuitBreaker.shed(topic, payload, qos);
+            } else {
+                publishBatch.add(topic, payload, qos);
+                batched = true;
+            }
+        } catch (CircuitBreakerOpenException e) {
+            LOGGER.debug("Circuit breaker is open, message was not sent. Topic: {}.", topic);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to serialize message. Topic: {}.", topic, e);
+        } finally {
+            if (!batched) {
+                publicationsInProgress.decrement();
+            }
+        }
+        if (endOfBatch) {
+            sendBatch(publishBatch);
         }
     }
 
+    /**
+     * Called on the drainer thread of the fair queue: sheds the messages refused by the circuit breaker, then publishes
+     * the others together. Publication errors cannot be reported to the producers, they are logged.
+     *
+     * @return Number of messages whose publication failed
+     */
+    private int sendFromFairQueue(PublishBatch batch) {
+        int count = batch.size();
+        if (circuitBreaker != null) {
+            batch.retain(this::acquireCircuitBreaker);
+        }
+        for (int i = batch.size(); i < count; i++) {
+            publicationsInProgress.decrement();
+        }
+        int published = batch.size();
+        return sendBatch(batch) ? 0 : published;
+    }
+
+    /**
+     * @return true if the message can be published, false if the circuit breaker shed it
+     */
+    private boolean acquireCircuitBreaker(String topic, byte[] payload, int qos) {
+        if (circuitBreaker.tryAcquire()) {
+            return true;
+        }
+        try {
+            circuitBreaker.shed(topic, payload, qos);
+        } catch (CircuitBreakerOpenException e) {
+            LOGGER.debug("Circuit breaker is open, message was not sent. Topic: {}.", topic);
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the batch and clears it. Every message of the batch is recorded in the circuit breaker and removed
+     * from the publications in progress, whatever the outcome.
+     *
+     * @return false if the publication of the batch failed
+     */
+    private boolean sendBatch(PublishBatch batch) {
+        int count = batch.size();
+        if (count == 0) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            if (trafficCapture != null) {
+                for (int i = 0; i < count; i++) {
+                    trafficCapture.record(TrafficLog.Direction.OUTGOING, batch.topics[i], batch.payloads[i], batch.qos[i]);
+                }
+            }
+            mqttTransport.publishBatch(batch.topics, batch.payloads, batch.qos, count);
+            failed = false;
+        } catch (MqttException e) {
+            LOGGER.warn("Unable to publish a batch of {} message(s).", count, e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            if (healthMonitor != null && !failed && batch.hasQos()) {
+                healthMonitor.recordRtt(duration);
+            }
+            if (circuitBreaker != null) {
+                for (int i = 0; i < count; i++) {
+                    circuitBreaker.record(duration, failed);
+                }
+            }
+            batch.clear();
+            for (int i = 0; i < count; i++) {
+                publicationsInProgress.decrement();
+            }
+        }
+        return !failed;
+    }
+
+    private void send(String topic, byte[] payload, int qos) throws MqttException {
+        if (trafficCapture != null) {
+            trafficCapture.record(TrafficLog.Direction.OUTGOING, topic, payload, qos);
+        }
+        send(topic, payload, null, qos);
+    }
+
+    /**
+     * @param payload       Serialized payload, or null to let the payload writer write it into a buffer of the transport
+     * @param payloadWriter Writer of the payload, used when the payload is null
+     */
+    private void send(String topic, byte[] payload, MqttTransport.PayloadWriter payloadWriter, int qos) throws MqttException {
+        boolean windowed = false;
+        long start = System.nanoTime();
+        boolean failed = true;
+        // every outcome is recorded, so that a probe granted to a half open circuit breaker is never lost
+        try {
+            if (publishWindow != null && qos > 0) {
+                publishWindow.acquire();
+                windowed = true;
+                start = System.nanoTime();
+            }
+            if (payload != null) {
+                mqttTransport.publish(topic, payload, qos);
+            } else {
+                mqttTransport.publish(topic, payloadWriter, qos);
+            }
+            failed = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MqttException(e);
+        } catch (IOException e) {
+            // the message could not be serialized, nothing was sent
+            failed = false;
+            throw recordError(new ParseException(e));
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (windowed) {
+                publishWindow.release(elapsed, failed);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.record(elapsed, failed);
+            }
+        }
+        if (healthMonitor != null && qos > 0) {
+            healthMonitor.recordRtt(System.nanoTime() - start);
+        }
+    }
+
+    private void scheduleSpillDrain() {
+        if (circuitBreaker.getSpillSize() > 0 && !shuttingDown) {
+            try {
+                scheduler.execute(this::drainSpill);
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Spilled messages not published, publishing executor stopped.", e);
+            }
+        }
+    }
+
+    /**
+     * Publishes the messages spilled while the circuit was open, until the buffer is empty or the circuit opens again.
+     */
+    private void drainSpill() {
+        if (!drainingSpill.compareAndSet(false, true)) {
+            return;
+        }
+        int published = 0;
+        try {
+            CircuitBreaker.SpilledMessage message;
+            while (!shuttingDown && (message = circuitBreaker.pollSpilled()) != null) {
+                if (!circuitBreaker.tryAcquire()) {
+                    circuitBreaker.returnSpilled(message);
+                    break;
+                }
+                try {
+                    send(message.topic, message.payload, message.qos);
+                    published++;
+                } catch (MqttException e) {
+                    circuitBreaker.returnSpilled(message);
+                    LOGGER.warn("Unable to publish spilled message, {} message(s) left.", circuitBreaker.getSpillSize(), e);
+                    break;
+                }
+            }
+        } finally {
+            drainingSpill.set(false);
+        }
+        LOGGER.info("{} spilled message(s) published, {} left.", published, circuitBreaker.getSpillSize());
+    }
+
     private void sendCommandResponse(CommandResponse commandResponse) {
-        MqttMessage msg = prepareMqttMessage(commandResponse);
-        publish(parameters.getCommandResponseTopic(), msg);
+        publish(parameters.getCommandResponseTopic(), MessageKind.COMMAND_RESPONSE, commandResponse);
     }
 
     private void receiveCommands() {
         try {
-            mqttClient.subscribe(parameters.getCommandRequestTopic(), parameters.getMessageQos(), this::messageArrived);
+            if (parameters.getCommandExecutor() != null) {
+                mqttTransport.subscribeWithManualAcks(parameters.getCommandRequestTopic(), parameters.getMessageQos(), this::messageArrived);
+            } else {
+                mqttTransport.subscribe(parameters.getCommandRequestTopic(), parameters.getMessageQos(), this::messageArrived);
+            }
             LOGGER.info("Command request topic was subscribed successfully.");
         } catch (MqttException e) {
-            throw new LoMqttException(e);
+            throw recordError(new LoMqttException(e));
+        }
+    }
+
+    private void startSession() {
+        if (sequenceTracker != null) {
+            sequenceTracker.newSession();
+        }
+    }
+
+    private void saveSequences() {
+        Path snapshotFile = parameters.getSequenceSnapshotFile();
+        if (sequenceTracker == null || snapshotFile == null) {
+            return;
+        }
+        try {
+            sequenceTracker.save(snapshotFile);
+            LOGGER.debug("Sequence ids of {} nodes saved.", sequenceTracker.size());
+        } catch (IOException e) {
+            LOGGER.warn("Unable to save sequence ids to {}.", snapshotFile, e);
+        }
+    }
+
+    private void closeTrafficCapture() {
+        if (trafficCapture != null) {
+            trafficCapture.close();
         }
     }
 
-    private void messageArrived(String topic, MqttMessage mqttMessage) throws IOException {
-        CommandRequest commandRequest = objectMapper.readValue(mqttMessage.getPayload(), CommandRequest.class);
+    private void stopBackgroundTasks() {
+        if (healthMonitor != null) {
+            healthMonitor.stop();
+        }
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.stop();
+        }
+        if (aggregator != null) {
+            aggregator.stop();
+        }
+        commandTracker.stop();
+        scheduler.close();
+    }
+
+    private void unsubscribeCommands() {
+        try {
+            mqttTransport.unsubscribe(parameters.getCommandRequestTopic());
+            LOGGER.info("Command request topic was unsubscribed successfully.");
+        } catch (MqttException e) {
+            LOGGER.warn("Unable to unsubscribe command request topic.", e);
+        }
+    }
+
+    private void messageArrived(String topic, byte[] payload) throws IOException {
+        if (trafficCapture != null) {
+            trafficCapture.record(TrafficLog.Direction.INCOMING, topic, payload, parameters.getMessageQos());
+        }
+        commandsInProgress.increment();
+        try {
+            handleCommand(topic, payload);
+        } finally {
+            commandsInProgress.decrement();
+        }
+    }
+
+    /**
+     * Queues the command for the command executor, which acknowledges it once handled. Never blocks the MQTT client
+     * thread, which also reads the acknowledgements of the command responses: the command requests beyond the maximum
+     * number of unacknowledged commands wait in the client, and the broker stops sending them once its in-flight limit
+     * is reached.
+     */
+    private void messageArrived(String topic, byte[] payload, MqttTransport.Acknowledgement acknowledgement) {
+        if (trafficCapture != null) {
+            trafficCapture.record(TrafficLog.Direction.INCOMING, topic, payload, parameters.getMessageQos());
+        }
+        commandsInProgress.increment();
+        waitingCommands.add(new ReceivedCommand(topic, payload, acknowledgement));
+        dispatchCommands();
+    }
+
+    /**
+     * Hands the waiting commands over to the command executor while the maximum number of unacknowledged commands is
+     * not reached. Called after each arrival and each acknowledgement, so that no command is left waiting with a free
+     * slot.
+     */
+    private void dispatchCommands() {
+        Executor commandExecutor = parameters.getCommandExecutor();
+        while (!waitingCommands.isEmpty() && unackedCommands.tryAcquire()) {
+            ReceivedCommand command = waitingCommands.poll();
+            if (command == null) {
+                unackedCommands.release();
+                continue;
+            }
+            try {
+                commandExecutor.execute(() -> handleCommand(command));
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Command rejected by the command executor. Topic: {}.", command.topic, e);
+                acknowledge(command);
+            }
+        }
+    }
+
+    private void handleCommand(ReceivedCommand command) {
+        try {
+            handleCommand(command.topic, command.payload);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to handle command. Topic: {}.", command.topic, e);
+        } finally {
+            acknowledge(command);
+            dispatchCommands();
+        }
+    }
+
+    private void acknowledge(ReceivedCommand command) {
+        try {
+            command.acknowledgement.acknowledge();
+        } finally {
+            unackedCommands.release();
+            commandsInProgress.decrement();
+        }
+    }
+
+    private void handleCommand(String topic, byte[] payload) throws IOException {
+        Object event = EVENTS.beginCommand();
+        long parseStart = event != null ? System.nanoTime() : 0;
+        CommandRequest commandRequest = commandRequestReader.readValue(payload);
+        long parseNanos = event != null ? System.nanoTime() - parseStart : 0;
         LOGGER.debug("Command arrived. Topic: {}, Id: {}, nodeId: {}.", topic, commandRequest.getId(), commandRequest.getNodeId());
+        if (nodeRegistry != null && commandRequest.getNodeId() != null) {
+            nodeRegistry.recordCommand(nodeRegistry.register(commandRequest.getNodeId()));
+        }
+        boolean responseExpected = !isAckModeNone(commandRequest);
+        CommandTracker.TrackedCommand command = commandTracker.arrived(commandRequest, responseExpected);
         MessageCallback messageCallback = parameters.getMessageCallback();
-        Object response = messageCallback.onMessage(commandRequest);
-        if (isAckModeNone(commandRequest)) {
+        Object response;
+        long handlerStart = event != null ? System.nanoTime() : 0;
+        try {
+            commandTracker.handlerStarted(command);
+            response = messageCallback.onMessage(commandRequest);
+        } catch (RuntimeException e) {
+            commandTracker.failed(command);
+            EVENTS.endCommand(event, commandRequest.getId(), commandRequest.getNodeId(), commandRequest.getAckMode(), parseNanos,
+                    System.nanoTime() - handlerStart, true);
+            throw e;
+        }
+        long handlerNanos = event != null ? System.nanoTime() - handlerStart : 0;
+        try {
+            respond(commandRequest, command, responseExpected, response);
+        } finally {
+            EVENTS.endCommand(event, commandRequest.getId(), commandRequest.getNodeId(), commandRequest.getAckMode(), parseNanos, handlerNanos, false);
+        }
+    }
+
+    private void respond(CommandRequest commandRequest, CommandTracker.TrackedCommand command, boolean responseExpected, Object response) {
+        if (!commandTracker.complete(command)) {
+            LOGGER.warn("Command completed after its timeout, response dropped. Command Id: {}, nodeId: {}.", commandRequest.getId(), commandRequest.getNodeId());
+            return;
+        }
+        if (!responseExpected) {
             LOGGER.debug("AckMode is set to None - no need to send a response.");
         } else {
             CommandResponse commandResponse = new CommandResponse(commandRequest.getId(), commandRequest.getNodeId());
@@ -114,6 +1144,31 @@ public class ExternalConnectorClient {
             sendCommandResponse(commandResponse);
             LOGGER.debug("Response was sent successfully. Command Id: {}, nodeId: {}.", commandRequest.getId(), commandRequest.getNodeId());
         }
+        commandTracker.responded(command);
+    }
+
+    private void commandExpired(CommandTracker.TrackedCommand command) {
+        Duration handlerDuration = command.getHandlerDuration();
+        LOGGER.warn("Command timed out, handler {}. Command Id: {}, nodeId: {}.",
+                handlerDuration != null ? "running for " + handlerDuration.toMillis() + " ms" : "not started", command.getId(), command.getNodeId());
+        if (!command.isResponseExpected()) {
+            return;
+        }
+        CommandResponse commandResponse = new CommandResponse(command.getId(), command.getNodeId());
+        commandResponse.setResponse(COMMAND_TIMEOUT_RESPONSE);
+        try {
+            sendCommandResponse(commandResponse);
+        } catch (LoMqttException e) {
+            LOGGER.warn("Unable to send the timeout response. Command Id: {}, nodeId: {}.", command.getId(), command.getNodeId(), e);
+        }
+    }
+
+    /**
+     * Records the exception in the flight recorder before it is thrown.
+     */
+    private static <E extends RuntimeException> E recordError(E exception) {
+        EVENTS.error(exception);
+        return exception;
     }
 
     private boolean isAckModeNone(CommandRequest commandRequest) {
@@ -121,12 +1176,53 @@ public class ExternalConnectorClient {
         return AcknowledgementMode.NONE.equals(ackMode);
     }
 
-    private MqttConnectOptions getMqttConnectionOptions() {
-        MqttConnectOptions opts = new MqttConnectOptions();
-        opts.setUserName(parameters.getUser());
-        opts.setPassword(parameters.getApiKey().toCharArray());
-        opts.setAutomaticReconnect(parameters.isAutomaticReconnect());
-        return opts;
+    /**
+     * Command request received with a manual acknowledgement, waiting for the command executor.
+     */
+    private static final class ReceivedCommand {
+
+        private final String topic;
+        private final byte[] payload;
+        private final MqttTransport.Acknowledgement acknowledgement;
+
+        ReceivedCommand(String topic, byte[] payload, MqttTransport.Acknowledgement acknowledgement) {
+            this.topic = topic;
+            this.payload = payload;
+            this.acknowledgement = acknowledgement;
+        }
+    }
+
+    /**
+     * Payload writer measuring the size and serialization time of the message for the flight recorder.
+     */
+    private final class MeasuredPayloadWriter implements MqttTransport.PayloadWriter {
+
+        private final Object message;
+        private int size;
+        private long nanos;
+
+        MeasuredPayloadWriter(Object message) {
+            this.message = message;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            long start = System.nanoTime();
+            objectMapper.writeValue(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    size++;
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                    size += length;
+                }
+            }, message);
+            nanos = System.nanoTime() - start;
+        }
     }
 
 }
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many clients in one JVM on shared threads. Each client keeps its own {@link ExternalConnectorParameters},
+ * credentials and connection, while keep alive pings and the periodic tasks of the SDK run on a small fixed set of
+ * timer threads, the publications of the periodic tasks, such as heartbeats, on a small fixed set of publishing
+ * threads, and the network threads of the MQTT clients come from one pool.
+ * <p>
+ * The MQTT client needs three network threads per open connection (receiver, sender and callback), and short-lived
+ * ones while connecting and disconnecting; the pool reuses them when connections are closed or reconnected. The pool
+ * itself never rejects a task, since the MQTT client cannot recover from it; its threads are bounded by the maximum
+ * number of connections instead: a client connected holds one of them until it is disconnected, and a client
+ * connecting while all of them are in use fails with an IllegalStateException. Clients using a transport factory do
+ * not use the network pool and are not limited. Clients created by a host must be disconnected before the host is
+ * closed.
+ */
+public final class ExternalConnectorHost implements AutoCloseable {
+
+    public static final int DEFAULT_TIMER_THREADS = 2;
+    public static final int DEFAULT_PUBLISH_THREADS = 2;
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+    private static final long IO_KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ScheduledThreadPoolExecutor timerExecutor;
+    private final ThreadPoolExecutor publishExecutor;
+    private final HostExecutorService mqttExecutor;
+    private final Semaphore connectionSlots;
+
+    public ExternalConnectorHost() {
+        this(DEFAULT_TIMER_THREADS);
+    }
+
+    /**
+     * @param timerThreads number of threads running keep alive pings and the periodic tasks of all clients
+     */
+    public ExternalConnectorHost(int timerThreads) {
+        this(timerThreads, DEFAULT_PUBLISH_THREADS);
+    }
+
+    /**
+     * @param timerThreads   number of threads running keep alive pings and the periodic tasks of all clients
+     * @param publishThreads number of threads publishing the messages of the periodic tasks of all clients
+     */
+    public ExternalConnectorHost(int timerThreads, int publishThreads) {
+        this(timerThreads, publishThreads, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param timerThreads   number of threads running keep alive pings and the periodic tasks of all clients
+     * @param publishThreads number of threads publishing the messages of the periodic tasks of all clients
+     * @param maxConnections maximum number of clients connected at a time, which bounds the network threads
+     */
+    public ExternalConnectorHost(int timerThreads, int publishThreads, int maxConnections) {
+        if (timerThreads < 1) {
+            throw new IllegalArgumentException("Number of timer threads must be positive, was " + timerThreads);
+        }
+        if (publishThreads < 1) {
+            throw new IllegalArgumentException("Number of publishing threads must be positive, was " + publishThreads);
+        }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Maximum number of connections must be positive, was " + maxConnections);
+        }
+        this.connectionSlots = new Semaphore(maxConnections);
+        // unbounded, the connection slots bound the threads
+        this.ioExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, IO_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), daemonThreads("lo-host-io-"));
+        this.timerExecutor = new ScheduledThreadPoolExecutor(timerThreads, daemonThreads("lo-host-timer-"));
+        this.timerExecutor.setRemoveOnCancelPolicy(true);
+        this.publishExecutor = new ThreadPoolExecutor(publishThreads, publishThreads, IO_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("lo-host-publish-"));
+        this.publishExecutor.allowCoreThreadTimeOut(true);
+        this.mqttExecutor = new HostExecutorService(ioExecutor, timerExecutor);
+    }
+
+    /**
+     * Creates a client running on the threads of this host. The client is not connected.
+     */
+    public ExternalConnectorClient createClient(ExternalConnectorParameters parameters) throws MqttException {
+        if (isClosed()) {
+            throw new IllegalStateException("Host is closed");
+        }
+        return new ExternalConnectorClient(parameters, ExternalConnectorClient.createMqttTransport(parameters, mqttExecutor), timerExecutor,
+                publishExecutor, parameters.getTransportFactory() == null ? connectionSlots : null);
+    }
+
+    /**
+     * Connects the clients in parallel, with at most the given number of connections opened at a time, and waits
+     * until each of them is connected or failed. The first client is connected alone, so that the others resume its
+     * TLS session instead of running full handshakes when they share {@link TlsParameters}.
+     *
+     * @param parallelism Maximum number of connections opened at a time
+     * @return Connection failures by client, empty if all the clients are connected
+     */
+    public Map<ExternalConnectorClient, Exception> connectAll(Collection<ExternalConnectorClient> clients, int parallelism) throws InterruptedException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+        }
+        if (isClosed()) {
+            throw new IllegalStateException("Host is closed");
+        }
+        Map<ExternalConnectorClient, Exception> failures = new ConcurrentHashMap<>();
+        Iterator<ExternalConnectorClient> iterator = clients.iterator();
+        if (!iterator.hasNext()) {
+            return failures;
+        }
+        connect(iterator.next(), failures);
+        if (!iterator.hasNext()) {
+            return failures;
+        }
+        // short-lived threads, so that connecting does not take the network threads of the connections
+        ExecutorService connectExecutor = Executors.newFixedThreadPool(Math.min(parallelism, clients.size() - 1), daemonThreads("lo-host-connect-"));
+        try {
+            while (iterator.hasNext()) {
+                ExternalConnectorClient client = iterator.next();
+                connectExecutor.execute(() -> connect(client, failures));
+            }
+            connectExecutor.shutdown();
+            connectExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            connectExecutor.shutdownNow();
+        }
+        return failures;
+    }
+
+    private static void connect(ExternalConnectorClient client, Map<ExternalConnectorClient, Exception> failures) {
+        try {
+            client.connect();
+        } catch (MqttException | RuntimeException e) {
+            failures.put(client, e);
+        }
+    }
+
+    /**
+     * Number of threads currently alive in the host, network, timer and publishing threads together.
+     */
+    public int getThreadCount() {
+        return ioExecutor.getPoolSize() + timerExecutor.getPoolSize() + publishExecutor.getPoolSize();
+    }
+
+    public boolean isClosed() {
+        return ioExecutor.isShutdown();
+    }
+
+    /**
+     * Stops the threads of the host. Clients still connected lose their connection.
+     */
+    @Override
+    public void close() {
+        timerExecutor.shutdownNow();
+        publishExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
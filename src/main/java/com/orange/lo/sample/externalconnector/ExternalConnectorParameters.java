@@ -9,6 +9,13 @@ package com.orange.lo.sample.externalconnector;
 
 import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 public final class ExternalConnectorParameters {
 
     public static final String DEFAULT_USER = "connector";
@@ -17,29 +24,77 @@ public final class ExternalConnectorParameters {
     public static final String DEFAULT_COMMAND_REQUEST_TOPIC = "connector/v1/requests/command";
     public static final String DEFAULT_DATA_TOPIC_TEMPLATE = "connector/v1/nodes/%s/data";
     public static final String DEFAULT_STATUS_TOPIC_TEMPLATE = "connector/v1/nodes/%s/status";
+    public static final MqttVersion DEFAULT_MQTT_VERSION = MqttVersion.MQTT_3_1_1;
+    public static final int DEFAULT_RECEIVE_MAXIMUM = 10;
+    public static final int MAX_RECEIVE_MAXIMUM = 65535;
+    public static final int DEFAULT_MAX_UNACKED_COMMANDS = 10;
 
     private final int messageQos;
     private final String user;
     private final String apiKey;
     private final String hostname;
+    private final List<String> serverUris;
     private final String dataTopicTemplate;
     private final String statusTopicTemplate;
     private final String commandResponseTopic;
     private final String commandRequestTopic;
     private final MessageCallback messageCallback;
     private final boolean automaticReconnect;
+    private final MqttVersion mqttVersion;
+    private final int receiveMaximum;
+    private final QosPolicy qosPolicy;
+    private final HealthMonitorParameters healthMonitorParameters;
+    private final MqttTransportFactory transportFactory;
+    private final boolean sequenceTracking;
+    private final Path sequenceSnapshotFile;
+    private final boolean nodeRegistry;
+    private final Duration heartbeatInterval;
+    private final Duration commandTimeout;
+    private final CircuitBreakerParameters circuitBreakerParameters;
+    private final Path captureFile;
+    private final PublishRingParameters publishRingParameters;
+    private final ConflationParameters conflationParameters;
+    private final Executor commandExecutor;
+    private final int maxUnackedCommands;
+    private final TlsParameters tlsParameters;
+    private final ReportByExceptionParameters reportByExceptionParameters;
+    private final FairQueueParameters fairQueueParameters;
+    private final PublishWindowParameters publishWindowParameters;
+    private final AggregationParameters aggregationParameters;
 
     private ExternalConnectorParameters(ExternalConnectorParametersBuilder builder) {
         this.messageQos = builder.messageQos;
         this.user = builder.user;
         this.apiKey = builder.apiKey;
-        this.hostname = builder.hostname;
+        this.serverUris = builder.serverUris != null ? builder.serverUris : Collections.singletonList(builder.hostname);
+        this.hostname = serverUris.get(0);
         this.dataTopicTemplate = builder.dataTopicTemplate;
         this.statusTopicTemplate = builder.statusTopicTemplate;
         this.commandResponseTopic = builder.commandResponseTopic;
         this.commandRequestTopic = builder.commandRequestTopic;
         this.messageCallback = builder.messageCallback;
         this.automaticReconnect = builder.automaticReconnect;
+        this.mqttVersion = builder.mqttVersion;
+        this.receiveMaximum = builder.receiveMaximum;
+        this.qosPolicy = builder.qosPolicy != null ? builder.qosPolicy : (kind, message) -> messageQos;
+        this.healthMonitorParameters = builder.healthMonitorParameters;
+        this.transportFactory = builder.transportFactory;
+        this.sequenceTracking = builder.sequenceTracking;
+        this.sequenceSnapshotFile = builder.sequenceSnapshotFile;
+        this.nodeRegistry = builder.nodeRegistry;
+        this.heartbeatInterval = builder.heartbeatInterval;
+        this.commandTimeout = builder.commandTimeout;
+        this.circuitBreakerParameters = builder.circuitBreakerParameters;
+        this.captureFile = builder.captureFile;
+        this.publishRingParameters = builder.publishRingParameters;
+        this.conflationParameters = builder.conflationParameters;
+        this.commandExecutor = builder.commandExecutor;
+        this.maxUnackedCommands = builder.maxUnackedCommands;
+        this.tlsParameters = builder.tlsParameters;
+        this.reportByExceptionParameters = builder.reportByExceptionParameters;
+        this.fairQueueParameters = builder.fairQueueParameters;
+        this.publishWindowParameters = builder.publishWindowParameters;
+        this.aggregationParameters = builder.aggregationParameters;
     }
 
     public static ExternalConnectorParametersBuilder builder() {
@@ -62,6 +117,13 @@ public final class ExternalConnectorParameters {
         return hostname;
     }
 
+    /**
+     * @return Server URIs, the hostname alone if they are not set
+     */
+    public List<String> getServerUris() {
+        return serverUris;
+    }
+
     public String getDataTopicTemplate() {
         return dataTopicTemplate;
     }
@@ -86,17 +148,123 @@ public final class ExternalConnectorParameters {
         return automaticReconnect;
     }
 
+    public MqttVersion getMqttVersion() {
+        return mqttVersion;
+    }
+
+    public int getReceiveMaximum() {
+        return receiveMaximum;
+    }
+
+    public QosPolicy getQosPolicy() {
+        return qosPolicy;
+    }
+
+    public HealthMonitorParameters getHealthMonitorParameters() {
+        return healthMonitorParameters;
+    }
+
+    public MqttTransportFactory getTransportFactory() {
+        return transportFactory;
+    }
+
+    public boolean isSequenceTracking() {
+        return sequenceTracking;
+    }
+
+    public Path getSequenceSnapshotFile() {
+        return sequenceSnapshotFile;
+    }
+
+    public boolean isNodeRegistry() {
+        return nodeRegistry;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public Duration getCommandTimeout() {
+        return commandTimeout;
+    }
+
+    public CircuitBreakerParameters getCircuitBreakerParameters() {
+        return circuitBreakerParameters;
+    }
+
+    public Path getCaptureFile() {
+        return captureFile;
+    }
+
+    public PublishRingParameters getPublishRingParameters() {
+        return publishRingParameters;
+    }
+
+    public ConflationParameters getConflationParameters() {
+        return conflationParameters;
+    }
+
+    public Executor getCommandExecutor() {
+        return commandExecutor;
+    }
+
+    public int getMaxUnackedCommands() {
+        return maxUnackedCommands;
+    }
+
+    public TlsParameters getTlsParameters() {
+        return tlsParameters;
+    }
+
+    public ReportByExceptionParameters getReportByExceptionParameters() {
+        return reportByExceptionParameters;
+    }
+
+    public FairQueueParameters getFairQueueParameters() {
+        return fairQueueParameters;
+    }
+
+    public PublishWindowParameters getPublishWindowParameters() {
+        return publishWindowParameters;
+    }
+
+    public AggregationParameters getAggregationParameters() {
+        return aggregationParameters;
+    }
+
     public static final class ExternalConnectorParametersBuilder {
         private int messageQos = DEFAULT_MESSAGE_QOS;
         private String user = DEFAULT_USER;
         private String apiKey;
         private String hostname;
+        private List<String> serverUris;
         private String dataTopicTemplate = DEFAULT_DATA_TOPIC_TEMPLATE;
         private String statusTopicTemplate = DEFAULT_STATUS_TOPIC_TEMPLATE;
         private String commandResponseTopic = DEFAULT_COMMAND_RESPONSE_TOPIC;
         private String commandRequestTopic = DEFAULT_COMMAND_REQUEST_TOPIC;
         private boolean automaticReconnect;
         private MessageCallback messageCallback;
+        private MqttVersion mqttVersion = DEFAULT_MQTT_VERSION;
+        private int receiveMaximum = DEFAULT_RECEIVE_MAXIMUM;
+        private QosPolicy qosPolicy;
+        private HealthMonitorParameters healthMonitorParameters;
+        private MqttTransportFactory transportFactory;
+        private boolean sequenceTracking;
+        private Path sequenceSnapshotFile;
+        private boolean nodeRegistry;
+        private Duration heartbeatInterval;
+        private Duration commandTimeout;
+        private CircuitBreakerParameters circuitBreakerParameters;
+        private Path captureFile;
+        private PublishRingParameters publishRingParameters;
+        private ConflationParameters conflationParameters;
+        private Executor commandExecutor;
+        private int maxUnackedCommands = DEFAULT_MAX_UNACKED_COMMANDS;
+        private TlsParameters tlsParameters;
+        private ReportByExceptionParameters reportByExceptionParameters;
+        private FairQueueParameters fairQueueParameters;
+        private PublishWindowParameters publishWindowParameters;
+        private AggregationParameters aggregationParameters;
 
         public ExternalConnectorParametersBuilder messageQos(int messageQos) {
             this.messageQos = messageQos;
@@ -118,6 +286,18 @@ public final class ExternalConnectorParameters {
             return this;
         }
 
+        /**
+         * Sets several server URIs of Live Objects, replacing the hostname. The client connects to the endpoint with
+         * the lowest connection and handshake latency, and fails over to the others when the connection is lost.
+         *
+         * @param serverUris Server URIs, e.g. ssl://liveobjects.orange-business.com:8883
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder serverUris(String... serverUris) {
+            this.serverUris = Collections.unmodifiableList(Arrays.asList(serverUris.clone()));
+            return this;
+        }
+
         /**
          * Sets the value of the data topic template.
          * The value should contain the %s  parameter, which will be replaced by nodeId.
@@ -164,15 +344,323 @@ public final class ExternalConnectorParameters {
             return this;
         }
 
+        /**
+         * Sets the MQTT protocol version used to connect to Live Objects.
+         * With MQTT 5 the data and status topics of each node are replaced by topic aliases
+         * and command requests are flow controlled with the receive maximum.
+         *
+         * @param mqttVersion MQTT protocol version
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder mqttVersion(MqttVersion mqttVersion) {
+            this.mqttVersion = mqttVersion;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of command requests that Live Objects sends before they are acknowledged.
+         * Sent to the broker with MQTT 5. Value must be between 1 and 65535.
+         *
+         * @param receiveMaximum Maximum number of unacknowledged command requests
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder receiveMaximum(int receiveMaximum) {
+            this.receiveMaximum = receiveMaximum;
+            return this;
+        }
+
+        /**
+         * Sets the policy choosing the QoS of each published message, see {@link StreamQosPolicy}.
+         * When not set, all messages are published with the message QoS.
+         *
+         * @param qosPolicy QoS policy
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder qosPolicy(QosPolicy qosPolicy) {
+            this.qosPolicy = qosPolicy;
+            return this;
+        }
+
+        /**
+         * Enables the connection health monitor, see {@link ExternalConnectorClient#getConnectionHealth()}.
+         *
+         * @param healthMonitorParameters Health monitor parameters
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder healthMonitor(HealthMonitorParameters healthMonitorParameters) {
+            this.healthMonitorParameters = healthMonitorParameters;
+            return this;
+        }
+
+        /**
+         * Sets the factory creating the MQTT transport of the client, e.g. a {@link NettyMqttTransportFactory}.
+         * When not set, the client uses the Eclipse Paho client matching the MQTT version.
+         *
+         * @param transportFactory MQTT transport factory
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder transportFactory(MqttTransportFactory transportFactory) {
+            this.transportFactory = transportFactory;
+            return this;
+        }
+
+        /**
+         * Enables the sequence ids of the node statuses. The client then sets the session and event sequence ids
+         * of each sent {@link com.orange.lo.sample.lo.model.NodeStatus}: the session id is incremented on each
+         * connection and reconnection, the event id is incremented on each status of the node within a session.
+         *
+         * @param sequenceTracking true to let the client set the sequence ids
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder sequenceTracking(boolean sequenceTracking) {
+            this.sequenceTracking = sequenceTracking;
+            return this;
+        }
+
+        /**
+         * Sets the file where the sequence ids are saved on disconnection and loaded from on startup,
+         * so they keep increasing across restarts. Requires the sequence tracking.
+         *
+         * @param sequenceSnapshotFile Snapshot file
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder sequenceSnapshotFile(Path sequenceSnapshotFile) {
+            this.sequenceSnapshotFile = sequenceSnapshotFile;
+            return this;
+        }
+
+        /**
+         * Enables the {@link NodeRegistry} keeping the last status, last contact, last publication time
+         * and message counters of each node the client publishes for.
+         *
+         * @param nodeRegistry true to keep the state of the nodes
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder nodeRegistry(boolean nodeRegistry) {
+            this.nodeRegistry = nodeRegistry;
+            return this;
+        }
+
+        /**
+         * Enables the heartbeats: the status of each ONLINE node is sent again with an updated lastContact when
+         * nothing was published for the node during the interval. Requires the node registry.
+         *
+         * @param heartbeatInterval Interval between two publications for a node, or null to disable the heartbeats
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder heartbeatInterval(Duration heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration of a command handler. When it elapses, a failure response is published for the
+         * command and the response returned later by the handler is dropped.
+         *
+         * @param commandTimeout Command timeout, or null to wait for the handlers indefinitely
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder commandTimeout(Duration commandTimeout) {
+            this.commandTimeout = commandTimeout;
+            return this;
+        }
+
+        /**
+         * Enables the circuit breaker of the publications: when publications become slow or fail, status and data
+         * messages are shed according to the shedding mode instead of blocking the calling threads.
+         *
+         * @param circuitBreakerParameters Circuit breaker parameters, or null to disable the circuit breaker
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder circuitBreaker(CircuitBreakerParameters circuitBreakerParameters) {
+            this.circuitBreakerParameters = circuitBreakerParameters;
+            return this;
+        }
+
+        /**
+         * Enables the capture mode: published messages and received command requests are recorded to a binary
+         * {@link TrafficLog}, which can be replayed with {@link TrafficReplay}. The file is overwritten.
+         *
+         * @param captureFile Capture file, or null to disable the capture
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder captureFile(Path captureFile) {
+            this.captureFile = captureFile;
+            return this;
+        }
+
+        /**
+         * Enables the publish ring: status and data messages are added to a bounded ring buffer and published in
+         * batches by a single writer thread, instead of being published by the calling threads. sendStatus and
+         * sendMessage then return before the publication, and publication errors are logged instead of thrown.
+         *
+         * @param publishRingParameters Publish ring parameters, or null to publish from the calling threads
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder publishRing(PublishRingParameters publishRingParameters) {
+            this.publishRingParameters = publishRingParameters;
+            return this;
+        }
+
+        /**
+         * Enables conflation for the selected streams: only the latest pending data message of each node and stream
+         * is kept, so a backlog built during a broker slowdown is caught up quickly. Conflated messages are published
+         * asynchronously and must not be modified after being sent.
+         *
+         * @param conflationParameters Conflation parameters, or null to publish every message
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder conflation(ConflationParameters conflationParameters) {
+            this.conflationParameters = conflationParameters;
+            return this;
+        }
+
+        /**
+         * Enables report by exception: a data message is published only if its value changed beyond the deadband
+         * since the last message published for the same node and stream, or if the max silence elapsed. It cannot be
+         * combined with the publish ring or the fair queue, whose publications fail after sendMessage returned.
+         *
+         * @param reportByExceptionParameters Report by exception parameters, or null to publish every message
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder reportByException(ReportByExceptionParameters reportByExceptionParameters) {
+            this.reportByExceptionParameters = reportByExceptionParameters;
+            return this;
+        }
+
+        /**
+         * Enables the fair queue: status and data messages are queued by node and published by a single thread, in
+         * deficit round-robin across the nodes, so that every node gets its share of the connection when a node floods
+         * the client. sendStatus and sendMessage then return before the publication, throw a
+         * NodeQuotaExceededException when the queue of the node is full, and publication errors are logged instead of
+         * thrown. The messages are published in batches, pipelined by the transport. Conflated messages bypass the fair
+         * queue.
+         *
+         * @param fairQueueParameters Fair queue parameters, or null to publish from the calling threads
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder fairQueue(FairQueueParameters fairQueueParameters) {
+            this.fairQueueParameters = fairQueueParameters;
+            return this;
+        }
+
+        /**
+         * Enables the adaptive publish window: the number of QoS 1 and 2 publications waiting for their acknowledgement
+         * is limited by a window growing while the acknowledgement latency is stable and shrinking on latency spikes
+         * and failed publications. A publication waits for a free slot in the window before being sent. Cannot be
+         * combined with the publish ring nor the fair queue, whose batches are pipelined by their publishing thread.
+         *
+         * @param publishWindowParameters Publish window parameters, or null for no limit other than the MQTT client's
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder publishWindow(PublishWindowParameters publishWindowParameters) {
+            this.publishWindowParameters = publishWindowParameters;
+            return this;
+        }
+
+        /**
+         * Enables the aggregation of the numeric readings sent with sendReading: the readings of each node and stream
+         * are accumulated in tumbling windows, and one data message with their minimum, maximum, average and count is
+         * sent per window, when the window closes and when the client disconnects or shuts down.
+         *
+         * @param aggregationParameters Aggregation parameters, or null to disable sendReading
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder aggregation(AggregationParameters aggregationParameters) {
+            this.aggregationParameters = aggregationParameters;
+            return this;
+        }
+
+        /**
+         * Enables asynchronous command handling: the message callback runs in the given executor and each command
+         * request is acknowledged only when its handler completes, so a burst of commands is throttled at the broker
+         * once its in-flight limit is reached, the receive maximum with MQTT 5.
+         *
+         * @param commandExecutor Executor running the message callback, or null to run it in the MQTT client thread
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder commandExecutor(Executor commandExecutor) {
+            this.commandExecutor = commandExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of command requests handed to the command executor and not acknowledged yet. The
+         * command requests received beyond it wait in the client, without blocking the MQTT client thread, until a
+         * handler completes.
+         *
+         * @param maxUnackedCommands Maximum number of command requests handled at the same time
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder maxUnackedCommands(int maxUnackedCommands) {
+            this.maxUnackedCommands = maxUnackedCommands;
+            return this;
+        }
+
+        /**
+         * Sets the TLS settings of the connections to ssl:// server URIs. Clients built with the same TLS parameters
+         * share their TLS context, so that they resume each other's TLS sessions when they connect.
+         *
+         * @param tlsParameters TLS parameters, or null for the defaults of the MQTT client
+         * @return External connector parameters builder
+         */
+        public ExternalConnectorParametersBuilder tls(TlsParameters tlsParameters) {
+            this.tlsParameters = tlsParameters;
+            return this;
+        }
+
         public ExternalConnectorParameters build() {
             validate();
             return new ExternalConnectorParameters(this);
         }
 
         private void validate() {
-            if (this.apiKey == null || this.apiKey.trim().length() == 0 || this.hostname == null || this.hostname.trim().length() == 0) {
+            if (this.apiKey == null || this.apiKey.trim().length() == 0 || this.serverUris == null && isBlank(this.hostname)) {
                 throw new ExternalConnectorParametersException("Api key and hostname are required");
             }
+            if (this.serverUris != null && (this.serverUris.isEmpty() || this.serverUris.stream().anyMatch(ExternalConnectorParametersBuilder::isBlank))) {
+                throw new ExternalConnectorParametersException("Server URIs must not be empty");
+            }
+            if (this.mqttVersion == null) {
+                throw new ExternalConnectorParametersException("MQTT version is required");
+            }
+            if (this.receiveMaximum < 1 || this.receiveMaximum > MAX_RECEIVE_MAXIMUM) {
+                throw new ExternalConnectorParametersException("Receive maximum must be between 1 and " + MAX_RECEIVE_MAXIMUM);
+            }
+            if (this.maxUnackedCommands < 1) {
+                throw new ExternalConnectorParametersException("Maximum number of unacknowledged commands must be positive");
+            }
+            if (this.sequenceSnapshotFile != null && !this.sequenceTracking) {
+                throw new ExternalConnectorParametersException("Sequence snapshot file requires sequence tracking");
+            }
+            if (this.heartbeatInterval != null && (this.heartbeatInterval.isNegative() || this.heartbeatInterval.isZero())) {
+                throw new ExternalConnectorParametersException("Heartbeat interval must be positive");
+            }
+            if (this.commandTimeout != null && (this.commandTimeout.isNegative() || this.commandTimeout.isZero())) {
+                throw new ExternalConnectorParametersException("Command timeout must be positive");
+            }
+            if (this.heartbeatInterval != null && !this.nodeRegistry) {
+                throw new ExternalConnectorParametersException("Heartbeat requires the node registry");
+            }
+            if (this.fairQueueParameters != null && this.publishRingParameters != null) {
+                throw new ExternalConnectorParametersException("Fair queue and publish ring cannot be both enabled");
+            }
+            if (this.publishWindowParameters != null && this.publishRingParameters != null) {
+                throw new ExternalConnectorParametersException("Publish window and publish ring cannot be both enabled");
+            }
+            if (this.publishWindowParameters != null && this.fairQueueParameters != null) {
+                throw new ExternalConnectorParametersException("Publish window and fair queue cannot be both enabled");
+            }
+            if (this.reportByExceptionParameters != null && this.publishRingParameters != null) {
+                throw new ExternalConnectorParametersException("Report by exception and publish ring cannot be both enabled");
+            }
+            if (this.reportByExceptionParameters != null && this.fairQueueParameters != null) {
+                throw new ExternalConnectorParametersException("Report by exception and fair queue cannot be both enabled");
+            }
+        }
+
+        private static boolean isBlank(String value) {
+            return value == null || value.trim().length() == 0;
         }
     }
 }
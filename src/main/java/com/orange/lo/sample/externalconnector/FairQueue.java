@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.NodeQuotaExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound scheduler sharing the connection fairly between the nodes, with deficit round-robin across one queue per
+ * node: in each round, a node with pending messages is credited a quantum of bytes and publishes its queued messages
+ * while they fit in its credit. A node flooding the client only fills its own queue, up to its quota, and the other
+ * nodes keep their share of the connection.
+ * <p>
+ * The queues are guarded by a single lock, held only to enqueue or to take a batch. A single drainer thread takes the
+ * messages of the successive rounds into a batch, then publishes the batch outside the lock, so that the messages of
+ * a batch are in flight together instead of one at a time. The queue of a node is removed once empty for the idle
+ * timeout.
+ */
+final class FairQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FairQueue.class);
+    private static final Comparator<NodeTraffic> BY_BYTES = Comparator.comparingLong(NodeTraffic::getBytes);
+
+    interface Sink {
+        /**
+         * Publishes a batch of messages on the drainer thread and clears it.
+         *
+         * @return Number of messages of the batch whose publication failed
+         */
+        int publish(PublishBatch batch);
+    }
+
+    private final int quantum;
+    private final int nodeQueueCapacity;
+    private final int topTalkers;
+    private final int batchSize;
+    private final long nodeIdleTimeoutNanos;
+    private final Sink sink;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, NodeQueue> nodes = new HashMap<>();
+    private final ArrayDeque<NodeQueue> activeNodes = new ArrayDeque<>();
+    private int pending;
+    private long rejected;
+    private long lastPruneNanos = System.nanoTime();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running;
+    private Thread drainer;
+
+    FairQueue(FairQueueParameters parameters, Sink sink) {
+        this.quantum = parameters.getQuantum();
+        this.nodeQueueCapacity = parameters.getNodeQueueCapacity();
+        this.topTalkers = parameters.getTopTalkers();
+        this.batchSize = parameters.getBatchSize();
+        this.nodeIdleTimeoutNanos = parameters.getNodeIdleTimeout().toNanos();
+        this.sink = sink;
+    }
+
+    /**
+     * Queues a message of a node.
+     *
+     * @throws NodeQuotaExceededException if the queue of the node is full
+     */
+    void offer(String nodeId, String topic, byte[] payload, int qos) {
+        lock.lock();
+        try {
+            NodeQueue node = nodes.computeIfAbsent(nodeId, NodeQueue::new);
+            if (node.messages.size() >= nodeQueueCapacity) {
+                node.rejected++;
+                rejected++;
+                throw new NodeQuotaExceededException("Queue of node " + nodeId + " is full, message was not sent.");
+            }
+            node.messages.addLast(new QueuedMessage(topic, payload, qos));
+            node.lastOfferNanos = System.nanoTime();
+            node.messageCount++;
+            node.byteCount += payload.length;
+            pending++;
+            if (!node.active) {
+                node.active = true;
+                activeNodes.addLast(node);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    synchronized void start() {
+        if (drainer != null) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drain, "lo-fair-queue");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Publishes the queued messages, without retrying failures, then stops the drainer.
+     *
+     * @param timeoutMillis Maximum duration, 0 to wait until all the queued messages are published
+     * @return Number of messages still queued
+     */
+    synchronized int stop(long timeoutMillis) {
+        if (drainer != null) {
+            running = false;
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                drainer.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drainer = null;
+        }
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    FairQueueStats getStats() {
+        lock.lock();
+        try {
+            PriorityQueue<NodeTraffic> top = new PriorityQueue<>(Math.max(1, topTalkers), BY_BYTES);
+            if (topTalkers > 0) {
+                for (NodeQueue node : nodes.values()) {
+                    if (top.size() < topTalkers) {
+                        top.add(node.getTraffic());
+                    } else if (node.byteCount > top.peek().getBytes()) {
+                        top.poll();
+                        top.add(node.getTraffic());
+                    }
+                }
+            }
+            List<NodeTraffic> topTalkerList = new ArrayList<>(top);
+            topTalkerList.sort(BY_BYTES.reversed());
+            return new FairQueueStats(pending, activeNodes.size(), published.get(), failed.get(), rejected, Collections.unmodifiableList(topTalkerList));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        PublishBatch batch = new PublishBatch(batchSize);
+        try {
+            while (nextBatch(batch)) {
+                int count = batch.size();
+                int failures = publish(batch);
+                published.addAndGet(count - failures);
+                failed.addAndGet(failures);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for an active node, then takes messages by rounds of deficit round-robin until the batch is full or no
+     * node has messages left: each node is credited a quantum and the messages fitting in its credit are taken.
+     *
+     * @return false when stopped with no more queued messages
+     */
+    private boolean nextBatch(PublishBatch batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (activeNodes.isEmpty()) {
+                pruneIdleNodes();
+                if (!running) {
+                    return false;
+                }
+                notEmpty.await(nodeIdleTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            while (!activeNodes.isEmpty() && batch.size() < batchSize) {
+                NodeQueue node = activeNodes.pollFirst();
+                node.deficit += quantum;
+                QueuedMessage message;
+                while (batch.size() < batchSize && (message = node.messages.peekFirst()) != null && message.payload.length <= node.deficit) {
+                    node.deficit -= message.payload.length;
+                    node.messages.pollFirst();
+                    batch.add(message.topic, message.payload, message.qos);
+                    pending--;
+                }
+                if (node.messages.isEmpty()) {
+                    // an idle node does not accumulate credit
+                    node.active = false;
+                    node.deficit = 0;
+                } else {
+                    activeNodes.addLast(node);
+                }
+            }
+            pruneIdleNodes();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the queues of the nodes without messages for the idle timeout, at most once per idle timeout.
+     */
+    private void pruneIdleNodes() {
+        long now = System.nanoTime();
+        if (now - lastPruneNanos < nodeIdleTimeoutNanos) {
+            return;
+        }
+        lastPruneNanos = now;
+        nodes.values().removeIf(node -> !node.active && now - node.lastOfferNanos >= nodeIdleTimeoutNanos);
+    }
+
+    private int publish(PublishBatch batch) {
+        int count = batch.size();
+        try {
+            return sink.publish(batch);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to publish {} message(s) from the fair queue, messages dropped.", count, e);
+            batch.clear();
+            return count;
+        }
+    }
+
+    private static final class QueuedMessage {
+
+        private final String topic;
+        private final byte[] payload;
+        private final int qos;
+
+        QueuedMessage(String topic, byte[] payload, int qos) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+        }
+    }
+
+    private static final class NodeQueue {
+
+        private final String nodeId;
+        private final ArrayDeque<QueuedMessage> messages = new ArrayDeque<>();
+        private boolean active;
+        private long deficit;
+        private long lastOfferNanos;
+        private long messageCount;
+        private long byteCount;
+        private long rejected;
+
+        NodeQueue(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        NodeTraffic getTraffic() {
+            return new NodeTraffic(nodeId, messageCount, byteCount, rejected, messages.size());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import java.time.Duration;
+
+/**
+ * Settings of the fair queue sharing the connection between the nodes.
+ */
+public final class FairQueueParameters {
+
+    public static final int DEFAULT_QUANTUM = 1500;
+    public static final int DEFAULT_NODE_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_TOP_TALKERS = 10;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final Duration DEFAULT_NODE_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    private final int quantum;
+    private final int nodeQueueCapacity;
+    private final int topTalkers;
+    private final int batchSize;
+    private final Duration nodeIdleTimeout;
+
+    private FairQueueParameters(FairQueueParametersBuilder builder) {
+        this.quantum = builder.quantum;
+        this.nodeQueueCapacity = builder.nodeQueueCapacity;
+        this.topTalkers = builder.topTalkers;
+        this.batchSize = builder.batchSize;
+        this.nodeIdleTimeout = builder.nodeIdleTimeout;
+    }
+
+    public static FairQueueParametersBuilder builder() {
+        return new FairQueueParametersBuilder();
+    }
+
+    public int getQuantum() {
+        return quantum;
+    }
+
+    public int getNodeQueueCapacity() {
+        return nodeQueueCapacity;
+    }
+
+    public int getTopTalkers() {
+        return topTalkers;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getNodeIdleTimeout() {
+        return nodeIdleTimeout;
+    }
+
+    public static final class FairQueueParametersBuilder {
+        private int quantum = DEFAULT_QUANTUM;
+        private int nodeQueueCapacity = DEFAULT_NODE_QUEUE_CAPACITY;
+        private int topTalkers = DEFAULT_TOP_TALKERS;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private Duration nodeIdleTimeout = DEFAULT_NODE_IDLE_TIMEOUT;
+
+        /**
+         * Sets the number of payload bytes a node may publish in each round. A node with larger messages is served
+         * in several rounds, so every node gets the same share of bytes whatever the size of its messages.
+         *
+         * @param quantum Number of bytes per round
+         * @return Fair queue parameters builder
+         */
+        public FairQueueParametersBuilder quantum(int quantum) {
+            this.quantum = quantum;
+            return this;
+        }
+
+        /**
+         * Sets the quota of each node: the maximum number of its messages waiting to be published. Beyond it, the
+         * messages of the node are rejected, without delaying the other nodes.
+         *
+         * @param nodeQueueCapacity Number of messages
+         * @return Fair queue parameters builder
+         */
+        public FairQueueParametersBuilder nodeQueueCapacity(int nodeQueueCapacity) {
+            this.nodeQueueCapacity = nodeQueueCapacity;
+            return this;
+        }
+
+        /**
+         * @param topTalkers Number of nodes reported in the statistics, from the largest number of bytes
+         * @return Fair queue parameters builder
+         */
+        public FairQueueParametersBuilder topTalkers(int topTalkers) {
+            this.topTalkers = topTalkers;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of messages taken from the node queues and published together, without waiting for
+         * the acknowledgement of each message before sending the next one.
+         *
+         * @param batchSize Number of messages
+         * @return Fair queue parameters builder
+         */
+        public FairQueueParametersBuilder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets how long the queue of a node is kept once empty. The traffic of a node is reported in the statistics
+         * until its queue is removed.
+         *
+         * @param nodeIdleTimeout Idle timeout
+         * @return Fair queue parameters builder
+         */
+        public FairQueueParametersBuilder nodeIdleTimeout(Duration nodeIdleTimeout) {
+            this.nodeIdleTimeout = nodeIdleTimeout;
+            return this;
+        }
+
+        public FairQueueParameters build() {
+            validate();
+            return new FairQueueParameters(this);
+        }
+
+        private void validate() {
+            if (quantum <= 0) {
+                throw new ExternalConnectorParametersException("Quantum must be positive");
+            }
+            if (nodeQueueCapacity <= 0) {
+                throw new ExternalConnectorParametersException("Node queue capacity must be positive");
+            }
+            if (topTalkers < 0) {
+                throw new ExternalConnectorParametersException("Number of top talkers must not be negative");
+            }
+            if (batchSize <= 0) {
+                throw new ExternalConnectorParametersException("Batch size must be positive");
+            }
+            if (nodeIdleTimeout == null || nodeIdleTimeout.isNegative() || nodeIdleTimeout.isZero()) {
+                throw new ExternalConnectorParametersException("Node idle timeout must be positive");
+            }
+        }
+    }
+}
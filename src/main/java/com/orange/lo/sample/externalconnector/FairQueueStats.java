@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.util.List;
+
+/**
+ * Snapshot of the fair queue of the client.
+ */
+public final class FairQueueStats {
+
+    private final int pending;
+    private final int activeNodes;
+    private final long published;
+    private final long failed;
+    private final long rejected;
+    private final List<NodeTraffic> topTalkers;
+
+    FairQueueStats(int pending, int activeNodes, long published, long failed, long rejected, List<NodeTraffic> topTalkers) {
+        this.pending = pending;
+        this.activeNodes = activeNodes;
+        this.published = published;
+        this.failed = failed;
+        this.rejected = rejected;
+        this.topTalkers = topTalkers;
+    }
+
+    /**
+     * @return Number of messages waiting to be published
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return Number of nodes with messages waiting to be published
+     */
+    public int getActiveNodes() {
+        return activeNodes;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return Number of failed publications, which are not retried
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return Number of messages rejected because the quota of their node was reached
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return Nodes which published the most bytes, from the largest
+     */
+    public List<NodeTraffic> getTopTalkers() {
+        return topTalkers;
+    }
+
+    @Override
+    public String toString() {
+        return "FairQueueStats [pending=" + pending + ", activeNodes=" + activeNodes + ", published=" + published + ", failed=" + failed + ", rejected=" + rejected
+                + ", topTalkers=" + topTalkers + "]";
+    }
+}
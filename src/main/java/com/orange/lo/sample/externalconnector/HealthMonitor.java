@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures the round-trip time to the broker. Every QoS 1 or 2 publication of the client is a sample, since it returns
+ * once acknowledged. When a probe topic is configured, a probe is published if nothing else was measured during the
+ * probe interval, so a stalled connection is detected before the application sends anything. The probe waits for its
+ * acknowledgement, so it is published by the publishing threads of the client, not by its timer thread.
+ */
+final class HealthMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HealthMonitor.class);
+    private static final double DEGRADED_PERCENTILE = 0.9;
+
+    private final HealthMonitorParameters parameters;
+    private final LatencySamples samples;
+    private final long rttThresholdNanos;
+    private final long probeIntervalNanos;
+    private final byte[] probePayload;
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile long lastSampleNanos;
+    private volatile long probeStartNanos;
+    private volatile boolean probeFailed;
+    private ScheduledFuture<?> probeTask;
+
+    HealthMonitor(HealthMonitorParameters parameters) {
+        this.parameters = parameters;
+        this.samples = new LatencySamples(parameters.getSampleWindow());
+        this.rttThresholdNanos = parameters.getRttThreshold().toNanos();
+        this.probeIntervalNanos = parameters.getProbeInterval().toNanos();
+        this.probePayload = parameters.getProbePayload().getBytes(StandardCharsets.UTF_8);
+        this.lastSampleNanos = System.nanoTime();
+    }
+
+    void recordRtt(long rttNanos) {
+        samples.record(rttNanos);
+        lastSampleNanos = System.nanoTime();
+    }
+
+    synchronized void start(Probe probe, ClientScheduler scheduler) {
+        if (parameters.getProbeTopic() == null || probeTask != null) {
+            return;
+        }
+        probeTask = scheduler.scheduleWithFixedDelay(() -> scheduleProbe(probe, scheduler::execute), probeIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Hands a probe over to the publishing executor if nothing was measured during the probe interval and no probe is
+     * in progress. Called by the scheduled task, and by tests.
+     */
+    void scheduleProbe(Probe probe, Executor publishExecutor) {
+        if (System.nanoTime() - lastSampleNanos < probeIntervalNanos || !probing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            publishExecutor.execute(() -> {
+                try {
+                    probeIfIdle(probe);
+                } finally {
+                    probing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probing.set(false);
+            LOGGER.debug("Health probe not published, publishing executor stopped.", e);
+        }
+    }
+
+    synchronized void stop() {
+        if (probeTask != null) {
+            probeTask.cancel(false);
+            probeTask = null;
+        }
+    }
+
+    void probeIfIdle(Probe probe) {
+        long start = System.nanoTime();
+        if (start - lastSampleNanos < probeIntervalNanos) {
+            return;
+        }
+        probeStartNanos = start;
+        try {
+            probe.publish(parameters.getProbeTopic(), probePayload);
+            recordRtt(System.nanoTime() - start);
+            probeFailed = false;
+        } catch (Exception e) {
+            probeFailed = true;
+            LOGGER.warn("Health probe failed.", e);
+        } finally {
+            probeStartNanos = 0;
+        }
+    }
+
+    ConnectionHealth getHealth() {
+        long[] snapshot = samples.sortedSnapshot();
+        long p90 = LatencySamples.percentile(snapshot, DEGRADED_PERCENTILE);
+        long probeStart = probeStartNanos;
+        boolean probeStalled = probeStart != 0 && System.nanoTime() - probeStart > rttThresholdNanos;
+        boolean degraded = probeFailed || probeStalled || p90 > rttThresholdNanos;
+        return new ConnectionHealth(degraded, snapshot.length,
+                Duration.ofNanos(LatencySamples.percentile(snapshot, 0.5)),
+                Duration.ofNanos(p90),
+                Duration.ofNanos(LatencySamples.percentile(snapshot, 0.99)),
+                Duration.ofNanos(snapshot.length > 0 ? snapshot[snapshot.length - 1] : 0));
+    }
+
+    interface Probe {
+        void publish(String topic, byte[] payload) throws Exception;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import java.time.Duration;
+
+public final class HealthMonitorParameters {
+
+    public static final Duration DEFAULT_RTT_THRESHOLD = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_PROBE_INTERVAL = Duration.ofSeconds(10);
+    public static final String DEFAULT_PROBE_PAYLOAD = "{}";
+    public static final int DEFAULT_SAMPLE_WINDOW = 1024;
+
+    private final Duration rttThreshold;
+    private final Duration probeInterval;
+    private final String probeTopic;
+    private final String probePayload;
+    private final int sampleWindow;
+
+    private HealthMonitorParameters(HealthMonitorParametersBuilder builder) {
+        this.rttThreshold = builder.rttThreshold;
+        this.probeInterval = builder.probeInterval;
+        this.probeTopic = builder.probeTopic;
+        this.probePayload = builder.probePayload;
+        this.sampleWindow = builder.sampleWindow;
+    }
+
+    public static HealthMonitorParametersBuilder builder() {
+        return new HealthMonitorParametersBuilder();
+    }
+
+    public Duration getRttThreshold() {
+        return rttThreshold;
+    }
+
+    public Duration getProbeInterval() {
+        return probeInterval;
+    }
+
+    public String getProbeTopic() {
+        return probeTopic;
+    }
+
+    public String getProbePayload() {
+        return probePayload;
+    }
+
+    public int getSampleWindow() {
+        return sampleWindow;
+    }
+
+    public static final class HealthMonitorParametersBuilder {
+        private Duration rttThreshold = DEFAULT_RTT_THRESHOLD;
+        private Duration probeInterval = DEFAULT_PROBE_INTERVAL;
+        private String probeTopic;
+        private String probePayload = DEFAULT_PROBE_PAYLOAD;
+        private int sampleWindow = DEFAULT_SAMPLE_WINDOW;
+
+        /**
+         * Sets the round-trip time above which the connection is considered degraded.
+         *
+         * @param rttThreshold Round-trip time threshold
+         * @return Health monitor parameters builder
+         */
+        public HealthMonitorParametersBuilder rttThreshold(Duration rttThreshold) {
+            this.rttThreshold = rttThreshold;
+            return this;
+        }
+
+        public HealthMonitorParametersBuilder probeInterval(Duration probeInterval) {
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        /**
+         * Sets the topic of probe publications. Probes are sent with QoS 1 when nothing was published during the probe
+         * interval. The topic must be accepted by Live Objects, e.g. the status topic of a node dedicated to monitoring.
+         * When not set, the round-trip time is measured only on the publications of the application.
+         *
+         * @param probeTopic Probe topic
+         * @return Health monitor parameters builder
+         */
+        public HealthMonitorParametersBuilder probeTopic(String probeTopic) {
+            this.probeTopic = probeTopic;
+            return this;
+        }
+
+        public HealthMonitorParametersBuilder probePayload(String probePayload) {
+            this.probePayload = probePayload;
+            return this;
+        }
+
+        /**
+         * Sets the number of most recent round-trip time samples used to compute percentiles.
+         *
+         * @param sampleWindow Number of samples
+         * @return Health monitor parameters builder
+         */
+        public HealthMonitorParametersBuilder sampleWindow(int sampleWindow) {
+            this.sampleWindow = sampleWindow;
+            return this;
+        }
+
+        public HealthMonitorParameters build() {
+            validate();
+            return new HealthMonitorParameters(this);
+        }
+
+        private void validate() {
+            if (rttThreshold == null || rttThreshold.isNegative() || rttThreshold.isZero()) {
+                throw new ExternalConnectorParametersException("RTT threshold must be positive");
+            }
+            if (probeInterval == null || probeInterval.isNegative() || probeInterval.isZero()) {
+                throw new ExternalConnectorParametersException("Probe interval must be positive");
+            }
+            if (sampleWindow < 1) {
+                throw new ExternalConnectorParametersException("Sample window must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-sends the status of the ONLINE nodes of the {@link NodeRegistry} at a fixed interval, so they stay ONLINE in
+ * Live Objects. All the nodes share one {@link TimerWheel} advanced by a single scheduled task, instead of one
+ * scheduled task per node. The first heartbeat of each node is offset by a fraction of the interval derived from its
+ * index, which spreads the heartbeats evenly over the interval, and a node that published anything during the last
+ * interval is postponed rather than announced again.
+ * <p>
+ * The tick task only finds the heartbeats due: they are queued and published by a task handed off to the publishing
+ * executor, since a publication waits for its acknowledgement and the tick task may share its thread with the keep
+ * alive pings of other clients. A single publishing task runs at a time, so the heartbeats of a client are published
+ * one after the other, and a node whose heartbeat is still queued is not queued again.
+ */
+final class HeartbeatScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatScheduler.class);
+    private static final int WHEEL_BUCKETS = 256;
+    private static final long MIN_TICK_MILLIS = 10;
+
+    private final NodeRegistry nodeRegistry;
+    private final long intervalMillis;
+    private final Sender sender;
+    private final Executor publishExecutor;
+    private final TimerWheel wheel;
+    private final Queue<NodeHeartbeat> dueHeartbeats = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private final AtomicLong heartbeatsSent = new AtomicLong();
+    private final AtomicLong heartbeatsCoalesced = new AtomicLong();
+    private volatile NodeHeartbeat[] heartbeats = new NodeHeartbeat[0];
+    private ScheduledFuture<?> tickTask;
+
+    HeartbeatScheduler(NodeRegistry nodeRegistry, long intervalMillis, Sender sender, Executor publishExecutor) {
+        this.nodeRegistry = nodeRegistry;
+        this.intervalMillis = intervalMillis;
+        this.sender = sender;
+        this.publishExecutor = publishExecutor;
+        this.wheel = new TimerWheel(Math.max(MIN_TICK_MILLIS, intervalMillis / WHEEL_BUCKETS), WHEEL_BUCKETS, System.currentTimeMillis());
+    }
+
+    synchronized void start(ClientScheduler scheduler) {
+        if (tickTask == null) {
+            tickTask = scheduler.scheduleWithFixedDelay(() -> advance(System.currentTimeMillis()), wheel.getTickMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void stop() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+        dueHeartbeats.clear();
+    }
+
+    /**
+     * Starts the heartbeats of the node, if not started yet.
+     */
+    void track(int index) {
+        NodeHeartbeat[] current = heartbeats;
+        if (index < current.length && current[index] != null) {
+            return;
+        }
+        trackLocked(index);
+    }
+
+    private synchronized void trackLocked(int index) {
+        NodeHeartbeat[] current = heartbeats;
+        if (index < current.length && current[index] != null) {
+            return;
+        }
+        if (index >= current.length) {
+            current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+        }
+        NodeHeartbeat heartbeat = new NodeHeartbeat(index);
+        current[index] = heartbeat;
+        heartbeats = current;
+        wheel.schedule(heartbeat, System.currentTimeMillis() + offset(index, intervalMillis));
+    }
+
+    /**
+     * Offset of the first heartbeat: the fractional part of index times the golden ratio, which spreads consecutive
+     * indexes evenly over the interval.
+     */
+    static long offset(int index, long intervalMillis) {
+        long fraction = (index * 0x9E3779B97F4A7C15L) >>> 32;
+        return fraction * intervalMillis >>> 32;
+    }
+
+    int getTrackedNodes() {
+        return wheel.size();
+    }
+
+    long getHeartbeatsSent() {
+        return heartbeatsSent.get();
+    }
+
+    long getHeartbeatsCoalesced() {
+        return heartbeatsCoalesced.get();
+    }
+
+    /**
+     * Advances the wheel, then hands the heartbeats due over to the publishing executor. Called by the scheduled task,
+     * and by tests.
+     *
+     * @return Number of expired timeouts
+     */
+    int advance(long nowMillis) {
+        int expired = wheel.advance(nowMillis);
+        schedulePublication();
+        return expired;
+    }
+
+    private void schedulePublication() {
+        if (dueHeartbeats.isEmpty() || !publishing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            publishExecutor.execute(this::publishDueHeartbeats);
+        } catch (RejectedExecutionException e) {
+            publishing.set(false);
+            LOGGER.debug("Heartbeats not published, publishing executor stopped.", e);
+        }
+    }
+
+    private void publishDueHeartbeats() {
+        try {
+            NodeHeartbeat heartbeat;
+            while ((heartbeat = dueHeartbeats.poll()) != null) {
+                heartbeat.due = false;
+                heartbeat.publish();
+            }
+        } finally {
+            publishing.set(false);
+        }
+        // a heartbeat queued after the last poll, while still publishing
+        schedulePublication();
+    }
+
+    private final class NodeHeartbeat extends TimerWheel.Timeout {
+
+        private final int index;
+        private volatile boolean due;
+        private volatile long dueMillis;
+
+        NodeHeartbeat(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void expired(long nowMillis) {
+            long lastPublishMillis = nodeRegistry.getLastPublishMillis(index);
+            if (lastPublishMillis + intervalMillis > nowMillis) {
+                heartbeatsCoalesced.incrementAndGet();
+                wheel.schedule(this, lastPublishMillis + intervalMillis);
+                return;
+            }
+            wheel.schedule(this, nowMillis + intervalMillis);
+            if (nodeRegistry.getStatus(index) == Status.ONLINE && !due) {
+                dueMillis = nowMillis;
+                due = true;
+                dueHeartbeats.add(this);
+            }
+        }
+
+        void publish() {
+            if (nodeRegistry.getStatus(index) != Status.ONLINE) {
+                return;
+            }
+            try {
+                sender.send(nodeRegistry.getNodeId(index), dueMillis);
+                heartbeatsSent.incrementAndGet();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Heartbeat of node {} failed.", nodeRegistry.getNodeId(index), e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Sender {
+        void send(String nodeId, long nowMillis);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor given to the MQTT clients of an {@link ExternalConnectorHost}. Long running network loops are executed on
+ * the I/O pool, whose idle threads are reused by the next connection, and timers (keep alive pings) are scheduled on the
+ * shared timer threads instead of one timer thread per client.
+ * <p>
+ * The lifecycle belongs to the host: shutdown requests from a client are ignored so that one client cannot stop
+ * the threads of the others.
+ */
+final class HostExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService timerExecutor;
+
+    HostExecutorService(ExecutorService ioExecutor, ScheduledExecutorService timerExecutor) {
+        this.ioExecutor = ioExecutor;
+        this.timerExecutor = timerExecutor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        ioExecutor.execute(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return timerExecutor.schedule(command, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return timerExecutor.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return timerExecutor.scheduleAtFixedRate(command, initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return timerExecutor.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        // owned by the host
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return ioExecutor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return ioExecutor.isTerminated() && timerExecutor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return ioExecutor.awaitTermination(timeout, unit)
+                && timerExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+}
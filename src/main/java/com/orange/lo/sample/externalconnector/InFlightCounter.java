@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts operations in progress and lets a thread wait until all of them have completed.
+ * Increments and decrements are lock free, the monitor is used only while somebody waits.
+ */
+final class InFlightCounter {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile int waiters;
+
+    void increment() {
+        count.incrementAndGet();
+    }
+
+    void decrement() {
+        if (count.decrementAndGet() == 0 && waiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    int get() {
+        return count.get();
+    }
+
+    /**
+     * @param deadlineNanos Deadline as a {@link System#nanoTime()} value
+     * @return true if no operation is in progress, false if the deadline passed first
+     */
+    synchronized boolean awaitZero(long deadlineNanos) throws InterruptedException {
+        waiters++;
+        try {
+            long remaining;
+            while (count.get() > 0 && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return count.get() == 0;
+        } finally {
+            waiters--;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.AcknowledgementMode;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events of the client, on a JVM providing the JFR API.
+ * <p>
+ * Publications and commands are recorded when they last longer than the threshold of their event, 10 ms by default,
+ * without stack trace; the thresholds can be changed in the recording settings. Connection state changes and errors
+ * are always recorded, errors with their stack trace.
+ */
+final class JfrClientEvents implements ClientEvents {
+
+    private static final String CATEGORY = "Live Objects";
+
+    @Override
+    public Object beginPublish() {
+        PublishEvent event = new PublishEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPublish(Object event, MessageKind kind, String topic, int payloadSize, int qos, long serializeNanos, String outcome) {
+        if (event == null) {
+            return;
+        }
+        PublishEvent publishEvent = (PublishEvent) event;
+        publishEvent.end();
+        if (publishEvent.shouldCommit()) {
+            publishEvent.kind = kind.name();
+            publishEvent.topic = topic;
+            publishEvent.payloadSize = payloadSize;
+            publishEvent.qos = qos;
+            publishEvent.serializeDuration = serializeNanos;
+            publishEvent.outcome = outcome;
+            publishEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginCommand() {
+        CommandEvent event = new CommandEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endCommand(Object event, String commandId, String nodeId, AcknowledgementMode ackMode, long parseNanos, long handlerNanos,
+                           boolean failed) {
+        if (event == null) {
+            return;
+        }
+        CommandEvent commandEvent = (CommandEvent) event;
+        commandEvent.end();
+        if (commandEvent.shouldCommit()) {
+            commandEvent.commandId = commandId;
+            commandEvent.nodeId = nodeId;
+            commandEvent.ackMode = ackMode != null ? ackMode.name() : null;
+            commandEvent.parseDuration = parseNanos;
+            commandEvent.handlerDuration = handlerNanos;
+            commandEvent.failed = failed;
+            commandEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginConnection() {
+        ConnectionEvent event = new ConnectionEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void connection(Object event, String state, String serverUri, Throwable cause) {
+        ConnectionEvent connectionEvent = event != null ? (ConnectionEvent) event : new ConnectionEvent();
+        if (connectionEvent.shouldCommit()) {
+            connectionEvent.state = state;
+            connectionEvent.serverUri = serverUri;
+            connectionEvent.cause = cause != null ? cause.toString() : null;
+            connectionEvent.commit();
+        }
+    }
+
+    @Override
+    public void error(RuntimeException exception) {
+        ErrorEvent event = new ErrorEvent();
+        if (event.shouldCommit()) {
+            event.exceptionClass = exception.getClass();
+            event.message = exception.getMessage();
+            event.commit();
+        }
+    }
+
+    @Name("com.orange.lo.Publish")
+    @Label("Publish")
+    @Description("Publication of a message, from its serialization to its acknowledgement")
+    @Category(CATEGORY)
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class PublishEvent extends Event {
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Topic")
+        String topic;
+
+        @Label("Payload Size")
+        @DataAmount
+        int payloadSize;
+
+        @Label("QoS")
+        int qos;
+
+        @Label("Serialize Duration")
+        @Timespan
+        long serializeDuration;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("com.orange.lo.Command")
+    @Label("Command")
+    @Description("Handling of a command request, from its parsing to its response")
+    @Category(CATEGORY)
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class CommandEvent extends Event {
+
+        @Label("Command Id")
+        String commandId;
+
+        @Label("Node Id")
+        String nodeId;
+
+        @Label("Ack Mode")
+        String ackMode;
+
+        @Label("Parse Duration")
+        @Timespan
+        long parseDuration;
+
+        @Label("Handler Duration")
+        @Timespan
+        long handlerDuration;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.orange.lo.Connection")
+    @Label("Connection")
+    @Description("Connection state change")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class ConnectionEvent extends Event {
+
+        @Label("State")
+        String state;
+
+        @Label("Server URI")
+        String serverUri;
+
+        @Label("Cause")
+        String cause;
+    }
+
+    @Name("com.orange.lo.Error")
+    @Label("Error")
+    @Description("ParseException or LoMqttException thrown by the client")
+    @Category(CATEGORY)
+    static final class ErrorEvent extends Event {
+
+        @Label("Exception Class")
+        Class<?> exceptionClass;
+
+        @Label("Message")
+        String message;
+    }
+}
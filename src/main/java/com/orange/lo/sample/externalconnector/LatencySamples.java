@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size window of the most recent latency samples, in nanoseconds.
+ * Recording is lock free and allocation free, percentiles are computed on a sorted copy of the window.
+ */
+final class LatencySamples {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+
+    LatencySamples(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.lazySet((int) (index % samples.length()), nanos);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long[] sortedSnapshot() {
+        int size = (int) Math.min(count.get(), samples.length());
+        long[] snapshot = new long[size];
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = samples.get(i);
+        }
+        Arrays.sort(snapshot);
+        return snapshot;
+    }
+
+    static long percentile(long[] sortedSnapshot, double percentile) {
+        if (sortedSnapshot.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedSnapshot.length) - 1;
+        return sortedSnapshot[Math.max(0, index)];
+    }
+}
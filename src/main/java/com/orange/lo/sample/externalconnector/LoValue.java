@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a data message value class. At compile time, the annotation processor of the library generates a
+ * {@link ValueWriter} for the class, which the client uses instead of the reflection based Jackson serializer.
+ * <p>
+ * The generated writer serializes the public getters and public fields, honouring {@code @JsonProperty} names and
+ * {@code @JsonIgnore}. Other Jackson annotations of the class are not supported: do not annotate classes relying
+ * on them. The class must be a top level or static nested class, not private and not generic.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface LoValue {
+}
@@ -0,0 +1,14 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+public enum MessageKind {
+    DATA_MESSAGE,
+    NODE_STATUS,
+    COMMAND_RESPONSE
+}
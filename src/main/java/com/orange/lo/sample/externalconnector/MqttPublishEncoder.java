@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+
+import java.util.List;
+
+/**
+ * Encodes the MQTT 3.1.1 PUBLISH packets into a small header buffer followed by the payload buffer itself, whereas the
+ * Netty MQTT encoder copies the payload into the buffer of the packet. Placed after the MQTT encoder in the pipeline,
+ * so that it handles the publications before it; the other packets are left to the MQTT encoder.
+ */
+@ChannelHandler.Sharable
+final class MqttPublishEncoder extends MessageToMessageEncoder<MqttPublishMessage> {
+
+    static final MqttPublishEncoder INSTANCE = new MqttPublishEncoder();
+
+    private static final int MAX_FIXED_HEADER_SIZE = 5;
+
+    private MqttPublishEncoder() {
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, MqttPublishMessage message, List<Object> out) {
+        MqttFixedHeader fixedHeader = message.fixedHeader();
+        String topic = message.variableHeader().topicName();
+        int topicSize = ByteBufUtil.utf8Bytes(topic);
+        boolean packetIdentified = fixedHeader.qosLevel().value() > 0;
+        int variableHeaderSize = 2 + topicSize + (packetIdentified ? 2 : 0);
+        ByteBuf payload = message.payload();
+
+        ByteBuf header = ctx.alloc().buffer(MAX_FIXED_HEADER_SIZE + variableHeaderSize);
+        header.writeByte(MqttMessageType.PUBLISH.value() << 4
+                | (fixedHeader.isDup() ? 0x08 : 0)
+                | fixedHeader.qosLevel().value() << 1
+                | (fixedHeader.isRetain() ? 0x01 : 0));
+        writeRemainingLength(header, variableHeaderSize + payload.readableBytes());
+        header.writeShort(topicSize);
+        ByteBufUtil.writeUtf8(header, topic);
+        if (packetIdentified) {
+            header.writeShort(message.variableHeader().packetId());
+        }
+        out.add(header);
+        // the message, hence the payload, is released once encoded
+        out.add(payload.retain());
+    }
+
+    private static void writeRemainingLength(ByteBuf buf, int length) {
+        do {
+            int digit = length % 128;
+            length /= 128;
+            buf.writeByte(length > 0 ? digit | 0x80 : digit);
+        } while (length > 0);
+    }
+}
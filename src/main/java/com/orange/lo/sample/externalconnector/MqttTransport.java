@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Connection to the Live Objects broker used by {@link ExternalConnectorClient}.
+ * Implementations adapt a specific MQTT client library and protocol version. The client uses the Paho transports
+ * by default, another implementation is selected with {@link ExternalConnectorParameters.ExternalConnectorParametersBuilder#transportFactory}.
+ * <p>
+ * Implementations must be thread safe: messages are published concurrently by the application threads and by the
+ * command handlers. Publications with QoS 1 or 2 return once acknowledged by the broker, and messages of a subscription
+ * are delivered one at a time, in order, on a thread which may publish.
+ */
+public interface MqttTransport {
+
+    void connect(ExternalConnectorParameters parameters) throws MqttException;
+
+    /**
+     * Connects to the first server URI of the list accepting the connection, trying them in order. When the
+     * connection is lost, automatic reconnection fails over to the other server URIs. By default, only the first
+     * server URI is used.
+     *
+     * @param serverUris Server URIs, by order of preference
+     */
+    default void connect(ExternalConnectorParameters parameters, List<String> serverUris) throws MqttException {
+        connect(parameters);
+    }
+
+    /**
+     * @return URI of the server of the current or last connection, or null if unknown
+     */
+    default String getServerUri() {
+        return null;
+    }
+
+    void disconnect() throws MqttException;
+
+    /**
+     * Disconnects after waiting at most the quiesce timeout for the work in progress to complete.
+     */
+    void disconnect(long quiesceTimeoutMillis) throws MqttException;
+
+    boolean isConnected();
+
+    /**
+     * Publishes a message. The payload is not copied and must not be modified afterwards.
+     */
+    void publish(String topic, byte[] payload, int qos) throws MqttException;
+
+    /**
+     * Publishes a message whose payload is written by the payload writer directly into a buffer of the transport,
+     * instead of being serialized into a byte array first. By default, the payload is written into a buffer reused by
+     * the calling thread, then copied once into the byte array published.
+     *
+     * @throws IOException if the payload writer failed, the message is not published then
+     */
+    default void publish(String topic, PayloadWriter payloadWriter, int qos) throws MqttException, IOException {
+        publish(topic, PayloadBuffer.write(payloadWriter), qos);
+    }
+
+    /**
+     * Publishes a batch of messages and returns once all of them are acknowledged. Transports able to pipeline
+     * publications should send the whole batch before waiting for the acknowledgements; by default, the messages are
+     * published one at a time. When a publication fails, the others of the batch may have been delivered.
+     *
+     * @param count Number of messages, at the beginning of the arrays
+     * @throws MqttException the first failure of the batch
+     */
+    default void publishBatch(String[] topics, byte[][] payloads, int[] qos, int count) throws MqttException {
+        for (int i = 0; i < count; i++) {
+            publish(topics[i], payloads[i], qos[i]);
+        }
+    }
+
+    void subscribe(String topicFilter, int qos, MessageListener messageListener) throws MqttException;
+
+    /**
+     * Subscribes a topic filter whose messages are acknowledged by the listener, once it has processed them, instead
+     * of when it returns. While messages are not acknowledged, the broker stops sending new ones once its in-flight
+     * window is full. By default, messages are acknowledged when the listener returns.
+     */
+    default void subscribeWithManualAcks(String topicFilter, int qos, AcknowledgingMessageListener messageListener) throws MqttException {
+        subscribe(topicFilter, qos, (topic, payload) -> messageListener.messageArrived(topic, payload, () -> {
+        }));
+    }
+
+    void unsubscribe(String topicFilter) throws MqttException;
+
+    /**
+     * Sets the listener notified when the connection is lost or established, including automatic reconnections.
+     * Transports which cannot report these events may ignore the listener.
+     */
+    default void setConnectionListener(ConnectionListener connectionListener) {
+    }
+
+    interface PayloadWriter {
+        /**
+         * Writes the payload. The output stream must not be used after the method returns.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    interface MessageListener {
+        void messageArrived(String topic, byte[] payload) throws Exception;
+    }
+
+    interface AcknowledgingMessageListener {
+        /**
+         * @param acknowledgement Acknowledges the message, may be called from any thread
+         */
+        void messageArrived(String topic, byte[] payload, Acknowledgement acknowledgement) throws Exception;
+    }
+
+    interface Acknowledgement {
+        /**
+         * Acknowledges the message to the broker. Messages are acknowledged in any order; a message not acknowledged
+         * before the connection is lost is delivered again.
+         */
+        void acknowledge();
+    }
+
+    interface ConnectionListener {
+
+        /**
+         * @param reconnect true if the connection was established again by the automatic reconnection
+         */
+        void connected(boolean reconnect);
+
+        void connectionLost(Throwable cause);
+    }
+}
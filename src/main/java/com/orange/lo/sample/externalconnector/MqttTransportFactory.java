@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+/**
+ * Creates the {@link MqttTransport} of a client, see {@link NettyMqttTransportFactory}.
+ */
+@FunctionalInterface
+public interface MqttTransportFactory {
+
+    /**
+     * @param parameters Parameters of the client, the transport is not connected yet
+     * @return New transport
+     * @throws MqttException if the transport cannot be created
+     */
+    MqttTransport create(ExternalConnectorParameters parameters) throws MqttException;
+}
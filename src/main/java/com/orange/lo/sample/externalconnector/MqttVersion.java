@@ -0,0 +1,13 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+public enum MqttVersion {
+    MQTT_3_1_1,
+    MQTT_5
+}
@@ -0,0 +1,878 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttSubAckMessage;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MQTT 3.1.1 transport running on a Netty event loop. The socket is non-blocking, so many transports share the few
+ * threads of the event loop group, and the frames are encoded into pooled direct buffers. Payloads are written to the
+ * socket without copy, after their own header, and payload writers write straight into a pooled direct buffer. The
+ * flushes of concurrent publications are coalesced into fewer socket writes.
+ * <p>
+ * Publications with QoS 1 or 2 block the calling thread until acknowledged, like the Paho client. Publications of any
+ * QoS wait while the outbound buffer of the channel is above its high water mark, so that a fast producer cannot
+ * buffer an unbounded amount of QoS 0 messages. Received messages are delivered in order on the callback executor and
+ * acknowledged once the listener returns; if the listener throws, the message is not acknowledged and the connection
+ * is closed. The session is clean, so the broker does not deliver the message again.
+ * <p>
+ * With several server URIs, the connection fails over to the next one as soon as it is lost, and to each of them in
+ * turn before backing off. With automatic reconnect, the publications in flight when the connection is lost are kept
+ * and sent again, with the DUP flag, once reconnected: their calling threads keep waiting for the acknowledgement.
+ */
+final class NettyMqttTransport implements MqttTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NettyMqttTransport.class);
+
+    static final int KEEP_ALIVE_SECONDS = 60;
+    static final int CONNECTION_TIMEOUT_SECONDS = 30;
+    static final long DEFAULT_QUIESCE_TIMEOUT_MILLIS = 30000;
+    private static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+    private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+    private static final int MAX_PACKET_ID = 65535;
+    private static final long WRITABILITY_CHECK_MILLIS = 100;
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 128000;
+    private static final int SUBSCRIPTION_FAILURE = 0x80;
+
+    private final Bootstrap bootstrap;
+    private final Executor callbackExecutor;
+    private final String clientId = UUID.randomUUID().toString();
+    private final Map<Integer, CompletableFuture<MqttMessage>> pendingAcks = new ConcurrentHashMap<>();
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final Map<Integer, InFlightPublication> inFlightPublications = new ConcurrentHashMap<>();
+    private final AtomicInteger lastPacketId = new AtomicInteger();
+    private final Object writability = new Object();
+    private volatile ExternalConnectorParameters parameters;
+    private volatile List<Endpoint> endpoints;
+    private volatile int endpointIndex;
+    private volatile int reconnectAttempts;
+    private volatile Channel channel;
+    private volatile boolean connected;
+    private volatile boolean disconnecting;
+    private volatile long reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+    private volatile ConnectionListener connectionListener;
+    private final NettySslContexts sslContexts;
+
+    NettyMqttTransport(Bootstrap bootstrap, Executor callbackExecutor, NettySslContexts sslContexts) {
+        this.bootstrap = bootstrap;
+        this.sslContexts = sslContexts;
+        this.callbackExecutor = new SerialExecutor(callbackExecutor);
+    }
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters) throws MqttException {
+        connect(parameters, parameters.getServerUris());
+    }
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters, List<String> serverUris) throws MqttException {
+        if (connected) {
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_CONNECTED);
+        }
+        List<Endpoint> parsed = new ArrayList<>(serverUris.size());
+        for (String serverUri : serverUris) {
+            parsed.add(Endpoint.parse(serverUri));
+        }
+        this.parameters = parameters;
+        this.endpoints = parsed;
+        this.disconnecting = false;
+        MqttException failure = null;
+        for (int i = 0; i < parsed.size(); i++) {
+            endpointIndex = i;
+            try {
+                awaitConnAck(open(parsed.get(i)));
+                notifyConnected(false);
+                return;
+            } catch (MqttException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                LOGGER.debug("Connection to {} failed.", parsed.get(i).uri, e);
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    @Override
+    public String getServerUri() {
+        List<Endpoint> current = endpoints;
+        return current != null ? current.get(endpointIndex).uri : null;
+    }
+
+    private void awaitConnAck(CompletableFuture<Void> connAck) throws MqttException {
+        try {
+            connAck.get(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            closeChannel();
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_TIMEOUT);
+        } catch (ExecutionException e) {
+            closeChannel();
+            throw toMqttException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeChannel();
+            throw new MqttException(e);
+        }
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        disconnect(DEFAULT_QUIESCE_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public void disconnect(long quiesceTimeoutMillis) throws MqttException {
+        disconnecting = true;
+        Channel ch = channel;
+        if (ch == null || !ch.isActive()) {
+            failPending(new MqttException(MqttException.REASON_CODE_CLIENT_DISCONNECTING), false);
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_ALREADY_DISCONNECTED);
+        }
+        try {
+            CompletableFuture.allOf(pendingAcks.values().toArray(new CompletableFuture<?>[0]))
+                    .get(quiesceTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.debug("Disconnecting with unacknowledged messages.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connected = false;
+        ch.writeAndFlush(MqttMessage.DISCONNECT);
+        closeChannel();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, int qos) throws MqttException {
+        publish(connectedChannel(), topic, Unpooled.wrappedBuffer(payload), MqttQoS.valueOf(qos));
+    }
+
+    /**
+     * Writes the payload into a pooled direct buffer of the channel, which is written to the socket without any copy
+     * and returns to the pool once the publication is written, for QoS 0, or acknowledged.
+     */
+    @Override
+    public void publish(String topic, PayloadWriter payloadWriter, int qos) throws MqttException, IOException {
+        Channel ch = connectedChannel();
+        ByteBuf payload = ch.alloc().directBuffer();
+        try {
+            payloadWriter.writeTo(new ByteBufOutputStream(payload));
+        } catch (IOException | RuntimeException e) {
+            payload.release();
+            throw e;
+        }
+        publish(ch, topic, payload, MqttQoS.valueOf(qos));
+    }
+
+    /**
+     * @param payload Payload whose reference is released by the transport
+     */
+    private void publish(Channel ch, String topic, ByteBuf payload, MqttQoS qos) throws MqttException {
+        try {
+            awaitWritable(ch);
+        } catch (MqttException e) {
+            payload.release();
+            throw e;
+        }
+        if (qos == MqttQoS.AT_MOST_ONCE) {
+            ch.writeAndFlush(publishMessage(topic, payload, qos, 0), ch.voidPromise());
+            return;
+        }
+        CompletableFuture<MqttMessage> ack = new CompletableFuture<>();
+        int packetId;
+        try {
+            packetId = registerAck(ack);
+        } catch (MqttException e) {
+            payload.release();
+            throw e;
+        }
+        InFlightPublication publication = new InFlightPublication(topic, payload, qos);
+        inFlightPublications.put(packetId, publication);
+        write(ch, publication.publishMessage(packetId, false), packetId, ack);
+        await(ack);
+    }
+
+    /**
+     * Writes the whole batch and flushes it once, then waits for the acknowledgements.
+     */
+    @Override
+    public void publishBatch(String[] topics, byte[][] payloads, int[] qos, int count) throws MqttException {
+        Channel ch = connectedChannel();
+        List<CompletableFuture<MqttMessage>> acks = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                if (!ch.isWritable()) {
+                    ch.flush();
+                    awaitWritable(ch);
+                }
+                MqttQoS mqttQoS = MqttQoS.valueOf(qos[i]);
+                if (mqttQoS == MqttQoS.AT_MOST_ONCE) {
+                    ch.write(publishMessage(topics[i], Unpooled.wrappedBuffer(payloads[i]), mqttQoS, 0), ch.voidPromise());
+                    continue;
+                }
+                CompletableFuture<MqttMessage> ack = new CompletableFuture<>();
+                int packetId = registerAck(ack);
+                InFlightPublication publication = new InFlightPublication(topics[i], Unpooled.wrappedBuffer(payloads[i]), mqttQoS);
+                inFlightPublications.put(packetId, publication);
+                ch.write(publication.publishMessage(packetId, false)).addListener(writeFailureListener(packetId, ack));
+                acks.add(ack);
+            }
+        } finally {
+            ch.flush();
+        }
+        MqttException failure = null;
+        for (CompletableFuture<MqttMessage> ack : acks) {
+            try {
+                await(ack);
+            } catch (MqttException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos, MessageListener messageListener) throws MqttException {
+        subscribeWithManualAcks(topicFilter, qos, (topic, payload, acknowledgement) -> {
+            messageListener.messageArrived(topic, payload);
+            acknowledgement.acknowledge();
+        });
+    }
+
+    @Override
+    public void subscribeWithManualAcks(String topicFilter, int qos, AcknowledgingMessageListener messageListener) throws MqttException {
+        Channel ch = connectedChannel();
+        subscriptions.put(topicFilter, new Subscription(MqttQoS.valueOf(qos), messageListener));
+        MqttSubAckMessage subAck = (MqttSubAckMessage) await(sendSubscribe(ch, topicFilter, MqttQoS.valueOf(qos)));
+        if (subAck.payload().grantedQoSLevels().get(0) == SUBSCRIPTION_FAILURE) {
+            subscriptions.remove(topicFilter);
+            throw new MqttException(MqttException.REASON_CODE_SUBSCRIBE_FAILED);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) throws MqttException {
+        Channel ch = connectedChannel();
+        subscriptions.remove(topicFilter);
+        CompletableFuture<MqttMessage> ack = new CompletableFuture<>();
+        int packetId = registerAck(ack);
+        write(ch, MqttMessageBuilders.unsubscribe().messageId(packetId).addTopicFilter(topicFilter).build(), packetId, ack);
+        await(ack);
+    }
+
+    @Override
+    public void setConnectionListener(ConnectionListener connectionListener) {
+        this.connectionListener = connectionListener;
+    }
+
+    private void notifyConnected(boolean reconnect) {
+        ConnectionListener listener = connectionListener;
+        if (listener != null) {
+            listener.connected(reconnect);
+        }
+    }
+
+    private CompletableFuture<Void> open(Endpoint endpoint) {
+        CompletableFuture<Void> connAck = new CompletableFuture<>();
+        SslContext sslContext;
+        try {
+            sslContext = endpoint.ssl ? sslContexts.get(parameters.getTlsParameters()) : null;
+        } catch (SSLException e) {
+            connAck.completeExceptionally(new MqttException(MqttException.REASON_CODE_SSL_CONFIG_ERROR, e));
+            return connAck;
+        }
+        Bootstrap connectionBootstrap = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ChannelPipeline pipeline = ch.pipeline();
+                if (sslContext != null) {
+                    pipeline.addLast(sslContext.newHandler(ch.alloc(), endpoint.host, endpoint.port));
+                }
+                pipeline.addLast(new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+                pipeline.addLast(new MqttDecoder(MAX_MESSAGE_SIZE));
+                pipeline.addLast(MqttEncoder.INSTANCE);
+                pipeline.addLast(MqttPublishEncoder.INSTANCE);
+                pipeline.addLast(new IdleStateHandler(KEEP_ALIVE_SECONDS * 3 / 2, KEEP_ALIVE_SECONDS, 0));
+                pipeline.addLast(new ConnectionHandler(connAck));
+            }
+        });
+        connectionBootstrap.connect(endpoint.host, endpoint.port).addListener((ChannelFuture future) -> {
+            if (!future.isSuccess()) {
+                connAck.completeExceptionally(new MqttException(MqttException.REASON_CODE_SERVER_CONNECT_ERROR, future.cause()));
+                return;
+            }
+            channel = future.channel();
+            future.channel().writeAndFlush(connectMessage());
+        });
+        return connAck;
+    }
+
+    private MqttMessage connectMessage() {
+        return MqttMessageBuilders.connect()
+                .protocolVersion(io.netty.handler.codec.mqtt.MqttVersion.MQTT_3_1_1)
+                .clientId(clientId)
+                .cleanSession(true)
+                .keepAlive(KEEP_ALIVE_SECONDS)
+                .hasUser(true)
+                .username(parameters.getUser())
+                .hasPassword(true)
+                .password(parameters.getApiKey().getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static MqttPublishMessage publishMessage(String topic, ByteBuf payload, MqttQoS qos, int packetId) {
+        return MqttMessageBuilders.publish()
+                .topicName(topic)
+                .qos(qos)
+                .messageId(packetId)
+                .payload(payload)
+                .build();
+    }
+
+    private CompletableFuture<MqttMessage> sendSubscribe(Channel ch, String topicFilter, MqttQoS qos) throws MqttException {
+        CompletableFuture<MqttMessage> ack = new CompletableFuture<>();
+        int packetId = registerAck(ack);
+        write(ch, MqttMessageBuilders.subscribe().messageId(packetId).addSubscription(qos, topicFilter).build(), packetId, ack);
+        return ack;
+    }
+
+    private void write(Channel ch, MqttMessage message, int packetId, CompletableFuture<MqttMessage> ack) {
+        ch.writeAndFlush(message).addListener(writeFailureListener(packetId, ack));
+    }
+
+    private GenericFutureListener<Future<? super Void>> writeFailureListener(int packetId, CompletableFuture<MqttMessage> ack) {
+        return future -> {
+            if (future.isSuccess()) {
+                return;
+            }
+            InFlightPublication publication = inFlightPublications.get(packetId);
+            if (publication != null && isRetainingPublications()) {
+                // sent again once reconnected, or right now if the reconnection completed before the failure
+                Channel current = channel;
+                MqttMessage retransmission;
+                if (connected && current != ((ChannelFuture) future).channel() && (retransmission = publication.retransmission(packetId)) != null) {
+                    current.writeAndFlush(retransmission).addListener(writeFailureListener(packetId, ack));
+                }
+                return;
+            }
+            if (pendingAcks.remove(packetId, ack)) {
+                removeInFlightPublication(packetId);
+                ack.completeExceptionally(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST, future.cause()));
+            }
+        };
+    }
+
+    private boolean isRetainingPublications() {
+        return parameters.isAutomaticReconnect() && !disconnecting;
+    }
+
+    /**
+     * Fails the operations waiting for an acknowledgement, except the publications in flight when they are retained.
+     */
+    private void failPending(MqttException exception, boolean retainPublications) {
+        for (Map.Entry<Integer, CompletableFuture<MqttMessage>> entry : pendingAcks.entrySet()) {
+            int packetId = entry.getKey();
+            if (retainPublications && inFlightPublications.containsKey(packetId)) {
+                continue;
+            }
+            if (pendingAcks.remove(packetId, entry.getValue())) {
+                removeInFlightPublication(packetId);
+                entry.getValue().completeExceptionally(exception);
+            }
+        }
+    }
+
+    private void resendInFlightPublications(Channel ch) {
+        if (inFlightPublications.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Sending {} publication(s) in flight again.", inFlightPublications.size());
+        inFlightPublications.forEach((packetId, publication) -> {
+            CompletableFuture<MqttMessage> ack = pendingAcks.get(packetId);
+            MqttMessage retransmission;
+            if (ack != null && (retransmission = publication.retransmission(packetId)) != null) {
+                ch.write(retransmission).addListener(writeFailureListener(packetId, ack));
+            }
+        });
+        ch.flush();
+    }
+
+    private void removeInFlightPublication(int packetId) {
+        InFlightPublication publication = inFlightPublications.remove(packetId);
+        if (publication != null) {
+            publication.release();
+        }
+    }
+
+    private int registerAck(CompletableFuture<MqttMessage> ack) throws MqttException {
+        for (int attempt = 0; attempt < MAX_PACKET_ID; attempt++) {
+            int packetId = packetId(lastPacketId.incrementAndGet());
+            if (pendingAcks.putIfAbsent(packetId, ack) == null) {
+                return packetId;
+            }
+        }
+        throw new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT);
+    }
+
+    /**
+     * @return Packet id between 1 and 65535, also once the counter overflowed
+     */
+    static int packetId(int counter) {
+        return Math.floorMod(counter, MAX_PACKET_ID) + 1;
+    }
+
+    /**
+     * Waits until the outbound buffer of the channel drains below its low water mark. Never waits on the event loop,
+     * which is the one draining the buffer.
+     */
+    private void awaitWritable(Channel ch) throws MqttException {
+        if (ch.isWritable() || ch.eventLoop().inEventLoop()) {
+            return;
+        }
+        synchronized (writability) {
+            while (!ch.isWritable() && ch.isActive()) {
+                try {
+                    writability.wait(WRITABILITY_CHECK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MqttException(e);
+                }
+            }
+        }
+        if (!ch.isActive()) {
+            throw new MqttException(MqttException.REASON_CODE_CONNECTION_LOST);
+        }
+    }
+
+    private void writabilityChanged() {
+        synchronized (writability) {
+            writability.notifyAll();
+        }
+    }
+
+    private Channel connectedChannel() throws MqttException {
+        Channel ch = channel;
+        if (!connected || ch == null) {
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+        }
+        return ch;
+    }
+
+    private static MqttMessage await(CompletableFuture<MqttMessage> ack) throws MqttException {
+        try {
+            return ack.get();
+        } catch (ExecutionException e) {
+            throw toMqttException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MqttException(e);
+        }
+    }
+
+    private static MqttException toMqttException(Throwable throwable) {
+        return throwable instanceof MqttException ? (MqttException) throwable : new MqttException(throwable);
+    }
+
+    private void closeChannel() {
+        Channel ch = channel;
+        if (ch != null) {
+            ch.close().syncUninterruptibly();
+        }
+    }
+
+    private void connectionLost(Throwable cause) {
+        boolean wasConnected = connected;
+        connected = false;
+        failPending(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST, cause), isRetainingPublications());
+        if (wasConnected && !disconnecting) {
+            LOGGER.warn("Connection to {} lost.", getServerUri(), cause);
+            ConnectionListener listener = connectionListener;
+            if (listener != null) {
+                listener.connectionLost(cause);
+            }
+            if (parameters.isAutomaticReconnect()) {
+                reconnectAttempts = 0;
+                if (endpoints.size() > 1) {
+                    nextEndpoint();
+                    bootstrap.config().group().execute(this::reconnect);
+                } else {
+                    scheduleReconnect();
+                }
+            }
+        }
+    }
+
+    private void nextEndpoint() {
+        endpointIndex = (endpointIndex + 1) % endpoints.size();
+    }
+
+    private void scheduleReconnect() {
+        long delay = reconnectDelayMillis;
+        reconnectDelayMillis = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+        bootstrap.config().group().schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reconnects to the current endpoint. After a failure, the next endpoint is tried right away, and the delay
+     * between attempts backs off once each endpoint has failed.
+     */
+    private void reconnect() {
+        if (disconnecting) {
+            return;
+        }
+        Endpoint endpoint = endpoints.get(endpointIndex);
+        open(endpoint).whenComplete((ignored, e) -> {
+            if (e != null) {
+                LOGGER.debug("Reconnection to {} failed.", endpoint.uri, e);
+                Channel ch = channel;
+                if (ch != null) {
+                    ch.close();
+                }
+                nextEndpoint();
+                if (++reconnectAttempts % endpoints.size() != 0) {
+                    bootstrap.config().group().execute(this::reconnect);
+                } else {
+                    scheduleReconnect();
+                }
+                return;
+            }
+            LOGGER.info("Reconnected to {}.", endpoint.uri);
+            reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+            reconnectAttempts = 0;
+            resendInFlightPublications(channel);
+            subscriptions.forEach((topicFilter, subscription) -> {
+                try {
+                    sendSubscribe(channel, topicFilter, subscription.qos);
+                } catch (MqttException ex) {
+                    LOGGER.error("Unable to subscribe {} again.", topicFilter, ex);
+                }
+            });
+            notifyConnected(true);
+        });
+    }
+
+    private void deliver(Channel ch, String topic, byte[] payload, MqttQoS qos, int packetId) {
+        Subscription subscription = findSubscription(topic);
+        try {
+            if (subscription != null) {
+                subscription.listener.messageArrived(topic, payload, acknowledgement(ch, qos, packetId));
+            } else {
+                acknowledgement(ch, qos, packetId).acknowledge();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Message listener failed, closing the connection without acknowledging the message.", e);
+            ch.close();
+        }
+    }
+
+    private static Acknowledgement acknowledgement(Channel ch, MqttQoS qos, int packetId) {
+        if (qos == MqttQoS.AT_LEAST_ONCE) {
+            return () -> ch.writeAndFlush(MqttMessageBuilders.pubAck().packetId(packetId).build(), ch.voidPromise());
+        } else if (qos == MqttQoS.EXACTLY_ONCE) {
+            return () -> ch.writeAndFlush(acknowledgement(MqttMessageType.PUBREC, packetId), ch.voidPromise());
+        }
+        return () -> {
+        };
+    }
+
+    private Subscription findSubscription(String topic) {
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            if (matches(entry.getKey(), topic)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static MqttMessage acknowledgement(MqttMessageType type, int packetId) {
+        MqttQoS qos = type == MqttMessageType.PUBREL ? MqttQoS.AT_LEAST_ONCE : MqttQoS.AT_MOST_ONCE;
+        return new MqttMessage(new MqttFixedHeader(type, false, qos, false, 0), MqttMessageIdVariableHeader.from(packetId));
+    }
+
+    /**
+     * Matches a topic against an MQTT topic filter with the '+' and '#' wildcards.
+     */
+    static boolean matches(String topicFilter, String topic) {
+        int f = 0;
+        int t = 0;
+        while (f < topicFilter.length()) {
+            char c = topicFilter.charAt(f);
+            if (c == '#') {
+                return true;
+            }
+            if (c == '+') {
+                while (t < topic.length() && topic.charAt(t) != '/') {
+                    t++;
+                }
+                f++;
+            } else {
+                if (t >= topic.length() || topic.charAt(t) != c) {
+                    // "a/#" also matches its parent level "a"
+                    return t == topic.length() && topicFilter.startsWith("/#", f);
+                }
+                f++;
+                t++;
+            }
+        }
+        return t == topic.length();
+    }
+
+    private final class ConnectionHandler extends SimpleChannelInboundHandler<MqttMessage> {
+
+        private final CompletableFuture<Void> connAck;
+
+        ConnectionHandler(CompletableFuture<Void> connAck) {
+            this.connAck = connAck;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, MqttMessage message) {
+            if (message.decoderResult().isFailure()) {
+                ctx.close();
+                return;
+            }
+            switch (message.fixedHeader().messageType()) {
+                case CONNACK:
+                    onConnAck((MqttConnAckMessage) message);
+                    break;
+                case PUBLISH:
+                    onPublish(ctx.channel(), (MqttPublishMessage) message);
+                    break;
+                case PUBREC:
+                    InFlightPublication publication = inFlightPublications.get(packetId(message));
+                    if (publication != null) {
+                        publication.received = true;
+                    }
+                    ctx.writeAndFlush(acknowledgement(MqttMessageType.PUBREL, packetId(message)), ctx.voidPromise());
+                    break;
+                case PUBREL:
+                    ctx.writeAndFlush(acknowledgement(MqttMessageType.PUBCOMP, packetId(message)), ctx.voidPromise());
+                    break;
+                case PUBACK:
+                case PUBCOMP:
+                case SUBACK:
+                case UNSUBACK:
+                    removeInFlightPublication(packetId(message));
+                    CompletableFuture<MqttMessage> ack = pendingAcks.remove(packetId(message));
+                    if (ack != null) {
+                        ack.complete(message);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void onConnAck(MqttConnAckMessage message) {
+            MqttConnectReturnCode returnCode = message.variableHeader().connectReturnCode();
+            if (returnCode == MqttConnectReturnCode.CONNECTION_ACCEPTED) {
+                connected = true;
+                connAck.complete(null);
+            } else {
+                connAck.completeExceptionally(new MqttException(returnCode.byteValue()));
+            }
+        }
+
+        private void onPublish(Channel ch, MqttPublishMessage message) {
+            String topic = message.variableHeader().topicName();
+            int packetId = message.variableHeader().packetId();
+            MqttQoS qos = message.fixedHeader().qosLevel();
+            ByteBuf content = message.content();
+            byte[] payload = ByteBufUtil.getBytes(content, content.readerIndex(), content.readableBytes(), false);
+            callbackExecutor.execute(() -> deliver(ch, topic, payload, qos, packetId));
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object event) throws Exception {
+            if (event instanceof IdleStateEvent) {
+                if (((IdleStateEvent) event).state() == IdleState.READER_IDLE) {
+                    LOGGER.warn("No response from the broker within the keep alive interval.");
+                    ctx.close();
+                } else {
+                    ctx.writeAndFlush(MqttMessage.PINGREQ, ctx.voidPromise());
+                }
+                return;
+            }
+            super.userEventTriggered(ctx, event);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            LOGGER.debug("Connection error.", cause);
+            connAck.completeExceptionally(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST, cause));
+            ctx.close();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            writabilityChanged();
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            writabilityChanged();
+            connAck.completeExceptionally(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+            if (channel == ctx.channel()) {
+                connectionLost(null);
+            }
+        }
+
+        private int packetId(MqttMessage message) {
+            return ((MqttMessageIdVariableHeader) message.variableHeader()).messageId();
+        }
+    }
+
+    private static final class Subscription {
+
+        private final MqttQoS qos;
+        private final AcknowledgingMessageListener listener;
+
+        Subscription(MqttQoS qos, AcknowledgingMessageListener listener) {
+            this.qos = qos;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Publication waiting for its acknowledgement, kept to be sent again after a reconnection. It holds a reference to
+     * the payload, released once the publication is acknowledged or failed, and each write of the publication holds its
+     * own reference.
+     */
+    private static final class InFlightPublication {
+
+        private final String topic;
+        private final ByteBuf payload;
+        private final MqttQoS qos;
+        private volatile boolean received;
+        private boolean released;
+
+        InFlightPublication(String topic, ByteBuf payload, MqttQoS qos) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+        }
+
+        synchronized MqttMessage publishMessage(int packetId, boolean dup) {
+            return new MqttPublishMessage(new MqttFixedHeader(MqttMessageType.PUBLISH, dup, qos, false, 0),
+                    new MqttPublishVariableHeader(topic, packetId), payload.retainedDuplicate());
+        }
+
+        /**
+         * @return The publication with the DUP flag, the PUBREL if the broker already received a QoS 2 publication,
+         * or null if the publication completed meanwhile
+         */
+        synchronized MqttMessage retransmission(int packetId) {
+            if (released) {
+                return null;
+            }
+            return received ? acknowledgement(MqttMessageType.PUBREL, packetId) : publishMessage(packetId, true);
+        }
+
+        synchronized void release() {
+            if (!released) {
+                released = true;
+                payload.release();
+            }
+        }
+    }
+
+    private static final class Endpoint {
+
+        private static final int DEFAULT_PORT = 1883;
+        private static final int DEFAULT_SSL_PORT = 8883;
+
+        private final String uri;
+        private final String host;
+        private final int port;
+        private final boolean ssl;
+
+        private Endpoint(String uri, String host, int port, boolean ssl) {
+            this.uri = uri;
+            this.host = host;
+            this.port = port;
+            this.ssl = ssl;
+        }
+
+        static Endpoint parse(String serverUri) throws MqttException {
+            URI uri;
+            try {
+                uri = URI.create(serverUri);
+            } catch (IllegalArgumentException e) {
+                throw new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION, e);
+            }
+            boolean ssl = "ssl".equals(uri.getScheme());
+            if (!ssl && !"tcp".equals(uri.getScheme()) || uri.getHost() == null) {
+                throw new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION,
+                        new IllegalArgumentException("Unsupported server URI " + serverUri + ", expected tcp://host:port or ssl://host:port"));
+            }
+            int defaultPort = ssl ? DEFAULT_SSL_PORT : DEFAULT_PORT;
+            return new Endpoint(serverUri, uri.getHost(), uri.getPort() != -1 ? uri.getPort() : defaultPort, ssl);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates MQTT 3.1.1 transports running on a Netty event loop group, with native epoll on Linux when available.
+ * All the transports created by a factory share its event loop and callback threads, and its TLS contexts, so one
+ * factory should be used for all the clients of the application:
+ * <pre>
+ * NettyMqttTransportFactory transportFactory = new NettyMqttTransportFactory();
+ * ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+ *         ...
+ *         .transportFactory(transportFactory)
+ *         .build();
+ * </pre>
+ * The Netty dependencies are optional and must be added to the application. The MQTT version of the parameters
+ * is ignored.
+ */
+public final class NettyMqttTransportFactory implements MqttTransportFactory, AutoCloseable {
+
+    private final EventLoopGroup eventLoopGroup;
+    private final ExecutorService ownedCallbackExecutor;
+    private final Executor callbackExecutor;
+    private final Bootstrap bootstrap;
+    private final NettySslContexts sslContexts = new NettySslContexts();
+    private final boolean ownsEventLoopGroup;
+
+    /**
+     * Creates a factory with its own event loop group of twice the number of processors threads.
+     */
+    public NettyMqttTransportFactory() {
+        this(0);
+    }
+
+    /**
+     * Creates a factory with its own event loop group.
+     *
+     * @param ioThreads Number of event loop threads, 0 for twice the number of processors
+     */
+    public NettyMqttTransportFactory(int ioThreads) {
+        this(newEventLoopGroup(ioThreads), null, true);
+    }
+
+    /**
+     * Creates a factory running the transports on an event loop group of the application, e.g. the one of its server.
+     * The group is not shut down when the factory is closed.
+     *
+     * @param eventLoopGroup   Epoll or NIO event loop group
+     * @param callbackExecutor Executor delivering the received messages, which must not run on the event loop
+     *                         since message handlers publish and wait for acknowledgements
+     */
+    public NettyMqttTransportFactory(EventLoopGroup eventLoopGroup, Executor callbackExecutor) {
+        this(eventLoopGroup, callbackExecutor, false);
+    }
+
+    private NettyMqttTransportFactory(EventLoopGroup eventLoopGroup, Executor callbackExecutor, boolean ownsEventLoopGroup) {
+        this.eventLoopGroup = eventLoopGroup;
+        this.ownsEventLoopGroup = ownsEventLoopGroup;
+        if (callbackExecutor == null) {
+            this.ownedCallbackExecutor = Executors.newCachedThreadPool(daemonThreads("lo-netty-callback"));
+            this.callbackExecutor = ownedCallbackExecutor;
+        } else {
+            this.ownedCallbackExecutor = null;
+            this.callbackExecutor = callbackExecutor;
+        }
+        this.bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(socketChannelClass(eventLoopGroup))
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) TimeUnit.SECONDS.toMillis(NettyMqttTransport.CONNECTION_TIMEOUT_SECONDS));
+    }
+
+    @Override
+    public MqttTransport create(ExternalConnectorParameters parameters) {
+        return new NettyMqttTransport(bootstrap, callbackExecutor, sslContexts);
+    }
+
+    /**
+     * Shuts down the threads created by the factory. Transports still connected lose their connection.
+     */
+    @Override
+    public void close() {
+        if (ownsEventLoopGroup) {
+            eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        if (ownedCallbackExecutor != null) {
+            ownedCallbackExecutor.shutdown();
+        }
+    }
+
+    private static EventLoopGroup newEventLoopGroup(int ioThreads) {
+        ThreadFactory threadFactory = daemonThreads("lo-netty-io");
+        return EpollSupport.isAvailable() ? EpollSupport.newEventLoopGroup(ioThreads, threadFactory) : new NioEventLoopGroup(ioThreads, threadFactory);
+    }
+
+    private static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup eventLoopGroup) {
+        return EpollSupport.isAvailable() && EpollSupport.isEpoll(eventLoopGroup) ? EpollSupport.socketChannelClass() : NioSocketChannel.class;
+    }
+
+    private static ThreadFactory daemonThreads(String poolName) {
+        return new DefaultThreadFactory(poolName, true);
+    }
+
+    /**
+     * Isolates the references to the native transport, whose classes are absent when only the NIO transport is on
+     * the class path.
+     */
+    private static final class EpollSupport {
+
+        private static final boolean AVAILABLE = checkAvailable();
+
+        static boolean isAvailable() {
+            return AVAILABLE;
+        }
+
+        static EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        static boolean isEpoll(EventLoopGroup eventLoopGroup) {
+            return eventLoopGroup instanceof EpollEventLoopGroup;
+        }
+
+        static Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        private static boolean checkAvailable() {
+            try {
+                return Epoll.isAvailable();
+            } catch (LinkageError e) {
+                return false;
+            }
+        }
+    }
+}
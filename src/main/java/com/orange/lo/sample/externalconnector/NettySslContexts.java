@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.IdentityCipherSuiteFilter;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+
+import javax.net.ssl.SSLException;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Netty TLS contexts of the transports created by a factory. The context of some TLS parameters wraps their TLS
+ * context, and is created once and shared by all the transports using these parameters, as is the default context of
+ * the transports without TLS parameters, so that the transports share the session cache. Kept out of
+ * {@link TlsParameters}, which must not depend on Netty, an optional dependency.
+ */
+final class NettySslContexts {
+
+    private final Map<TlsParameters, SslContext> contexts = new WeakHashMap<>();
+    private SslContext defaultContext;
+
+    /**
+     * @param tlsParameters TLS parameters, or null for the default context
+     */
+    synchronized SslContext get(TlsParameters tlsParameters) throws SSLException {
+        if (tlsParameters == null) {
+            if (defaultContext == null) {
+                defaultContext = SslContextBuilder.forClient().build();
+            }
+            return defaultContext;
+        }
+        return contexts.computeIfAbsent(tlsParameters, NettySslContexts::create);
+    }
+
+    private static SslContext create(TlsParameters tlsParameters) {
+        List<String> protocols = tlsParameters.getProtocols();
+        return new JdkSslContext(tlsParameters.getSslContext(), true, tlsParameters.getCipherSuites(), IdentityCipherSuiteFilter.INSTANCE,
+                null, ClientAuth.NONE, protocols != null ? protocols.toArray(new String[0]) : null, false);
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.Status;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * State of the nodes published by the client: last status, last contact, last publication and counters.
+ * <p>
+ * The state is kept in flat primitive arrays rather than one object per node, so millions of nodes cost about
+ * fifty bytes each besides their nodeId and add almost nothing for the garbage collector to trace. Each nodeId is
+ * interned once and gets a stable index; lookups go through an open addressing table without locking, only the
+ * registration of new nodes is synchronized. {@link #forEach(NodeVisitor)} iterates without allocating.
+ */
+public final class NodeRegistry {
+
+    public static final int NO_NODE = -1;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_TABLE_SIZE = 1024;
+    private static final byte NO_STATUS = -1;
+    private static final Status[] STATUSES = Status.values();
+
+    private static final int FIELDS = 5;
+    private static final int LAST_CONTACT = 0;
+    private static final int LAST_PUBLISH = 1;
+    private static final int DATA_MESSAGES = 2;
+    private static final int STATUSES_SENT = 3;
+    private static final int COMMANDS = 4;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int[] table = new int[INITIAL_TABLE_SIZE];
+    private volatile int size;
+
+    /**
+     * @return Number of registered nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Index of the node, or {@link #NO_NODE} if it is not registered
+     */
+    public int indexOf(String nodeId) {
+        int[] slots = table;
+        int mask = slots.length - 1;
+        for (int slot = spread(nodeId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return NO_NODE;
+            }
+            String registered = nodeIdAt(entry - 1);
+            if (registered != null && registered.equals(nodeId)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the node, registering it if needed. Indexes are never reused.
+     */
+    public int register(String nodeId) {
+        int index = indexOf(nodeId);
+        return index != NO_NODE ? index : registerLocked(nodeId);
+    }
+
+    /**
+     * @return The registered instance equal to the nodeId, or the nodeId itself after registering it
+     */
+    public String intern(String nodeId) {
+        return nodeIdAt(register(nodeId));
+    }
+
+    public String getNodeId(int index) {
+        return nodeIdAt(index);
+    }
+
+    /**
+     * @return Snapshot of the node state, or null if the node is not registered
+     */
+    public NodeState get(String nodeId) {
+        int index = indexOf(nodeId);
+        if (index == NO_NODE) {
+            return null;
+        }
+        Chunk chunk = chunks[index >>> CHUNK_BITS];
+        int offset = index & CHUNK_MASK;
+        int base = offset * FIELDS;
+        return new NodeState(chunk.nodeIds[offset], status(chunk.statuses[offset]),
+                chunk.values.get(base + LAST_CONTACT), chunk.values.get(base + LAST_PUBLISH),
+                chunk.values.get(base + DATA_MESSAGES), chunk.values.get(base + STATUSES_SENT), chunk.values.get(base + COMMANDS));
+    }
+
+    /**
+     * Visits all the registered nodes in registration order.
+     */
+    public void forEach(NodeVisitor visitor) {
+        int count = size;
+        Chunk[] current = chunks;
+        for (int index = 0; index < count; index++) {
+            Chunk chunk = current[index >>> CHUNK_BITS];
+            int offset = index & CHUNK_MASK;
+            int base = offset * FIELDS;
+            visitor.visit(index, chunk.nodeIds[offset], status(chunk.statuses[offset]),
+                    chunk.values.get(base + LAST_CONTACT), chunk.values.get(base + LAST_PUBLISH),
+                    chunk.values.get(base + DATA_MESSAGES), chunk.values.get(base + STATUSES_SENT), chunk.values.get(base + COMMANDS));
+        }
+    }
+
+    /**
+     * @return Last status sent for the node, or null if none
+     */
+    public Status getStatus(int index) {
+        return status(chunks[index >>> CHUNK_BITS].statuses[index & CHUNK_MASK]);
+    }
+
+    /**
+     * @return Time of the last status or data message published for the node in milliseconds since the epoch,
+     * heartbeats excluded, 0 if none
+     */
+    public long getLastPublishMillis(int index) {
+        return value(index, LAST_PUBLISH);
+    }
+
+    void recordStatus(int index, Status status, long lastContactMillis, long nowMillis) {
+        Chunk chunk = chunks[index >>> CHUNK_BITS];
+        int offset = index & CHUNK_MASK;
+        int base = offset * FIELDS;
+        if (status != null) {
+            chunk.statuses[offset] = (byte) status.ordinal();
+        }
+        chunk.values.lazySet(base + LAST_CONTACT, lastContactMillis);
+        chunk.values.lazySet(base + LAST_PUBLISH, nowMillis);
+        chunk.values.getAndIncrement(base + STATUSES_SENT);
+    }
+
+    /**
+     * Records a heartbeat, a status sent again by the client: the last publication time is left unchanged.
+     */
+    void recordHeartbeat(int index, long lastContactMillis) {
+        Chunk chunk = chunks[index >>> CHUNK_BITS];
+        int base = (index & CHUNK_MASK) * FIELDS;
+        chunk.values.lazySet(base + LAST_CONTACT, lastContactMillis);
+        chunk.values.getAndIncrement(base + STATUSES_SENT);
+    }
+
+    void recordDataMessage(int index, long nowMillis) {
+        Chunk chunk = chunks[index >>> CHUNK_BITS];
+        int base = (index & CHUNK_MASK) * FIELDS;
+        chunk.values.lazySet(base + LAST_CONTACT, nowMillis);
+        chunk.values.lazySet(base + LAST_PUBLISH, nowMillis);
+        chunk.values.getAndIncrement(base + DATA_MESSAGES);
+    }
+
+    void recordCommand(int index) {
+        Chunk chunk = chunks[index >>> CHUNK_BITS];
+        chunk.values.getAndIncrement((index & CHUNK_MASK) * FIELDS + COMMANDS);
+    }
+
+    private long value(int index, int field) {
+        return chunks[index >>> CHUNK_BITS].values.get((index & CHUNK_MASK) * FIELDS + field);
+    }
+
+    private String nodeIdAt(int index) {
+        Chunk[] current = chunks;
+        int chunk = index >>> CHUNK_BITS;
+        return chunk < current.length ? current[chunk].nodeIds[index & CHUNK_MASK] : null;
+    }
+
+    private synchronized int registerLocked(String nodeId) {
+        int index = indexOf(nodeId);
+        if (index != NO_NODE) {
+            return index;
+        }
+        index = size;
+        if ((index >>> CHUNK_BITS) == chunks.length) {
+            Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = new Chunk();
+            chunks = grown;
+        }
+        chunks[index >>> CHUNK_BITS].nodeIds[index & CHUNK_MASK] = nodeId;
+        if ((index + 1) * 2 > table.length) {
+            table = rehash(table.length * 2, index);
+        }
+        int[] slots = table;
+        int mask = slots.length - 1;
+        int slot = spread(nodeId.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+        table = slots;
+        size = index + 1;
+        return index;
+    }
+
+    private int[] rehash(int tableSize, int count) {
+        int[] slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int index = 0; index < count; index++) {
+            int slot = spread(nodeIdAt(index).hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
+        return slots;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    private static Status status(byte ordinal) {
+        return ordinal == NO_STATUS ? null : STATUSES[ordinal];
+    }
+
+    private static final class Chunk {
+
+        private final String[] nodeIds = new String[CHUNK_SIZE];
+        private final byte[] statuses = new byte[CHUNK_SIZE];
+        private final AtomicLongArray values = new AtomicLongArray(CHUNK_SIZE * FIELDS);
+
+        Chunk() {
+            Arrays.fill(statuses, NO_STATUS);
+        }
+    }
+
+    /**
+     * Receives the state of each node as primitives, so that iterating over all the nodes allocates nothing.
+     */
+    @FunctionalInterface
+    public interface NodeVisitor {
+        void visit(int index, String nodeId, Status status, long lastContactMillis, long lastPublishMillis,
+                   long dataMessages, long statuses, long commands);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.Status;
+
+/**
+ * Snapshot of the state of a node in the {@link NodeRegistry}. Times are in milliseconds since the epoch, 0 if unknown.
+ */
+public final class NodeState {
+
+    private final String nodeId;
+    private final Status status;
+    private final long lastContactMillis;
+    private final long lastPublishMillis;
+    private final long dataMessages;
+    private final long statuses;
+    private final long commands;
+
+    NodeState(String nodeId, Status status, long lastContactMillis, long lastPublishMillis, long dataMessages, long statuses, long commands) {
+        this.nodeId = nodeId;
+        this.status = status;
+        this.lastContactMillis = lastContactMillis;
+        this.lastPublishMillis = lastPublishMillis;
+        this.dataMessages = dataMessages;
+        this.statuses = statuses;
+        this.commands = commands;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return Last status sent, or null if no status was sent
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getLastContactMillis() {
+        return lastContactMillis;
+    }
+
+    public long getLastPublishMillis() {
+        return lastPublishMillis;
+    }
+
+    public long getDataMessages() {
+        return dataMessages;
+    }
+
+    public long getStatuses() {
+        return statuses;
+    }
+
+    public long getCommands() {
+        return commands;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeState [nodeId=" + nodeId + ", status=" + status + ", lastContactMillis=" + lastContactMillis + ", lastPublishMillis=" + lastPublishMillis
+                + ", dataMessages=" + dataMessages + ", statuses=" + statuses + ", commands=" + commands + "]";
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Traffic of a node through the fair queue.
+ */
+public final class NodeTraffic {
+
+    private final String nodeId;
+    private final long messages;
+    private final long bytes;
+    private final long rejected;
+    private final int queued;
+
+    NodeTraffic(String nodeId, long messages, long bytes, long rejected, int queued) {
+        this.nodeId = nodeId;
+        this.messages = messages;
+        this.bytes = bytes;
+        this.rejected = rejected;
+        this.queued = queued;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return Number of messages of the node accepted by the fair queue
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return Number of payload bytes of the accepted messages
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of messages rejected because the quota of the node was reached
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return Number of messages of the node waiting to be published
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeTraffic [nodeId=" + nodeId + ", messages=" + messages + ", bytes=" + bytes + ", rejected=" + rejected + ", queued=" + queued + "]";
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.mqttv5.client.IMqttClient;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClient;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * MQTT 5 transport based on the Eclipse Paho mqttv5 client.
+ * <p>
+ * Outgoing topic aliases are assigned by Paho to each new topic, which means to each nodeId for the data and status
+ * topics, until the Topic Alias Maximum announced by the broker is reached. Further publications on an aliased topic
+ * carry only the two bytes alias instead of the full topic name. Paho keeps these aliases until the connection is
+ * lost and does not let them be reassigned, so with more topics than aliases only the first topics published after
+ * each connection are aliased, whatever their publication rate. Receive Maximum limits the number of command requests
+ * the broker sends before they are acknowledged. The callback of the Paho client is replaced by the one of the
+ * transport when a connection listener is set.
+ */
+class PahoMqtt5Transport implements MqttTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PahoMqtt5Transport.class);
+
+    private final IMqttClient mqttClient;
+    private volatile String serverUri;
+
+    PahoMqtt5Transport(IMqttClient mqttClient) {
+        this.mqttClient = mqttClient;
+    }
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters) throws MqttException {
+        connect(getMqttConnectionOptions(parameters));
+    }
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters, List<String> serverUris) throws MqttException {
+        MqttConnectionOptions opts = getMqttConnectionOptions(parameters);
+        opts.setServerURIs(serverUris.toArray(new String[0]));
+        connect(opts);
+    }
+
+    private void connect(MqttConnectionOptions opts) throws MqttException {
+        try {
+            IMqttToken token = mqttClient.connectWithResult(opts);
+            serverUri = currentServerUri();
+            MqttProperties responseProperties = token != null ? token.getResponseProperties() : null;
+            if (responseProperties != null) {
+                LOGGER.debug("Broker topic alias maximum: {}, receive maximum: {}.", responseProperties.getTopicAliasMaximum(), responseProperties.getReceiveMaximum());
+            }
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    /**
+     * @return URI of the server connected to, set before connect returns rather than by the asynchronous callback
+     */
+    private String currentServerUri() {
+        String current = mqttClient instanceof MqttClient ? ((MqttClient) mqttClient).getCurrentServerURI() : null;
+        return current != null ? current : mqttClient.getServerURI();
+    }
+
+    @Override
+    public String getServerUri() {
+        return serverUri;
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        try {
+            mqttClient.disconnect();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    @Override
+    public void disconnect(long quiesceTimeoutMillis) throws MqttException {
+        try {
+            mqttClient.disconnect(quiesceTimeoutMillis);
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mqttClient.isConnected();
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, int qos) throws MqttException {
+        MqttMessage msg = new MqttMessage();
+        msg.setQos(qos);
+        msg.setPayload(payload);
+        try {
+            mqttClient.publish(topic, msg);
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos, MessageListener messageListener) throws MqttException {
+        try {
+            mqttClient.subscribe(topicFilter, qos, (topic, mqttMessage) -> messageListener.messageArrived(topic, mqttMessage.getPayload()));
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    @Override
+    public void subscribeWithManualAcks(String topicFilter, int qos, AcknowledgingMessageListener messageListener) throws MqttException {
+        try {
+            mqttClient.setManualAcks(true);
+            mqttClient.subscribe(topicFilter, qos, (topic, mqttMessage) -> messageListener.messageArrived(topic, mqttMessage.getPayload(), () -> {
+                try {
+                    mqttClient.messageArrivedComplete(mqttMessage.getId(), mqttMessage.getQos());
+                } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+                    LOGGER.debug("Unable to acknowledge message {}, it will be delivered again.", mqttMessage.getId(), e);
+                }
+            }));
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) throws MqttException {
+        try {
+            mqttClient.unsubscribe(topicFilter);
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw toMqttException(e);
+        }
+    }
+
+    @Override
+    public void setConnectionListener(ConnectionListener connectionListener) {
+        mqttClient.setCallback(new MqttCallback() {
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+                serverUri = serverURI;
+                connectionListener.connected(reconnect);
+            }
+
+            @Override
+            public void disconnected(MqttDisconnectResponse disconnectResponse) {
+                connectionListener.connectionLost(disconnectResponse.getException());
+            }
+
+            @Override
+            public void mqttErrorOccurred(org.eclipse.paho.mqttv5.common.MqttException exception) {
+                LOGGER.warn("MQTT error.", exception);
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                // messages are delivered to the listener of their subscription
+            }
+
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+                // publications are synchronous
+            }
+
+            @Override
+            public void authPacketArrived(int reasonCode, MqttProperties properties) {
+                // enhanced authentication is not used
+            }
+        });
+    }
+
+    private MqttConnectionOptions getMqttConnectionOptions(ExternalConnectorParameters parameters) {
+        MqttConnectionOptions opts = new MqttConnectionOptions();
+        opts.setUserName(parameters.getUser());
+        opts.setPassword(parameters.getApiKey().getBytes(StandardCharsets.UTF_8));
+        opts.setAutomaticReconnect(parameters.isAutomaticReconnect());
+        if (parameters.getTlsParameters() != null) {
+            opts.setSocketFactory(parameters.getTlsParameters().getSocketFactory());
+        }
+        opts.setReceiveMaximum(parameters.getReceiveMaximum());
+        return opts;
+    }
+
+    private static MqttException toMqttException(org.eclipse.paho.mqttv5.common.MqttException e) {
+        return new MqttException(e.getReasonCode(), e);
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * MQTT 3.1.1 transport based on the Eclipse Paho mqttv3 client. The callback of the Paho client is replaced by the one
+ * of the transport when a connection listener is set.
+ */
+class PahoMqttTransport implements MqttTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PahoMqttTransport.class);
+
+    private final IMqttClient mqttClient;
+    private volatile String serverUri;
+
+    PahoMqttTransport(IMqttClient mqttClient) {
+        this.mqttClient = mqttClient;
+    }
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters) throws MqttException {
+        mqttClient.connect(getMqttConnectionOptions(parameters));
+        serverUri = currentServerUri();
+    }
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters, List<String> serverUris) throws MqttException {
+        MqttConnectOptions opts = getMqttConnectionOptions(parameters);
+        opts.setServerURIs(serverUris.toArray(new String[0]));
+        mqttClient.connect(opts);
+        serverUri = currentServerUri();
+    }
+
+    /**
+     * @return URI of the server connected to, set before connect returns rather than by the asynchronous callback
+     */
+    private String currentServerUri() {
+        String current = mqttClient instanceof MqttClient ? ((MqttClient) mqttClient).getCurrentServerURI() : null;
+        return current != null ? current : mqttClient.getServerURI();
+    }
+
+    @Override
+    public String getServerUri() {
+        return serverUri;
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        mqttClient.disconnect();
+    }
+
+    @Override
+    public void disconnect(long quiesceTimeoutMillis) throws MqttException {
+        mqttClient.disconnect(quiesceTimeoutMillis);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mqttClient.isConnected();
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, int qos) throws MqttException {
+        MqttMessage msg = new MqttMessage();
+        msg.setQos(qos);
+        msg.setPayload(payload);
+        mqttClient.publish(topic, msg);
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos, MessageListener messageListener) throws MqttException {
+        mqttClient.subscribe(topicFilter, qos, (topic, mqttMessage) -> messageListener.messageArrived(topic, mqttMessage.getPayload()));
+    }
+
+    @Override
+    public void subscribeWithManualAcks(String topicFilter, int qos, AcknowledgingMessageListener messageListener) throws MqttException {
+        mqttClient.setManualAcks(true);
+        mqttClient.subscribe(topicFilter, qos, (topic, mqttMessage) -> messageListener.messageArrived(topic, mqttMessage.getPayload(), () -> {
+            try {
+                mqttClient.messageArrivedComplete(mqttMessage.getId(), mqttMessage.getQos());
+            } catch (MqttException e) {
+                LOGGER.debug("Unable to acknowledge message {}, it will be delivered again.", mqttMessage.getId(), e);
+            }
+        }));
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) throws MqttException {
+        mqttClient.unsubscribe(topicFilter);
+    }
+
+    @Override
+    public void setConnectionListener(ConnectionListener connectionListener) {
+        mqttClient.setCallback(new MqttCallbackExtended() {
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+                serverUri = serverURI;
+                connectionListener.connected(reconnect);
+            }
+
+            @Override
+            public void connectionLost(Throwable cause) {
+                connectionListener.connectionLost(cause);
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                // messages are delivered to the listener of their subscription
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+                // publications are synchronous
+            }
+        });
+    }
+
+    private MqttConnectOptions getMqttConnectionOptions(ExternalConnectorParameters parameters) {
+        MqttConnectOptions opts = new MqttConnectOptions();
+        opts.setUserName(parameters.getUser());
+        opts.setPassword(parameters.getApiKey().toCharArray());
+        opts.setAutomaticReconnect(parameters.isAutomaticReconnect());
+        if (parameters.getTlsParameters() != null) {
+            opts.setSocketFactory(parameters.getTlsParameters().getSocketFactory());
+        }
+        if (parameters.getPublishWindowParameters() != null) {
+            opts.setMaxInflight(Math.max(opts.getMaxInflight(), parameters.getPublishWindowParameters().getMaxWindow()));
+        }
+        return opts;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules associating a value to patterns, compiled into a hash map and arrays so matching does not allocate.
+ * A pattern is either an exact value or a prefix followed by {@code *}; when several prefixes match, the longest
+ * one wins.
+ */
+final class PatternRules {
+
+    static final int NO_MATCH = -1;
+    static final String WILDCARD = "*";
+
+    private final Map<String, Integer> exact = new HashMap<>();
+    private final String[] prefixes;
+    private final int[] prefixValues;
+
+    PatternRules(Map<String, Integer> patterns) {
+        List<Map.Entry<String, Integer>> prefixRules = new ArrayList<>();
+        for (Map.Entry<String, Integer> rule : patterns.entrySet()) {
+            if (rule.getKey().endsWith(WILDCARD)) {
+                prefixRules.add(rule);
+            } else {
+                exact.put(rule.getKey(), rule.getValue());
+            }
+        }
+        prefixRules.sort(Comparator.comparingInt((Map.Entry<String, Integer> rule) -> rule.getKey().length()).reversed());
+        this.prefixes = new String[prefixRules.size()];
+        this.prefixValues = new int[prefixRules.size()];
+        for (int i = 0; i < prefixes.length; i++) {
+            String pattern = prefixRules.get(i).getKey();
+            prefixes[i] = pattern.substring(0, pattern.length() - WILDCARD.length());
+            prefixValues[i] = prefixRules.get(i).getValue();
+        }
+    }
+
+    /**
+     * @return Value of the matching rule, or {@link #NO_MATCH}
+     */
+    int match(String value) {
+        if (value == null) {
+            return NO_MATCH;
+        }
+        Integer ruleValue = exact.get(value);
+        if (ruleValue != null) {
+            return ruleValue;
+        }
+        for (int i = 0; i < prefixes.length; i++) {
+            if (value.startsWith(prefixes[i])) {
+                return prefixValues[i];
+            }
+        }
+        return NO_MATCH;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable output buffer reused by each thread to write payloads, so that serializing a large payload allocates only
+ * the resulting byte array, instead of the chunks of a temporary buffer followed by their copy. A buffer grown beyond
+ * {@link #MAX_RETAINED_CAPACITY} is dropped after use, so that a thread does not hold the memory of its largest
+ * payload forever.
+ */
+final class PayloadBuffer extends OutputStream {
+
+    static final int INITIAL_CAPACITY = 8192;
+    static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final ThreadLocal<PayloadBuffer> BUFFERS = ThreadLocal.withInitial(PayloadBuffer::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    private PayloadBuffer() {
+    }
+
+    /**
+     * @return Payload written by the payload writer, in a byte array of its exact size
+     */
+    static byte[] write(MqttTransport.PayloadWriter payloadWriter) throws IOException {
+        PayloadBuffer payloadBuffer = BUFFERS.get();
+        payloadBuffer.count = 0;
+        try {
+            payloadWriter.writeTo(payloadBuffer);
+            return Arrays.copyOf(payloadBuffer.buffer, payloadBuffer.count);
+        } finally {
+            if (payloadBuffer.buffer.length > MAX_RETAINED_CAPACITY) {
+                payloadBuffer.buffer = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
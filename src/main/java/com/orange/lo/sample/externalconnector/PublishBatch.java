@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Messages accumulated by the writer thread of the publish ring or the drainer thread of the fair queue, published
+ * with {@link MqttTransport#publishBatch(String[], byte[][], int[], int)}. The arrays are allocated once and reused.
+ */
+final class PublishBatch {
+
+    interface Filter {
+        /**
+         * @return false to remove the message from the batch
+         */
+        boolean keep(String topic, byte[] payload, int qos);
+    }
+
+    final String[] topics;
+    final byte[][] payloads;
+    final int[] qos;
+    private int size;
+
+    PublishBatch(int capacity) {
+        this.topics = new String[capacity];
+        this.payloads = new byte[capacity][];
+        this.qos = new int[capacity];
+    }
+
+    void add(String topic, byte[] payload, int qos) {
+        topics[size] = topic;
+        payloads[size] = payload;
+        this.qos[size] = qos;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean hasQos() {
+        for (int i = 0; i < size; i++) {
+            if (qos[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the messages refused by the filter, keeping the order of the others.
+     */
+    void retain(Filter filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.keep(topics[i], payloads[i], qos[i])) {
+                topics[kept] = topics[i];
+                payloads[kept] = payloads[i];
+                qos[kept] = qos[i];
+                kept++;
+            }
+        }
+        for (int i = kept; i < size; i++) {
+            topics[i] = null;
+            payloads[i] = null;
+        }
+        size = kept;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            topics[i] = null;
+            payloads[i] = null;
+        }
+        size = 0;
+    }
+}
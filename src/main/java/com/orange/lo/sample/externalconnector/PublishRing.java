@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.LoMqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer single-consumer ring buffer in front of the connection, in the style of the LMAX Disruptor.
+ * <p>
+ * Producers claim a sequence with a single atomic increment, fill the preallocated holder of its slot and publish the
+ * sequence in the slot. The writer thread reads the published slots in sequence order and hands them to the handler
+ * in batches, so the application threads never contend on the locks of the MQTT client. Producers wait while the
+ * ring is full; the writer waits for messages with the configured {@link WaitStrategy}.
+ */
+final class PublishRing {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublishRing.class);
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Claimed sequence once the writer stopped: the sequences claimed afterwards are negative, so that the producers
+     * know that their message will not be handled.
+     */
+    private static final long CLOSED = Long.MIN_VALUE / 2;
+
+    interface Handler {
+        /**
+         * Called on the writer thread for each message, in sequence order.
+         *
+         * @param endOfBatch true for the last message currently available in the ring
+         */
+        void onMessage(String topic, MessageKind kind, Object message, boolean endOfBatch);
+    }
+
+    private final MessageHolder[] holders;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+    private final Handler handler;
+    private final Sequence claimed = new Sequence(CLOSED);
+    private final Sequence consumed = new Sequence(-1);
+    private volatile boolean writerParked;
+    private volatile boolean running;
+    private Thread writer;
+
+    PublishRing(PublishRingParameters parameters, Handler handler) {
+        int capacity = parameters.getCapacity();
+        this.holders = new MessageHolder[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            holders[i] = new MessageHolder();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.batchSize = parameters.getBatchSize();
+        this.waitStrategy = parameters.getWaitStrategy();
+        this.handler = handler;
+    }
+
+    synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        claimed.set(consumed.get() + 1);
+        running = true;
+        writer = new Thread(this::write, "lo-publish-ring");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer once the messages already claimed by the producers are handed to the handler.
+     */
+    synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Adds a message to the ring, waiting while the ring is full.
+     *
+     * @throws LoMqttException if the writer is not running
+     */
+    void publish(String topic, MessageKind kind, Object message) {
+        if (!running) {
+            throw new LoMqttException("Client is not connected, message was not sent.");
+        }
+        long sequence = claimed.getAndIncrement();
+        if (sequence < 0) {
+            // the writer stopped between the check and the claim
+            throw new LoMqttException("Client is not connected, message was not sent.");
+        }
+        long wrapPoint = sequence - holders.length;
+        while (wrapPoint > consumed.get()) {
+            LockSupport.parkNanos(1);
+        }
+        int index = (int) sequence & mask;
+        MessageHolder holder = holders[index];
+        holder.topic = topic;
+        holder.kind = kind;
+        holder.message = message;
+        if (waitStrategy == WaitStrategy.PARK) {
+            published.set(index, sequence);
+            if (writerParked) {
+                LockSupport.unpark(writer);
+            }
+        } else {
+            published.lazySet(index, sequence);
+        }
+    }
+
+    /**
+     * @return Number of messages in the ring, including the batch being handled by the writer
+     */
+    int size() {
+        long claimedSequence = claimed.get();
+        return claimedSequence < 0 ? 0 : (int) (claimedSequence - consumed.get() - 1);
+    }
+
+    private void write() {
+        long next = consumed.get() + 1;
+        int idle = 0;
+        while (true) {
+            long last = next - 1;
+            long limit = next + batchSize;
+            while (last + 1 < limit && published.get((int) (last + 1) & mask) == last + 1) {
+                last++;
+            }
+            if (last < next) {
+                // the producers which claimed a sequence before the writer closed the ring are still waited for
+                if (!running && claimed.compareAndSet(next, CLOSED)) {
+                    return;
+                }
+                idle = await(next, idle);
+                continue;
+            }
+            idle = 0;
+            for (long sequence = next; sequence <= last; sequence++) {
+                MessageHolder holder = holders[(int) sequence & mask];
+                String topic = holder.topic;
+                MessageKind kind = holder.kind;
+                Object message = holder.message;
+                holder.clear();
+                try {
+                    handler.onMessage(topic, kind, message, sequence == last);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unable to publish message from the publish ring. Topic: {}.", topic, e);
+                }
+            }
+            consumed.lazySet(last);
+            next = last + 1;
+        }
+    }
+
+    private int await(long next, int idle) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return idle;
+            case YIELD:
+                Thread.yield();
+                return idle;
+            default:
+                if (idle < SPIN_TRIES) {
+                    return idle + 1;
+                }
+                writerParked = true;
+                if (published.get((int) next & mask) != next && running) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                writerParked = false;
+                return idle;
+        }
+    }
+
+    private static final class MessageHolder {
+
+        String topic;
+        MessageKind kind;
+        Object message;
+
+        void clear() {
+            topic = null;
+            kind = null;
+            message = null;
+        }
+    }
+
+    /**
+     * Sequence padded against false sharing between the producers updating the claimed sequence and the writer
+     * updating the consumed sequence.
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends AtomicLong {
+
+        private static final long serialVersionUID = 1L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+
+        Sequence(long initialValue) {
+            super(initialValue);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+public final class PublishRingParameters {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK;
+
+    private final int capacity;
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+
+    private PublishRingParameters(PublishRingParametersBuilder builder) {
+        this.capacity = builder.capacity;
+        this.batchSize = builder.batchSize;
+        this.waitStrategy = builder.waitStrategy;
+    }
+
+    public static PublishRingParametersBuilder builder() {
+        return new PublishRingParametersBuilder();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public static final class PublishRingParametersBuilder {
+        private int capacity = DEFAULT_CAPACITY;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private WaitStrategy waitStrategy = DEFAULT_WAIT_STRATEGY;
+
+        /**
+         * Sets the number of messages the ring holds. Producers wait when it is full.
+         *
+         * @param capacity Number of messages, a power of two
+         * @return Publish ring parameters builder
+         */
+        public PublishRingParametersBuilder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of messages published together by the writer thread.
+         *
+         * @param batchSize Number of messages
+         * @return Publish ring parameters builder
+         */
+        public PublishRingParametersBuilder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public PublishRingParametersBuilder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public PublishRingParameters build() {
+            validate();
+            return new PublishRingParameters(this);
+        }
+
+        private void validate() {
+            if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+                throw new ExternalConnectorParametersException("Capacity must be a power of two greater than 1");
+            }
+            if (batchSize < 1 || batchSize > capacity) {
+                throw new ExternalConnectorParametersException("Batch size must be between 1 and the capacity");
+            }
+            if (waitStrategy == null) {
+                throw new ExternalConnectorParametersException("Wait strategy is required");
+            }
+        }
+    }
+}
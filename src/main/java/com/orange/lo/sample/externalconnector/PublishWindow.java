@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of publications waiting for their acknowledgement, with a window sized like the congestion
+ * window of TCP: additive increase, multiplicative decrease.
+ * <p>
+ * Each acknowledgement of a full window grows it by 1/window, so by one publication per window of acknowledgements.
+ * An acknowledgement whose latency exceeds the smoothed latency by the spike factor, or a failed publication, shrinks
+ * it by the decrease factor, at most once per window of acknowledgements so that the publications already in flight
+ * when the broker slowed down do not shrink it again. The window grows only if it was filled since its last change,
+ * not while the application publishes less than it allows.
+ */
+final class PublishWindow {
+
+    /**
+     * Gain of the moving average of the latency, as for the smoothed round-trip time of TCP.
+     */
+    private static final double LATENCY_GAIN = 0.125;
+    private static final int WARM_UP_ACKS = 8;
+
+    private final int minWindow;
+    private final int maxWindow;
+    private final double latencySpikeFactor;
+    private final double decreaseFactor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double window;
+    private int inFlight;
+    private int peakInFlight;
+    private double smoothedLatencyNanos;
+    private long acks;
+    private long acksSinceDecrease = Long.MAX_VALUE;
+    private long increases;
+    private long spikeDecreases;
+    private long failureDecreases;
+    private long waits;
+
+    PublishWindow(PublishWindowParameters parameters) {
+        this.minWindow = parameters.getMinWindow();
+        this.maxWindow = parameters.getMaxWindow();
+        this.latencySpikeFactor = parameters.getLatencySpikeFactor();
+        this.decreaseFactor = parameters.getDecreaseFactor();
+        this.window = parameters.getInitialWindow();
+    }
+
+    /**
+     * Waits for a free slot in the window.
+     */
+    void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (inFlight >= (int) window) {
+                waits++;
+                do {
+                    slotFreed.await();
+                } while (inFlight >= (int) window);
+            }
+            inFlight++;
+            peakInFlight = Math.max(peakInFlight, inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot of a publication and adjusts the window.
+     *
+     * @param latencyNanos Duration of the publication until its acknowledgement or failure
+     */
+    void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (acksSinceDecrease != Long.MAX_VALUE) {
+                acksSinceDecrease++;
+            }
+            if (failed) {
+                if (decrease()) {
+                    failureDecreases++;
+                }
+            } else {
+                boolean spike = acks >= WARM_UP_ACKS && latencyNanos > latencySpikeFactor * smoothedLatencyNanos;
+                smoothedLatencyNanos = acks == 0 ? latencyNanos : smoothedLatencyNanos + LATENCY_GAIN * (latencyNanos - smoothedLatencyNanos);
+                acks++;
+                if (spike) {
+                    if (decrease()) {
+                        spikeDecreases++;
+                    }
+                } else if (peakInFlight >= (int) window) {
+                    increase();
+                }
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    PublishWindowStats getStats() {
+        lock.lock();
+        try {
+            return new PublishWindowStats((int) window, inFlight, acks > 0 ? Duration.ofNanos((long) smoothedLatencyNanos) : null, increases,
+                    spikeDecreases, failureDecreases, waits);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void increase() {
+        int before = (int) window;
+        window = Math.min(maxWindow, window + 1 / window);
+        if ((int) window > before) {
+            increases++;
+            peakInFlight = inFlight;
+        }
+    }
+
+    /**
+     * @return false if the window already shrank during the current window of acknowledgements
+     */
+    private boolean decrease() {
+        if (acksSinceDecrease < (long) window) {
+            return false;
+        }
+        window = Math.max(minWindow, window * decreaseFactor);
+        acksSinceDecrease = 0;
+        peakInFlight = inFlight;
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+/**
+ * Settings of the adaptive window limiting the number of QoS 1 and 2 publications waiting for their acknowledgement.
+ */
+public final class PublishWindowParameters {
+
+    public static final int DEFAULT_INITIAL_WINDOW = 10;
+    public static final int DEFAULT_MIN_WINDOW = 1;
+    public static final int DEFAULT_MAX_WINDOW = 100;
+    public static final double DEFAULT_LATENCY_SPIKE_FACTOR = 2.0;
+    public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+
+    private final int initialWindow;
+    private final int minWindow;
+    private final int maxWindow;
+    private final double latencySpikeFactor;
+    private final double decreaseFactor;
+
+    private PublishWindowParameters(PublishWindowParametersBuilder builder) {
+        this.initialWindow = builder.initialWindow;
+        this.minWindow = builder.minWindow;
+        this.maxWindow = builder.maxWindow;
+        this.latencySpikeFactor = builder.latencySpikeFactor;
+        this.decreaseFactor = builder.decreaseFactor;
+    }
+
+    public static PublishWindowParametersBuilder builder() {
+        return new PublishWindowParametersBuilder();
+    }
+
+    public int getInitialWindow() {
+        return initialWindow;
+    }
+
+    public int getMinWindow() {
+        return minWindow;
+    }
+
+    public int getMaxWindow() {
+        return maxWindow;
+    }
+
+    public double getLatencySpikeFactor() {
+        return latencySpikeFactor;
+    }
+
+    public double getDecreaseFactor() {
+        return decreaseFactor;
+    }
+
+    public static final class PublishWindowParametersBuilder {
+        private int initialWindow = DEFAULT_INITIAL_WINDOW;
+        private int minWindow = DEFAULT_MIN_WINDOW;
+        private int maxWindow = DEFAULT_MAX_WINDOW;
+        private double latencySpikeFactor = DEFAULT_LATENCY_SPIKE_FACTOR;
+        private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+
+        public PublishWindowParametersBuilder initialWindow(int initialWindow) {
+            this.initialWindow = initialWindow;
+            return this;
+        }
+
+        public PublishWindowParametersBuilder minWindow(int minWindow) {
+            this.minWindow = minWindow;
+            return this;
+        }
+
+        /**
+         * Sets the largest window, which should stay below the number of unacknowledged publications the platform
+         * accepts before throttling the client.
+         *
+         * @param maxWindow Maximum number of publications in flight
+         * @return Publish window parameters builder
+         */
+        public PublishWindowParametersBuilder maxWindow(int maxWindow) {
+            this.maxWindow = maxWindow;
+            return this;
+        }
+
+        /**
+         * Sets the ratio between the latency of an acknowledgement and the smoothed latency above which the latency
+         * is considered a spike, shrinking the window.
+         *
+         * @param latencySpikeFactor Ratio, greater than 1
+         * @return Publish window parameters builder
+         */
+        public PublishWindowParametersBuilder latencySpikeFactor(double latencySpikeFactor) {
+            this.latencySpikeFactor = latencySpikeFactor;
+            return this;
+        }
+
+        /**
+         * Sets the factor applied to the window on a latency spike or a failed publication.
+         *
+         * @param decreaseFactor Factor, between 0 and 1 exclusive
+         * @return Publish window parameters builder
+         */
+        public PublishWindowParametersBuilder decreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        public PublishWindowParameters build() {
+            validate();
+            return new PublishWindowParameters(this);
+        }
+
+        private void validate() {
+            if (minWindow < 1 || minWindow > initialWindow || initialWindow > maxWindow) {
+                throw new ExternalConnectorParametersException("Windows must satisfy 1 <= min <= initial <= max");
+            }
+            if (!(latencySpikeFactor > 1)) {
+                throw new ExternalConnectorParametersException("Latency spike factor must be greater than 1");
+            }
+            if (!(decreaseFactor > 0 && decreaseFactor < 1)) {
+                throw new ExternalConnectorParametersException("Decrease factor must be between 0 and 1 exclusive");
+            }
+        }
+    }
+}
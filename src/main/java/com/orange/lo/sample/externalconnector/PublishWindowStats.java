@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the adaptive publish window of the client.
+ */
+public final class PublishWindowStats {
+
+    private final int window;
+    private final int inFlight;
+    private final Duration smoothedLatency;
+    private final long increases;
+    private final long spikeDecreases;
+    private final long failureDecreases;
+    private final long waits;
+
+    PublishWindowStats(int window, int inFlight, Duration smoothedLatency, long increases, long spikeDecreases, long failureDecreases, long waits) {
+        this.window = window;
+        this.inFlight = inFlight;
+        this.smoothedLatency = smoothedLatency;
+        this.increases = increases;
+        this.spikeDecreases = spikeDecreases;
+        this.failureDecreases = failureDecreases;
+        this.waits = waits;
+    }
+
+    /**
+     * @return Current maximum number of publications in flight
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return Number of publications waiting for their acknowledgement
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Moving average of the acknowledgement latency, or null before the first acknowledgement
+     */
+    public Duration getSmoothedLatency() {
+        return smoothedLatency;
+    }
+
+    /**
+     * @return Number of times the window grew by one publication
+     */
+    public long getIncreases() {
+        return increases;
+    }
+
+    /**
+     * @return Number of times the window shrank because of a latency spike
+     */
+    public long getSpikeDecreases() {
+        return spikeDecreases;
+    }
+
+    /**
+     * @return Number of times the window shrank because of a failed publication
+     */
+    public long getFailureDecreases() {
+        return failureDecreases;
+    }
+
+    /**
+     * @return Number of publications which waited for a free slot in the window
+     */
+    public long getWaits() {
+        return waits;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishWindowStats [window=" + window + ", inFlight=" + inFlight + ", smoothedLatency=" + smoothedLatency + ", increases=" + increases
+                + ", spikeDecreases=" + spikeDecreases + ", failureDecreases=" + failureDecreases + ", waits=" + waits + "]";
+    }
+}
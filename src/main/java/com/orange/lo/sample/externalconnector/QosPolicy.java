@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Chooses the QoS of each message published by {@link ExternalConnectorClient}.
+ * It is called on every publication, so implementations should be cheap and must not block.
+ */
+@FunctionalInterface
+public interface QosPolicy {
+
+    /**
+     * @param kind    Kind of the published message
+     * @param message Published message: a DataMessage, NodeStatus or CommandResponse depending on the kind
+     * @return QoS used to publish the message: 0, 1 or 2
+     */
+    int getQos(MessageKind kind, Object message);
+}
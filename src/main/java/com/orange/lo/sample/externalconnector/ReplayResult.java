@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Outcome of {@link TrafficReplay#run(ExternalConnectorClient, TrafficReplay.CommandSender)}.
+ */
+public final class ReplayResult {
+
+    private final long messages;
+    private final long commands;
+    private final long skipped;
+    private final long failed;
+    private final Duration duration;
+    private final Duration maxLag;
+    private final Duration latencyP50;
+    private final Duration latencyP90;
+    private final Duration latencyP99;
+    private final Duration latencyMax;
+
+    ReplayResult(long messages, long commands, long skipped, long failed, Duration duration, Duration maxLag,
+                 Duration latencyP50, Duration latencyP90, Duration latencyP99, Duration latencyMax) {
+        this.messages = messages;
+        this.commands = commands;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.duration = duration;
+        this.maxLag = maxLag;
+        this.latencyP50 = latencyP50;
+        this.latencyP90 = latencyP90;
+        this.latencyP99 = latencyP99;
+        this.latencyMax = latencyMax;
+    }
+
+    /**
+     * @return Number of status and data messages sent through the client
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return Number of command requests sent to the client
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return Number of records not replayed: command responses, which the client sends again by itself, and messages
+     * on topics not matching the topic templates
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return Number of messages whose sending failed
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return Maximum delay between the scheduled time of a record and its dispatch, showing whether the client kept up
+     */
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * @return Messages sent per second
+     */
+    public double getThroughput() {
+        return duration.isZero() ? 0 : messages * 1e9 / duration.toNanos();
+    }
+
+    public Duration getLatencyP50() {
+        return latencyP50;
+    }
+
+    public Duration getLatencyP90() {
+        return latencyP90;
+    }
+
+    public Duration getLatencyP99() {
+        return latencyP99;
+    }
+
+    public Duration getLatencyMax() {
+        return latencyMax;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayResult [messages=" + messages + ", commands=" + commands + ", skipped=" + skipped + ", failed=" + failed + ", duration=" + duration
+                + ", throughput=" + String.format("%.1f", getThroughput()) + "/s, maxLag=" + maxLag + ", latencyP50=" + latencyP50 + ", latencyP90=" + latencyP90
+                + ", latencyP99=" + latencyP99 + ", latencyMax=" + latencyMax + "]";
+    }
+}
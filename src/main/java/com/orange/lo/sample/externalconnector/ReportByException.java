@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Report by exception filter of the data messages. The value of a message is compared with the last value reported
+ * for the same node and stream: numeric fields are compared with the deadband of the stream, all the other tokens
+ * (field names, strings, booleans, structure) must be equal. A message is reported when its value changed beyond
+ * the deadband, or when the max silence elapsed since the last report.
+ * <p>
+ * The value is walked through a {@link TokenBuffer}, without encoding it to JSON text. The last reported value is
+ * kept as a fingerprint of the non numeric tokens and a double array of the numeric fields, without boxing. The report
+ * is recorded when the message is checked, so that concurrent messages with the same value are not all published, and
+ * canceled if the publication fails on the calling thread, so that the same value is published again on retry. The
+ * publish ring and the fair queue, which fail after the message is queued, are therefore not allowed with it.
+ */
+final class ReportByException {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportByException.class);
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ObjectMapper objectMapper;
+    private final PatternRules streamIdRules;
+    private final Deadband[] deadbands;
+    private final Deadband defaultDeadband;
+    private final long maxSilenceNanos;
+    private final ConcurrentHashMap<StreamKey, LastReport> lastReports = new ConcurrentHashMap<>();
+    private final ThreadLocal<Sample> samples = ThreadLocal.withInitial(Sample::new);
+    private final LongAdder received = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    ReportByException(ReportByExceptionParameters parameters, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        Map<String, Integer> patterns = new HashMap<>();
+        this.deadbands = new Deadband[parameters.getStreamIdDeadbands().size()];
+        int index = 0;
+        for (Map.Entry<String, Deadband> rule : parameters.getStreamIdDeadbands().entrySet()) {
+            patterns.put(rule.getKey(), index);
+            deadbands[index++] = rule.getValue();
+        }
+        this.streamIdRules = new PatternRules(patterns);
+        this.defaultDeadband = parameters.getDefaultDeadband();
+        this.maxSilenceNanos = parameters.getMaxSilence() != null ? parameters.getMaxSilence().toNanos() : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the message must be published, false if it is suppressed
+     */
+    boolean shouldReport(String nodeId, DataMessage message, long nowNanos) {
+        received.increment();
+        Sample sample = samples.get();
+        sample.pending = null;
+        try {
+            sample.extract(objectMapper, message.getValue());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Unable to compare value of message for nodeId {}, message reported.", nodeId, e);
+            return true;
+        }
+        StreamKey key = new StreamKey(nodeId, message.getStreamId());
+        LastReport lastReport = lastReports.get(key);
+        if (lastReport == null) {
+            LastReport created = new LastReport();
+            lastReport = lastReports.putIfAbsent(key, created);
+            if (lastReport == null) {
+                lastReport = created;
+            }
+        }
+        Deadband deadband = deadbandOf(message.getStreamId());
+        synchronized (lastReport) {
+            if (lastReport.reported && nowNanos - lastReport.reportNanos < maxSilenceNanos && !lastReport.isChanged(sample, deadband)) {
+                suppressed.increment();
+                return false;
+            }
+            lastReport.update(sample, nowNanos);
+            sample.pending = lastReport;
+            sample.pendingVersion = lastReport.version;
+            return true;
+        }
+    }
+
+    /**
+     * Restores the last report of the stream of the message last reported by the calling thread, when its publication
+     * failed. Has no effect if another message of the same stream was reported meanwhile.
+     */
+    void cancelReport() {
+        Sample sample = samples.get();
+        LastReport lastReport = sample.pending;
+        if (lastReport == null) {
+            return;
+        }
+        sample.pending = null;
+        synchronized (lastReport) {
+            if (lastReport.version == sample.pendingVersion) {
+                lastReport.restore();
+            }
+        }
+    }
+
+    ReportByExceptionStats getStats() {
+        return new ReportByExceptionStats(received.sum(), suppressed.sum(), lastReports.size());
+    }
+
+    private Deadband deadbandOf(String streamId) {
+        int index = streamIdRules.match(streamId);
+        return index != PatternRules.NO_MATCH ? deadbands[index] : defaultDeadband;
+    }
+
+    /**
+     * Tokens of a value, reused by the thread checking it.
+     */
+    private static final class Sample {
+
+        double[] numbers = new double[8];
+        int count;
+        long fingerprint;
+        LastReport pending;
+        long pendingVersion;
+
+        void extract(ObjectMapper objectMapper, Object value) throws IOException {
+            count = 0;
+            fingerprint = FNV_OFFSET;
+            if (value == null) {
+                return;
+            }
+            TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+            objectMapper.writeValue(buffer, value);
+            try (JsonParser parser = buffer.asParser()) {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    mix(token.ordinal());
+                    switch (token) {
+                        case FIELD_NAME:
+                        case VALUE_STRING:
+                            mix(parser.getText());
+                            break;
+                        case VALUE_NUMBER_INT:
+                        case VALUE_NUMBER_FLOAT:
+                            addNumber(parser.getDoubleValue());
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+
+        private void mix(int value) {
+            fingerprint = (fingerprint ^ value) * FNV_PRIME;
+        }
+
+        private void mix(String text) {
+            int length = text.length();
+            mix(length);
+            for (int i = 0; i < length; i++) {
+                mix(text.charAt(i));
+            }
+        }
+
+        private void addNumber(double number) {
+            if (count == numbers.length) {
+                numbers = Arrays.copyOf(numbers, count * 2);
+            }
+            numbers[count++] = number;
+        }
+    }
+
+    private static final class LastReport {
+
+        boolean reported;
+        long reportNanos;
+        long fingerprint;
+        double[] numbers = new double[0];
+        int count;
+        long version;
+        private boolean previousReported;
+        private long previousReportNanos;
+        private long previousFingerprint;
+        private double[] previousNumbers = new double[0];
+        private int previousCount;
+
+        boolean isChanged(Sample sample, Deadband deadband) {
+            if (fingerprint != sample.fingerprint || count != sample.count) {
+                return true;
+            }
+            for (int i = 0; i < count; i++) {
+                if (deadband.isExceeded(numbers[i], sample.numbers[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void update(Sample sample, long nowNanos) {
+            previousReported = reported;
+            previousReportNanos = reportNanos;
+            previousFingerprint = fingerprint;
+            previousCount = count;
+            double[] reused = previousNumbers;
+            previousNumbers = numbers;
+            numbers = reused.length >= sample.count ? reused : new double[sample.count];
+            reported = true;
+            reportNanos = nowNanos;
+            fingerprint = sample.fingerprint;
+            System.arraycopy(sample.numbers, 0, numbers, 0, sample.count);
+            count = sample.count;
+            version++;
+        }
+
+        void restore() {
+            reported = previousReported;
+            reportNanos = previousReportNanos;
+            fingerprint = previousFingerprint;
+            count = previousCount;
+            double[] canceled = numbers;
+            numbers = previousNumbers;
+            previousNumbers = canceled;
+            version++;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class ReportByExceptionParameters {
+
+    public static final Deadband DEFAULT_DEADBAND = Deadband.absolute(0);
+
+    private final Deadband defaultDeadband;
+    private final Map<String, Deadband> streamIdDeadbands;
+    private final Duration maxSilence;
+
+    private ReportByExceptionParameters(ReportByExceptionParametersBuilder builder) {
+        this.defaultDeadband = builder.defaultDeadband;
+        this.streamIdDeadbands = Collections.unmodifiableMap(new LinkedHashMap<>(builder.streamIdDeadbands));
+        this.maxSilence = builder.maxSilence;
+    }
+
+    public static ReportByExceptionParametersBuilder builder() {
+        return new ReportByExceptionParametersBuilder();
+    }
+
+    public Deadband getDefaultDeadband() {
+        return defaultDeadband;
+    }
+
+    public Map<String, Deadband> getStreamIdDeadbands() {
+        return streamIdDeadbands;
+    }
+
+    public Duration getMaxSilence() {
+        return maxSilence;
+    }
+
+    public static final class ReportByExceptionParametersBuilder {
+        private Deadband defaultDeadband = DEFAULT_DEADBAND;
+        private final Map<String, Deadband> streamIdDeadbands = new LinkedHashMap<>();
+        private Duration maxSilence;
+
+        /**
+         * Sets the deadband of the streams not matched by any streamId pattern.
+         *
+         * @param deadband Deadband
+         * @return Report by exception parameters builder
+         */
+        public ReportByExceptionParametersBuilder defaultDeadband(Deadband deadband) {
+            this.defaultDeadband = deadband;
+            return this;
+        }
+
+        /**
+         * Sets the deadband of the streams whose streamId matches the pattern.
+         *
+         * @param pattern  Exact streamId or prefix followed by *
+         * @param deadband Deadband
+         * @return Report by exception parameters builder
+         */
+        public ReportByExceptionParametersBuilder streamIdDeadband(String pattern, Deadband deadband) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new ExternalConnectorParametersException("Pattern is required");
+            }
+            if (deadband == null) {
+                throw new ExternalConnectorParametersException("Deadband is required");
+            }
+            this.streamIdDeadbands.put(pattern, deadband);
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration without report for a node and stream: a message is reported once this duration
+         * has elapsed since the last report, even if its value did not change.
+         *
+         * @param maxSilence Maximum silence, or null to report unchanged values never again
+         * @return Report by exception parameters builder
+         */
+        public ReportByExceptionParametersBuilder maxSilence(Duration maxSilence) {
+            this.maxSilence = maxSilence;
+            return this;
+        }
+
+        public ReportByExceptionParameters build() {
+            validate();
+            return new ReportByExceptionParameters(this);
+        }
+
+        private void validate() {
+            if (defaultDeadband == null) {
+                throw new ExternalConnectorParametersException("Default deadband is required");
+            }
+            if (maxSilence != null && (maxSilence.isNegative() || maxSilence.isZero())) {
+                throw new ExternalConnectorParametersException("Max silence must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Snapshot of the report by exception filter of the client.
+ */
+public final class ReportByExceptionStats {
+
+    private final long received;
+    private final long suppressed;
+    private final int tracked;
+
+    ReportByExceptionStats(long received, long suppressed, int tracked) {
+        this.received = received;
+        this.suppressed = suppressed;
+        this.tracked = tracked;
+    }
+
+    /**
+     * @return Number of data messages checked by the filter
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * @return Number of data messages not published because their value did not change beyond the deadband
+     */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * @return Suppressed messages divided by received messages, 0 when no message was received
+     */
+    public double getSuppressionRatio() {
+        return received > 0 ? (double) suppressed / received : 0;
+    }
+
+    /**
+     * @return Number of node and stream keys whose last reported value is kept
+     */
+    public int getTracked() {
+        return tracked;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportByExceptionStats [received=" + received + ", suppressed=" + suppressed + ", suppressionRatio=" + getSuppressionRatio()
+                + ", tracked=" + tracked + "]";
+    }
+}
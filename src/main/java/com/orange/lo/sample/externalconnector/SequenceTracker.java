@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Session and event sequence ids of the node statuses. The session id is shared by all nodes and incremented on each
+ * connection; the event id of a node is incremented on each status and restarts from 1 in a new session.
+ * <p>
+ * Each node holds both ids packed in one long, updated with a compare-and-set, so concurrent statuses of the same
+ * node never get the same ids and statuses of different nodes never contend.
+ */
+final class SequenceTracker {
+
+    private static final int SNAPSHOT_MAGIC = 0x4C4F5351;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final AtomicIntegerFieldUpdater<SequenceTracker> SESSION =
+            AtomicIntegerFieldUpdater.newUpdater(SequenceTracker.class, "sessionSequenceId");
+
+    private final Map<String, NodeSequence> sequences = new ConcurrentHashMap<>();
+    private volatile int sessionSequenceId;
+
+    void newSession() {
+        SESSION.incrementAndGet(this);
+    }
+
+    int getSessionSequenceId() {
+        return sessionSequenceId;
+    }
+
+    /**
+     * @return Session id in the high 32 bits and event id in the low 32 bits
+     */
+    long next(String nodeId) {
+        NodeSequence sequence = sequences.get(nodeId);
+        if (sequence == null) {
+            NodeSequence created = new NodeSequence();
+            sequence = sequences.putIfAbsent(nodeId, created);
+            if (sequence == null) {
+                sequence = created;
+            }
+        }
+        return sequence.next(sessionSequenceId);
+    }
+
+    static int sessionOf(long ids) {
+        return (int) (ids >>> 32);
+    }
+
+    static int eventOf(long ids) {
+        return (int) ids;
+    }
+
+    int size() {
+        return sequences.size();
+    }
+
+    /**
+     * Writes the ids to a temporary file moved over the snapshot, so a crash never leaves a truncated snapshot.
+     */
+    void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(sessionSequenceId);
+            out.writeInt(sequences.size());
+            for (Map.Entry<String, NodeSequence> entry : sequences.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().ids);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a sequence snapshot: " + file);
+            }
+            sessionSequenceId = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String nodeId = in.readUTF();
+                NodeSequence sequence = new NodeSequence();
+                sequence.ids = in.readLong();
+                sequences.put(nodeId, sequence);
+            }
+        }
+    }
+
+    static final class NodeSequence {
+
+        private static final AtomicLongFieldUpdater<NodeSequence> IDS = AtomicLongFieldUpdater.newUpdater(NodeSequence.class, "ids");
+
+        private volatile long ids;
+
+        /**
+         * @param session Session id read by the caller, which may be older than the session of the last status of the
+         *                node if another thread read it after a new connection: the session never moves backwards
+         */
+        long next(int session) {
+            long current;
+            long next;
+            do {
+                current = ids;
+                int currentSession = sessionOf(current);
+                int nextSession = Math.max(currentSession, session);
+                int event = currentSession == nextSession ? eventOf(current) + 1 : 1;
+                next = (long) nextSession << 32 | event & 0xFFFFFFFFL;
+            } while (!IDS.compareAndSet(this, current, next));
+            return next;
+        }
+    }
+}
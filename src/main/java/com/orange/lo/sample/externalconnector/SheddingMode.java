@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * What the client does with the status and data messages while its circuit breaker is open.
+ */
+public enum SheddingMode {
+    /**
+     * Messages are rejected with a {@link com.orange.lo.sample.exceptions.CircuitBreakerOpenException}.
+     */
+    REJECT,
+    /**
+     * A fraction of the messages is still published, the others are dropped.
+     */
+    SAMPLE,
+    /**
+     * Messages are kept in a bounded spill buffer, published once the circuit closes. The oldest messages are dropped
+     * when the buffer is full.
+     */
+    SPILL
+}
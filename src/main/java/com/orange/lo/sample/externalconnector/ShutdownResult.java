@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Outcome of {@link ExternalConnectorClient#shutdown(Duration)}.
+ */
+public final class ShutdownResult {
+
+    private final int unfinishedCommands;
+    private final int unfinishedPublications;
+    private final Duration duration;
+
+    ShutdownResult(int unfinishedCommands, int unfinishedPublications, Duration duration) {
+        this.unfinishedCommands = unfinishedCommands;
+        this.unfinishedPublications = unfinishedPublications;
+        this.duration = duration;
+    }
+
+    /**
+     * @return true if all commands and publications completed before the deadline
+     */
+    public boolean isComplete() {
+        return unfinishedCommands == 0 && unfinishedPublications == 0;
+    }
+
+    /**
+     * @return Number of command handlers still running when the client was disconnected
+     */
+    public int getUnfinishedCommands() {
+        return unfinishedCommands;
+    }
+
+    /**
+     * @return Number of publications not completed when the client was disconnected
+     */
+    public int getUnfinishedPublications() {
+        return unfinishedPublications;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "ShutdownResult [unfinishedCommands=" + unfinishedCommands + ", unfinishedPublications=" + unfinishedPublications + ", duration=" + duration + "]";
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Key of the per node and stream state: the node is identified by its id or by its data topic.
+ */
+final class StreamKey {
+
+    final String node;
+    final String streamId;
+
+    StreamKey(String node, String streamId) {
+        this.node = node;
+        this.streamId = streamId != null ? streamId : "";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StreamKey)) {
+            return false;
+        }
+        StreamKey key = (StreamKey) o;
+        return node.equals(key.node) && streamId.equals(key.streamId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * node.hashCode() + streamId.hashCode();
+    }
+}
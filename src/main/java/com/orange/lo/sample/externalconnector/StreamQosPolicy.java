@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+import com.orange.lo.sample.lo.model.DataMessage;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * QoS policy based on rules. For data messages the streamId rules are checked first, then the model rules.
+ * A pattern is either an exact value or a prefix followed by {@code *}, e.g. {@code alarm/*}.
+ * When several prefixes match, the longest one wins. Messages not matched by any pattern use the QoS of their kind,
+ * or the default QoS.
+ * <p>
+ * Rules are compiled into {@link PatternRules} when the policy is built, so evaluation does not allocate.
+ */
+public final class StreamQosPolicy implements QosPolicy {
+
+    private final int[] kindQos;
+    private final PatternRules streamIdRules;
+    private final PatternRules modelRules;
+
+    private StreamQosPolicy(StreamQosPolicyBuilder builder) {
+        this.kindQos = new int[MessageKind.values().length];
+        for (MessageKind kind : MessageKind.values()) {
+            Integer qos = builder.kindQos.get(kind);
+            this.kindQos[kind.ordinal()] = qos != null ? qos : builder.defaultQos;
+        }
+        this.streamIdRules = new PatternRules(builder.streamIdQos);
+        this.modelRules = new PatternRules(builder.modelQos);
+    }
+
+    public static StreamQosPolicyBuilder builder() {
+        return new StreamQosPolicyBuilder();
+    }
+
+    @Override
+    public int getQos(MessageKind kind, Object message) {
+        if (message instanceof DataMessage) {
+            DataMessage dataMessage = (DataMessage) message;
+            int qos = streamIdRules.match(dataMessage.getStreamId());
+            if (qos == PatternRules.NO_MATCH) {
+                qos = modelRules.match(dataMessage.getModel());
+            }
+            if (qos != PatternRules.NO_MATCH) {
+                return qos;
+            }
+        }
+        return kindQos[kind.ordinal()];
+    }
+
+    public static final class StreamQosPolicyBuilder {
+        private int defaultQos = ExternalConnectorParameters.DEFAULT_MESSAGE_QOS;
+        private final Map<MessageKind, Integer> kindQos = new EnumMap<>(MessageKind.class);
+        private final Map<String, Integer> streamIdQos = new LinkedHashMap<>();
+        private final Map<String, Integer> modelQos = new LinkedHashMap<>();
+
+        public StreamQosPolicyBuilder defaultQos(int qos) {
+            this.defaultQos = validQos(qos);
+            return this;
+        }
+
+        public StreamQosPolicyBuilder qos(MessageKind kind, int qos) {
+            this.kindQos.put(kind, validQos(qos));
+            return this;
+        }
+
+        /**
+         * Sets the QoS of data messages whose streamId matches the pattern.
+         *
+         * @param pattern Exact streamId or prefix followed by *
+         * @param qos     QoS of matching data messages
+         * @return Stream QoS policy builder
+         */
+        public StreamQosPolicyBuilder streamIdQos(String pattern, int qos) {
+            this.streamIdQos.put(validPattern(pattern), validQos(qos));
+            return this;
+        }
+
+        /**
+         * Sets the QoS of data messages whose model matches the pattern.
+         *
+         * @param pattern Exact model or prefix followed by *
+         * @param qos     QoS of matching data messages
+         * @return Stream QoS policy builder
+         */
+        public StreamQosPolicyBuilder modelQos(String pattern, int qos) {
+            this.modelQos.put(validPattern(pattern), validQos(qos));
+            return this;
+        }
+
+        public StreamQosPolicy build() {
+            return new StreamQosPolicy(this);
+        }
+
+        private static int validQos(int qos) {
+            if (qos < 0 || qos > 2) {
+                throw new ExternalConnectorParametersException("QoS must be 0, 1 or 2");
+            }
+            return qos;
+        }
+
+        private static String validPattern(String pattern) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new ExternalConnectorParametersException("Pattern is required");
+            }
+            return pattern;
+        }
+    }
+}
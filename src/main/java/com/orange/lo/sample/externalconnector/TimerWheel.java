@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: timeouts are hashed by deadline into a ring of buckets, each holding a doubly linked list,
+ * so scheduling and cancelling cost O(1) whatever the number of timeouts, and each tick only visits one bucket.
+ * Timeouts are not allocated by the wheel and can be scheduled again after expiring, so hundreds of thousands of
+ * recurring timeouts cost one object each and no garbage.
+ * <p>
+ * The wheel has no thread of its own: {@link #advance(long)} is called periodically by a single thread, ideally once
+ * per tick.
+ */
+final class TimerWheel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickMillis;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final List<Timeout> expired = new ArrayList<>();
+    private long lastTick;
+    private int size;
+
+    /**
+     * @param tickMillis  Duration of a tick, i.e. the precision of the deadlines
+     * @param bucketCount Number of buckets, rounded up to a power of two
+     * @param startMillis Current time
+     */
+    TimerWheel(long tickMillis, int bucketCount, long startMillis) {
+        int powerOfTwo = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Timeout[powerOfTwo];
+        this.mask = powerOfTwo - 1;
+        this.lastTick = startMillis / tickMillis;
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the timeout, moving it if it is already scheduled. A deadline in the past expires on the next advance.
+     */
+    synchronized void schedule(Timeout timeout, long deadlineMillis) {
+        if (timeout.bucket >= 0) {
+            unlink(timeout);
+        }
+        timeout.deadlineMillis = deadlineMillis;
+        long tick = Math.max(deadlineMillis / tickMillis, lastTick + 1);
+        link(timeout, (int) (tick & mask));
+    }
+
+    /**
+     * @return false if the timeout was not scheduled, or was already collected for expiration
+     */
+    synchronized boolean cancel(Timeout timeout) {
+        if (timeout.bucket < 0) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Expires the timeouts whose deadline is reached, in the calling thread. Expired timeouts run outside the lock
+     * of the wheel and may schedule themselves again.
+     *
+     * @return Number of expired timeouts
+     */
+    int advance(long nowMillis) {
+        List<Timeout> due = collect(nowMillis);
+        int count = due.size();
+        for (int i = 0; i < count; i++) {
+            try {
+                due.get(i).expired(nowMillis);
+            } catch (RuntimeException e) {
+                LOGGER.error("Timeout failed.", e);
+            }
+        }
+        due.clear();
+        return count;
+    }
+
+    private synchronized List<Timeout> collect(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        long ticks = Math.min(nowTick - lastTick, buckets.length);
+        for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+            Timeout timeout = buckets[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineMillis / tickMillis <= nowTick) {
+                    unlink(timeout);
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+        lastTick = Math.max(lastTick, nowTick);
+        return expired;
+    }
+
+    private void link(Timeout timeout, int bucket) {
+        Timeout head = buckets[bucket];
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    abstract static class Timeout {
+
+        private Timeout prev;
+        private Timeout next;
+        private int bucket = -1;
+        private long deadlineMillis;
+
+        long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * Called once the deadline is reached, in the thread advancing the wheel.
+         */
+        abstract void expired(long nowMillis);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TLS settings of the connections to ssl:// server URIs.
+ * <p>
+ * The TLS context is created once, when the parameters are built, and shared by all the clients using these
+ * parameters: its session cache lets a client reconnecting, or another client connecting to the same endpoint,
+ * resume a previous TLS session with an abbreviated handshake instead of a full one.
+ */
+public final class TlsParameters {
+
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 1000;
+    public static final Duration DEFAULT_SESSION_TIMEOUT = Duration.ofHours(24);
+
+    private final SSLContext sslContext;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+    private final int sessionCacheSize;
+    private final Duration sessionTimeout;
+    private final SSLSocketFactory socketFactory;
+
+    private TlsParameters(TlsParametersBuilder builder, SSLContext sslContext) {
+        this.sslContext = sslContext;
+        this.protocols = builder.protocols;
+        this.cipherSuites = builder.cipherSuites;
+        this.sessionCacheSize = builder.sessionCacheSize;
+        this.sessionTimeout = builder.sessionTimeout;
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        sessionContext.setSessionCacheSize(sessionCacheSize);
+        sessionContext.setSessionTimeout((int) Math.min(Integer.MAX_VALUE, sessionTimeout.getSeconds()));
+        this.socketFactory = new TlsSocketFactory(sslContext.getSocketFactory(), protocols, cipherSuites);
+    }
+
+    public static TlsParametersBuilder builder() {
+        return new TlsParametersBuilder();
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * @return Enabled protocols, or null for the defaults of the TLS context
+     */
+    public List<String> getProtocols() {
+        return protocols != null ? Arrays.asList(protocols.clone()) : null;
+    }
+
+    /**
+     * @return Enabled cipher suites, or null for the defaults of the TLS context
+     */
+    public List<String> getCipherSuites() {
+        return cipherSuites != null ? Arrays.asList(cipherSuites.clone()) : null;
+    }
+
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    public Duration getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * @return Socket factory shared by the Paho clients, creating sockets with the enabled protocols and cipher suites
+     */
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    public static final class TlsParametersBuilder {
+        private SSLContext sslContext;
+        private String[] protocols;
+        private String[] cipherSuites;
+        private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+        private Duration sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+
+        /**
+         * Sets the TLS context, initialized with the key and trust material of the application. Its client session
+         * cache is configured with the session cache size and timeout. When not set, a TLS context trusting the
+         * default certificate authorities of the JVM is created.
+         *
+         * @param sslContext Initialized TLS context
+         * @return TLS parameters builder
+         */
+        public TlsParametersBuilder sslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        /**
+         * @param protocols Enabled protocols, e.g. TLSv1.3 and TLSv1.2
+         * @return TLS parameters builder
+         */
+        public TlsParametersBuilder protocols(String... protocols) {
+            this.protocols = protocols.clone();
+            return this;
+        }
+
+        /**
+         * @param cipherSuites Enabled cipher suites, by order of preference
+         * @return TLS parameters builder
+         */
+        public TlsParametersBuilder cipherSuites(String... cipherSuites) {
+            this.cipherSuites = cipherSuites.clone();
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of TLS sessions kept for resumption, 0 for no limit.
+         *
+         * @param sessionCacheSize Number of sessions
+         * @return TLS parameters builder
+         */
+        public TlsParametersBuilder sessionCacheSize(int sessionCacheSize) {
+            this.sessionCacheSize = sessionCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a TLS session can be resumed after its full handshake.
+         *
+         * @param sessionTimeout Session timeout
+         * @return TLS parameters builder
+         */
+        public TlsParametersBuilder sessionTimeout(Duration sessionTimeout) {
+            this.sessionTimeout = sessionTimeout;
+            return this;
+        }
+
+        public TlsParameters build() {
+            SSLContext context = sslContext != null ? sslContext : createDefaultSslContext();
+            validate(context);
+            return new TlsParameters(this, context);
+        }
+
+        private void validate(SSLContext context) {
+            SSLParameters supported = context.getSupportedSSLParameters();
+            if (protocols != null && (protocols.length == 0 || !Arrays.asList(supported.getProtocols()).containsAll(Arrays.asList(protocols)))) {
+                throw new ExternalConnectorParametersException("Protocols must be supported by the TLS context: " + Arrays.toString(supported.getProtocols()));
+            }
+            if (cipherSuites != null && (cipherSuites.length == 0 || !Arrays.asList(supported.getCipherSuites()).containsAll(Arrays.asList(cipherSuites)))) {
+                throw new ExternalConnectorParametersException("Cipher suites must be supported by the TLS context");
+            }
+            if (sessionCacheSize < 0) {
+                throw new ExternalConnectorParametersException("Session cache size must not be negative");
+            }
+            if (sessionTimeout == null || sessionTimeout.isNegative() || sessionTimeout.isZero()) {
+                throw new ExternalConnectorParametersException("Session timeout must be positive");
+            }
+        }
+
+        private static SSLContext createDefaultSslContext() {
+            try {
+                SSLContext context = SSLContext.getInstance("TLS");
+                context.init(null, null, null);
+                return context;
+            } catch (GeneralSecurityException e) {
+                throw new ExternalConnectorParametersException(e);
+            }
+        }
+    }
+}
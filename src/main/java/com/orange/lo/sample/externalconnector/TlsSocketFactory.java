@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Socket factory enabling the configured protocols and cipher suites on each socket it creates.
+ */
+final class TlsSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+
+    /**
+     * @param protocols    Enabled protocols, or null for the defaults
+     * @param cipherSuites Enabled cipher suites, or null for the defaults
+     */
+    TlsSocketFactory(SSLSocketFactory delegate, String[] protocols, String[] cipherSuites) {
+        this.delegate = delegate;
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return cipherSuites != null ? cipherSuites.clone() : delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, InputStream consumed, boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(socket, consumed, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket configure(Socket socket) {
+        SSLSocket sslSocket = (SSLSocket) socket;
+        if (protocols != null) {
+            sslSocket.setEnabledProtocols(protocols);
+        }
+        if (cipherSuites != null) {
+            sslSocket.setEnabledCipherSuites(cipherSuites);
+        }
+        return sslSocket;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Binary log of the traffic of a client, written by the capture mode and read by {@link TrafficReplay}.
+ * <p>
+ * The log starts with a header (magic, version, capture start in milliseconds since the epoch), followed by one
+ * record per message: direction, QoS, nanoseconds since the capture start, topic in modified UTF-8, payload length
+ * and payload.
+ */
+public final class TrafficLog {
+
+    private static final int MAGIC = 0x4C4F5452;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Direction {
+        /**
+         * Message published by the client.
+         */
+        OUTGOING,
+        /**
+         * Message received by the client, i.e. a command request.
+         */
+        INCOMING
+    }
+
+    private TrafficLog() {
+    }
+
+    public static Reader openReader(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    public static final class Record {
+
+        private final Direction direction;
+        private final int qos;
+        private final long timestampNanos;
+        private final String topic;
+        private final byte[] payload;
+
+        Record(Direction direction, int qos, long timestampNanos, String topic, byte[] payload) {
+            this.direction = direction;
+            this.qos = qos;
+            this.timestampNanos = timestampNanos;
+            this.topic = topic;
+            this.payload = payload;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        public int getQos() {
+            return qos;
+        }
+
+        /**
+         * @return Nanoseconds elapsed between the capture start and the message
+         */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final long startMillis;
+
+        private Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a traffic log: " + file);
+                }
+                this.startMillis = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return Capture start in milliseconds since the epoch
+         */
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return Next record, or null at the end of the log
+         */
+        public Record next() throws IOException {
+            int direction;
+            try {
+                direction = in.readByte();
+            } catch (EOFException e) {
+                return null;
+            }
+            int qos = in.readByte();
+            long timestampNanos = in.readLong();
+            String topic = in.readUTF();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new Record(Direction.values()[direction], qos, timestampNanos, topic, payload);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the records of the capture mode. Records are appended to a buffer under the lock of the writer and flushed
+     * when it is full and on close. After a write error, the capture stops and further records are ignored.
+     */
+    static final class Writer {
+
+        private static final Logger LOGGER = LoggerFactory.getLogger(Writer.class);
+
+        private final Path file;
+        private final DataOutputStream out;
+        private final long startNanos = System.nanoTime();
+        private boolean closed;
+
+        Writer(Path file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        synchronized void record(Direction direction, String topic, byte[] payload, int qos) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.writeByte(direction.ordinal());
+                out.writeByte(qos);
+                out.writeLong(System.nanoTime() - startNanos);
+                out.writeUTF(topic);
+                out.writeInt(payload.length);
+                out.write(payload);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write traffic capture to {}, capture stopped.", file, e);
+                close();
+            }
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close traffic capture {}.", file, e);
+            }
+        }
+    }
+}
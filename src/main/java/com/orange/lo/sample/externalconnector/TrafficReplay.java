@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.NodeStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a {@link TrafficLog} recorded by the capture mode back through a client, typically connected to a local
+ * broker, to reproduce a production load.
+ * <p>
+ * Status and data messages are decoded and sent again with {@link ExternalConnectorClient#sendStatus} and
+ * {@link ExternalConnectorClient#sendMessage}, so the whole publish path of the client is exercised. Command requests
+ * are handed to a {@link CommandSender}, which publishes them to the broker for the client to handle. Recorded
+ * command responses are skipped, since the client publishes them again when it handles the replayed requests.
+ * <p>
+ * Records are dispatched at their recorded time divided by the speed, on a fixed number of lanes. The records of a
+ * topic always go to the same lane, so the messages of a node keep their order.
+ */
+public final class TrafficReplay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplay.class);
+    private static final int LATENCY_SAMPLES = 65536;
+    private static final int QUEUED_RECORDS_PER_LANE = 1024;
+
+    /**
+     * Publishes a replayed command request to the command request topic of the client.
+     */
+    @FunctionalInterface
+    public interface CommandSender {
+        void send(String topic, byte[] payload) throws Exception;
+    }
+
+    private final Path captureFile;
+    private final double speed;
+    private final int lanes;
+    private final ObjectReader dataMessageReader;
+    private final ObjectReader nodeStatusReader;
+
+    /**
+     * @param captureFile Traffic log written by the capture mode
+     * @param speed       Replay speed: 1 replays at the recorded pace, 2 twice as fast,
+     *                    and {@link Double#POSITIVE_INFINITY} as fast as the client can send
+     * @param lanes       Number of threads sending the records
+     */
+    public TrafficReplay(Path captureFile, double speed, int lanes) {
+        if (captureFile == null) {
+            throw new ExternalConnectorParametersException("Capture file is required");
+        }
+        if (!(speed > 0)) {
+            throw new ExternalConnectorParametersException("Replay speed must be positive");
+        }
+        if (lanes < 1) {
+            throw new ExternalConnectorParametersException("Lanes must be positive");
+        }
+        this.captureFile = captureFile;
+        this.speed = speed;
+        this.lanes = lanes;
+        ObjectMapper objectMapper = new ObjectMapper()
+                .addMixIn(Metadata.class, MetadataMixIn.class)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.dataMessageReader = objectMapper.readerFor(DataMessage.class);
+        this.nodeStatusReader = objectMapper.readerFor(NodeStatus.class);
+    }
+
+    /**
+     * Replays the whole log and waits for the last record to be sent.
+     *
+     * @param client        Connected client, whose topic templates are used to find the node of each message
+     * @param commandSender Sender of the command requests, or null to skip them
+     * @return Replay result
+     * @throws IOException if the log cannot be read
+     */
+    public ReplayResult run(ExternalConnectorClient client, CommandSender commandSender) throws IOException {
+        ExternalConnectorParameters parameters = client.getParameters();
+        TopicTemplate dataTopic = new TopicTemplate(parameters.getDataTopicTemplate());
+        TopicTemplate statusTopic = new TopicTemplate(parameters.getStatusTopicTemplate());
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(lanes, runnable -> {
+            Thread thread = new Thread(runnable, "lo-replay-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        SerialExecutor[] laneExecutors = new SerialExecutor[lanes];
+        for (int i = 0; i < lanes; i++) {
+            laneExecutors[i] = new SerialExecutor(executor);
+        }
+        int maxQueued = lanes * QUEUED_RECORDS_PER_LANE;
+        Semaphore queued = new Semaphore(maxQueued);
+        Counters counters = new Counters();
+        long maxLagNanos = 0;
+        long start = System.nanoTime();
+        try (TrafficLog.Reader reader = TrafficLog.openReader(captureFile)) {
+            TrafficLog.Record record;
+            while ((record = reader.next()) != null) {
+                Runnable task = task(record, client, commandSender, dataTopic, statusTopic, counters);
+                if (task == null) {
+                    counters.skipped.incrementAndGet();
+                    continue;
+                }
+                maxLagNanos = Math.max(maxLagNanos, awaitScheduledTime(start, record.getTimestampNanos()));
+                queued.acquireUninterruptibly();
+                laneExecutors[(record.getTopic().hashCode() & Integer.MAX_VALUE) % lanes].execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        queued.release();
+                    }
+                });
+            }
+            queued.acquireUninterruptibly(maxQueued);
+        } finally {
+            executor.shutdownNow();
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        long[] latencies = counters.latencies.sortedSnapshot();
+        ReplayResult result = new ReplayResult(counters.messages.get(), counters.commands.get(), counters.skipped.get(), counters.failed.get(),
+                duration, Duration.ofNanos(maxLagNanos), latency(latencies, 0.5), latency(latencies, 0.9), latency(latencies, 0.99),
+                latency(latencies, 1));
+        LOGGER.info("Replay of {} completed: {}.", captureFile, result);
+        return result;
+    }
+
+    private Runnable task(TrafficLog.Record record, ExternalConnectorClient client, CommandSender commandSender,
+                          TopicTemplate dataTopic, TopicTemplate statusTopic, Counters counters) {
+        String topic = record.getTopic();
+        if (record.getDirection() == TrafficLog.Direction.INCOMING) {
+            if (commandSender == null) {
+                return null;
+            }
+            return () -> {
+                try {
+                    commandSender.send(topic, record.getPayload());
+                    counters.commands.incrementAndGet();
+                } catch (Exception e) {
+                    counters.failed.incrementAndGet();
+                    LOGGER.debug("Unable to send replayed command on topic {}.", topic, e);
+                }
+            };
+        }
+        String dataNodeId = dataTopic.nodeIdOf(topic);
+        if (dataNodeId != null) {
+            return () -> counters.send(() -> client.sendMessage(dataNodeId, dataMessageReader.readValue(record.getPayload())));
+        }
+        String statusNodeId = statusTopic.nodeIdOf(topic);
+        if (statusNodeId != null) {
+            return () -> counters.send(() -> client.sendStatus(statusNodeId, nodeStatusReader.readValue(record.getPayload())));
+        }
+        return null;
+    }
+
+    /**
+     * Waits until the scheduled time of a record.
+     *
+     * @return Delay between the scheduled time and now, 0 if the record is on time
+     */
+    private long awaitScheduledTime(long start, long timestampNanos) {
+        if (speed == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+        long scheduled = start + (long) (timestampNanos / speed);
+        long remaining;
+        while ((remaining = scheduled - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+        return -remaining;
+    }
+
+    private static Duration latency(long[] sortedLatencies, double percentile) {
+        return Duration.ofNanos(LatencySamples.percentile(sortedLatencies, percentile));
+    }
+
+    private interface Send {
+        void run() throws IOException;
+    }
+
+    private static final class Counters {
+
+        final AtomicLong messages = new AtomicLong();
+        final AtomicLong commands = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final LatencySamples latencies = new LatencySamples(LATENCY_SAMPLES);
+
+        void send(Send send) {
+            long start = System.nanoTime();
+            try {
+                send.run();
+                latencies.record(System.nanoTime() - start);
+                messages.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                LOGGER.debug("Unable to send replayed message.", e);
+            }
+        }
+    }
+
+    /**
+     * Extracts the node id from a topic built with a topic template containing a single %s.
+     */
+    private static final class TopicTemplate {
+
+        private final String prefix;
+        private final String suffix;
+
+        TopicTemplate(String template) {
+            int index = template.indexOf("%s");
+            this.prefix = index >= 0 ? template.substring(0, index) : template;
+            this.suffix = index >= 0 ? template.substring(index + 2) : null;
+        }
+
+        String nodeIdOf(String topic) {
+            if (suffix == null || topic.length() <= prefix.length() + suffix.length() || !topic.startsWith(prefix) || !topic.endsWith(suffix)) {
+                return null;
+            }
+            return topic.substring(prefix.length(), topic.length() - suffix.length());
+        }
+    }
+
+    private abstract static class MetadataMixIn {
+        @JsonCreator
+        MetadataMixIn(@JsonProperty("encoding") String encoding) {
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * JSON writer of a value class, generated for the classes annotated with {@link LoValue}. Generated writers are
+ * listed in {@code META-INF/services/com.orange.lo.sample.externalconnector.ValueWriter} and registered with the
+ * serializer of each client.
+ *
+ * @param <T> Value class
+ */
+public interface ValueWriter<T> {
+
+    Class<T> getType();
+
+    /**
+     * Writes the value as a JSON object.
+     *
+     * @param value     Value, not null
+     * @param generator JSON generator
+     * @param provider  Serializer provider, used for the properties not written by the writer itself
+     * @throws IOException if the generator fails
+     */
+    void write(T value, JsonGenerator generator, SerializerProvider provider) throws IOException;
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registers the generated {@link ValueWriter}s found on the class path as Jackson serializers.
+ */
+final class ValueWriters {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValueWriters.class);
+
+    private ValueWriters() {
+    }
+
+    static SimpleModule module() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ValueWriters.class.getClassLoader();
+        }
+        SimpleModule module = new SimpleModule("LoValueWriters");
+        Iterator<ValueWriter<?>> writers = load(classLoader).iterator();
+        int count = 0;
+        while (true) {
+            try {
+                if (!writers.hasNext()) {
+                    break;
+                }
+                add(module, writers.next());
+                count++;
+            } catch (ServiceConfigurationError e) {
+                LOGGER.warn("Unable to load a generated value writer.", e);
+            }
+        }
+        LOGGER.debug("{} generated value writer(s) registered.", count);
+        return module;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServiceLoader<ValueWriter<?>> load(ClassLoader classLoader) {
+        return (ServiceLoader<ValueWriter<?>>) (ServiceLoader<?>) ServiceLoader.load(ValueWriter.class, classLoader);
+    }
+
+    private static <T> void add(SimpleModule module, ValueWriter<T> writer) {
+        module.addSerializer(writer.getType(), new WriterSerializer<>(writer));
+    }
+
+    static final class WriterSerializer<T> extends StdSerializer<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ValueWriter<T> writer;
+
+        WriterSerializer(ValueWriter<T> writer) {
+            super(writer.getType());
+            this.writer = writer;
+        }
+
+        @Override
+        public void serialize(T value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            writer.write(value, generator, provider);
+        }
+    }
+}
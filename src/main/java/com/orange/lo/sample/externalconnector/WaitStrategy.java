@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * How the writer thread of the publish ring waits for messages. Spinning gives the lowest latency at the cost of a
+ * core kept busy, parking frees the core but adds the wake-up latency of the thread.
+ */
+public enum WaitStrategy {
+    /**
+     * The writer polls the ring continuously. Use only when a core can be dedicated to the writer.
+     */
+    BUSY_SPIN,
+    /**
+     * The writer polls the ring and yields the processor between polls.
+     */
+    YIELD,
+    /**
+     * The writer polls the ring briefly, then parks until a producer wakes it up.
+     */
+    PARK
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector;
+
+import java.time.Duration;
+
+/**
+ * Outcome of {@link ExternalConnectorClient#warmUp(int)}.
+ */
+public final class WarmUpResult {
+
+    private final int iterations;
+    private final Duration duration;
+
+    WarmUpResult(int iterations, Duration duration) {
+        this.iterations = iterations;
+        this.duration = duration;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpResult [iterations=" + iterations + ", duration=" + duration + "]";
+    }
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright (c) Orange. All Rights Reserved.
+ * <p>
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.orange.lo.sample.externalconnector.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@code ValueWriter} for each class annotated with {@code @LoValue}, and lists the writers in
+ * {@code META-INF/services} so the client registers them. The writers call the getters directly and write the
+ * property names from pre-encoded constants: no reflection, no boxing of primitive properties and no lookup of the
+ * serializer of the known scalar types. Other properties are delegated to Jackson.
+ */
+@SupportedAnnotationTypes(ValueWriterProcessor.LO_VALUE)
+public final class ValueWriterProcessor extends AbstractProcessor {
+
+    static final String LO_VALUE = "com.orange.lo.sample.externalconnector.LoValue";
+
+    private static final String VALUE_WRITER = "com.orange.lo.sample.externalconnector.ValueWriter";
+    private static final String SERVICES_FILE = "META-INF/services/" + VALUE_WRITER;
+    private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+    private static final String WRITER_SUFFIX = "_ValueWriter";
+
+    private final Set<String> writers = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServicesFile();
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (isValid(element)) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isValid(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return error(element, "@LoValue applies to classes only");
+        }
+        TypeElement type = (TypeElement) element;
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            return error(element, "@LoValue class must not be private");
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            return error(element, "@LoValue nested class must be static");
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            return error(element, "@LoValue class must be a top level or static nested class");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            return error(element, "@LoValue class must not be generic");
+        }
+        return true;
+    }
+
+    private boolean error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String writerName = flatName(type) + WRITER_SUFFIX;
+        String qualifiedWriterName = packageName.isEmpty() ? writerName : packageName + "." + writerName;
+        List<Property> properties = properties(type);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n * JSON writer of {@link ").append(typeName).append("}, generated by ")
+                .append(ValueWriterProcessor.class.getSimpleName()).append(". Do not edit.\n */\n");
+        source.append("public final class ").append(writerName).append(" implements ").append(VALUE_WRITER).append("<").append(typeName).append("> {\n\n");
+        for (int i = 0; i < properties.size(); i++) {
+            source.append("    private static final com.fasterxml.jackson.core.io.SerializedString NAME_").append(i)
+                    .append(" = new com.fasterxml.jackson.core.io.SerializedString(\"").append(escape(properties.get(i).name)).append("\");\n");
+        }
+        source.append("\n    @Override\n    public Class<").append(typeName).append("> getType() {\n        return ").append(typeName).append(".class;\n    }\n\n");
+        source.append("    @Override\n    public void write(").append(typeName).append(" value, com.fasterxml.jackson.core.JsonGenerator generator, ")
+                .append("com.fasterxml.jackson.databind.SerializerProvider provider) throws java.io.IOException {\n");
+        source.append("        generator.writeStartObject(value);\n");
+        for (int i = 0; i < properties.size(); i++) {
+            writeProperty(source, properties.get(i), "NAME_" + i, i);
+        }
+        source.append("        generator.writeEndObject();\n    }\n}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedWriterName, type).openWriter()) {
+            writer.write(source.toString());
+            writers.add(qualifiedWriterName);
+        } catch (IOException e) {
+            error(type, "Unable to write " + qualifiedWriterName + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeProperty(StringBuilder source, Property property, String name, int index) {
+        source.append("        generator.writeFieldName(").append(name).append(");\n");
+        TypeMirror type = property.type;
+        switch (type.getKind()) {
+            case BOOLEAN:
+                source.append("        generator.writeBoolean(").append(property.accessor).append(");\n");
+                return;
+            case BYTE:
+                source.append("        generator.writeNumber((int) ").append(property.accessor).append(");\n");
+                return;
+            case CHAR:
+                source.append("        generator.writeString(String.valueOf(").append(property.accessor).append("));\n");
+                return;
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                source.append("        generator.writeNumber(").append(property.accessor).append(");\n");
+                return;
+            default:
+                break;
+        }
+        String scalarWrite = scalarWrite(type);
+        String local = "value" + index;
+        if (scalarWrite == null) {
+            source.append("        provider.defaultSerializeValue(").append(property.accessor).append(", generator);\n");
+            return;
+        }
+        source.append("        ").append(type).append(" ").append(local).append(" = ").append(property.accessor).append(";\n");
+        source.append("        if (").append(local).append(" == null) {\n            generator.writeNull();\n        } else {\n");
+        source.append("            generator.").append(String.format(scalarWrite, local)).append(";\n        }\n");
+    }
+
+    /**
+     * @return Format of the generator call writing a non null value of the type, or null if Jackson must be used
+     */
+    private static String scalarWrite(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        switch (((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString()) {
+            case "java.lang.String":
+                return "writeString(%s)";
+            case "java.lang.Boolean":
+                return "writeBoolean(%s)";
+            case "java.lang.Byte":
+                return "writeNumber((int) %s)";
+            case "java.lang.Short":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+            case "java.lang.Float":
+            case "java.lang.Double":
+            case "java.math.BigInteger":
+            case "java.math.BigDecimal":
+                return "writeNumber(%s)";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Public getters and public fields of the class and its superclasses, superclass properties first.
+     */
+    private List<Property> properties(TypeElement type) {
+        Deque<TypeElement> hierarchy = new ArrayDeque<>();
+        for (TypeElement current = type; current != null && !current.getQualifiedName().contentEquals("java.lang.Object"); current = superclass(current)) {
+            hierarchy.push(current);
+        }
+        Map<String, Property> properties = new LinkedHashMap<>();
+        List<String> ignored = new ArrayList<>();
+        for (TypeElement current : hierarchy) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                String implicitName = getterName(method);
+                if (implicitName == null) {
+                    continue;
+                }
+                VariableElement field = field(current, implicitName);
+                if (hasAnnotation(method, JSON_IGNORE) || field != null && hasAnnotation(field, JSON_IGNORE)) {
+                    ignored.add(implicitName);
+                    continue;
+                }
+                String name = explicitName(method, field, implicitName);
+                properties.putIfAbsent(name, new Property(name, method.getReturnType(), "value." + method.getSimpleName() + "()"));
+            }
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                String implicitName = field.getSimpleName().toString();
+                Set<Modifier> modifiers = field.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                        || hasAnnotation(field, JSON_IGNORE) || ignored.contains(implicitName)) {
+                    continue;
+                }
+                String name = explicitName(field, null, implicitName);
+                properties.putIfAbsent(name, new Property(name, field.asType(), "value." + implicitName));
+            }
+        }
+        return new ArrayList<>(properties.values());
+    }
+
+    private static TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    /**
+     * @return Implicit property name of a public getter, following the Jackson naming, or null if not a getter
+     */
+    private static String getterName(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID) {
+            return null;
+        }
+        String name = method.getSimpleName().toString();
+        if (name.startsWith("get") && name.length() > 3 && !name.equals("getClass")) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    /**
+     * Lower cases the leading upper case characters, like Jackson: {@code URL} becomes {@code url}.
+     */
+    private static String decapitalize(String name) {
+        StringBuilder result = new StringBuilder(name);
+        for (int i = 0; i < result.length() && Character.isUpperCase(result.charAt(i)); i++) {
+            result.setCharAt(i, Character.toLowerCase(result.charAt(i)));
+        }
+        return result.toString();
+    }
+
+    private static VariableElement field(TypeElement type, String name) {
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getSimpleName().contentEquals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static String explicitName(Element element, Element field, String implicitName) {
+        String name = jsonPropertyValue(element);
+        if (name == null && field != null) {
+            name = jsonPropertyValue(field);
+        }
+        return name != null ? name : implicitName;
+    }
+
+    private static String jsonPropertyValue(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (!isAnnotation(annotation, JSON_PROPERTY)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    String value = entry.getValue().getValue().toString();
+                    return value.isEmpty() ? null : value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (isAnnotation(annotation, annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAnnotation(AnnotationMirror annotation, String annotationName) {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName);
+    }
+
+    private static String flatName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            name = enclosing.getSimpleName() + "_" + name;
+        }
+        return name;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Writes the services file, keeping the writers listed by a previous incremental compilation.
+     */
+    private void writeServicesFile() {
+        if (writers.isEmpty()) {
+            return;
+        }
+        Set<String> allWriters = new TreeSet<>(writers);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        allWriters.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no services file yet
+        }
+        try {
+            FileObject servicesFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+            try (Writer writer = servicesFile.openWriter()) {
+                for (String name : allWriters) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICES_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Property {
+
+        private final String name;
+        private final TypeMirror type;
+        private final String accessor;
+
+        Property(String name, TypeMirror type, String accessor) {
+            this.name = name;
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+}
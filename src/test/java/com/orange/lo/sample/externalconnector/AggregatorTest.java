@@ -0,0 +1,93 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.AggregatedValue;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregatorTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long START = 1_700_000_040_000L;
+
+    private final List<String> nodeIds = new ArrayList<>();
+    private final List<DataMessage> sent = new ArrayList<>();
+    private final Aggregator aggregator = new Aggregator(AggregationParameters.builder().window(Duration.ofMinutes(1)).model("agg_v0").build(),
+            (nodeId, message) -> {
+                nodeIds.add(nodeId);
+                sent.add(message);
+            });
+
+    @Test
+    void shouldSendWindowWhenReadingOfNextWindowArrives() {
+        aggregator.add("node-1", "temperature", 21.0, START);
+        aggregator.add("node-1", "temperature", 23.0, START + 10_000);
+        aggregator.add("node-1", "temperature", 22.0, START + 59_999);
+        aggregator.add("node-1", "humidity", 40.0, START + 1000);
+        assertTrue(sent.isEmpty());
+
+        aggregator.add("node-1", "temperature", 30.0, START + MINUTE);
+
+        assertEquals(1, sent.size());
+        DataMessage message = sent.get(0);
+        assertEquals("node-1", nodeIds.get(0));
+        assertEquals("temperature", message.getStreamId());
+        assertEquals("agg_v0", message.getModel());
+        assertEquals("2023-11-14T22:14:00Z", message.getTimestamp());
+        AggregatedValue value = (AggregatedValue) message.getValue();
+        assertEquals(21.0, value.getMin());
+        assertEquals(23.0, value.getMax());
+        assertEquals(22.0, value.getAvg());
+        assertEquals(3, value.getCount());
+    }
+
+    @Test
+    void shouldFlushOnPublishingExecutor() {
+        List<Runnable> publications = new ArrayList<>();
+        aggregator.add("node-1", "temperature", 21.0, START);
+
+        aggregator.scheduleFlush(START + MINUTE + 1, publications::add);
+        assertTrue(sent.isEmpty());
+        assertEquals(1, publications.size());
+
+        // still running, the flush is not handed over twice
+        aggregator.scheduleFlush(START + MINUTE + 2, publications::add);
+        assertEquals(1, publications.size());
+
+        publications.get(0).run();
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void shouldSendOnlyClosedWindowsOnFlush() {
+        aggregator.add("node-1", "temperature", 21.0, START);
+        aggregator.add("node-2", "temperature", 25.0, START + MINUTE);
+
+        aggregator.flush(START + MINUTE + 1);
+
+        assertEquals(1, sent.size());
+        assertEquals("node-1", nodeIds.get(0));
+        aggregator.flushAll();
+        assertEquals(2, sent.size());
+        assertEquals(25.0, ((AggregatedValue) sent.get(1).getValue()).getAvg());
+        assertEquals(2, aggregator.getStats().getWindows());
+        assertEquals(2, aggregator.getStats().getStreams());
+    }
+
+    @Test
+    void shouldRejectReadingsOnceClosed() {
+        aggregator.add("node-1", "temperature", 21.0, START);
+
+        aggregator.close();
+
+        assertEquals(1, sent.size());
+        assertFalse(aggregator.add("node-1", "temperature", 22.0, START));
+        aggregator.flushAll();
+        assertEquals(1, sent.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.CircuitBreakerOpenException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final AtomicInteger closings = new AtomicInteger();
+
+    @Test
+    void shouldOpenWhenFailureRateIsExceeded() {
+        CircuitBreaker circuitBreaker = circuitBreaker(SheddingMode.REJECT, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.record(FAST, i < 4);
+        }
+        circuitBreaker.record(FAST, true);
+        assertEquals(CircuitBreakerStats.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.record(FAST, true);
+
+        assertEquals(CircuitBreakerStats.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertThrows(CircuitBreakerOpenException.class, () -> circuitBreaker.shed("topic", new byte[0], 1));
+        assertEquals(1, circuitBreaker.getStats().getRejected());
+        assertEquals(1, circuitBreaker.getStats().getOpenings());
+    }
+
+    @Test
+    void shouldOpenWhenPublicationsAreSlow() {
+        CircuitBreaker circuitBreaker = circuitBreaker(SheddingMode.REJECT, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.record(SLOW, false);
+        }
+
+        assertEquals(CircuitBreakerStats.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void shouldCloseOnceProbesSucceed() throws InterruptedException {
+        CircuitBreaker circuitBreaker = circuitBreaker(SheddingMode.REJECT, Duration.ofMillis(1));
+        openWithFailures(circuitBreaker);
+        Thread.sleep(5);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreakerStats.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.record(FAST, false);
+        circuitBreaker.record(FAST, false);
+
+        assertEquals(CircuitBreakerStats.State.CLOSED, circuitBreaker.getState());
+        assertEquals(1, closings.get());
+    }
+
+    @Test
+    void shouldOpenAgainWhenProbeFails() throws InterruptedException {
+        CircuitBreaker circuitBreaker = circuitBreaker(SheddingMode.REJECT, Duration.ofMillis(1));
+        openWithFailures(circuitBreaker);
+        Thread.sleep(5);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.record(SLOW, false);
+
+        assertEquals(CircuitBreakerStats.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, circuitBreaker.getStats().getOpenings());
+    }
+
+    @Test
+    void shouldSpillMessagesAndDropOldestWhenFull() {
+        CircuitBreaker circuitBreaker = circuitBreaker(SheddingMode.SPILL, Duration.ofMinutes(1));
+        openWithFailures(circuitBreaker);
+
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.shed("topic-" + i, new byte[0], 1);
+        }
+
+        assertEquals(3, circuitBreaker.getSpillSize());
+        assertEquals(1, circuitBreaker.getStats().getDropped());
+        assertEquals("topic-1", circuitBreaker.pollSpilled().topic);
+    }
+
+    @Test
+    void shouldLetSampleOfMessagesThroughWhenOpen() {
+        CircuitBreaker circuitBreaker = circuitBreaker(SheddingMode.SAMPLE, Duration.ofMinutes(1));
+        openWithFailures(circuitBreaker);
+
+        int acquired = 0;
+        for (int i = 0; i < 100; i++) {
+            if (circuitBreaker.tryAcquire()) {
+                acquired++;
+            }
+        }
+
+        assertEquals(25, acquired);
+    }
+
+    private CircuitBreaker circuitBreaker(SheddingMode sheddingMode, Duration openDuration) {
+        return new CircuitBreaker(CircuitBreakerParameters.builder()
+                .windowSize(20)
+                .minimumPublishes(10)
+                .openDuration(openDuration)
+                .probes(2)
+                .sheddingMode(sheddingMode)
+                .sampleRate(0.25)
+                .spillCapacity(3)
+                .build(), closings::incrementAndGet);
+    }
+
+    private static void openWithFailures(CircuitBreaker circuitBreaker) {
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.record(FAST, true);
+        }
+        assertEquals(CircuitBreakerStats.State.OPEN, circuitBreaker.getState());
+    }
+}
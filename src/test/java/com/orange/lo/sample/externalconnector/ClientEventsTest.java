@@ -0,0 +1,89 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.LoMqttException;
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Value;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class ClientEventsTest {
+
+    @Mock
+    private MqttClient mqttClient;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldRecordPublicationsConnectionsAndErrors() throws MqttException, IOException {
+        ExternalConnectorClient client = new ExternalConnectorClient(ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .build(), mqttClient);
+        Path file = tempDir.resolve("events.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.orange.lo.Publish").withThreshold(Duration.ZERO);
+            recording.enable("com.orange.lo.Connection");
+            recording.enable("com.orange.lo.Error");
+            recording.start();
+            client.connect();
+            client.sendMessage("node-1", dataMessage());
+            doThrow(new MqttException(MqttException.REASON_CODE_CLIENT_TIMEOUT)).when(mqttClient).publish(anyString(), any(MqttMessage.class));
+            assertThrows(LoMqttException.class, () -> client.sendMessage("node-1", dataMessage()));
+            client.disconnect();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> publications = eventsOf(events, "com.orange.lo.Publish");
+        assertEquals(2, publications.size());
+        assertEquals("DATA_MESSAGE", publications.get(0).getString("kind"));
+        assertEquals("connector/v1/nodes/node-1/data", publications.get(0).getString("topic"));
+        assertTrue(publications.get(0).getInt("payloadSize") > 0);
+        assertEquals(1, publications.get(0).getInt("qos"));
+        assertEquals("PUBLISHED", publications.get(0).getString("outcome"));
+        assertEquals("FAILED", publications.get(1).getString("outcome"));
+        List<String> states = eventsOf(events, "com.orange.lo.Connection").stream().map(event -> event.getString("state")).collect(Collectors.toList());
+        assertTrue(states.contains("CONNECTED"));
+        assertTrue(states.contains("DISCONNECTED"));
+        List<RecordedEvent> errors = eventsOf(events, "com.orange.lo.Error");
+        assertEquals(1, errors.size());
+        assertEquals(LoMqttException.class.getName(), errors.get(0).getClass("exceptionClass").getName());
+    }
+
+    private static List<RecordedEvent> eventsOf(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+
+    private static DataMessage dataMessage() {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setValue(new Value("15;25"));
+        return dataMessage;
+    }
+}
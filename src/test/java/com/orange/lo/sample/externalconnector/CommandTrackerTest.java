@@ -0,0 +1,94 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.CommandRequest;
+import com.orange.lo.sample.lo.model.CommandRequestValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandTrackerTest {
+
+    private static final long TIMEOUT_MILLIS = 1000;
+
+    private final List<String> expired = new ArrayList<>();
+    private final CommandTracker commandTracker = new CommandTracker(TIMEOUT_MILLIS, command -> expired.add(command.getId()), Runnable::run);
+
+    @Test
+    void shouldTrackCommandsUntilCompleted() {
+        CommandTracker.TrackedCommand first = commandTracker.arrived(commandRequest("cmd-1", "node-1", "reboot"), true);
+        commandTracker.arrived(commandRequest("cmd-2", "node-1", "reboot"), true);
+        commandTracker.arrived(commandRequest("cmd-3", "node-2", null), true);
+
+        assertEquals(3, commandTracker.getInFlight());
+        assertEquals(2, commandTracker.getInFlight("node-1"));
+        assertEquals(2, commandTracker.getStats().get("reboot").getInFlight());
+
+        commandTracker.handlerStarted(first);
+        assertTrue(commandTracker.complete(first));
+        commandTracker.responded(first);
+
+        CommandStats reboot = commandTracker.getStats().get("reboot");
+        assertEquals(1, reboot.getInFlight());
+        assertEquals(1, reboot.getCompleted());
+        assertEquals(1, reboot.getSampleCount());
+        assertEquals(1, commandTracker.getStats().get(CommandTracker.NO_REQ).getInFlight());
+    }
+
+    @Test
+    void shouldExpireOverdueCommandsOnce() {
+        CommandTracker.TrackedCommand late = commandTracker.arrived(commandRequest("cmd-1", "node-1", "reboot"), true);
+        CommandTracker.TrackedCommand onTime = commandTracker.arrived(commandRequest("cmd-2", "node-1", "reboot"), true);
+        assertTrue(commandTracker.complete(onTime));
+
+        commandTracker.advance(System.currentTimeMillis() + TIMEOUT_MILLIS * 2);
+
+        assertEquals(1, expired.size());
+        assertEquals("cmd-1", expired.get(0));
+        assertFalse(commandTracker.complete(late));
+        assertEquals(0, commandTracker.getInFlight());
+        assertEquals(1, commandTracker.getStats().get("reboot").getTimedOut());
+    }
+
+    @Test
+    void shouldHandleExpiriesOnPublishingExecutor() {
+        List<Runnable> publications = new ArrayList<>();
+        CommandTracker tracker = new CommandTracker(TIMEOUT_MILLIS, command -> expired.add(command.getId()), publications::add);
+        tracker.arrived(commandRequest("cmd-1", "node-1", "reboot"), true);
+        tracker.arrived(commandRequest("cmd-2", "node-1", "reboot"), true);
+
+        tracker.advance(System.currentTimeMillis() + TIMEOUT_MILLIS * 2);
+        assertTrue(expired.isEmpty());
+        assertEquals(1, publications.size());
+        assertEquals(0, tracker.getInFlight());
+
+        publications.get(0).run();
+        assertEquals(2, expired.size());
+    }
+
+    @Test
+    void shouldCountFailedHandlers() {
+        CommandTracker.TrackedCommand command = commandTracker.arrived(commandRequest("cmd-1", "node-1", "reboot"), false);
+
+        commandTracker.failed(command);
+        commandTracker.advance(System.currentTimeMillis() + TIMEOUT_MILLIS * 2);
+
+        assertTrue(expired.isEmpty());
+        assertEquals(1, commandTracker.getStats().get("reboot").getFailed());
+        assertEquals(0, commandTracker.getStats().get("reboot").getInFlight());
+    }
+
+    private static CommandRequest commandRequest(String id, String nodeId, String req) {
+        CommandRequest commandRequest = new CommandRequest();
+        commandRequest.setId(id);
+        commandRequest.setNodeId(nodeId);
+        if (req != null) {
+            CommandRequestValue value = new CommandRequestValue();
+            value.setReq(req);
+            commandRequest.setValue(value);
+        }
+        return commandRequest;
+    }
+}
@@ -0,0 +1,86 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Value;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflationBufferTest {
+
+    private final List<String> published = new ArrayList<>();
+
+    @Test
+    void shouldPublishOnlyLatestMessageOfEachNodeAndStream() {
+        ConflationBuffer buffer = new ConflationBuffer(parameters(), (topic, message) -> published.add(topic + "=" + ((Value) message.getValue()).getPayload()));
+
+        buffer.offer("node-1", dataMessage("gauge", "1"));
+        buffer.offer("node-1", dataMessage("position", "2"));
+        buffer.offer("node-1", dataMessage("gauge", "3"));
+        buffer.offer("node-2", dataMessage("gauge", "4"));
+        buffer.offer("node-1", dataMessage("gauge", "5"));
+        assertEquals(3, buffer.getStats().getPending());
+        assertEquals(2, buffer.getStats().getConflated());
+        buffer.start();
+        buffer.stop(0);
+
+        assertEquals(Arrays.asList("node-1=5", "node-1=2", "node-2=4"), published);
+        assertEquals(3, buffer.getStats().getPublished());
+        assertEquals(0, buffer.getStats().getPending());
+    }
+
+    @Test
+    void shouldRetryFailedPublication() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ConflationBuffer buffer = new ConflationBuffer(parameters(), (topic, message) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("broker unavailable");
+            }
+            published.add(topic);
+        });
+        buffer.start();
+
+        buffer.offer("node-1", dataMessage("gauge", "1"));
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (buffer.getStats().getPublished() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        buffer.stop(0);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, buffer.getStats().getFailed());
+        assertEquals(1, buffer.getStats().getPublished());
+    }
+
+    @Test
+    void shouldSelectStreamsByPattern() {
+        ConflationBuffer buffer = new ConflationBuffer(parameters(), (topic, message) -> {
+        });
+
+        assertTrue(buffer.isConflated(dataMessage("gauge", "1")));
+        assertTrue(buffer.isConflated(dataMessage("position/gps", "1")));
+        assertFalse(buffer.isConflated(dataMessage("alarm", "1")));
+        assertFalse(buffer.isConflated(dataMessage(null, "1")));
+    }
+
+    private static ConflationParameters parameters() {
+        return ConflationParameters.builder()
+                .streamId("gauge")
+                .streamId("position*")
+                .retryDelay(Duration.ofMillis(10))
+                .build();
+    }
+
+    private static DataMessage dataMessage(String streamId, String value) {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setStreamId(streamId);
+        dataMessage.setValue(new Value(value));
+        return dataMessage;
+    }
+}
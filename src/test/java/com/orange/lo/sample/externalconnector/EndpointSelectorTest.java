@@ -0,0 +1,72 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndpointSelectorTest {
+
+    @Test
+    void shouldRankReachableEndpointsFirst() throws Exception {
+        String unreachable;
+        try (ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            unreachable = "tcp://127.0.0.1:" + closed.getLocalPort();
+        }
+        try (ServerSocket listening = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            String reachable = "tcp://127.0.0.1:" + listening.getLocalPort();
+            EndpointSelector selector = new EndpointSelector(Arrays.asList(unreachable, reachable), 1000, null);
+
+            List<String> ranked = selector.rank();
+
+            assertEquals(Arrays.asList(reachable, unreachable), ranked);
+            EndpointStats unreachableStats = selector.getStats().get(unreachable);
+            assertEquals(1, unreachableStats.getProbeFailures());
+            assertNull(unreachableStats.getLastProbeLatency());
+            assertNotNull(selector.getStats().get(reachable).getLastProbeLatency());
+        }
+    }
+
+    @Test
+    void shouldHandshakeWithSocketFactoryOfTlsParameters() throws Exception {
+        try (LocalMqttBroker broker = LocalMqttBroker.withTls()) {
+            TlsParameters tlsParameters = TlsParameters.builder()
+                    .sslContext(LocalMqttBroker.clientSslContext())
+                    .build();
+            EndpointSelector selector = new EndpointSelector(Collections.singletonList(broker.getUri()), 1000, tlsParameters.getSocketFactory());
+
+            selector.rank();
+
+            EndpointStats stats = selector.getStats().get(broker.getUri());
+            assertEquals(0, stats.getProbeFailures());
+            assertNotNull(stats.getLastProbeLatency());
+            // the session of the probe is kept for the connection of the client
+            assertTrue(tlsParameters.getSslContext().getClientSessionContext().getIds().hasMoreElements());
+        }
+    }
+
+    @Test
+    void shouldRecordConnectionsOfKnownEndpoints() {
+        EndpointSelector selector = new EndpointSelector(Arrays.asList("tcp://a:1883", "tcp://b:1883"), 1000, null);
+
+        selector.connected("tcp://b:1883", 2_000_000);
+        selector.connectionLost("tcp://b:1883");
+        selector.connected("tcp://a:1883", -1);
+        selector.connected("tcp://unknown:1883", 1);
+
+        EndpointStats b = selector.getStats().get("tcp://b:1883");
+        assertEquals(1, b.getConnections());
+        assertEquals(1, b.getConnectionLosses());
+        assertEquals(2, b.getLastConnectLatency().toMillis());
+        assertNull(selector.getStats().get("tcp://a:1883").getLastConnectLatency());
+        assertEquals(2, selector.getStats().size());
+    }
+}
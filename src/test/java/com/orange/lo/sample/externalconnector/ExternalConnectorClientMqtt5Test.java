@@ -0,0 +1,115 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Value;
+import org.eclipse.paho.mqttv5.client.IMqttMessageListener;
+import org.eclipse.paho.mqttv5.client.MqttClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.orange.lo.sample.externalconnector.ExternalConnectorParameters.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ExternalConnectorClientMqtt5Test {
+
+    private static final String EX_CONNECTOR_NODE_ID = "x-con-library-device-node-id";
+
+    @Mock
+    private MqttClient mqttClient;
+    private ExternalConnectorClient externalConnectorClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ExternalConnectorParameters externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .mqttVersion(MqttVersion.MQTT_5)
+                .receiveMaximum(5)
+                .messageCallback((commandRequest) -> null)
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+    }
+
+    @Test
+    void shouldConnectWithReceiveMaximumFromParameters() throws MqttException {
+        ArgumentCaptor<MqttConnectionOptions> options = ArgumentCaptor.forClass(MqttConnectionOptions.class);
+        verify(mqttClient, times(1)).connectWithResult(options.capture());
+
+        assertEquals(5, options.getValue().getReceiveMaximum());
+        assertEquals(DEFAULT_USER, options.getValue().getUserName());
+    }
+
+    @Test
+    void shouldSubscribeCommandRequestTopic() throws MqttException {
+        verify(mqttClient, times(1)).subscribe(eq(DEFAULT_COMMAND_REQUEST_TOPIC), eq(DEFAULT_MESSAGE_QOS), any(IMqttMessageListener.class));
+    }
+
+    @Test
+    void shouldPublishMessageToDataTopicOfNode() throws Exception {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setValue(new Value("15;25"));
+        byte[] expectedPayload = new ObjectMapper().writeValueAsString(dataMessage).getBytes();
+
+        externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, dataMessage);
+
+        ArgumentCaptor<MqttMessage> message = ArgumentCaptor.forClass(MqttMessage.class);
+        verify(mqttClient, times(1)).publish(eq(String.format(DEFAULT_DATA_TOPIC_TEMPLATE, EX_CONNECTOR_NODE_ID)), message.capture());
+        assertTrue(Arrays.equals(expectedPayload, message.getValue().getPayload()));
+        assertEquals(DEFAULT_MESSAGE_QOS, message.getValue().getQos());
+    }
+
+    @Test
+    void shouldPublishRepeatedTopicWithTopicAlias() throws Exception {
+        String dataTopic = String.format(DEFAULT_DATA_TOPIC_TEMPLATE, EX_CONNECTOR_NODE_ID);
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setValue(new Value("15;25"));
+        try (LocalMqttBroker broker = new LocalMqttBroker()) {
+            broker.setTopicAliasMaximum(10);
+            ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .mqttVersion(MqttVersion.MQTT_5)
+                    .build();
+            ExternalConnectorClient client = new ExternalConnectorClient(parameters,
+                    new MqttClient(broker.getUri(), "aliases", new MemoryPersistence()));
+            client.connect();
+
+            long before = broker.getReceivedBytes();
+            client.sendMessage(EX_CONNECTOR_NODE_ID, dataMessage);
+            long first = broker.getReceivedBytes() - before;
+            client.sendMessage(EX_CONNECTOR_NODE_ID, dataMessage);
+            long second = broker.getReceivedBytes() - before - first;
+            client.disconnect();
+
+            assertEquals(dataTopic, broker.poll().topic);
+            assertEquals(dataTopic, broker.poll().topic);
+            assertEquals(dataTopic.getBytes(StandardCharsets.UTF_8).length, first - second);
+        }
+    }
+
+    @Test
+    void shouldCallDisconnectFromMqttClientWhenDisconnectIsCalled() throws Exception {
+        externalConnectorClient.disconnect();
+
+        verify(mqttClient, times(1)).disconnect();
+    }
+}
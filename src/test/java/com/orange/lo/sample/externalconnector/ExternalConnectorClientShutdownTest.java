@@ -0,0 +1,123 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.LoMqttException;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.orange.lo.sample.externalconnector.ExternalConnectorParameters.DEFAULT_COMMAND_REQUEST_TOPIC;
+import static com.orange.lo.sample.externalconnector.ExternalConnectorParameters.DEFAULT_MESSAGE_QOS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExternalConnectorClientShutdownTest {
+
+    private static final String COMMAND = "{\"id\":\"cmd-1\",\"nodeId\":\"node-1\",\"ackMode\":\"APPLICATIVE\"}";
+
+    @Mock
+    private MqttClient mqttClient;
+    private final CountDownLatch handlerStarted = new CountDownLatch(1);
+    private final CountDownLatch handlerReleased = new CountDownLatch(1);
+    private ExternalConnectorClient externalConnectorClient;
+    private IMqttMessageListener commandListener;
+
+    @BeforeEach
+    void setUp() throws MqttException {
+        ExternalConnectorParameters externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .messageCallback(commandRequest -> {
+                    handlerStarted.countDown();
+                    try {
+                        handlerReleased.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "done";
+                })
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        ArgumentCaptor<IMqttMessageListener> listener = ArgumentCaptor.forClass(IMqttMessageListener.class);
+        verify(mqttClient).subscribe(eq(DEFAULT_COMMAND_REQUEST_TOPIC), eq(DEFAULT_MESSAGE_QOS), listener.capture());
+        commandListener = listener.getValue();
+        lenient().when(mqttClient.isConnected()).thenReturn(true);
+    }
+
+    @Test
+    void shouldUnsubscribeAndDisconnectWhenNothingIsInProgress() throws MqttException {
+        ShutdownResult result = externalConnectorClient.shutdown(Duration.ofSeconds(1));
+
+        assertTrue(result.isComplete());
+        verify(mqttClient, times(1)).unsubscribe(DEFAULT_COMMAND_REQUEST_TOPIC);
+        verify(mqttClient, times(1)).disconnect(anyLong());
+    }
+
+    @Test
+    void shouldRejectMessagesAfterShutdown() throws MqttException {
+        externalConnectorClient.shutdown(Duration.ofSeconds(1));
+
+        assertThrows(LoMqttException.class, () -> externalConnectorClient.sendMessage("node-1", new DataMessage()));
+    }
+
+    @Test
+    void shouldWaitForCommandInProgressAndSendItsResponse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(() -> {
+                commandListener.messageArrived(DEFAULT_COMMAND_REQUEST_TOPIC, new MqttMessage(COMMAND.getBytes()));
+                return null;
+            });
+            assertTrue(handlerStarted.await(1, TimeUnit.SECONDS));
+
+            Future<ShutdownResult> result = executor.submit(() -> externalConnectorClient.shutdown(Duration.ofSeconds(5)));
+            Thread.sleep(100);
+            assertFalse(result.isDone());
+            handlerReleased.countDown();
+
+            assertTrue(result.get(5, TimeUnit.SECONDS).isComplete());
+            verify(mqttClient, times(1)).publish(eq(ExternalConnectorParameters.DEFAULT_COMMAND_RESPONSE_TOPIC), any(MqttMessage.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldReportUnfinishedCommandWhenTimeoutElapses() throws Exception {
+        Thread handler = new Thread(() -> {
+            try {
+                commandListener.messageArrived(DEFAULT_COMMAND_REQUEST_TOPIC, new MqttMessage(COMMAND.getBytes()));
+            } catch (Exception e) {
+                // the handler is released after the test
+            }
+        });
+        handler.start();
+        assertTrue(handlerStarted.await(1, TimeUnit.SECONDS));
+
+        ShutdownResult result = externalConnectorClient.shutdown(Duration.ofMillis(50));
+
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getUnfinishedCommands());
+        verify(mqttClient, times(1)).disconnect(anyLong());
+        handlerReleased.countDown();
+        handler.join(1000);
+    }
+}
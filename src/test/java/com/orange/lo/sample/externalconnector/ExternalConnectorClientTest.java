@@ -2,19 +2,42 @@ package com.orange.lo.sample.externalconnector;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orange.lo.sample.exceptions.CircuitBreakerOpenException;
+import com.orange.lo.sample.exceptions.LoMqttException;
+import com.orange.lo.sample.exceptions.NodeQuotaExceededException;
 import com.orange.lo.sample.exceptions.ParseException;
 import com.orange.lo.sample.lo.model.*;
 import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import static com.orange.lo.sample.externalconnector.ExternalConnectorParameters.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -147,6 +170,358 @@ class ExternalConnectorClientTest {
         verify(mqttClient, times(1)).publish(eq(expectedTopic), hasSamePayload(expectedMessage));
     }
 
+    @Test
+    void shouldPublishWithQosChosenByQosPolicy() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .qosPolicy(StreamQosPolicy.builder().streamIdQos("vibration", 0).build())
+                .build();
+        DataMessage vibration = getDataMessage();
+        vibration.setStreamId("vibration");
+        DataMessage alarm = getDataMessage();
+        alarm.setStreamId("alarm");
+
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, vibration);
+        externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, alarm);
+
+        String expectedTopic = String.format(DEFAULT_DATA_TOPIC_TEMPLATE, EX_CONNECTOR_NODE_ID);
+        verify(mqttClient, times(1)).publish(eq(expectedTopic), argThat(message -> message.getQos() == 0));
+        verify(mqttClient, times(1)).publish(eq(expectedTopic), argThat(message -> message.getQos() == DEFAULT_MESSAGE_QOS));
+    }
+
+    @Test
+    void shouldNotProvideConnectionHealthWhenHealthMonitorIsNotEnabled() {
+        assertNull(externalConnectorClient.getConnectionHealth());
+    }
+
+    @Test
+    void shouldMeasureRttOfPublicationsWhenHealthMonitorIsEnabled() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .healthMonitor(HealthMonitorParameters.builder().build())
+                .build();
+
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage());
+
+        assertEquals(1, externalConnectorClient.getConnectionHealth().getSampleCount());
+    }
+
+    @Test
+    void shouldSetSequenceIdsAndStartNewSessionOnReconnection() throws MqttException {
+        MqttClient trackedMqttClient = mock(MqttClient.class);
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .sequenceTracking(true)
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, trackedMqttClient);
+        ArgumentCaptor<MqttCallbackExtended> callback = ArgumentCaptor.forClass(MqttCallbackExtended.class);
+        verify(trackedMqttClient).setCallback(callback.capture());
+        externalConnectorClient.connect();
+        NodeStatus nodeStatus = getNodeStatus();
+
+        externalConnectorClient.sendStatus(EX_CONNECTOR_NODE_ID, nodeStatus);
+        externalConnectorClient.sendStatus(EX_CONNECTOR_NODE_ID, nodeStatus);
+        assertEquals(1, nodeStatus.getSessionSequenceId());
+        assertEquals(2, nodeStatus.getEventSequenceId());
+
+        callback.getValue().connectComplete(true, ExternalConnectorParametersTest.HOSTNAME);
+        externalConnectorClient.sendStatus(EX_CONNECTOR_NODE_ID, nodeStatus);
+        assertEquals(2, nodeStatus.getSessionSequenceId());
+        assertEquals(1, nodeStatus.getEventSequenceId());
+    }
+
+    @Test
+    void shouldRecordPublicationsInNodeRegistry() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .nodeRegistry(true)
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        NodeStatus nodeStatus = getNodeStatus();
+        nodeStatus.setLastContact("2023-01-01T00:00:00Z");
+
+        externalConnectorClient.sendStatus(EX_CONNECTOR_NODE_ID, nodeStatus);
+        externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage());
+        externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage());
+
+        NodeState nodeState = externalConnectorClient.getNodeRegistry().get(EX_CONNECTOR_NODE_ID);
+        assertEquals(Status.ONLINE, nodeState.getStatus());
+        assertEquals(1, nodeState.getStatuses());
+        assertEquals(2, nodeState.getDataMessages());
+        assertTrue(nodeState.getLastContactMillis() > Instant.parse("2023-01-01T00:00:00Z").toEpochMilli());
+    }
+
+    @Test
+    void shouldRejectMessagesWithoutPublishingWhenCircuitBreakerIsOpen() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .circuitBreaker(CircuitBreakerParameters.builder().windowSize(10).minimumPublishes(5).build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        doThrow(new MqttException(MqttException.REASON_CODE_CLIENT_TIMEOUT)).when(mqttClient).publish(anyString(), any(MqttMessage.class));
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(LoMqttException.class, () -> externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage()));
+        }
+        assertThrows(CircuitBreakerOpenException.class, () -> externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage()));
+
+        verify(mqttClient, times(5)).publish(anyString(), any(MqttMessage.class));
+        assertEquals(CircuitBreakerStats.State.OPEN, externalConnectorClient.getCircuitBreakerStats().getState());
+    }
+
+    @Test
+    void shouldOpenCircuitBreakerAgainWhenProbeFailsWithRuntimeException() throws Exception {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .circuitBreaker(CircuitBreakerParameters.builder().windowSize(10).minimumPublishes(5).openDuration(Duration.ofMillis(1)).probes(1).build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        doThrow(new MqttException(MqttException.REASON_CODE_CLIENT_TIMEOUT)).when(mqttClient).publish(anyString(), any(MqttMessage.class));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(LoMqttException.class, () -> externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage()));
+        }
+        Thread.sleep(5);
+        doThrow(new IllegalStateException("probe")).when(mqttClient).publish(anyString(), any(MqttMessage.class));
+
+        assertThrows(IllegalStateException.class, () -> externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage()));
+
+        assertEquals(CircuitBreakerStats.State.OPEN, externalConnectorClient.getCircuitBreakerStats().getState());
+        assertEquals(2, externalConnectorClient.getCircuitBreakerStats().getOpenings());
+    }
+
+    @Test
+    void shouldPublishMessagesFromPublishRingBeforeDisconnecting() throws Exception {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .publishRing(PublishRingParameters.builder().capacity(16).batchSize(4).build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage());
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        externalConnectorClient.disconnect();
+
+        verify(mqttClient, times(100)).publish(anyString(), any(MqttMessage.class));
+    }
+
+    @Test
+    void shouldPublishOnlyLatestPendingMessageOfConflatedStream() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .conflation(ConflationParameters.builder().streamId("gauge").build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        DataMessage dataMessage = getDataMessage();
+        dataMessage.setStreamId("gauge");
+
+        for (int i = 0; i < 5; i++) {
+            externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, dataMessage);
+        }
+        externalConnectorClient.connect();
+        externalConnectorClient.disconnect();
+
+        verify(mqttClient, times(1)).publish(anyString(), any(MqttMessage.class));
+        assertEquals(4, externalConnectorClient.getConflationStats().getConflated());
+        assertEquals(1, externalConnectorClient.getConflationStats().getPublished());
+    }
+
+    @Test
+    void shouldRejectMessagesOfNodeWhoseFairQueueIsFull() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .fairQueue(FairQueueParameters.builder().nodeQueueCapacity(3).build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+
+        for (int i = 0; i < 3; i++) {
+            externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage());
+        }
+        assertThrows(NodeQuotaExceededException.class, () -> externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage()));
+        externalConnectorClient.sendMessage("other-node", getDataMessage());
+        externalConnectorClient.connect();
+        externalConnectorClient.disconnect();
+
+        verify(mqttClient, times(4)).publish(anyString(), any(MqttMessage.class));
+        FairQueueStats stats = externalConnectorClient.getFairQueueStats();
+        assertEquals(4, stats.getPublished());
+        assertEquals(1, stats.getRejected());
+        assertEquals(EX_CONNECTOR_NODE_ID, stats.getTopTalkers().get(0).getNodeId());
+    }
+
+    @Test
+    void shouldShrinkPublishWindowWhenPublicationFails() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .publishWindow(PublishWindowParameters.builder().initialWindow(8).build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        doThrow(new MqttException(MqttException.REASON_CODE_CLIENT_TIMEOUT)).when(mqttClient).publish(anyString(), any(MqttMessage.class));
+
+        assertThrows(LoMqttException.class, () -> externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage()));
+
+        PublishWindowStats stats = externalConnectorClient.getPublishWindowStats();
+        assertEquals(4, stats.getWindow());
+        assertEquals(1, stats.getFailureDecreases());
+        assertEquals(0, stats.getInFlight());
+    }
+
+    @Test
+    void shouldPublishAggregatedReadingsWhenDisconnecting() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .aggregation(AggregationParameters.builder().build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+
+        for (int i = 0; i < 10; i++) {
+            externalConnectorClient.sendReading(EX_CONNECTOR_NODE_ID, "temperature", 20 + i);
+        }
+        externalConnectorClient.disconnect();
+
+        verify(mqttClient, times(1)).publish(anyString(), any(MqttMessage.class));
+        assertEquals(10, externalConnectorClient.getAggregationStats().getReadings());
+    }
+
+    @Test
+    void shouldNotPublishUnchangedValueWithReportByException() throws MqttException {
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .reportByException(ReportByExceptionParameters.builder().build())
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+
+        for (int i = 0; i < 3; i++) {
+            externalConnectorClient.sendMessage(EX_CONNECTOR_NODE_ID, getDataMessage());
+        }
+
+        verify(mqttClient, times(1)).publish(anyString(), any(MqttMessage.class));
+        assertEquals(2, externalConnectorClient.getReportByExceptionStats().getSuppressed());
+    }
+
+    @Test
+    void shouldAcknowledgeCommandWhenItsHandlerCompletes() throws Exception {
+        List<Runnable> handlers = new ArrayList<>();
+        externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .messageCallback((commandRequest) -> null)
+                .commandExecutor(handlers::add)
+                .build();
+        externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters, mqttClient);
+        externalConnectorClient.connect();
+        ArgumentCaptor<IMqttMessageListener> listener = ArgumentCaptor.forClass(IMqttMessageListener.class);
+        verify(mqttClient).setManualAcks(true);
+        verify(mqttClient).subscribe(eq(DEFAULT_COMMAND_REQUEST_TOPIC), eq(DEFAULT_MESSAGE_QOS), listener.capture());
+
+        MqttMessage commandMessage = new MqttMessage("{\"id\":\"cmd-1\",\"nodeId\":\"node-1\",\"ackMode\":\"NONE\"}".getBytes());
+        commandMessage.setId(42);
+        commandMessage.setQos(DEFAULT_MESSAGE_QOS);
+        listener.getValue().messageArrived(DEFAULT_COMMAND_REQUEST_TOPIC, commandMessage);
+
+        assertEquals(1, externalConnectorClient.getUnackedCommands());
+        verify(mqttClient, never()).messageArrivedComplete(anyInt(), anyInt());
+
+        handlers.get(0).run();
+
+        verify(mqttClient).messageArrivedComplete(42, DEFAULT_MESSAGE_QOS);
+        assertEquals(0, externalConnectorClient.getUnackedCommands());
+    }
+
+    @Test
+    void shouldKeepReadingCommandsWhenMaxUnackedCommandsIsReached() throws Exception {
+        int commands = 30;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch released = new CountDownLatch(1);
+        ExecutorService commandExecutor = Executors.newFixedThreadPool(4);
+        try (LocalMqttBroker broker = new LocalMqttBroker()) {
+            externalConnectorParameters = ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .messageCallback((commandRequest) -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            released.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        return "done";
+                    })
+                    .commandExecutor(commandExecutor)
+                    .maxUnackedCommands(2)
+                    .build();
+            externalConnectorClient = new ExternalConnectorClient(externalConnectorParameters,
+                    new MqttClient(broker.getUri(), "commands", new MemoryPersistence()));
+            externalConnectorClient.connect();
+            waitUntil(broker::hasSubscriptions);
+
+            for (int i = 0; i < commands; i++) {
+                broker.send(DEFAULT_COMMAND_REQUEST_TOPIC, "{\"id\":\"cmd-" + i + "\",\"nodeId\":\"node-1\"}");
+            }
+
+            // the MQTT client thread keeps reading the command requests while the cap is reached
+            waitUntil(() -> externalConnectorClient.getUnackedCommands() == commands);
+            // the handlers handed to the executor may not have started yet
+            waitUntil(() -> running.get() == 2);
+            assertEquals(commands, externalConnectorClient.getUnackedCommands());
+
+            released.countDown();
+            // each handler publishes its response at QoS 1, acknowledged by the broker through the MQTT client thread
+            for (int i = 0; i < commands; i++) {
+                LocalMqttBroker.Message response = broker.poll();
+                assertNotNull(response);
+                assertEquals(DEFAULT_COMMAND_RESPONSE_TOPIC, response.topic);
+            }
+            waitUntil(() -> externalConnectorClient.getUnackedCommands() == 0);
+            assertEquals(2, maxRunning.get());
+            externalConnectorClient.disconnect();
+        } finally {
+            commandExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNotPublishAnythingDuringWarmUp() throws MqttException {
+        WarmUpResult result = externalConnectorClient.warmUp(100);
+
+        assertEquals(100, result.getIterations());
+        verify(mqttClient, times(0)).publish(anyString(), any(MqttMessage.class));
+    }
+
     private NodeStatus getNodeStatus() {
         NodeStatus nodeStatus = new NodeStatus();
         nodeStatus.setStatus(Status.ONLINE);
@@ -187,4 +562,12 @@ class ExternalConnectorClientTest {
             return false;
         });
     }
-}
\ No newline at end of file
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
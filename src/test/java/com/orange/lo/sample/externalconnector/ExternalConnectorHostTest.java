@@ -0,0 +1,185 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalConnectorHostTest {
+
+    private final ExternalConnectorHost host = new ExternalConnectorHost(1);
+
+    @AfterEach
+    void tearDown() {
+        host.close();
+    }
+
+    @Test
+    void shouldCreateClientsWithoutStartingThreads() throws MqttException {
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(host.createClient(parameters()));
+        }
+
+        assertEquals(0, host.getThreadCount());
+    }
+
+    @Test
+    void shouldCreateClientsOutsideHost() throws MqttException {
+        assertNotNull(new ExternalConnectorClient(parameters()));
+        assertNotNull(new ExternalConnectorClient(ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .mqttVersion(MqttVersion.MQTT_5)
+                .build()));
+    }
+
+    @Test
+    void shouldRejectClientsAfterClose() {
+        host.close();
+
+        assertTrue(host.isClosed());
+        assertThrows(IllegalStateException.class, () -> host.createClient(parameters()));
+    }
+
+    @Test
+    void shouldIgnoreShutdownRequestedByMqttClient() throws InterruptedException {
+        ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        HostExecutorService executorService = new HostExecutorService(io, timer);
+        CountDownLatch ran = new CountDownLatch(2);
+
+        executorService.shutdownNow();
+        executorService.execute(ran::countDown);
+        executorService.schedule(ran::countDown, 1, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        assertFalse(executorService.isShutdown());
+        io.shutdown();
+        timer.shutdown();
+    }
+
+    @Test
+    void shouldKeepSharedSchedulerRunningWhenClientStops() throws InterruptedException {
+        ScheduledExecutorService shared = Executors.newSingleThreadScheduledExecutor();
+        ClientScheduler scheduler = new ClientScheduler(shared);
+        CountDownLatch ran = new CountDownLatch(1);
+
+        scheduler.schedule(ran::countDown, 1, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        scheduler.close();
+
+        assertFalse(shared.isShutdown());
+        shared.shutdown();
+    }
+
+    @Test
+    void shouldConnectClientsInParallelOverTls() throws Exception {
+        try (LocalMqttBroker broker = LocalMqttBroker.withTls();
+             NettyMqttTransportFactory transportFactory = new NettyMqttTransportFactory(1)) {
+            TlsParameters tlsParameters = TlsParameters.builder()
+                    .sslContext(LocalMqttBroker.clientSslContext())
+                    .build();
+            ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .tls(tlsParameters)
+                    .transportFactory(transportFactory)
+                    .build();
+            List<ExternalConnectorClient> clients = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                clients.add(host.createClient(parameters));
+            }
+
+            Map<ExternalConnectorClient, Exception> failures = host.connectAll(clients, 4);
+
+            assertTrue(failures.isEmpty(), failures.toString());
+            for (ExternalConnectorClient client : clients) {
+                client.sendMessage("node-1", new DataMessage());
+                assertNotNull(broker.poll());
+                client.disconnect();
+            }
+            assertTrue(tlsParameters.getSslContext().getClientSessionContext().getIds().hasMoreElements());
+        }
+    }
+
+    @Test
+    void shouldReportClientsFailingToConnect() throws Exception {
+        try (LocalMqttBroker broker = new LocalMqttBroker();
+             NettyMqttTransportFactory transportFactory = new NettyMqttTransportFactory(1)) {
+            ExternalConnectorClient client = host.createClient(ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(LocalMqttBroker.REFUSED_PASSWORD)
+                    .transportFactory(transportFactory)
+                    .build());
+
+            Map<ExternalConnectorClient, Exception> failures = host.connectAll(Collections.singletonList(client), 2);
+
+            assertTrue(failures.get(client) instanceof MqttException);
+        }
+    }
+
+    @Test
+    void shouldBoundConnectionsOfHost() throws Exception {
+        try (LocalMqttBroker broker = new LocalMqttBroker();
+             ExternalConnectorHost boundedHost = new ExternalConnectorHost(1, 1, 1)) {
+            ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .build();
+            ExternalConnectorClient first = boundedHost.createClient(parameters);
+            ExternalConnectorClient second = boundedHost.createClient(parameters);
+
+            for (int i = 0; i < 10; i++) {
+                first.connect();
+                assertThrows(IllegalStateException.class, second::connect);
+                first.disconnect();
+                second.connect();
+
+                second.sendMessage("node-1", new DataMessage());
+                assertNotNull(broker.poll());
+                second.disconnect();
+            }
+        }
+    }
+
+    @Test
+    void shouldNotLeavePersistenceDirectories() throws Exception {
+        try (LocalMqttBroker broker = new LocalMqttBroker()) {
+            ExternalConnectorClient client = host.createClient(ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .build());
+            String port = broker.getUri().substring(broker.getUri().lastIndexOf(':') + 1);
+
+            client.connect();
+            client.sendMessage("node-1", new DataMessage());
+            client.disconnect();
+
+            try (Stream<Path> files = Files.list(Paths.get(""))) {
+                assertFalse(files.anyMatch(file -> file.getFileName().toString().endsWith("-tcp127001" + port)));
+            }
+        }
+    }
+
+    private static ExternalConnectorParameters parameters() {
+        return ExternalConnectorParameters.builder()
+                .hostname(ExternalConnectorParametersTest.HOSTNAME)
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .build();
+    }
+}
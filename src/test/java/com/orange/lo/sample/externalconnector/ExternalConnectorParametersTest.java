@@ -4,6 +4,10 @@ import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ExternalConnectorParametersTest {
@@ -209,4 +213,133 @@ class ExternalConnectorParametersTest {
         assertEquals(statusTopicTemplate, externalConnectorParameters.getStatusTopicTemplate());
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldSetDefaultMqttVersionWhenMqttVersionWasNotSet() {
+        ExternalConnectorParameters externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .build();
+
+        assertEquals(MqttVersion.MQTT_3_1_1, externalConnectorParameters.getMqttVersion());
+    }
+
+    @Test
+    void shouldChangeMqttVersionWhenMqttVersionWasSet() {
+        ExternalConnectorParameters externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .mqttVersion(MqttVersion.MQTT_5)
+                .build();
+
+        assertEquals(MqttVersion.MQTT_5, externalConnectorParameters.getMqttVersion());
+    }
+
+    @Test
+    void shouldSetDefaultReceiveMaximumWhenReceiveMaximumWasNotSet() {
+        ExternalConnectorParameters externalConnectorParameters = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .build();
+
+        assertEquals(ExternalConnectorParameters.DEFAULT_RECEIVE_MAXIMUM, externalConnectorParameters.getReceiveMaximum());
+    }
+
+    @Test
+    void shouldThrowExternalConnectorParametersExceptionWhenReceiveMaximumIsOutOfRange() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder parametersBuilder = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .receiveMaximum(0);
+        Assertions.assertThrows(ExternalConnectorParametersException.class, parametersBuilder::build);
+    }
+
+    @Test
+    void shouldThrowExternalConnectorParametersExceptionWhenSequenceSnapshotFileIsSetWithoutSequenceTracking() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder parametersBuilder = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .sequenceSnapshotFile(Paths.get("sequences.bin"));
+        Assertions.assertThrows(ExternalConnectorParametersException.class, parametersBuilder::build);
+    }
+
+
+    @Test
+    void shouldRejectHeartbeatWithoutNodeRegistry() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder builder = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .heartbeatInterval(Duration.ofMinutes(1));
+
+        assertThrows(ExternalConnectorParametersException.class, builder::build);
+    }
+
+    @Test
+    void shouldRejectFairQueueWithPublishRing() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder builder = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .fairQueue(FairQueueParameters.builder().build())
+                .publishRing(PublishRingParameters.builder().build());
+
+        assertThrows(ExternalConnectorParametersException.class, builder::build);
+    }
+
+    @Test
+    void shouldRejectPublishWindowWithPublishRing() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder builder = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .publishWindow(PublishWindowParameters.builder().build())
+                .publishRing(PublishRingParameters.builder().build());
+
+        assertThrows(ExternalConnectorParametersException.class, builder::build);
+    }
+
+    @Test
+    void shouldRejectPublishWindowWithFairQueue() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder builder = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .publishWindow(PublishWindowParameters.builder().build())
+                .fairQueue(FairQueueParameters.builder().build());
+
+        assertThrows(ExternalConnectorParametersException.class, builder::build);
+    }
+
+    @Test
+    void shouldRejectReportByExceptionWithPublishRingOrFairQueue() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder withRing = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .reportByException(ReportByExceptionParameters.builder().build())
+                .publishRing(PublishRingParameters.builder().build());
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder withFairQueue = ExternalConnectorParameters.builder()
+                .hostname(HOSTNAME)
+                .apiKey(API_KEY)
+                .reportByException(ReportByExceptionParameters.builder().build())
+                .fairQueue(FairQueueParameters.builder().build());
+
+        assertThrows(ExternalConnectorParametersException.class, withRing::build);
+        assertThrows(ExternalConnectorParametersException.class, withFairQueue::build);
+    }
+
+    @Test
+    void shouldUseFirstServerUriAsHostname() {
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .serverUris("ssl://a:8883", "ssl://b:8883")
+                .apiKey(API_KEY)
+                .build();
+
+        assertEquals("ssl://a:8883", parameters.getHostname());
+        assertEquals(Arrays.asList("ssl://a:8883", "ssl://b:8883"), parameters.getServerUris());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenServerUriIsBlank() {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder builder = ExternalConnectorParameters.builder()
+                .serverUris("ssl://a:8883", " ")
+                .apiKey(API_KEY);
+
+        assertThrows(ExternalConnectorParametersException.class, builder::build);
+    }
+}
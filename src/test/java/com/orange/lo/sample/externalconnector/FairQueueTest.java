@@ -0,0 +1,155 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.NodeQuotaExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairQueueTest {
+
+    private final List<String> published = new ArrayList<>();
+
+    @Test
+    void shouldShareConnectionFairlyBetweenNodes() {
+        FairQueue queue = new FairQueue(parameters(100, 100), this::publish);
+
+        for (int i = 0; i < 6; i++) {
+            queue.offer("flood", "flood", new byte[100], 0);
+        }
+        queue.offer("quiet", "quiet", new byte[50], 0);
+        queue.offer("quiet", "quiet", new byte[50], 0);
+        queue.offer("quiet", "quiet", new byte[50], 0);
+        queue.offer("large", "large", new byte[250], 0);
+        queue.start();
+        queue.stop(0);
+
+        // 100 bytes per round: the large message waits for a credit of 3 rounds
+        assertEquals(Arrays.asList("flood", "quiet", "quiet", "flood", "quiet", "flood", "large", "flood", "flood", "flood"), published);
+        assertEquals(10, queue.getStats().getPublished());
+        assertEquals(0, queue.getStats().getPending());
+        assertEquals(0, queue.getStats().getActiveNodes());
+    }
+
+    @Test
+    void shouldRejectMessagesBeyondQuotaOfNode() {
+        FairQueue queue = new FairQueue(parameters(100, 2), this::publish);
+
+        queue.offer("flood", "flood", new byte[10], 0);
+        queue.offer("flood", "flood", new byte[10], 0);
+        assertThrows(NodeQuotaExceededException.class, () -> queue.offer("flood", "flood", new byte[10], 0));
+        queue.offer("quiet", "quiet", new byte[10], 0);
+
+        FairQueueStats stats = queue.getStats();
+        assertEquals(3, stats.getPending());
+        assertEquals(2, stats.getActiveNodes());
+        assertEquals(1, stats.getRejected());
+        assertEquals(1, stats.getTopTalkers().get(0).getRejected());
+        assertEquals(2, stats.getTopTalkers().get(0).getQueued());
+    }
+
+    @Test
+    void shouldReportNodesPublishingTheMostBytes() {
+        FairQueue queue = new FairQueue(FairQueueParameters.builder().topTalkers(2).build(), batch -> {
+            throw new IllegalStateException("broker unavailable");
+        });
+
+        queue.offer("node-1", "topic", new byte[10], 0);
+        queue.offer("node-2", "topic", new byte[300], 0);
+        queue.offer("node-3", "topic", new byte[20], 0);
+        queue.offer("node-3", "topic", new byte[20], 0);
+        queue.start();
+        queue.stop(0);
+
+        FairQueueStats stats = queue.getStats();
+        assertEquals(2, stats.getTopTalkers().size());
+        assertEquals("node-2", stats.getTopTalkers().get(0).getNodeId());
+        assertEquals(300, stats.getTopTalkers().get(0).getBytes());
+        assertEquals("node-3", stats.getTopTalkers().get(1).getNodeId());
+        assertEquals(2, stats.getTopTalkers().get(1).getMessages());
+        assertEquals(4, stats.getFailed());
+        assertEquals(0, stats.getPublished());
+    }
+
+    @Test
+    void shouldPublishMessagesOfSeveralRoundsInBatches() {
+        List<Integer> batchSizes = new ArrayList<>();
+        FairQueueParameters parameters = FairQueueParameters.builder()
+                .quantum(100)
+                .batchSize(3)
+                .build();
+        FairQueue queue = new FairQueue(parameters, batch -> {
+            batchSizes.add(batch.size());
+            return publish(batch);
+        });
+
+        for (int i = 0; i < 4; i++) {
+            queue.offer("node-1", "node-1", new byte[100], 0);
+        }
+        queue.offer("node-2", "node-2", new byte[100], 0);
+        queue.start();
+        queue.stop(0);
+
+        assertEquals(Arrays.asList(3, 2), batchSizes);
+        assertEquals(Arrays.asList("node-1", "node-2", "node-1", "node-1", "node-1"), published);
+        assertEquals(5, queue.getStats().getPublished());
+    }
+
+    @Test
+    void shouldCountFailedMessagesOfBatch() {
+        FairQueue queue = new FairQueue(parameters(100, 100), batch -> {
+            int count = batch.size();
+            batch.clear();
+            return count;
+        });
+
+        queue.offer("node-1", "topic", new byte[10], 0);
+        queue.offer("node-2", "topic", new byte[10], 0);
+        queue.start();
+        queue.stop(0);
+
+        assertEquals(2, queue.getStats().getFailed());
+        assertEquals(0, queue.getStats().getPublished());
+    }
+
+    @Test
+    void shouldRemoveQueuesOfIdleNodes() throws InterruptedException {
+        FairQueueParameters parameters = FairQueueParameters.builder()
+                .nodeIdleTimeout(Duration.ofMillis(20))
+                .build();
+        FairQueue queue = new FairQueue(parameters, this::publish);
+        queue.start();
+        try {
+            queue.offer("short-lived", "topic", new byte[10], 0);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!queue.getStats().getTopTalkers().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(queue.getStats().getTopTalkers().isEmpty());
+            assertEquals(1, queue.getStats().getPublished());
+        } finally {
+            queue.stop(0);
+        }
+    }
+
+    private int publish(PublishBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            published.add(batch.topics[i]);
+        }
+        batch.clear();
+        return 0;
+    }
+
+    private static FairQueueParameters parameters(int quantum, int nodeQueueCapacity) {
+        return FairQueueParameters.builder()
+                .quantum(quantum)
+                .nodeQueueCapacity(nodeQueueCapacity)
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HealthMonitorTest {
+
+    private static final String PROBE_TOPIC = "connector/v1/nodes/health-probe/status";
+
+    @Test
+    void shouldComputeRttPercentilesFromSamples() {
+        HealthMonitor healthMonitor = new HealthMonitor(HealthMonitorParameters.builder().build());
+        for (int i = 1; i <= 100; i++) {
+            healthMonitor.recordRtt(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        ConnectionHealth health = healthMonitor.getHealth();
+
+        assertEquals(100, health.getSampleCount());
+        assertEquals(Duration.ofMillis(50), health.getRttP50());
+        assertEquals(Duration.ofMillis(90), health.getRttP90());
+        assertEquals(Duration.ofMillis(99), health.getRttP99());
+        assertEquals(Duration.ofMillis(100), health.getRttMax());
+        assertFalse(health.isDegraded());
+    }
+
+    @Test
+    void shouldKeepOnlyMostRecentSamples() {
+        HealthMonitor healthMonitor = new HealthMonitor(HealthMonitorParameters.builder().sampleWindow(10).build());
+        for (int i = 1; i <= 100; i++) {
+            healthMonitor.recordRtt(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        ConnectionHealth health = healthMonitor.getHealth();
+
+        assertEquals(10, health.getSampleCount());
+        assertEquals(Duration.ofMillis(95), health.getRttP50());
+    }
+
+    @Test
+    void shouldBeDegradedWhenRttIsAboveThreshold() {
+        HealthMonitor healthMonitor = new HealthMonitor(HealthMonitorParameters.builder().rttThreshold(Duration.ofMillis(100)).build());
+        for (int i = 0; i < 10; i++) {
+            healthMonitor.recordRtt(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+
+        assertTrue(healthMonitor.getHealth().isDegraded());
+    }
+
+    @Test
+    void shouldNotPublishProbeWhenRttWasMeasuredRecently() {
+        HealthMonitor healthMonitor = new HealthMonitor(getParameters(Duration.ofSeconds(1)));
+        AtomicInteger probes = new AtomicInteger();
+
+        healthMonitor.probeIfIdle((topic, payload) -> probes.incrementAndGet());
+        healthMonitor.probeIfIdle((topic, payload) -> probes.incrementAndGet());
+
+        assertEquals(0, probes.get());
+    }
+
+    @Test
+    void shouldPublishProbeOnPublishingExecutor() {
+        HealthMonitor healthMonitor = new HealthMonitor(getParameters(Duration.ofNanos(1)));
+        AtomicInteger probes = new AtomicInteger();
+        List<Runnable> publications = new ArrayList<>();
+
+        healthMonitor.scheduleProbe((topic, payload) -> probes.incrementAndGet(), publications::add);
+        assertEquals(0, probes.get());
+        assertEquals(1, publications.size());
+
+        // still in progress, the probe is not handed over twice
+        healthMonitor.scheduleProbe((topic, payload) -> probes.incrementAndGet(), publications::add);
+        assertEquals(1, publications.size());
+
+        publications.get(0).run();
+        assertEquals(1, probes.get());
+        assertEquals(1, healthMonitor.getHealth().getSampleCount());
+    }
+
+    @Test
+    void shouldPublishProbeAndRecordItsRttWhenIdle() {
+        HealthMonitor healthMonitor = new HealthMonitor(getParameters(Duration.ofNanos(1)));
+        AtomicInteger probes = new AtomicInteger();
+
+        healthMonitor.probeIfIdle((topic, payload) -> {
+            assertEquals(PROBE_TOPIC, topic);
+            probes.incrementAndGet();
+        });
+
+        assertEquals(1, probes.get());
+        assertEquals(1, healthMonitor.getHealth().getSampleCount());
+    }
+
+    @Test
+    void shouldBeDegradedWhenProbeFails() {
+        HealthMonitor healthMonitor = new HealthMonitor(getParameters(Duration.ofNanos(1)));
+
+        healthMonitor.probeIfIdle((topic, payload) -> {
+            throw new IllegalStateException("connection lost");
+        });
+
+        assertTrue(healthMonitor.getHealth().isDegraded());
+    }
+
+    @Test
+    void shouldBeDegradedWhileProbeIsStalled() throws InterruptedException {
+        HealthMonitor healthMonitor = new HealthMonitor(HealthMonitorParameters.builder()
+                .probeTopic(PROBE_TOPIC)
+                .probeInterval(Duration.ofNanos(1))
+                .rttThreshold(Duration.ofMillis(20))
+                .build());
+        CountDownLatch probeStarted = new CountDownLatch(1);
+        CountDownLatch ackReceived = new CountDownLatch(1);
+        Thread prober = new Thread(() -> healthMonitor.probeIfIdle((topic, payload) -> {
+            probeStarted.countDown();
+            ackReceived.await();
+        }));
+        prober.start();
+
+        assertTrue(probeStarted.await(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertTrue(healthMonitor.getHealth().isDegraded());
+
+        ackReceived.countDown();
+        prober.join(1000);
+    }
+
+    private HealthMonitorParameters getParameters(Duration probeInterval) {
+        return HealthMonitorParameters.builder()
+                .probeTopic(PROBE_TOPIC)
+                .probeInterval(probeInterval)
+                .build();
+    }
+}
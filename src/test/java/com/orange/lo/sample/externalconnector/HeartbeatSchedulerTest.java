@@ -0,0 +1,117 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatSchedulerTest {
+
+    private static final long INTERVAL_MILLIS = 60_000;
+
+    private final NodeRegistry nodeRegistry = new NodeRegistry();
+    private final List<String> heartbeats = new ArrayList<>();
+    private final HeartbeatScheduler heartbeatScheduler = new HeartbeatScheduler(nodeRegistry, INTERVAL_MILLIS,
+            (nodeId, nowMillis) -> {
+                heartbeats.add(nodeId);
+                nodeRegistry.recordHeartbeat(nodeRegistry.indexOf(nodeId), nowMillis);
+            }, Runnable::run);
+
+    @Test
+    void shouldSendHeartbeatsOfOnlineNodesEachInterval() {
+        long start = System.currentTimeMillis();
+        track("online", Status.ONLINE, start - INTERVAL_MILLIS);
+        track("offline", Status.OFFLINE, start - INTERVAL_MILLIS);
+
+        heartbeatScheduler.advance(start + INTERVAL_MILLIS);
+        assertEquals(1, heartbeats.size());
+        assertEquals("online", heartbeats.get(0));
+
+        heartbeatScheduler.advance(start + INTERVAL_MILLIS * 3 / 2);
+        assertEquals(1, heartbeats.size());
+        heartbeatScheduler.advance(start + INTERVAL_MILLIS * 2 + 1000);
+        assertEquals(2, heartbeats.size());
+        assertEquals(2, heartbeatScheduler.getHeartbeatsSent());
+        assertEquals(2, heartbeatScheduler.getTrackedNodes());
+        assertEquals(start + INTERVAL_MILLIS * 2 + 1000, nodeRegistry.get("online").getLastContactMillis());
+    }
+
+    @Test
+    void shouldPostponeHeartbeatOfNodesWithRecentTraffic() {
+        long start = System.currentTimeMillis();
+        int index = track("busy", Status.ONLINE, start);
+        nodeRegistry.recordDataMessage(index, start + INTERVAL_MILLIS / 2);
+
+        heartbeatScheduler.advance(start + INTERVAL_MILLIS);
+
+        assertTrue(heartbeats.isEmpty());
+        assertEquals(1, heartbeatScheduler.getHeartbeatsCoalesced());
+        heartbeatScheduler.advance(start + INTERVAL_MILLIS * 3 / 2 + 1000);
+        assertEquals(1, heartbeats.size());
+    }
+
+    @Test
+    void shouldKeepIntervalOfHeartbeatsPublishedLate() {
+        long start = System.currentTimeMillis();
+        int index = track("online", Status.ONLINE, start - INTERVAL_MILLIS);
+        long lastPublish = nodeRegistry.getLastPublishMillis(index);
+
+        for (int interval = 1; interval <= 3; interval++) {
+            // each heartbeat is published a few seconds after it was due
+            heartbeatScheduler.advance(start + INTERVAL_MILLIS * interval + 5000);
+        }
+
+        assertEquals(3, heartbeats.size());
+        assertEquals(0, heartbeatScheduler.getHeartbeatsCoalesced());
+        assertEquals(lastPublish, nodeRegistry.getLastPublishMillis(index));
+        assertEquals(4, nodeRegistry.get("online").getStatuses());
+    }
+
+    @Test
+    void shouldPublishHeartbeatsOnPublishingExecutor() {
+        List<Runnable> publications = new ArrayList<>();
+        HeartbeatScheduler scheduler = new HeartbeatScheduler(nodeRegistry, INTERVAL_MILLIS, (nodeId, nowMillis) -> heartbeats.add(nodeId), publications::add);
+        long start = System.currentTimeMillis();
+        int index = nodeRegistry.register("online");
+        nodeRegistry.recordStatus(index, Status.ONLINE, start - INTERVAL_MILLIS, start - INTERVAL_MILLIS);
+        scheduler.track(index);
+
+        scheduler.advance(start + INTERVAL_MILLIS);
+        assertTrue(heartbeats.isEmpty());
+        assertEquals(1, publications.size());
+
+        // still queued, the heartbeat is not queued twice
+        scheduler.advance(start + INTERVAL_MILLIS * 2 + 1000);
+        assertEquals(1, publications.size());
+
+        publications.get(0).run();
+        assertEquals(Collections.singletonList("online"), heartbeats);
+        assertEquals(1, scheduler.getHeartbeatsSent());
+    }
+
+    @Test
+    void shouldSpreadFirstHeartbeatsOverInterval() {
+        int slots = 10;
+        int[] counts = new int[slots];
+        for (int index = 0; index < 10_000; index++) {
+            long offset = HeartbeatScheduler.offset(index, INTERVAL_MILLIS);
+            assertTrue(offset >= 0 && offset < INTERVAL_MILLIS);
+            counts[(int) (offset * slots / INTERVAL_MILLIS)]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(count > 950 && count < 1050, "Uneven spread: " + count);
+        }
+    }
+
+    private int track(String nodeId, Status status, long publishMillis) {
+        int index = nodeRegistry.register(nodeId);
+        nodeRegistry.recordStatus(index, status, publishMillis, publishMillis);
+        heartbeatScheduler.track(index);
+        return index;
+    }
+}
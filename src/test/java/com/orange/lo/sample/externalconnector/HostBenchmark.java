@@ -0,0 +1,93 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.Value;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads and publication throughput of many clients connected to an in-process broker, each with its own MQTT client
+ * threads ("standalone") or created from an {@link ExternalConnectorHost} ("host"). The publishing threads send
+ * messages through the clients in turn, at QoS 1. The live threads of the JVM once the clients are connected are
+ * printed at the start of the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class HostBenchmark {
+
+    @Param({"standalone", "host"})
+    public String mode;
+
+    @Param({"100"})
+    public int clients;
+
+    private LocalMqttBroker broker;
+    private ExternalConnectorHost host;
+    private final List<ExternalConnectorClient> clientList = new ArrayList<>();
+    private final AtomicInteger nextClient = new AtomicInteger();
+    private DataMessage dataMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, MqttException {
+        broker = new LocalMqttBroker();
+        broker.setRecordingPublications(false);
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey("benchmark")
+                .build();
+        if ("host".equals(mode)) {
+            host = new ExternalConnectorHost();
+            for (int i = 0; i < clients; i++) {
+                clientList.add(host.createClient(parameters));
+            }
+            Map<ExternalConnectorClient, Exception> failures = host.connectAll(clientList, 16);
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException(failures.size() + " client(s) failed to connect");
+            }
+        } else {
+            for (int i = 0; i < clients; i++) {
+                ExternalConnectorClient client = new ExternalConnectorClient(parameters,
+                        new MqttClient(broker.getUri(), UUID.randomUUID().toString(), new MemoryPersistence()));
+                client.connect();
+                clientList.add(client);
+            }
+        }
+        System.out.printf("%n%d %s clients connected, %d live threads%n", clients, mode, ManagementFactory.getThreadMXBean().getThreadCount());
+        dataMessage = new DataMessage();
+        dataMessage.setStreamId("benchmark");
+        dataMessage.setValue(new Value("15;25"));
+        dataMessage.setMetadata(new Metadata("csv"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MqttException {
+        for (ExternalConnectorClient client : clientList) {
+            client.disconnect();
+        }
+        if (host != null) {
+            host.close();
+        }
+        broker.close();
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        clientList.get(Math.floorMod(nextClient.getAndIncrement(), clients)).sendMessage("benchmark-node", dataMessage);
+    }
+}
@@ -0,0 +1,118 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap allocated by the publishing thread for each large data message, a waveform of doubles, either serialized into
+ * a byte array then published ("bytes") or written by the transport into its own buffer ("streamed"). Publishes at
+ * QoS 1 to an in-process broker. The allocation is reported by the allocatedBytesPerMessage counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class LargePayloadBenchmark {
+
+    private static final String TOPIC = "connector/v1/nodes/benchmark-node/data";
+
+    @Param({"paho", "netty"})
+    public String transport;
+
+    @Param({"bytes", "streamed"})
+    public String encoding;
+
+    @Param({"4096", "32768"})
+    public int samples;
+
+    private LocalMqttBroker broker;
+    private NettyMqttTransportFactory nettyTransportFactory;
+    private MqttTransport mqttTransport;
+    private ObjectMapper objectMapper;
+    private DataMessage dataMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, MqttException {
+        broker = new LocalMqttBroker();
+        broker.setRecordingPublications(false);
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey("benchmark")
+                .build();
+        if ("netty".equals(transport)) {
+            nettyTransportFactory = new NettyMqttTransportFactory(1);
+            mqttTransport = nettyTransportFactory.create(parameters);
+        } else {
+            mqttTransport = new PahoMqttTransport(new MqttClient(broker.getUri(), UUID.randomUUID().toString(), new MemoryPersistence()));
+        }
+        mqttTransport.connect(parameters);
+        objectMapper = new ObjectMapper().registerModule(ValueWriters.module());
+        double[] waveform = new Random(42).doubles(samples).toArray();
+        dataMessage = new DataMessage();
+        dataMessage.setStreamId("benchmark");
+        dataMessage.setValue(Collections.singletonMap("waveform", waveform));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MqttException {
+        mqttTransport.disconnect();
+        if (nettyTransportFactory != null) {
+            nettyTransportFactory.close();
+        }
+        broker.close();
+    }
+
+    @Benchmark
+    public void publish(Allocation allocation) throws MqttException, IOException {
+        long before = allocation.allocatedBytes();
+        if ("streamed".equals(encoding)) {
+            mqttTransport.publish(TOPIC, out -> objectMapper.writeValue(out, dataMessage), 1);
+        } else {
+            mqttTransport.publish(TOPIC, objectMapper.writeValueAsBytes(dataMessage), 1);
+        }
+        allocation.record(allocation.allocatedBytes() - before);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private long bytes;
+        private long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            messages = 0;
+        }
+
+        public long allocatedBytesPerMessage() {
+            return messages > 0 ? bytes / messages : 0;
+        }
+
+        long allocatedBytes() {
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        void record(long allocated) {
+            bytes += allocated;
+            messages++;
+        }
+    }
+}
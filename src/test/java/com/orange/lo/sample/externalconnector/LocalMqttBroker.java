@@ -0,0 +1,299 @@
+package com.orange.lo.sample.externalconnector;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.mqtt.*;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process MQTT 3.1.1 and MQTT 5 broker: acknowledges connections, publications and subscriptions, records
+ * the received messages and sends messages to the subscribed clients. Connections with the password "refused" are
+ * rejected as not authorized. MQTT 5 clients are granted the topic aliases of {@link #setTopicAliasMaximum(int)}, and
+ * the aliases they publish are resolved into the recorded topics. The bytes read from the clients are counted by
+ * {@link #getReceivedBytes()}. A broker created with {@link #withTls()} accepts TLS connections with a self-signed
+ * certificate for 127.0.0.1, trusted by the context of {@link #clientSslContext()}.
+ */
+class LocalMqttBroker implements AutoCloseable {
+
+    static final String REFUSED_PASSWORD = "refused";
+    private static final String KEY_STORE = "/local-broker.p12";
+    private static final char[] KEY_STORE_PASSWORD = "changeit".toCharArray();
+    private static final int RECORDED_MESSAGES = 10000;
+    private static final int MAX_MESSAGE_SIZE = 1 << 24;
+
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final Channel serverChannel;
+    private final boolean tls;
+    private final BlockingQueue<Message> received = new LinkedBlockingQueue<>(RECORDED_MESSAGES);
+    private final Map<Channel, String> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Channel> clients = ConcurrentHashMap.newKeySet();
+    private final Map<Channel, Map<Integer, String>> topicAliases = new ConcurrentHashMap<>();
+    private final AtomicInteger lastPacketId = new AtomicInteger();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private volatile int topicAliasMaximum;
+    private volatile boolean acknowledgingPublications = true;
+    private volatile boolean recordingPublications = true;
+
+    LocalMqttBroker() throws InterruptedException {
+        this(null);
+    }
+
+    private LocalMqttBroker(SslContext sslContext) throws InterruptedException {
+        tls = sslContext != null;
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        if (sslContext != null) {
+                            ch.pipeline().addLast(sslContext.newHandler(ch.alloc()));
+                        }
+                        ch.pipeline().addLast(new ByteCounter(), new MqttDecoder(MAX_MESSAGE_SIZE), MqttEncoder.INSTANCE, new BrokerHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    static LocalMqttBroker withTls() throws InterruptedException, IOException, GeneralSecurityException {
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(loadKeyStore(), KEY_STORE_PASSWORD);
+        return new LocalMqttBroker(SslContextBuilder.forServer(keyManagerFactory).build());
+    }
+
+    /**
+     * @return TLS context trusting the certificate of the brokers created with {@link #withTls()}
+     */
+    static SSLContext clientSslContext() throws IOException, GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(loadKeyStore());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    private static KeyStore loadKeyStore() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = LocalMqttBroker.class.getResourceAsStream(KEY_STORE)) {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        }
+        return keyStore;
+    }
+
+    String getUri() {
+        return (tls ? "ssl" : "tcp") + "://127.0.0.1:" + ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    Message poll() throws InterruptedException {
+        return received.poll(5, TimeUnit.SECONDS);
+    }
+
+    void send(String topic, String payload) {
+        send(topic, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void send(String topic, byte[] payload) {
+        subscriptions.forEach((ch, topicFilter) -> {
+            if (NettyMqttTransport.matches(topicFilter, topic)) {
+                ch.writeAndFlush(MqttMessageBuilders.publish()
+                        .topicName(topic)
+                        .qos(MqttQoS.AT_LEAST_ONCE)
+                        .messageId(lastPacketId.incrementAndGet() % 65535 + 1)
+                        .payload(Unpooled.wrappedBuffer(payload))
+                        .build());
+            }
+        });
+    }
+
+    /**
+     * @return bytes read from the clients since the broker started, after TLS decryption
+     */
+    long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * @param topicAliasMaximum topic aliases granted to the MQTT 5 clients connecting afterwards, none by default
+     */
+    void setTopicAliasMaximum(int topicAliasMaximum) {
+        this.topicAliasMaximum = topicAliasMaximum;
+    }
+
+    boolean hasSubscriptions() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * @param acknowledgingPublications false to record the publications without acknowledging them
+     */
+    void setAcknowledgingPublications(boolean acknowledgingPublications) {
+        this.acknowledgingPublications = acknowledgingPublications;
+    }
+
+    /**
+     * @param recordingPublications false to acknowledge the publications without keeping them, e.g. for large payloads
+     */
+    void setRecordingPublications(boolean recordingPublications) {
+        this.recordingPublications = recordingPublications;
+    }
+
+    /**
+     * @param reading false to stop reading from the connected clients, so that their outbound buffers fill up
+     */
+    void setReading(boolean reading) {
+        clients.forEach(ch -> ch.config().setAutoRead(reading));
+    }
+
+    void disconnectClients() {
+        clients.forEach(Channel::close);
+    }
+
+    @Override
+    public void close() {
+        serverChannel.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private class BrokerHandler extends SimpleChannelInboundHandler<MqttMessage> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, MqttMessage message) {
+            switch (message.fixedHeader().messageType()) {
+                case CONNECT:
+                    MqttConnectMessage connect = (MqttConnectMessage) message;
+                    byte[] password = connect.payload().passwordInBytes();
+                    boolean refused = REFUSED_PASSWORD.equals(new String(password, StandardCharsets.UTF_8));
+                    MqttMessageBuilders.ConnAckBuilder connAck = MqttMessageBuilders.connAck()
+                            .returnCode(refused ? MqttConnectReturnCode.CONNECTION_REFUSED_NOT_AUTHORIZED : MqttConnectReturnCode.CONNECTION_ACCEPTED);
+                    if (connect.variableHeader().version() == io.netty.handler.codec.mqtt.MqttVersion.MQTT_5.protocolLevel()) {
+                        topicAliases.put(ctx.channel(), new ConcurrentHashMap<>());
+                        connAck.properties(p -> p.topicAliasMaximum(topicAliasMaximum));
+                    }
+                    ctx.writeAndFlush(connAck.build());
+                    break;
+                case PUBLISH:
+                    MqttPublishMessage publish = (MqttPublishMessage) message;
+                    String topic = resolveTopic(ctx.channel(), publish.variableHeader());
+                    if (recordingPublications) {
+                        received.offer(new Message(topic, ByteBufUtil.getBytes(publish.content())));
+                    }
+                    if (!acknowledgingPublications) {
+                        break;
+                    }
+                    if (publish.fixedHeader().qosLevel() == MqttQoS.AT_LEAST_ONCE) {
+                        ctx.writeAndFlush(MqttMessageBuilders.pubAck().packetId(publish.variableHeader().packetId()).build());
+                    } else if (publish.fixedHeader().qosLevel() == MqttQoS.EXACTLY_ONCE) {
+                        ctx.writeAndFlush(acknowledgement(MqttMessageType.PUBREC, MqttQoS.AT_MOST_ONCE, publish.variableHeader().packetId()));
+                    }
+                    break;
+                case PUBREL:
+                    ctx.writeAndFlush(acknowledgement(MqttMessageType.PUBCOMP, MqttQoS.AT_MOST_ONCE, packetId(message)));
+                    break;
+                case SUBSCRIBE:
+                    MqttSubscribeMessage subscribe = (MqttSubscribeMessage) message;
+                    subscriptions.put(ctx.channel(), subscribe.payload().topicSubscriptions().get(0).topicName());
+                    ctx.writeAndFlush(MqttMessageBuilders.subAck().packetId(subscribe.variableHeader().messageId()).addGrantedQos(MqttQoS.AT_LEAST_ONCE).build());
+                    break;
+                case UNSUBSCRIBE:
+                    subscriptions.remove(ctx.channel());
+                    ctx.writeAndFlush(MqttMessageBuilders.unsubAck().packetId(packetId(message)).build());
+                    break;
+                case PINGREQ:
+                    ctx.writeAndFlush(MqttMessage.PINGRESP);
+                    break;
+                case DISCONNECT:
+                    ctx.close();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            clients.add(ctx.channel());
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            clients.remove(ctx.channel());
+            subscriptions.remove(ctx.channel());
+            topicAliases.remove(ctx.channel());
+        }
+
+        private String resolveTopic(Channel channel, MqttPublishVariableHeader variableHeader) {
+            MqttProperties.MqttProperty<?> alias = variableHeader.properties().getProperty(MqttProperties.MqttPropertyType.TOPIC_ALIAS.value());
+            if (alias == null) {
+                return variableHeader.topicName();
+            }
+            Map<Integer, String> aliases = topicAliases.get(channel);
+            if (variableHeader.topicName().isEmpty()) {
+                return aliases.get((Integer) alias.value());
+            }
+            aliases.put((Integer) alias.value(), variableHeader.topicName());
+            return variableHeader.topicName();
+        }
+
+        private int packetId(MqttMessage message) {
+            return ((MqttMessageIdVariableHeader) message.variableHeader()).messageId();
+        }
+
+        private MqttMessage acknowledgement(MqttMessageType type, MqttQoS qos, int packetId) {
+            return new MqttMessage(new MqttFixedHeader(type, false, qos, false, 0), MqttMessageIdVariableHeader.from(packetId));
+        }
+    }
+
+    private class ByteCounter extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            receivedBytes.addAndGet(((ByteBuf) msg).readableBytes());
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    static final class Message {
+
+        final String topic;
+        final byte[] payload;
+
+        Message(String topic, byte[] payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+
+        String payloadAsString() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+}
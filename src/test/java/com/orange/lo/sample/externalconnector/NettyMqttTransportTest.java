@@ -0,0 +1,303 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Value;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NettyMqttTransportTest {
+
+    private LocalMqttBroker broker;
+    private NettyMqttTransportFactory transportFactory;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        broker = new LocalMqttBroker();
+        transportFactory = new NettyMqttTransportFactory(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transportFactory.close();
+        broker.close();
+    }
+
+    @Test
+    void shouldPublishOnceAcknowledged() throws Exception {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+        transport.connect(parameters(ExternalConnectorParametersTest.API_KEY));
+
+        transport.publish("connector/v1/nodes/node-1/data", "{}".getBytes(StandardCharsets.UTF_8), 1);
+        transport.publish("connector/v1/nodes/node-2/data", "{}".getBytes(StandardCharsets.UTF_8), 2);
+
+        assertEquals("connector/v1/nodes/node-1/data", broker.poll().topic);
+        assertEquals("connector/v1/nodes/node-2/data", broker.poll().topic);
+        transport.disconnect();
+        assertFalse(transport.isConnected());
+    }
+
+    @Test
+    void shouldFailWhenConnectionIsRefused() {
+        ExternalConnectorParameters parameters = parameters(LocalMqttBroker.REFUSED_PASSWORD);
+        MqttTransport transport = transportFactory.create(parameters);
+
+        MqttException exception = assertThrows(MqttException.class, () -> transport.connect(parameters));
+
+        assertEquals(MqttException.REASON_CODE_NOT_AUTHORIZED, exception.getReasonCode());
+        assertFalse(transport.isConnected());
+    }
+
+    @Test
+    void shouldFailToPublishWhenNotConnected() {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+
+        MqttException exception = assertThrows(MqttException.class, () -> transport.publish("topic", new byte[0], 1));
+
+        assertEquals(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED, exception.getReasonCode());
+    }
+
+    @Test
+    void shouldPublishLargePayloadWrittenIntoPooledBuffer() throws Exception {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+        transport.connect(parameters(ExternalConnectorParametersTest.API_KEY));
+        byte[] payload = new byte[100_000];
+        Arrays.fill(payload, (byte) 'x');
+
+        transport.publish("connector/v1/nodes/node-1/data", out -> out.write(payload), 1);
+        transport.publish("connector/v1/nodes/node-2/data", out -> out.write(payload), 0);
+
+        assertArrayEquals(payload, broker.poll().payload);
+        assertArrayEquals(payload, broker.poll().payload);
+        transport.disconnect();
+    }
+
+    @Test
+    void shouldNotPublishWhenPayloadWriterFails() throws Exception {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+        transport.connect(parameters(ExternalConnectorParametersTest.API_KEY));
+
+        assertThrows(IOException.class, () -> transport.publish("connector/v1/nodes/node-1/data", out -> {
+            out.write('{');
+            throw new IOException("Serialization failed");
+        }, 1));
+        transport.publish("connector/v1/nodes/node-2/data", "{}".getBytes(StandardCharsets.UTF_8), 1);
+
+        assertEquals("connector/v1/nodes/node-2/data", broker.poll().topic);
+        transport.disconnect();
+    }
+
+    @Test
+    void shouldWaitWhileOutboundBufferIsFull() throws Exception {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+        transport.connect(parameters(ExternalConnectorParametersTest.API_KEY));
+        broker.setRecordingPublications(false);
+        broker.setReading(false);
+        byte[] payload = new byte[64 * 1024];
+        Thread publisher = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    transport.publish("connector/v1/nodes/node-1/data", payload, 0);
+                }
+            } catch (MqttException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        publisher.start();
+        publisher.join(1000);
+        assertTrue(publisher.isAlive());
+        broker.setReading(true);
+        publisher.join(10000);
+
+        assertFalse(publisher.isAlive());
+        transport.disconnect();
+    }
+
+    @Test
+    void shouldKeepPacketIdsInRangeWhenCounterOverflows() {
+        assertEquals(1, NettyMqttTransport.packetId(0));
+        assertEquals(65535, NettyMqttTransport.packetId(65534));
+        assertEquals(1, NettyMqttTransport.packetId(65535));
+        for (int counter : new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1}) {
+            int packetId = NettyMqttTransport.packetId(counter);
+            assertTrue(packetId >= 1 && packetId <= 65535, String.valueOf(packetId));
+        }
+    }
+
+    @Test
+    void shouldDeliverSubscribedMessages() throws Exception {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+        transport.connect(parameters(ExternalConnectorParametersTest.API_KEY));
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        transport.subscribe("connector/v1/requests/+", 1, (topic, payload) -> messages.add(topic + " " + new String(payload, StandardCharsets.UTF_8)));
+        broker.send("connector/v1/requests/command", "first");
+        broker.send("connector/v1/responses/command", "ignored");
+        broker.send("connector/v1/requests/command", "second");
+
+        assertEquals("connector/v1/requests/command first", messages.poll(5, TimeUnit.SECONDS));
+        assertEquals("connector/v1/requests/command second", messages.poll(5, TimeUnit.SECONDS));
+        transport.disconnect();
+    }
+
+    @Test
+    void shouldReconnectAndSubscribeAgain() throws Exception {
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .automaticReconnect(true)
+                .build();
+        MqttTransport transport = transportFactory.create(parameters);
+        transport.connect(parameters);
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        transport.subscribe("commands", 1, (topic, payload) -> messages.add(new String(payload, StandardCharsets.UTF_8)));
+
+        broker.disconnectClients();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (transport.isConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        while (!(transport.isConnected() && broker.hasSubscriptions()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(transport.isConnected());
+        broker.send("commands", "after reconnection");
+
+        assertEquals("after reconnection", messages.poll(5, TimeUnit.SECONDS));
+        transport.disconnect();
+    }
+
+    @Test
+    void shouldFailOverAndSendInFlightPublicationAgain() throws Exception {
+        try (LocalMqttBroker standby = new LocalMqttBroker()) {
+            ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                    .serverUris(broker.getUri(), standby.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .automaticReconnect(true)
+                    .build();
+            MqttTransport transport = transportFactory.create(parameters);
+            transport.connect(parameters);
+            assertEquals(broker.getUri(), transport.getServerUri());
+            broker.setAcknowledgingPublications(false);
+            CountDownLatch published = new CountDownLatch(1);
+            Thread publisher = new Thread(() -> {
+                try {
+                    transport.publish("data", "in flight".getBytes(StandardCharsets.UTF_8), 1);
+                    published.countDown();
+                } catch (MqttException e) {
+                    // the latch is not released
+                }
+            });
+            publisher.start();
+            assertEquals("in flight", broker.poll().payloadAsString());
+
+            broker.disconnectClients();
+
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+            assertEquals(standby.getUri(), transport.getServerUri());
+            assertEquals("in flight", standby.poll().payloadAsString());
+            transport.disconnect();
+        }
+    }
+
+    @Test
+    void shouldPublishBatchOnceAcknowledged() throws Exception {
+        MqttTransport transport = transportFactory.create(parameters(ExternalConnectorParametersTest.API_KEY));
+        transport.connect(parameters(ExternalConnectorParametersTest.API_KEY));
+        String[] topics = {"connector/v1/nodes/node-1/data", "connector/v1/nodes/node-2/data", "connector/v1/nodes/node-3/data"};
+        byte[][] payloads = {"{}".getBytes(StandardCharsets.UTF_8), "{}".getBytes(StandardCharsets.UTF_8), "{}".getBytes(StandardCharsets.UTF_8)};
+
+        transport.publishBatch(topics, payloads, new int[]{0, 1, 2}, 3);
+
+        for (String topic : topics) {
+            assertEquals(topic, broker.poll().topic);
+        }
+        transport.disconnect();
+    }
+
+    @Test
+    void shouldSendMessagesAndCommandResponsesThroughClient() throws Exception {
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .transportFactory(transportFactory)
+                .messageCallback(commandRequest -> "done")
+                .build();
+        ExternalConnectorClient client = new ExternalConnectorClient(parameters);
+        client.connect();
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setValue(new Value("15"));
+
+        client.sendMessage("node-1", dataMessage);
+        broker.send(ExternalConnectorParameters.DEFAULT_COMMAND_REQUEST_TOPIC, "{\"id\":\"cmd-1\",\"nodeId\":\"node-1\",\"ackMode\":\"APPLICATIVE\"}");
+
+        assertEquals("connector/v1/nodes/node-1/data", broker.poll().topic);
+        LocalMqttBroker.Message response = broker.poll();
+        assertEquals(ExternalConnectorParameters.DEFAULT_COMMAND_RESPONSE_TOPIC, response.topic);
+        assertTrue(response.payloadAsString().contains("\"response\":\"done\""));
+        client.disconnect();
+    }
+
+    @Test
+    void shouldPublishFailureResponseWhenCommandTimesOut() throws Exception {
+        CountDownLatch handlerReleased = new CountDownLatch(1);
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .transportFactory(transportFactory)
+                .commandTimeout(Duration.ofMillis(100))
+                .messageCallback(commandRequest -> {
+                    try {
+                        handlerReleased.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "too late";
+                })
+                .build();
+        ExternalConnectorClient client = new ExternalConnectorClient(parameters);
+        client.connect();
+
+        broker.send(ExternalConnectorParameters.DEFAULT_COMMAND_REQUEST_TOPIC, "{\"id\":\"cmd-1\",\"nodeId\":\"node-1\",\"ackMode\":\"APPLICATIVE\",\"value\":{\"req\":\"reboot\"}}");
+
+        LocalMqttBroker.Message response = broker.poll();
+        assertEquals(ExternalConnectorParameters.DEFAULT_COMMAND_RESPONSE_TOPIC, response.topic);
+        assertTrue(response.payloadAsString().contains("\"error\":\"timeout\""));
+        assertEquals(1, client.getCommandStats().get("reboot").getTimedOut());
+        assertEquals(0, client.getCommandsInFlight("node-1"));
+        handlerReleased.countDown();
+        client.disconnect();
+    }
+
+    @Test
+    void shouldMatchTopicFilters() {
+        assertTrue(NettyMqttTransport.matches("a/b", "a/b"));
+        assertTrue(NettyMqttTransport.matches("a/+/c", "a/b/c"));
+        assertTrue(NettyMqttTransport.matches("a/#", "a/b/c"));
+        assertTrue(NettyMqttTransport.matches("a/#", "a"));
+        assertTrue(NettyMqttTransport.matches("#", "a/b"));
+        assertFalse(NettyMqttTransport.matches("a/+", "a/b/c"));
+        assertFalse(NettyMqttTransport.matches("a/b", "a/bc"));
+        assertFalse(NettyMqttTransport.matches("a/b/c", "a/b"));
+    }
+
+    private ExternalConnectorParameters parameters(String apiKey) {
+        return ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey(apiKey)
+                .build();
+    }
+}
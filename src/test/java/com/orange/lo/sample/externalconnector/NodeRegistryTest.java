@@ -0,0 +1,88 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeRegistryTest {
+
+    private final NodeRegistry nodeRegistry = new NodeRegistry();
+
+    @Test
+    void shouldInternNodeIds() {
+        String nodeId = new String("node-1");
+        String sameNodeId = new String("node-1");
+
+        assertSame(nodeId, nodeRegistry.intern(nodeId));
+        assertSame(nodeId, nodeRegistry.intern(sameNodeId));
+        assertEquals(0, nodeRegistry.indexOf(sameNodeId));
+        assertEquals(NodeRegistry.NO_NODE, nodeRegistry.indexOf("node-2"));
+        assertNull(nodeRegistry.get("node-2"));
+    }
+
+    @Test
+    void shouldKeepIndexesWhenGrowing() {
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, nodeRegistry.register("node-" + i));
+        }
+
+        assertEquals(count, nodeRegistry.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, nodeRegistry.indexOf("node-" + i));
+            assertEquals("node-" + i, nodeRegistry.getNodeId(i));
+        }
+    }
+
+    @Test
+    void shouldRecordNodeState() {
+        int index = nodeRegistry.register("node-1");
+        nodeRegistry.register("node-2");
+
+        nodeRegistry.recordStatus(index, Status.ONLINE, 1000, 2000);
+        nodeRegistry.recordDataMessage(index, 3000);
+        nodeRegistry.recordCommand(index);
+
+        NodeState nodeState = nodeRegistry.get("node-1");
+        assertEquals(Status.ONLINE, nodeState.getStatus());
+        assertEquals(3000, nodeState.getLastContactMillis());
+        assertEquals(3000, nodeState.getLastPublishMillis());
+        assertEquals(1, nodeState.getStatuses());
+        assertEquals(1, nodeState.getDataMessages());
+        assertEquals(1, nodeState.getCommands());
+        assertNull(nodeRegistry.get("node-2").getStatus());
+        AtomicLong visited = new AtomicLong();
+        nodeRegistry.forEach((i, nodeId, status, lastContactMillis, lastPublishMillis, dataMessages, statuses, commands) -> visited.addAndGet(dataMessages + 1));
+        assertEquals(3, visited.get());
+    }
+
+    @Test
+    void shouldRegisterEachNodeOnceWhenCalledConcurrently() throws InterruptedException {
+        int threads = 4;
+        int count = 50_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executorService.execute(() -> {
+                for (int i = 0; i < count; i++) {
+                    nodeRegistry.recordDataMessage(nodeRegistry.register("node-" + i), i);
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertEquals(count, nodeRegistry.size());
+        AtomicLong dataMessages = new AtomicLong();
+        nodeRegistry.forEach((i, nodeId, status, lastContactMillis, lastPublishMillis, messages, statuses, commands) -> dataMessages.addAndGet(messages));
+        assertEquals((long) threads * count, dataMessages.get());
+    }
+}
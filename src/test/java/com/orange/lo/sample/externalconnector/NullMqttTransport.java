@@ -0,0 +1,44 @@
+package com.orange.lo.sample.externalconnector;
+
+/**
+ * Transport that drops every publication, used to measure the client without network.
+ */
+class NullMqttTransport implements MqttTransport {
+
+    private volatile boolean connected;
+
+    @Override
+    public void connect(ExternalConnectorParameters parameters) {
+        connected = true;
+    }
+
+    @Override
+    public void disconnect() {
+        connected = false;
+    }
+
+    @Override
+    public void disconnect(long quiesceTimeoutMillis) {
+        connected = false;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, int qos) {
+        // dropped
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos, MessageListener messageListener) {
+        // no command is ever received
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+        // no command is ever received
+    }
+}
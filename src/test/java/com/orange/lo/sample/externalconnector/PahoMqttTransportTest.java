@@ -0,0 +1,56 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PahoMqttTransportTest {
+
+    @Test
+    void shouldKnowServerUriWhenConnectReturns() throws Exception {
+        try (LocalMqttBroker broker = new LocalMqttBroker()) {
+            PahoMqttTransport transport = new PahoMqttTransport(new MqttClient(broker.getUri(), "server-uri", new MemoryPersistence()));
+
+            transport.connect(parameters(broker));
+
+            assertEquals(broker.getUri(), transport.getServerUri());
+            transport.disconnect();
+        }
+    }
+
+    @Test
+    void shouldKnowServerUriOfFailoverWhenConnectReturns() throws Exception {
+        try (LocalMqttBroker broker = new LocalMqttBroker()) {
+            PahoMqttTransport transport = new PahoMqttTransport(new MqttClient(broker.getUri(), "server-uri", new MemoryPersistence()));
+
+            transport.connect(parameters(broker), Arrays.asList("tcp://127.0.0.1:1", broker.getUri()));
+
+            assertEquals(broker.getUri(), transport.getServerUri());
+            transport.disconnect();
+        }
+    }
+
+    @Test
+    void shouldKnowServerUriWhenMqtt5ConnectReturns() throws Exception {
+        try (LocalMqttBroker broker = new LocalMqttBroker()) {
+            PahoMqtt5Transport transport = new PahoMqtt5Transport(new org.eclipse.paho.mqttv5.client.MqttClient(broker.getUri(), "server-uri",
+                    new org.eclipse.paho.mqttv5.client.persist.MemoryPersistence()));
+
+            transport.connect(parameters(broker));
+
+            assertEquals(broker.getUri(), transport.getServerUri());
+            transport.disconnect();
+        }
+    }
+
+    private static ExternalConnectorParameters parameters(LocalMqttBroker broker) {
+        return ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadBufferTest {
+
+    @Test
+    void shouldReturnPayloadOfExactSize() throws IOException {
+        byte[] large = new byte[3 * PayloadBuffer.INITIAL_CAPACITY + 1];
+        Arrays.fill(large, (byte) 'x');
+
+        byte[] payload = PayloadBuffer.write(out -> {
+            out.write('[');
+            out.write(large);
+            out.write(']');
+        });
+
+        assertEquals(large.length + 2, payload.length);
+        assertEquals('[', payload[0]);
+        assertEquals(']', payload[payload.length - 1]);
+    }
+
+    @Test
+    void shouldStartFromEmptyBufferAfterFailedWrite() throws IOException {
+        assertThrows(IOException.class, () -> PayloadBuffer.write(out -> {
+            out.write("partial".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("Serialization failed");
+        }));
+
+        byte[] payload = PayloadBuffer.write(out -> out.write("{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("{}", new String(payload, StandardCharsets.UTF_8));
+    }
+}
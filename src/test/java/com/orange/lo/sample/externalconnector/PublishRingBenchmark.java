@@ -0,0 +1,113 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.Value;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publication throughput from 1 to 64 producer threads, with the calling threads publishing directly ("none") or
+ * through the publish ring with each wait strategy. Runs against the broker of the "broker" system property
+ * (e.g. tcp://localhost:1883), or against an in-process broker when it is not set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+public class PublishRingBenchmark {
+
+    @Param({"none", "BUSY_SPIN", "YIELD", "PARK"})
+    public String ring;
+
+    @Param({"paho", "netty"})
+    public String transport;
+
+    private LocalMqttBroker localBroker;
+    private NettyMqttTransportFactory nettyTransportFactory;
+    private ExternalConnectorClient client;
+    private DataMessage dataMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, MqttException {
+        String brokerUri = System.getProperty("broker");
+        if (brokerUri == null) {
+            localBroker = new LocalMqttBroker();
+            brokerUri = localBroker.getUri();
+        }
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder parameters = ExternalConnectorParameters.builder()
+                .hostname(brokerUri)
+                .apiKey(System.getProperty("apiKey", "benchmark"))
+                .messageQos(0);
+        if (!"none".equals(ring)) {
+            parameters.publishRing(PublishRingParameters.builder().waitStrategy(WaitStrategy.valueOf(ring)).build());
+        }
+        if ("netty".equals(transport)) {
+            nettyTransportFactory = new NettyMqttTransportFactory();
+            parameters.transportFactory(nettyTransportFactory);
+        }
+        client = new ExternalConnectorClient(parameters.build());
+        client.connect();
+        dataMessage = new DataMessage();
+        dataMessage.setStreamId("benchmark");
+        dataMessage.setValue(new Value("15;25"));
+        dataMessage.setMetadata(new Metadata("csv"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MqttException {
+        client.disconnect();
+        if (nettyTransportFactory != null) {
+            nettyTransportFactory.close();
+        }
+        if (localBroker != null) {
+            localBroker.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void producers01() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void producers02() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void producers04() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void producers08() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void producers16() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void producers32() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void producers64() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+}
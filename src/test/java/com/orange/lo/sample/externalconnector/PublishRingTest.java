@@ -0,0 +1,141 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.LoMqttException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublishRingTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES_PER_PRODUCER = 20000;
+
+    @Test
+    void shouldHandAllMessagesInOrderOfEachProducer() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            Map<String, Integer> lastMessages = new HashMap<>();
+            List<String> outOfOrder = new ArrayList<>();
+            int[] handled = new int[1];
+            PublishRing ring = new PublishRing(parameters(64, 16, waitStrategy), (topic, kind, message, endOfBatch) -> {
+                Integer last = lastMessages.put(topic, (Integer) message);
+                if (last != null && last + 1 != (Integer) message) {
+                    outOfOrder.add(topic + ":" + message);
+                }
+                handled[0]++;
+            });
+            ring.start();
+
+            runProducers(ring);
+            ring.stop();
+
+            assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, handled[0], waitStrategy.name());
+            assertEquals(new ArrayList<>(), outOfOrder, waitStrategy.name());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    void shouldMarkLastAvailableMessageAsEndOfBatch() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Boolean> endOfBatches = new ArrayList<>();
+        PublishRing ring = new PublishRing(parameters(16, 4, WaitStrategy.PARK), (topic, kind, message, endOfBatch) -> {
+            endOfBatches.add(endOfBatch);
+            if ("first".equals(message)) {
+                blocked.countDown();
+                awaitUninterruptibly(release);
+            }
+        });
+        ring.start();
+
+        ring.publish("topic", MessageKind.DATA_MESSAGE, "first");
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 6; i++) {
+            ring.publish("topic", MessageKind.DATA_MESSAGE, "next");
+        }
+        assertEquals(7, ring.size());
+        release.countDown();
+        ring.stop();
+
+        assertEquals(Arrays.asList(true, false, false, false, true, false, true), endOfBatches);
+    }
+
+    @Test
+    void shouldRejectMessagesWhenStopped() {
+        PublishRing ring = new PublishRing(parameters(16, 4, WaitStrategy.YIELD), (topic, kind, message, endOfBatch) -> {
+        });
+
+        assertThrows(LoMqttException.class, () -> ring.publish("topic", MessageKind.DATA_MESSAGE, "message"));
+    }
+
+    @Test
+    void shouldHandEveryAcceptedMessageWhenStoppedWhilePublishing() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            AtomicInteger handled = new AtomicInteger();
+            AtomicInteger accepted = new AtomicInteger();
+            PublishRing ring = new PublishRing(parameters(16, 4, WaitStrategy.YIELD), (topic, kind, message, endOfBatch) -> handled.incrementAndGet());
+            ring.start();
+            Thread[] producers = new Thread[PRODUCERS];
+            for (int p = 0; p < PRODUCERS; p++) {
+                producers[p] = new Thread(() -> {
+                    try {
+                        while (true) {
+                            ring.publish("topic", MessageKind.DATA_MESSAGE, "message");
+                            accepted.incrementAndGet();
+                        }
+                    } catch (LoMqttException e) {
+                        // stopped
+                    }
+                });
+                producers[p].start();
+            }
+
+            Thread.sleep(5);
+            ring.stop();
+            for (Thread producer : producers) {
+                producer.join(5000);
+                assertFalse(producer.isAlive());
+            }
+
+            assertEquals(accepted.get(), handled.get());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    private static void runProducers(PublishRing ring) throws InterruptedException {
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            String topic = "producer-" + p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                    ring.publish(topic, MessageKind.DATA_MESSAGE, i);
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PublishRingParameters parameters(int capacity, int batchSize, WaitStrategy waitStrategy) {
+        return PublishRingParameters.builder().capacity(capacity).batchSize(batchSize).waitStrategy(waitStrategy).build();
+    }
+}
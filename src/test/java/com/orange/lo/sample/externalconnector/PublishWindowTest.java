@@ -0,0 +1,108 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublishWindowTest {
+
+    private static final long STABLE_LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SPIKE_LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void shouldGrowAdditivelyWhileWindowIsFilledAndLatencyIsStable() throws InterruptedException {
+        PublishWindow window = new PublishWindow(PublishWindowParameters.builder().initialWindow(2).maxWindow(4).build());
+
+        for (int round = 0; round < 10; round++) {
+            int size = window.getStats().getWindow();
+            for (int i = 0; i < size; i++) {
+                window.acquire();
+            }
+            for (int i = 0; i < size; i++) {
+                window.release(STABLE_LATENCY, false);
+            }
+        }
+
+        PublishWindowStats stats = window.getStats();
+        assertEquals(4, stats.getWindow());
+        assertEquals(2, stats.getIncreases());
+        assertEquals(0, stats.getInFlight());
+        assertEquals(STABLE_LATENCY, stats.getSmoothedLatency().toNanos());
+    }
+
+    @Test
+    void shouldNotGrowWhileWindowIsNotFilled() throws InterruptedException {
+        PublishWindow window = new PublishWindow(PublishWindowParameters.builder().initialWindow(2).build());
+
+        for (int i = 0; i < 100; i++) {
+            window.acquire();
+            window.release(STABLE_LATENCY, false);
+        }
+
+        assertEquals(2, window.getStats().getWindow());
+    }
+
+    @Test
+    void shouldShrinkOnceOnLatencySpikeOfPublicationsInFlight() throws InterruptedException {
+        PublishWindow window = new PublishWindow(PublishWindowParameters.builder().initialWindow(8).build());
+        for (int i = 0; i < 8; i++) {
+            window.acquire();
+            window.release(STABLE_LATENCY, false);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            window.acquire();
+        }
+        for (int i = 0; i < 4; i++) {
+            window.release(SPIKE_LATENCY, false);
+        }
+
+        assertEquals(4, window.getStats().getWindow());
+        assertEquals(1, window.getStats().getSpikeDecreases());
+    }
+
+    @Test
+    void shouldShrinkOnFailureAtMostOncePerWindowOfAcknowledgements() throws InterruptedException {
+        PublishWindow window = new PublishWindow(PublishWindowParameters.builder().initialWindow(10).minWindow(2).build());
+
+        release(window, 1, true);
+        release(window, 1, true);
+        assertEquals(5, window.getStats().getWindow());
+        release(window, 3, false);
+        release(window, 1, true);
+        assertEquals(2, window.getStats().getWindow());
+        assertEquals(2, window.getStats().getFailureDecreases());
+    }
+
+    @Test
+    void shouldWaitForFreeSlotWhenWindowIsFull() throws InterruptedException {
+        PublishWindow window = new PublishWindow(PublishWindowParameters.builder().initialWindow(1).maxWindow(1).build());
+        window.acquire();
+        Thread publisher = new Thread(() -> {
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        publisher.start();
+        publisher.join(100);
+        assertTrue(publisher.isAlive());
+
+        window.release(STABLE_LATENCY, false);
+        publisher.join(5000);
+
+        assertFalse(publisher.isAlive());
+        assertEquals(1, window.getStats().getInFlight());
+        assertEquals(1, window.getStats().getWaits());
+    }
+
+    private static void release(PublishWindow window, int count, boolean failed) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            window.acquire();
+            window.release(STABLE_LATENCY, failed);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Value;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportByExceptionTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void shouldSuppressChangesWithinAbsoluteDeadband() {
+        ReportByException filter = filter(ReportByExceptionParameters.builder().defaultDeadband(Deadband.absolute(0.5)).build());
+
+        assertTrue(filter.shouldReport("node-1", measure(null, 20.0, "C"), 0));
+        assertFalse(filter.shouldReport("node-1", measure(null, 20.3, "C"), SECOND));
+        assertTrue(filter.shouldReport("node-1", measure(null, 20.6, "C"), 2 * SECOND));
+        assertFalse(filter.shouldReport("node-1", measure(null, 20.9, "C"), 3 * SECOND));
+        assertTrue(filter.shouldReport("node-1", measure(null, 20.9, "F"), 4 * SECOND));
+
+        ReportByExceptionStats stats = filter.getStats();
+        assertEquals(5, stats.getReceived());
+        assertEquals(2, stats.getSuppressed());
+        assertEquals(0.4, stats.getSuppressionRatio(), 1e-9);
+    }
+
+    @Test
+    void shouldUsePercentDeadbandOfMatchingStream() {
+        ReportByException filter = filter(ReportByExceptionParameters.builder()
+                .streamIdDeadband("pressure*", Deadband.percent(10))
+                .build());
+
+        assertTrue(filter.shouldReport("node-1", measure("pressure/1", 100, "hPa"), 0));
+        assertFalse(filter.shouldReport("node-1", measure("pressure/1", 109, "hPa"), SECOND));
+        assertTrue(filter.shouldReport("node-1", measure("pressure/1", 111, "hPa"), 2 * SECOND));
+        assertTrue(filter.shouldReport("node-1", measure("temperature", 20, "C"), 0));
+        assertTrue(filter.shouldReport("node-1", measure("temperature", 20.1, "C"), SECOND));
+        assertFalse(filter.shouldReport("node-1", measure("temperature", 20.1, "C"), 2 * SECOND));
+    }
+
+    @Test
+    void shouldReportUnchangedValueAfterMaxSilence() {
+        ReportByException filter = filter(ReportByExceptionParameters.builder().maxSilence(Duration.ofSeconds(10)).build());
+
+        assertTrue(filter.shouldReport("node-1", measure(null, 20, "C"), 0));
+        assertFalse(filter.shouldReport("node-1", measure(null, 20, "C"), 9 * SECOND));
+        assertTrue(filter.shouldReport("node-1", measure(null, 20, "C"), 10 * SECOND));
+        assertFalse(filter.shouldReport("node-1", measure(null, 20, "C"), 11 * SECOND));
+    }
+
+    @Test
+    void shouldTrackNodesAndStreamsIndependently() {
+        ReportByException filter = filter(ReportByExceptionParameters.builder().build());
+
+        assertTrue(filter.shouldReport("node-1", measure("a", 1, "C"), 0));
+        assertTrue(filter.shouldReport("node-2", measure("a", 1, "C"), 0));
+        assertTrue(filter.shouldReport("node-1", measure("b", 1, "C"), 0));
+        assertFalse(filter.shouldReport("node-2", measure("a", 1, "C"), 0));
+        assertTrue(filter.shouldReport("node-1", text("a", "15;25"), 0));
+        assertFalse(filter.shouldReport("node-1", text("a", "15;25"), 0));
+        assertTrue(filter.shouldReport("node-1", text("a", "15;26"), 0));
+        assertEquals(3, filter.getStats().getTracked());
+    }
+
+    @Test
+    void shouldReportValueAgainWhenPublicationFailed() {
+        ReportByException filter = filter(ReportByExceptionParameters.builder().build());
+        assertTrue(filter.shouldReport("node-1", measure(null, 20, "C"), 0));
+
+        assertTrue(filter.shouldReport("node-1", measure(null, 21, "C"), SECOND));
+        filter.cancelReport();
+
+        assertTrue(filter.shouldReport("node-1", measure(null, 21, "C"), 2 * SECOND));
+        assertFalse(filter.shouldReport("node-1", measure(null, 21, "C"), 3 * SECOND));
+    }
+
+    @Test
+    void shouldDistinguishStringsWithSameHashCode() {
+        ReportByException filter = filter(ReportByExceptionParameters.builder().build());
+
+        assertTrue(filter.shouldReport("node-1", text(null, "Aa"), 0));
+        assertTrue(filter.shouldReport("node-1", text(null, "BB"), SECOND));
+    }
+
+    private static ReportByException filter(ReportByExceptionParameters parameters) {
+        return new ReportByException(parameters, new ObjectMapper());
+    }
+
+    private static DataMessage measure(String streamId, double temperature, String unit) {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("temperature", temperature);
+        value.put("unit", unit);
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setStreamId(streamId);
+        dataMessage.setValue(value);
+        return dataMessage;
+    }
+
+    private static DataMessage text(String streamId, String payload) {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setStreamId(streamId);
+        dataMessage.setValue(new Value(payload));
+        return dataMessage;
+    }
+}
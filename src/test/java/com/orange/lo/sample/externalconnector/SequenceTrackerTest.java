@@ -0,0 +1,106 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceTrackerTest {
+
+    @Test
+    void shouldIncrementEventIdPerNode() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.newSession();
+
+        assertEquals(1, SequenceTracker.eventOf(tracker.next("node-1")));
+        assertEquals(2, SequenceTracker.eventOf(tracker.next("node-1")));
+        assertEquals(1, SequenceTracker.eventOf(tracker.next("node-2")));
+        assertEquals(1, SequenceTracker.sessionOf(tracker.next("node-2")));
+    }
+
+    @Test
+    void shouldRestartEventIdInNewSession() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.newSession();
+        tracker.next("node-1");
+        tracker.next("node-1");
+
+        tracker.newSession();
+        long ids = tracker.next("node-1");
+
+        assertEquals(2, SequenceTracker.sessionOf(ids));
+        assertEquals(1, SequenceTracker.eventOf(ids));
+    }
+
+    @Test
+    void shouldNeverMoveSessionBackwards() {
+        SequenceTracker.NodeSequence sequence = new SequenceTracker.NodeSequence();
+        sequence.next(1);
+        sequence.next(2);
+
+        // a thread which read the session id before the new connection
+        long stale = sequence.next(1);
+        long next = sequence.next(2);
+
+        assertEquals(2, SequenceTracker.sessionOf(stale));
+        assertEquals(2, SequenceTracker.eventOf(stale));
+        assertEquals(3, SequenceTracker.eventOf(next));
+    }
+
+    @Test
+    void shouldNeverGiveSameIdsToConcurrentStatuses() throws Exception {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.newSession();
+        int threads = 8;
+        int statuses = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                int[] events = new int[statuses];
+                for (int i = 0; i < statuses; i++) {
+                    events[i] = SequenceTracker.eventOf(tracker.next("node-1"));
+                }
+                return events;
+            }));
+        }
+        BitSet seen = new BitSet();
+        for (Future<int[]> result : results) {
+            for (int event : result.get()) {
+                assertFalse(seen.get(event));
+                seen.set(event);
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(threads * statuses, seen.cardinality());
+        assertEquals(threads * statuses, seen.length() - 1);
+    }
+
+    @Test
+    void shouldRestoreSnapshot(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sequences.bin");
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.newSession();
+        tracker.next("node-1");
+        tracker.next("node-1");
+        tracker.save(file);
+
+        SequenceTracker restored = new SequenceTracker();
+        restored.load(file);
+        restored.newSession();
+
+        assertEquals(1, restored.size());
+        assertEquals(2, restored.getSessionSequenceId());
+        assertEquals(1, SequenceTracker.eventOf(restored.next("node-1")));
+    }
+}
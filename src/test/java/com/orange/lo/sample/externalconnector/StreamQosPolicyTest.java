@@ -0,0 +1,83 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+import com.orange.lo.sample.lo.model.CommandResponse;
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.NodeStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamQosPolicyTest {
+
+    @Test
+    void shouldUseDefaultQosWhenNoRuleMatches() {
+        StreamQosPolicy policy = StreamQosPolicy.builder()
+                .defaultQos(0)
+                .streamIdQos("alarm", 1)
+                .build();
+
+        assertEquals(0, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("vibration", null)));
+        assertEquals(0, policy.getQos(MessageKind.NODE_STATUS, new NodeStatus()));
+    }
+
+    @Test
+    void shouldUseQosOfKindWhenNoStreamRuleMatches() {
+        StreamQosPolicy policy = StreamQosPolicy.builder()
+                .defaultQos(0)
+                .qos(MessageKind.COMMAND_RESPONSE, 1)
+                .build();
+
+        assertEquals(1, policy.getQos(MessageKind.COMMAND_RESPONSE, new CommandResponse("id", "node")));
+        assertEquals(0, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("vibration", null)));
+    }
+
+    @Test
+    void shouldUseQosOfExactStreamIdRule() {
+        StreamQosPolicy policy = StreamQosPolicy.builder()
+                .defaultQos(1)
+                .streamIdQos("vibration", 0)
+                .build();
+
+        assertEquals(0, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("vibration", null)));
+        assertEquals(1, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("vibration2", null)));
+    }
+
+    @Test
+    void shouldUseQosOfLongestMatchingPrefix() {
+        StreamQosPolicy policy = StreamQosPolicy.builder()
+                .defaultQos(1)
+                .streamIdQos("sensor/*", 0)
+                .streamIdQos("sensor/alarm/*", 1)
+                .build();
+
+        assertEquals(0, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("sensor/vibration", null)));
+        assertEquals(1, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("sensor/alarm/overheat", null)));
+    }
+
+    @Test
+    void shouldUseModelRuleWhenNoStreamIdRuleMatches() {
+        StreamQosPolicy policy = StreamQosPolicy.builder()
+                .defaultQos(1)
+                .streamIdQos("alarm", 1)
+                .modelQos("vibration_v*", 0)
+                .build();
+
+        assertEquals(0, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("stream", "vibration_v2")));
+        assertEquals(1, policy.getQos(MessageKind.DATA_MESSAGE, getDataMessage("alarm", "vibration_v2")));
+    }
+
+    @Test
+    void shouldThrowExternalConnectorParametersExceptionWhenQosIsInvalid() {
+        StreamQosPolicy.StreamQosPolicyBuilder builder = StreamQosPolicy.builder();
+        Assertions.assertThrows(ExternalConnectorParametersException.class, () -> builder.streamIdQos("alarm", 3));
+    }
+
+    private DataMessage getDataMessage(String streamId, String model) {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setStreamId(streamId);
+        dataMessage.setModel(model);
+        return dataMessage;
+    }
+}
@@ -0,0 +1,67 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    private final List<String> expired = new ArrayList<>();
+    private final TimerWheel wheel = new TimerWheel(10, 8, 0);
+
+    @Test
+    void shouldExpireTimeoutsOnceDeadlineIsReached() {
+        wheel.schedule(timeout("first"), 25);
+        wheel.schedule(timeout("second"), 1000);
+
+        assertEquals(0, wheel.advance(10));
+        assertEquals(1, wheel.advance(30));
+        assertEquals(0, wheel.advance(500));
+        assertEquals(1, wheel.advance(1000));
+        assertEquals(0, wheel.size());
+        assertEquals(2, expired.size());
+        assertEquals("first", expired.get(0));
+    }
+
+    @Test
+    void shouldExpireOverdueTimeoutsWhenAdvancedLate() {
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule(timeout("timeout-" + i), i * 7L);
+        }
+
+        assertEquals(100, wheel.advance(10_000));
+    }
+
+    @Test
+    void shouldNotExpireCancelledTimeouts() {
+        TimerWheel.Timeout timeout = timeout("cancelled");
+        wheel.schedule(timeout, 20);
+
+        assertTrue(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(timeout));
+        assertEquals(0, wheel.advance(100));
+    }
+
+    @Test
+    void shouldMoveRescheduledTimeouts() {
+        TimerWheel.Timeout timeout = timeout("moved");
+        wheel.schedule(timeout, 20);
+        wheel.schedule(timeout, 200);
+
+        assertEquals(1, wheel.size());
+        assertEquals(0, wheel.advance(100));
+        assertEquals(1, wheel.advance(200));
+    }
+
+    private TimerWheel.Timeout timeout(String name) {
+        return new TimerWheel.Timeout() {
+            @Override
+            void expired(long nowMillis) {
+                expired.add(name);
+            }
+        };
+    }
+}
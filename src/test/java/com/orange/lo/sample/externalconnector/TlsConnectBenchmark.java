@@ -0,0 +1,82 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection time of a client to an in-process TLS broker, with a full handshake ("cold", new TLS context for each
+ * connection, like a restarted connector) or with the session resumed from the shared TLS parameters ("resumed").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class TlsConnectBenchmark {
+
+    @Param({"cold", "resumed"})
+    public String session;
+
+    @Param({"paho", "netty"})
+    public String transport;
+
+    private LocalMqttBroker broker;
+    private NettyMqttTransportFactory nettyTransportFactory;
+    private TlsParameters sharedTlsParameters;
+    private ExternalConnectorClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, IOException, GeneralSecurityException {
+        broker = LocalMqttBroker.withTls();
+        if ("netty".equals(transport)) {
+            nettyTransportFactory = new NettyMqttTransportFactory(1);
+        }
+        sharedTlsParameters = tlsParameters();
+    }
+
+    @Setup(Level.Invocation)
+    public void createClient() throws IOException, GeneralSecurityException, MqttException {
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey("benchmark")
+                .tls("resumed".equals(session) ? sharedTlsParameters : tlsParameters());
+        if (nettyTransportFactory != null) {
+            client = new ExternalConnectorClient(parameters.transportFactory(nettyTransportFactory).build());
+        } else {
+            client = new ExternalConnectorClient(parameters.build(), new MqttClient(broker.getUri(), UUID.randomUUID().toString(), new MemoryPersistence()));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void disconnect() throws MqttException {
+        client.disconnect();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (nettyTransportFactory != null) {
+            nettyTransportFactory.close();
+        }
+        broker.close();
+    }
+
+    @Benchmark
+    public void connect() throws MqttException {
+        client.connect();
+    }
+
+    private static TlsParameters tlsParameters() throws IOException, GeneralSecurityException {
+        return TlsParameters.builder()
+                .sslContext(LocalMqttBroker.clientSslContext())
+                .build();
+    }
+}
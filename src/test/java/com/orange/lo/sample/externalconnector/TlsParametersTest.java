@@ -0,0 +1,83 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSocket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TlsParametersTest {
+
+    @Test
+    void shouldCreateSocketsWithEnabledProtocolsAndCipherSuites() throws Exception {
+        TlsParameters tlsParameters = TlsParameters.builder()
+                .protocols("TLSv1.2")
+                .cipherSuites("TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256")
+                .build();
+
+        try (SSLSocket socket = (SSLSocket) tlsParameters.getSocketFactory().createSocket()) {
+            assertArrayEquals(new String[]{"TLSv1.2"}, socket.getEnabledProtocols());
+            assertArrayEquals(new String[]{"TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256"}, socket.getEnabledCipherSuites());
+        }
+    }
+
+    @Test
+    void shouldConfigureSessionCache() {
+        TlsParameters tlsParameters = TlsParameters.builder()
+                .sessionCacheSize(10)
+                .sessionTimeout(Duration.ofMinutes(5))
+                .build();
+
+        assertEquals(10, tlsParameters.getSslContext().getClientSessionContext().getSessionCacheSize());
+        assertEquals(300, tlsParameters.getSslContext().getClientSessionContext().getSessionTimeout());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenProtocolIsNotSupported() {
+        TlsParameters.TlsParametersBuilder builder = TlsParameters.builder().protocols("SSLv1");
+
+        assertThrows(ExternalConnectorParametersException.class, builder::build);
+    }
+
+    @Test
+    void shouldNotDependOnNetty() throws Exception {
+        URL classes = TlsParameters.class.getProtectionDomain().getCodeSource().getLocation();
+        // only the classes of the library and of the JDK, as in an application using the Paho transports
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes}, null)) {
+            Class<?> tlsParametersClass = Class.forName(TlsParameters.class.getName(), true, classLoader);
+            tlsParametersClass.getDeclaredMethods();
+            tlsParametersClass.getDeclaredFields();
+
+            Object builder = tlsParametersClass.getMethod("builder").invoke(null);
+            Object tlsParameters = builder.getClass().getMethod("build").invoke(builder);
+
+            assertNotNull(tlsParametersClass.getMethod("getSocketFactory").invoke(tlsParameters));
+        }
+    }
+
+    @Test
+    void shouldConnectPahoClientWithSharedSocketFactory() throws Exception {
+        try (LocalMqttBroker broker = LocalMqttBroker.withTls()) {
+            ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                    .hostname(broker.getUri())
+                    .apiKey(ExternalConnectorParametersTest.API_KEY)
+                    .tls(TlsParameters.builder().sslContext(LocalMqttBroker.clientSslContext()).build())
+                    .build();
+            ExternalConnectorClient client = new ExternalConnectorClient(parameters,
+                    new MqttClient(broker.getUri(), "tls-client", new MemoryPersistence()));
+
+            client.connect();
+            client.sendMessage("node-1", new DataMessage());
+
+            assertNotNull(broker.poll());
+            client.disconnect();
+        }
+    }
+}
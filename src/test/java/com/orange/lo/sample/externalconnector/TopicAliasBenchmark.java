@@ -0,0 +1,99 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.Value;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.mqttv5.client.MqttClient;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes on the wire for each small data message published with MQTT 5 to an in-process broker, which grants no topic
+ * alias ("0") or 10 of them. The nodes, whose nodeId is a long URN, publish in turn, so that with more nodes than
+ * aliases only the first nodes are aliased. The bytes read by the broker are reported by the bytesPerMessage counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class TopicAliasBenchmark {
+
+    @Param({"0", "10"})
+    public int topicAliasMaximum;
+
+    @Param({"1", "10", "100"})
+    public int nodes;
+
+    private LocalMqttBroker broker;
+    private ExternalConnectorClient client;
+    private String[] nodeIds;
+    private int nextNode;
+    private DataMessage dataMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, MqttException, org.eclipse.paho.mqttv5.common.MqttException {
+        broker = new LocalMqttBroker();
+        broker.setRecordingPublications(false);
+        broker.setTopicAliasMaximum(topicAliasMaximum);
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey("benchmark")
+                .mqttVersion(MqttVersion.MQTT_5)
+                .build();
+        client = new ExternalConnectorClient(parameters,
+                new MqttClient(broker.getUri(), UUID.randomUUID().toString(), new MemoryPersistence()));
+        client.connect();
+        nodeIds = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = "urn:lo:nsid:external-connector:" + UUID.randomUUID();
+        }
+        dataMessage = new DataMessage();
+        dataMessage.setStreamId("benchmark");
+        dataMessage.setValue(new Value("15;25"));
+        dataMessage.setMetadata(new Metadata("csv"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MqttException {
+        client.disconnect();
+        broker.close();
+    }
+
+    @Benchmark
+    public void sendMessage(Wire wire) {
+        long before = broker.getReceivedBytes();
+        client.sendMessage(nodeIds[nextNode], dataMessage);
+        nextNode = (nextNode + 1) % nodes;
+        wire.record(broker.getReceivedBytes() - before);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wire {
+
+        private long bytes;
+        private long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            messages = 0;
+        }
+
+        public long bytesPerMessage() {
+            return messages > 0 ? bytes / messages : 0;
+        }
+
+        void record(long received) {
+            bytes += received;
+            messages++;
+        }
+    }
+}
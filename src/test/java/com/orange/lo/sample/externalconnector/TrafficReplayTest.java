@@ -0,0 +1,118 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.exceptions.ExternalConnectorParametersException;
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.NodeStatus;
+import com.orange.lo.sample.lo.model.Status;
+import com.orange.lo.sample.lo.model.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficReplayTest {
+
+    private static final String COMMAND = "{\"id\":\"cmd-1\",\"nodeId\":\"node-1\",\"ackMode\":\"APPLICATIVE\",\"value\":{\"req\":\"reboot\"}}";
+
+    @TempDir
+    Path tempDir;
+
+    private LocalMqttBroker broker;
+    private NettyMqttTransportFactory transportFactory;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        broker = new LocalMqttBroker();
+        transportFactory = new NettyMqttTransportFactory(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transportFactory.close();
+        broker.close();
+    }
+
+    @Test
+    void shouldCaptureAndReplayTraffic() throws Exception {
+        Path captureFile = tempDir.resolve("traffic.bin");
+        ExternalConnectorClient capturingClient = new ExternalConnectorClient(parameters().captureFile(captureFile).build());
+        capturingClient.connect();
+        NodeStatus nodeStatus = new NodeStatus();
+        nodeStatus.setStatus(Status.ONLINE);
+        capturingClient.sendStatus("node-1", nodeStatus);
+        capturingClient.sendMessage("node-1", dataMessage("15"));
+        capturingClient.sendMessage("node-2", dataMessage("16"));
+        broker.send(ExternalConnectorParameters.DEFAULT_COMMAND_REQUEST_TOPIC, COMMAND);
+        List<String> capturedTopics = pollTopics(4);
+        capturingClient.disconnect();
+
+        List<TrafficLog.Direction> directions = new ArrayList<>();
+        try (TrafficLog.Reader reader = TrafficLog.openReader(captureFile)) {
+            TrafficLog.Record record;
+            long lastTimestamp = 0;
+            while ((record = reader.next()) != null) {
+                directions.add(record.getDirection());
+                assertTrue(record.getTimestampNanos() >= lastTimestamp);
+                lastTimestamp = record.getTimestampNanos();
+            }
+        }
+        assertEquals(5, directions.size());
+        assertEquals(1, directions.stream().filter(direction -> direction == TrafficLog.Direction.INCOMING).count());
+
+        ExternalConnectorClient replayingClient = new ExternalConnectorClient(parameters().build());
+        replayingClient.connect();
+        ReplayResult result = new TrafficReplay(captureFile, Double.POSITIVE_INFINITY, 2).run(replayingClient, broker::send);
+
+        assertEquals(3, result.getMessages());
+        assertEquals(1, result.getCommands());
+        assertEquals(1, result.getSkipped());
+        assertEquals(0, result.getFailed());
+        assertTrue(result.getThroughput() > 0);
+        List<String> replayedTopics = pollTopics(4);
+        replayedTopics.sort(null);
+        capturedTopics.sort(null);
+        assertEquals(capturedTopics, replayedTopics);
+        replayingClient.disconnect();
+    }
+
+    @Test
+    void shouldRejectInvalidSpeed() {
+        Path captureFile = tempDir.resolve("traffic.bin");
+
+        assertThrows(ExternalConnectorParametersException.class, () -> new TrafficReplay(captureFile, 0, 1));
+        assertThrows(ExternalConnectorParametersException.class, () -> new TrafficReplay(captureFile, Double.NaN, 1));
+        assertThrows(ExternalConnectorParametersException.class, () -> new TrafficReplay(captureFile, 1, 0));
+    }
+
+    private List<String> pollTopics(int count) throws InterruptedException {
+        List<String> topics = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalMqttBroker.Message message = broker.poll();
+            assertNotNull(message);
+            topics.add(message.topic);
+        }
+        return topics;
+    }
+
+    private ExternalConnectorParameters.ExternalConnectorParametersBuilder parameters() {
+        return ExternalConnectorParameters.builder()
+                .hostname(broker.getUri())
+                .apiKey(ExternalConnectorParametersTest.API_KEY)
+                .transportFactory(transportFactory)
+                .messageCallback(commandRequest -> "done");
+    }
+
+    private static DataMessage dataMessage(String value) {
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setValue(new Value(value));
+        dataMessage.setMetadata(new Metadata("csv"));
+        return dataMessage;
+    }
+}
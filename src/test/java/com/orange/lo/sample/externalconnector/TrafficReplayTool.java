@@ -0,0 +1,70 @@
+package com.orange.lo.sample.externalconnector;
+
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * Replays a traffic capture through a client, against the broker of the "broker" system property
+ * (e.g. tcp://localhost:1883), or against an in-process broker when it is not set. Replayed command requests are
+ * published to the broker, the client handles them with a handler returning at once.
+ * <p>
+ * Arguments: capture file, speed ("max" for as fast as possible), transport ("paho" or "netty"), lanes.
+ */
+public class TrafficReplayTool {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: TrafficReplayTool <capture file> [speed|max] [paho|netty] [lanes]");
+            System.exit(1);
+        }
+        double speed = args.length > 1 && !"max".equals(args[1]) ? Double.parseDouble(args[1]) : Double.POSITIVE_INFINITY;
+        boolean netty = args.length > 2 && "netty".equals(args[2]);
+        int lanes = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String brokerUri = System.getProperty("broker");
+        String apiKey = System.getProperty("apiKey", "replay");
+        LocalMqttBroker localBroker = brokerUri == null ? new LocalMqttBroker() : null;
+        NettyMqttTransportFactory nettyTransportFactory = netty ? new NettyMqttTransportFactory() : null;
+        MqttClient commandClient = null;
+        try {
+            ExternalConnectorParameters.ExternalConnectorParametersBuilder parameters = ExternalConnectorParameters.builder()
+                    .hostname(localBroker != null ? localBroker.getUri() : brokerUri)
+                    .apiKey(apiKey)
+                    .messageCallback(commandRequest -> "replayed");
+            if (nettyTransportFactory != null) {
+                parameters.transportFactory(nettyTransportFactory);
+            }
+            ExternalConnectorClient client = new ExternalConnectorClient(parameters.build());
+            client.connect();
+            TrafficReplay.CommandSender commandSender;
+            if (localBroker != null) {
+                commandSender = localBroker::send;
+            } else {
+                commandClient = new MqttClient(brokerUri, UUID.randomUUID().toString(), new MemoryPersistence());
+                MqttConnectOptions options = new MqttConnectOptions();
+                options.setUserName(ExternalConnectorParameters.DEFAULT_USER);
+                options.setPassword(apiKey.toCharArray());
+                commandClient.connect(options);
+                MqttClient sender = commandClient;
+                commandSender = (topic, payload) -> sender.publish(topic, payload, 1, false);
+            }
+            ReplayResult result = new TrafficReplay(Paths.get(args[0]), speed, lanes).run(client, commandSender);
+            client.disconnect();
+            System.out.println(result);
+        } finally {
+            if (commandClient != null) {
+                commandClient.disconnect();
+                commandClient.close();
+            }
+            if (nettyTransportFactory != null) {
+                nettyTransportFactory.close();
+            }
+            if (localBroker != null) {
+                localBroker.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.Value;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publication throughput and latency of the Paho and Netty transports through one client. Runs against the broker of the "broker" system property (e.g. tcp://localhost:1883),
+ * or against an in-process broker when it is not set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class TransportBenchmark {
+
+    @Param({"paho", "netty"})
+    public String transport;
+
+    @Param({"0", "1"})
+    public int qos;
+
+    private LocalMqttBroker localBroker;
+    private NettyMqttTransportFactory nettyTransportFactory;
+    private ExternalConnectorClient client;
+    private DataMessage dataMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, MqttException {
+        String brokerUri = System.getProperty("broker");
+        if (brokerUri == null) {
+            localBroker = new LocalMqttBroker();
+            brokerUri = localBroker.getUri();
+        }
+        ExternalConnectorParameters.ExternalConnectorParametersBuilder parameters = ExternalConnectorParameters.builder()
+                .hostname(brokerUri)
+                .apiKey(System.getProperty("apiKey", "benchmark"))
+                .messageQos(qos);
+        if ("netty".equals(transport)) {
+            nettyTransportFactory = new NettyMqttTransportFactory();
+            parameters.transportFactory(nettyTransportFactory);
+        }
+        client = new ExternalConnectorClient(parameters.build());
+        client.connect();
+        dataMessage = new DataMessage();
+        dataMessage.setStreamId("benchmark");
+        dataMessage.setValue(new Value("15;25"));
+        dataMessage.setMetadata(new Metadata("csv"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MqttException {
+        client.disconnect();
+        if (nettyTransportFactory != null) {
+            nettyTransportFactory.close();
+        }
+        if (localBroker != null) {
+            localBroker.close();
+        }
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        client.sendMessage("benchmark-node", dataMessage);
+    }
+}
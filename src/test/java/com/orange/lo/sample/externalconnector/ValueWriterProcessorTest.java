@@ -0,0 +1,103 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orange.lo.sample.lo.model.DataMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueWriterProcessorTest {
+
+    private final ObjectMapper reflectionMapper = new ObjectMapper();
+    private final ObjectMapper generatedMapper = new ObjectMapper().registerModule(ValueWriters.module());
+
+    @Test
+    void shouldGenerateAndRegisterWriters() throws Exception {
+        assertNotNull(Class.forName("com.orange.lo.sample.externalconnector.ValueWriterProcessorTest_SensorValue_ValueWriter"));
+        assertInstanceOf(ValueWriters.WriterSerializer.class, generatedMapper.getSerializerProviderInstance().findValueSerializer(SensorValue.class));
+        assertInstanceOf(ValueWriters.WriterSerializer.class, generatedMapper.getSerializerProviderInstance().findValueSerializer(Position.class));
+    }
+
+    @Test
+    void shouldWriteSameJsonAsJackson() throws Exception {
+        SensorValue value = new SensorValue();
+        value.temperature = 21.5;
+        value.count = 3;
+        value.online = true;
+        value.label = "room \"1\"";
+        value.tags = Arrays.asList("a", "b");
+        value.position = new Position();
+        value.position.lat = 48.86;
+        value.position.lon = 2.35;
+        DataMessage dataMessage = new DataMessage();
+        dataMessage.setValue(value);
+
+        JsonNode generated = generatedMapper.readTree(generatedMapper.writeValueAsBytes(dataMessage));
+        JsonNode reflected = reflectionMapper.readTree(reflectionMapper.writeValueAsBytes(dataMessage));
+
+        assertEquals(reflected, generated);
+        assertEquals(21.5, generated.get("value").get("temp").asDouble());
+        assertTrue(generated.get("value").get("humidity").isNull());
+        assertFalse(generated.get("value").has("secret"));
+        assertEquals(48.86, generated.get("value").get("position").get("lat").asDouble());
+    }
+
+    @LoValue
+    static class SensorValue {
+
+        private double temperature;
+        private Double humidity;
+        private long count;
+        private boolean online;
+        private String label;
+        private List<String> tags;
+        private Position position;
+
+        @JsonProperty("temp")
+        public double getTemperature() {
+            return temperature;
+        }
+
+        public Double getHumidity() {
+            return humidity;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public boolean isOnline() {
+            return online;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public Position getPosition() {
+            return position;
+        }
+
+        @JsonIgnore
+        public String getSecret() {
+            return "secret";
+        }
+    }
+
+    @LoValue
+    static class Position {
+
+        public double lat;
+        public double lon;
+    }
+}
@@ -0,0 +1,53 @@
+package com.orange.lo.sample.externalconnector;
+
+import com.orange.lo.sample.lo.model.DataMessage;
+import com.orange.lo.sample.lo.model.Metadata;
+import com.orange.lo.sample.lo.model.Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to steady state after a restart: each fork is a fresh JVM which publishes its first messages,
+ * with or without a warm-up beforehand. The warm-up itself is not part of the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class WarmUpBenchmark {
+
+    @Param({"false", "true"})
+    public boolean warmUp;
+
+    @Param({"1000"})
+    public int messages;
+
+    private ExternalConnectorClient client;
+    private DataMessage dataMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ExternalConnectorParameters parameters = ExternalConnectorParameters.builder()
+                .hostname("tcp://localhost:1883")
+                .apiKey("benchmark")
+                .build();
+        client = new ExternalConnectorClient(parameters, new NullMqttTransport());
+        dataMessage = new DataMessage();
+        dataMessage.setStreamId("benchmark");
+        dataMessage.setValue(new Value("15;25"));
+        dataMessage.setMetadata(new Metadata("csv"));
+        if (warmUp) {
+            client.warmUp();
+        }
+    }
+
+    @Benchmark
+    public void firstMessages() {
+        for (int i = 0; i < messages; i++) {
+            client.sendMessage("node-" + (i % 100), dataMessage);
+        }
+    }
+}